@@ -0,0 +1,52 @@
+package com.university.exam.common.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+/**
+ * 监考规则 DTO
+ * 例：{actionType: "switch_screen", threshold: 3, windowSeconds: 120, action: "WARN"} 表示 2 分钟内切屏 3 次提醒考生；
+ * {actionType: "away_time", threshold: 300, windowSeconds: 0, action: "FORCE_SUBMIT"} 表示累计离开页面 5 分钟强制交卷。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Data
+public class ProctorRuleDto {
+
+    /**
+     * 统计的日志类型（switch_screen、leave_page、env_abnormal 等），
+     * away_time 表示离开考试页面的累计时长
+     */
+    @NotBlank(message = "规则类型不能为空")
+    private String actionType;
+
+    /**
+     * 阈值：次数；away_time 时为秒数
+     */
+    @NotNull(message = "阈值不能为空")
+    @Min(value = 1, message = "阈值必须大于0")
+    private Integer threshold;
+
+    /**
+     * 滑动窗口（秒），0 表示整场考试累计；away_time 只支持整场累计
+     */
+    @NotNull(message = "时间窗口不能为空")
+    @Min(value = 0, message = "时间窗口不能为负数")
+    private Integer windowSeconds;
+
+    /**
+     * 触发动作：WARN-提醒考生，ALERT-通知监考教师，FORCE_SUBMIT-强制交卷
+     */
+    @NotBlank(message = "触发动作不能为空")
+    @Pattern(regexp = "WARN|ALERT|FORCE_SUBMIT", message = "触发动作只能是 WARN、ALERT 或 FORCE_SUBMIT")
+    private String action;
+
+    /**
+     * 提示语（可选）
+     */
+    private String message;
+}
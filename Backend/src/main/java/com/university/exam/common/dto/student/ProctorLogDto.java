@@ -28,6 +28,11 @@ public class ProctorLogDto {
      */
     private String imgSnapshot;
 
+    /**
+     * 抓拍缩略图 URL (可选，上传抓拍时返回的 thumbUrl)
+     */
+    private String imgThumb;
+
     /**
      * 详细内容/备注 (可选)
      */
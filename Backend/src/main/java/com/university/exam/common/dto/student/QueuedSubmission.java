@@ -0,0 +1,14 @@
+package com.university.exam.common.dto.student;
+
+import lombok.Data;
+
+/**
+ * 异步交卷队列中的交卷任务
+ */
+@Data
+public class QueuedSubmission {
+    private String receiptId;           // 交卷回执ID
+    private Long userId;                // 考生ID
+    private SubmitExamRequest request;  // 交卷内容
+    private Long enqueueTime;           // 入队时间戳(毫秒)
+}
@@ -0,0 +1,31 @@
+package com.university.exam.common.exception;
+
+import lombok.Getter;
+
+/**
+ * 准入排队异常
+ * 考试开考瞬间请求过多时，超出准入速率的考生进入排队，由全局异常处理器转换为 HTTP 429 并携带 Retry-After。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Getter
+public class AdmissionRejectedException extends BizException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 排队位置（前面等待的人数），队列已满时为 -1
+     */
+    private final int position;
+
+    /**
+     * 建议重试间隔（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, int position, long retryAfterSeconds) {
+        super(429, message);
+        this.position = position;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
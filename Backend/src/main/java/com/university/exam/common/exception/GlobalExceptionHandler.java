@@ -2,7 +2,9 @@ package com.university.exam.common.exception;
 
 import com.university.exam.common.result.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.AuthenticationException;
@@ -11,6 +13,9 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 全局异常处理器
  * 统一处理系统中的所有异常，转换为标准的Result<T>响应
@@ -37,6 +42,22 @@ public class GlobalExceptionHandler {
         return Result.error(e.getCode(), e.getMessage());
     }
 
+    /**
+     * 处理准入排队异常（HTTP 429，携带 Retry-After 与排队位置）
+     *
+     * @param e 准入排队异常
+     * @return 统一响应结果
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Result<?>> handleAdmissionRejectedException(AdmissionRejectedException e) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("position", e.getPosition());
+        data.put("retryAfter", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(429, e.getMessage(), data));
+    }
+
     /**
      * 处理认证异常（未授权）
      *
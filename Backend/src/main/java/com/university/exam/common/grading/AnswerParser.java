@@ -0,0 +1,117 @@
+package com.university.exam.common.grading;
+
+/**
+ * 客观题答案解析工具
+ * 将各种写法的答案归一化为基本类型，解析过程不产生任何对象：
+ * <ul>
+ *     <li>选择题 -> 选项位图：支持下标（"1"、"[0,2]"）和字母（"B"、"AC"、"A,C"）两种写法，与选项顺序无关</li>
+ *     <li>判断题 -> 1/0：支持 "1"/"0"、true/false、T/F、对/错、正确/错误、√/×</li>
+ * </ul>
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public final class AnswerParser {
+
+    /**
+     * 无法解析
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * 最大选项下标（最高位为符号位，不使用）
+     */
+    private static final int MAX_OPTIONS = 62;
+
+    private AnswerParser() {
+    }
+
+    /**
+     * 解析选择题答案为选项位图（第 i 个选项对应第 i 位）
+     *
+     * @param answer 答案
+     * @return 位图；空答案返回 0；含非法内容返回 {@link #INVALID}
+     */
+    public static long parseChoiceMask(CharSequence answer) {
+        if (answer == null) {
+            return 0L;
+        }
+        long mask = 0L;
+        int number = -1;
+        for (int i = 0, len = answer.length(); i < len; i++) {
+            char c = answer.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                if (number > MAX_OPTIONS) {
+                    return INVALID;
+                }
+                continue;
+            }
+            if (number >= 0) {
+                mask |= 1L << number;
+                number = -1;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                mask |= 1L << (c - 'A');
+            } else if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (!isSeparator(c)) {
+                return INVALID;
+            }
+        }
+        if (number >= 0) {
+            mask |= 1L << number;
+        }
+        return mask;
+    }
+
+    /**
+     * 解析判断题答案
+     *
+     * @param answer 答案
+     * @return 1-正确，0-错误；空答案或无法识别返回 {@link #INVALID}
+     */
+    public static long parseJudge(CharSequence answer) {
+        if (answer == null) {
+            return INVALID;
+        }
+        int start = 0;
+        int end = answer.length();
+        while (start < end && Character.isWhitespace(answer.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(answer.charAt(end - 1))) end--;
+        int len = end - start;
+        if (len == 1) {
+            switch (answer.charAt(start)) {
+                case '1': case 'T': case 't': case '对': case '√': case 'A':
+                    return 1L;
+                case '0': case 'F': case 'f': case '错': case '×': case 'B':
+                    return 0L;
+                default:
+                    return INVALID;
+            }
+        }
+        if (regionEquals(answer, start, len, "true") || regionEquals(answer, start, len, "正确")) {
+            return 1L;
+        }
+        if (regionEquals(answer, start, len, "false") || regionEquals(answer, start, len, "错误")) {
+            return 0L;
+        }
+        return INVALID;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || c == '[' || c == ']' || c == ' ' || c == '"' || c == '，' || c == '、' || c == ';';
+    }
+
+    private static boolean regionEquals(CharSequence s, int start, int len, String expected) {
+        if (len != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (Character.toLowerCase(s.charAt(start + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
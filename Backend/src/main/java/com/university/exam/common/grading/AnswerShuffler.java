@@ -0,0 +1,140 @@
+package com.university.exam.common.grading;
+
+/**
+ * 确定性乱序工具（防作弊）
+ * 题目顺序和选择题选项顺序由种子（考试记录ID + 盐）推导，同一记录每次得到相同的排列，不需要为每个考生存储乱序后的试卷：
+ * <ul>
+ *     <li>开考时对共享试卷快照的副本按排列重排题目和选项</li>
+ *     <li>考生作答使用的是展示顺序下的选项下标，保存或判分前通过排列映射回原始下标</li>
+ * </ul>
+ * 排列使用自带的 SplitMix64 序列生成，不依赖 JDK 随机数实现，不同节点、不同版本的计算结果一致。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public final class AnswerShuffler {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private AnswerShuffler() {
+    }
+
+    /**
+     * 由考试记录ID推导乱序种子
+     *
+     * @param recordId 考试记录ID
+     * @param salt     服务端配置的盐（避免考生根据记录ID自行推算排列）
+     * @return 种子
+     */
+    public static long seed(long recordId, long salt) {
+        return mix(recordId ^ salt);
+    }
+
+    /**
+     * 题目顺序排列
+     *
+     * @param seed 种子
+     * @param size 题目数
+     * @return perm[展示位置] = 原始位置
+     */
+    public static int[] questionOrder(long seed, int size) {
+        return permutation(seed, size);
+    }
+
+    /**
+     * 单道选择题的选项排列
+     *
+     * @param seed        种子
+     * @param questionId  题目ID
+     * @param optionCount 选项数
+     * @return perm[展示下标] = 原始下标
+     */
+    public static int[] optionOrder(long seed, long questionId, int optionCount) {
+        return permutation(mix(seed + questionId * GOLDEN_GAMMA), optionCount);
+    }
+
+    /**
+     * 将展示顺序下的作答映射为原始选项下标
+     *
+     * @param type   题型（1-单选，2-多选，其余不处理）
+     * @param answer 作答（单选 "1"，多选 "[0,2]"）
+     * @param perm   选项排列 perm[展示下标] = 原始下标
+     * @return 原始下标下的作答，无法解析时原样返回
+     */
+    public static String toCanonical(Integer type, String answer, int[] perm) {
+        return remap(type, answer, perm, false);
+    }
+
+    /**
+     * 将原始选项下标的作答映射为展示顺序（断点续考回填）
+     *
+     * @param type   题型（1-单选，2-多选，其余不处理）
+     * @param answer 原始下标下的作答
+     * @param perm   选项排列 perm[展示下标] = 原始下标
+     * @return 展示顺序下的作答，无法解析时原样返回
+     */
+    public static String toDisplayed(Integer type, String answer, int[] perm) {
+        return remap(type, answer, perm, true);
+    }
+
+    private static String remap(Integer type, String answer, int[] perm, boolean inverse) {
+        if (type == null || (type != CompiledAnswerKey.TYPE_SINGLE && type != CompiledAnswerKey.TYPE_MULTI)
+                || answer == null || answer.isBlank() || perm.length == 0) {
+            return answer;
+        }
+        long mask = AnswerParser.parseChoiceMask(answer);
+        if (mask <= 0L) {
+            return answer;
+        }
+        long mapped = 0L;
+        for (int i = 0; i < perm.length; i++) {
+            int from = inverse ? perm[i] : i;
+            int to = inverse ? i : perm[i];
+            if ((mask & (1L << from)) != 0L) {
+                mapped |= 1L << to;
+                mask &= ~(1L << from);
+            }
+        }
+        if (mask != 0L) {
+            // 存在超出选项范围的下标，不做映射
+            return answer;
+        }
+        if (type == CompiledAnswerKey.TYPE_SINGLE) {
+            return Long.bitCount(mapped) == 1 ? String.valueOf(Long.numberOfTrailingZeros(mapped)) : answer;
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; mapped != 0L; i++, mapped >>>= 1) {
+            if ((mapped & 1L) != 0L) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append(i);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private static int[] permutation(long seed, int size) {
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) {
+            perm[i] = i;
+        }
+        // Fisher-Yates 洗牌
+        long state = seed;
+        for (int i = size - 1; i > 0; i--) {
+            state += GOLDEN_GAMMA;
+            int j = (int) Long.remainderUnsigned(mix(state), i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        return perm;
+    }
+
+    /**
+     * SplitMix64 混淆，避免相邻记录ID得到相近的种子
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
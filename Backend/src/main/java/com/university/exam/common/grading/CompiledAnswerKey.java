@@ -0,0 +1,266 @@
+package com.university.exam.common.grading;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 编译后的试卷答案（客观题判分引擎）
+ * 试卷答案按题目ID排序后编译为并行数组：题型、归一化答案（选择题为选项位图，判断题为 1/0）、分值（以 0.01 分为单位）。
+ * 判分时按题目ID二分查找下标，解析考生答案并与位图比较，全程只使用基本类型，单题判分不产生任何对象。
+ * 编译结果不可变，可在多线程间共享。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public final class CompiledAnswerKey {
+
+    /**
+     * 题型：1-单选，2-多选，3-判断
+     */
+    public static final byte TYPE_SINGLE = 1;
+    public static final byte TYPE_MULTI = 2;
+    public static final byte TYPE_JUDGE = 3;
+
+    private final long paperId;
+    private final long[] questionIds;
+    private final long[] courseIds;
+    private final byte[] types;
+    private final long[] keys;
+    private final String[] rawKeys;
+    private final long[] scoreCents;
+    private final int[] optionCounts;
+    private final MultiChoicePolicy policy;
+
+    private CompiledAnswerKey(long paperId, long[] questionIds, long[] courseIds, byte[] types, long[] keys,
+                              String[] rawKeys, long[] scoreCents, int[] optionCounts, MultiChoicePolicy policy) {
+        this.paperId = paperId;
+        this.questionIds = questionIds;
+        this.courseIds = courseIds;
+        this.types = types;
+        this.keys = keys;
+        this.rawKeys = rawKeys;
+        this.scoreCents = scoreCents;
+        this.optionCounts = optionCounts;
+        this.policy = policy;
+    }
+
+    public static Builder builder(long paperId, MultiChoicePolicy policy) {
+        return new Builder(paperId, policy);
+    }
+
+    public long getPaperId() {
+        return paperId;
+    }
+
+    public MultiChoicePolicy getPolicy() {
+        return policy;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    /**
+     * 查找题目下标
+     *
+     * @param questionId 题目ID
+     * @return 下标，不属于本试卷时返回负数
+     */
+    public int indexOf(long questionId) {
+        return Arrays.binarySearch(questionIds, questionId);
+    }
+
+    public long questionId(int index) {
+        return questionIds[index];
+    }
+
+    public long courseId(int index) {
+        return courseIds[index];
+    }
+
+    public byte type(int index) {
+        return types[index];
+    }
+
+    /**
+     * 选择题的选项数（用于选项乱序映射），未知时为 0
+     */
+    public int optionCount(int index) {
+        return optionCounts[index];
+    }
+
+    /**
+     * 是否客观题（单选、多选、判断）
+     */
+    public boolean isObjective(int index) {
+        byte type = types[index];
+        return type == TYPE_SINGLE || type == TYPE_MULTI || type == TYPE_JUDGE;
+    }
+
+    /**
+     * 题目满分（单位 0.01 分）
+     */
+    public long fullScoreCents(int index) {
+        return scoreCents[index];
+    }
+
+    /**
+     * 批改一道客观题
+     *
+     * @param index  题目下标
+     * @param answer 考生答案
+     * @return 得分（单位 0.01 分）
+     */
+    public long grade(int index, String answer) {
+        long full = scoreCents[index];
+        long key = keys[index];
+        if (key == AnswerParser.INVALID) {
+            // 标准答案无法解析时退化为原文比较
+            return rawKeys[index] != null && rawKeys[index].equals(answer) ? full : 0L;
+        }
+        switch (types[index]) {
+            case TYPE_JUDGE:
+                return AnswerParser.parseJudge(answer) == key ? full : 0L;
+            case TYPE_SINGLE:
+                return AnswerParser.parseChoiceMask(answer) == key ? full : 0L;
+            case TYPE_MULTI:
+                return gradeMulti(AnswerParser.parseChoiceMask(answer), key, full);
+            default:
+                return 0L;
+        }
+    }
+
+    private long gradeMulti(long selected, long key, long full) {
+        if (selected == key) {
+            return full;
+        }
+        // 未作答、无法解析或有错选：不得分
+        if (selected <= 0L || (selected & ~key) != 0L) {
+            return 0L;
+        }
+        switch (policy) {
+            case HALF_CREDIT:
+                return full / 2;
+            case PROPORTIONAL:
+                return full * Long.bitCount(selected) / Long.bitCount(key);
+            default:
+                return 0L;
+        }
+    }
+
+    /**
+     * 分值转换为 0.01 分单位
+     */
+    public static long toCents(BigDecimal score) {
+        if (score == null) {
+            return 0L;
+        }
+        return score.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    /**
+     * 0.01 分单位转换为分值
+     */
+    public static BigDecimal toScore(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * 答案编译器
+     */
+    public static final class Builder {
+        private final long paperId;
+        private final MultiChoicePolicy policy;
+        private long[] questionIds = new long[16];
+        private long[] courseIds = new long[16];
+        private byte[] types = new byte[16];
+        private String[] answers = new String[16];
+        private long[] scoreCents = new long[16];
+        private int[] optionCounts = new int[16];
+        private int size;
+
+        private Builder(long paperId, MultiChoicePolicy policy) {
+            this.paperId = paperId;
+            this.policy = Objects.requireNonNull(policy, "policy");
+        }
+
+        public Builder add(long questionId, Long courseId, Integer type, String answer, BigDecimal score) {
+            return add(questionId, courseId, type, answer, score, 0);
+        }
+
+        public Builder add(long questionId, Long courseId, Integer type, String answer, BigDecimal score,
+                           int optionCount) {
+            if (size == questionIds.length) {
+                int capacity = size * 2;
+                questionIds = Arrays.copyOf(questionIds, capacity);
+                courseIds = Arrays.copyOf(courseIds, capacity);
+                types = Arrays.copyOf(types, capacity);
+                answers = Arrays.copyOf(answers, capacity);
+                scoreCents = Arrays.copyOf(scoreCents, capacity);
+                optionCounts = Arrays.copyOf(optionCounts, capacity);
+            }
+            questionIds[size] = questionId;
+            courseIds[size] = courseId != null ? courseId : 0L;
+            types[size] = type != null ? type.byteValue() : 0;
+            answers[size] = answer;
+            scoreCents[size] = toCents(score);
+            optionCounts[size] = optionCount;
+            size++;
+            return this;
+        }
+
+        public CompiledAnswerKey build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(questionIds[a], questionIds[b]));
+
+            long[] sortedIds = new long[size];
+            long[] sortedCourses = new long[size];
+            byte[] sortedTypes = new byte[size];
+            long[] sortedKeys = new long[size];
+            String[] sortedRaw = new String[size];
+            long[] sortedScores = new long[size];
+            int[] sortedOptionCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                int from = order[i];
+                if (i > 0 && questionIds[from] == sortedIds[i - 1]) {
+                    throw new IllegalArgumentException("试卷中存在重复题目: " + questionIds[from]);
+                }
+                sortedIds[i] = questionIds[from];
+                sortedCourses[i] = courseIds[from];
+                sortedTypes[i] = types[from];
+                sortedScores[i] = scoreCents[from];
+                sortedOptionCounts[i] = optionCounts[from];
+                sortedKeys[i] = compileKey(types[from], answers[from]);
+                if (sortedKeys[i] == AnswerParser.INVALID) {
+                    sortedRaw[i] = answers[from];
+                }
+            }
+            return new CompiledAnswerKey(paperId, sortedIds, sortedCourses, sortedTypes, sortedKeys,
+                    sortedRaw, sortedScores, sortedOptionCounts, policy);
+        }
+
+        private static long compileKey(byte type, String answer) {
+            switch (type) {
+                case TYPE_JUDGE:
+                    return AnswerParser.parseJudge(answer);
+                case TYPE_SINGLE: {
+                    long mask = AnswerParser.parseChoiceMask(answer);
+                    // 单选题标准答案必须恰好一个选项
+                    return Long.bitCount(mask) == 1 ? mask : AnswerParser.INVALID;
+                }
+                case TYPE_MULTI: {
+                    long mask = AnswerParser.parseChoiceMask(answer);
+                    return mask > 0L ? mask : AnswerParser.INVALID;
+                }
+                default:
+                    // 主观题不参与客观判分
+                    return AnswerParser.INVALID;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.university.exam.common.grading;
+
+/**
+ * 多选题计分策略
+ * 三种策略下错选任意一项均不得分，区别在于少选（所选均正确但未选全）时的处理。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public enum MultiChoicePolicy {
+
+    /**
+     * 全对得满分，否则不得分
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * 少选且无错选得一半分
+     */
+    HALF_CREDIT,
+
+    /**
+     * 少选且无错选按选对的比例得分
+     */
+    PROPORTIONAL
+}
@@ -1,5 +1,6 @@
 package com.university.exam.common.interceptor;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +34,11 @@ public class LogInterceptor implements HandlerInterceptor {
      */
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 0. 异步请求（如登录）返回结果时会再次分派，沿用首次分派记录的开始时间
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
         // 1. 记录请求开始时间
         long startTime = System.currentTimeMillis();
         request.setAttribute(START_TIME_KEY, startTime);
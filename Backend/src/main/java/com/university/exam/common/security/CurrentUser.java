@@ -0,0 +1,33 @@
+package com.university.exam.common.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 当前登录用户
+ * 由 {@link JwtAuthenticationFilter} 在认证通过时构建一次并存入请求属性，
+ * 控制器方法直接声明 CurrentUser 类型的参数即可获取（{@link CurrentUserArgumentResolver}），无需再次解析 JWT。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CurrentUser {
+
+    /**
+     * 请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = CurrentUser.class.getName();
+
+    private final Long userId;
+
+    /**
+     * 角色：1-学生，2-教师，3-管理员
+     */
+    private final Integer role;
+
+    private final Long deptId;
+}
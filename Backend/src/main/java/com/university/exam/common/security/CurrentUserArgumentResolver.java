@@ -0,0 +1,50 @@
+package com.university.exam.common.security;
+
+import com.university.exam.common.exception.BizException;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * 注入控制器方法中的 {@link CurrentUser} 参数
+ * 优先读取认证过滤器写入的请求属性；没有时（如测试中直接设置 SecurityContext）由认证信息构建，不含部门ID。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return CurrentUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object attribute = webRequest.getAttribute(CurrentUser.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (attribute instanceof CurrentUser currentUser) {
+            return currentUser;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof Long userId) {
+            Integer role = authentication.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .filter(a -> a.startsWith("ROLE_"))
+                    .map(a -> Integer.valueOf(a.substring(5)))
+                    .findFirst()
+                    .orElse(null);
+            return new CurrentUser(userId, role, null);
+        }
+        throw new BizException(401, "未登录或登录已过期");
+    }
+}
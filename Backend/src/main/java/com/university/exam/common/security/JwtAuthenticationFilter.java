@@ -2,7 +2,6 @@ package com.university.exam.common.security;
 
 import com.university.exam.common.utils.JwtUtils;
 import com.university.exam.service.TokenService;
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -20,7 +19,6 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * JWT认证过滤器
@@ -69,27 +67,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 token = authHeader.substring(7);
             }
 
-            // 3. 验证Token（同时验证JWT和Redis）
-            if (token != null && tokenService.validateToken(token)) {
-                // 4. 优先从Redis获取用户信息
-                Map<String, Object> userInfo = tokenService.getUserInfo(token);
-                
-                Long userId;
-                Integer role;
-                
-                if (userInfo != null) {
-                    // 从Redis获取用户信息
-                    userId = ((Number) userInfo.get("userId")).longValue();
-                    role = ((Number) userInfo.get("role")).intValue();
-                    
-                    // 刷新Token过期时间（滑动过期）
-                    tokenService.refreshToken(token);
-                } else {
-                    // 降级：从JWT中获取用户信息
-                    Claims claims = jwtUtils.parseToken(token);
-                    userId = claims.get("userId", Long.class);
-                    role = claims.get("role", Integer.class);
-                }
+            // 3. 验证Token（同时验证JWT和Redis，已验证的Token命中本地缓存，并按间隔滑动过期）
+            TokenService.TokenSession session = token != null ? tokenService.authenticate(token) : null;
+            if (session != null) {
+                // 4. 用户信息取自认证结果
+                Long userId = session.getUserId();
+                Integer role = session.getRole();
 
                 // 5. 构建权限列表
                 List<SimpleGrantedAuthority> authorities = new ArrayList<>();
@@ -102,9 +85,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
                 // 7. 将认证信息存入SecurityContextHolder
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+
+                // 8. 当前用户存入请求属性，控制器通过 CurrentUser 参数获取，不再重复解析JWT
+                request.setAttribute(CurrentUser.REQUEST_ATTRIBUTE,
+                        new CurrentUser(userId, role, session.getDeptId()));
             }
         } catch (JwtException e) {
-            // 8. 处理Token无效、过期或缺失等情况
+            // 9. 处理Token无效、过期或缺失等情况
             log.warn("JWT认证失败: {}", e.getMessage());
             // 清除SecurityContext
             SecurityContextHolder.clearContext();
@@ -113,7 +100,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             SecurityContextHolder.clearContext();
         }
 
-        // 9. 继续执行过滤器链
+        // 10. 继续执行过滤器链
         filterChain.doFilter(request, response);
     }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.university.exam.common.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层时间轮
+ * 用于管理大量到期时间（如每份答卷的交卷截止时间）：
+ * 1. 第一层每格 tickMs，共 wheelSize 格；超出本层范围的定时任务放入上一层（每格跨度为下层一圈），按需创建
+ * 2. 推进时钟时，上层格子到期后把其中的任务重新放入下层，最终在第一层到期
+ * 3. 添加、取消均为 O(1)，推进时只处理到期的格子，与任务总数无关
+ * 同一 key 重复添加时以最后一次为准。所有公开方法均已同步，可被请求线程和调度线程并发调用。
+ *
+ * @param <K> 任务标识类型
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public class TimingWheel<K> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final Level root;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+
+    /**
+     * @param tickMs    第一层每格跨度（毫秒）
+     * @param wheelSize 每层格数
+     * @param startMs   起始时间（毫秒时间戳）
+     */
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMs 必须大于 0，wheelSize 必须大于 1");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.root = new Level(tickMs, startMs);
+    }
+
+    /**
+     * 添加（或更新）定时任务
+     *
+     * @param key        任务标识
+     * @param deadlineMs 到期时间（毫秒时间戳）
+     * @return 是否已经到期（已到期的任务不会放入时间轮，需由调用方立即处理）
+     */
+    public synchronized boolean schedule(K key, long deadlineMs) {
+        cancelInternal(key);
+        Entry<K> entry = new Entry<>(key, deadlineMs);
+        if (!root.add(entry)) {
+            return true;
+        }
+        entries.put(key, entry);
+        return false;
+    }
+
+    /**
+     * 取消定时任务
+     *
+     * @param key 任务标识
+     * @return 是否存在该任务
+     */
+    public synchronized boolean cancel(K key) {
+        return cancelInternal(key);
+    }
+
+    /**
+     * 推进时钟，返回到期的任务
+     *
+     * @param nowMs 当前时间（毫秒时间戳）
+     * @return 到期的任务标识
+     */
+    public synchronized List<K> advance(long nowMs) {
+        List<K> expired = new ArrayList<>();
+        root.advance(nowMs, expired);
+        return expired;
+    }
+
+    /**
+     * 时间轮中的任务数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private boolean cancelInternal(K key) {
+        Entry<K> existing = entries.remove(key);
+        if (existing == null) {
+            return false;
+        }
+        existing.cancelled = true;
+        return true;
+    }
+
+    /**
+     * 重新放入时间轮；已到期的直接加入结果
+     */
+    private void reinsert(Entry<K> entry, List<K> expired) {
+        if (entry.cancelled) {
+            return;
+        }
+        if (!root.add(entry)) {
+            entries.remove(entry.key);
+            expired.add(entry.key);
+        }
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long deadlineMs;
+        private boolean cancelled;
+
+        private Entry(K key, long deadlineMs) {
+            this.key = key;
+            this.deadlineMs = deadlineMs;
+        }
+    }
+
+    /**
+     * 时间轮的一层
+     */
+    private final class Level {
+        private final long levelTickMs;
+        private final long intervalMs;
+        private final ArrayDeque<Entry<K>>[] buckets;
+        private long currentTime;
+        private Level overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long levelTickMs, long startMs) {
+            this.levelTickMs = levelTickMs;
+            this.intervalMs = levelTickMs * wheelSize;
+            this.buckets = new ArrayDeque[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+            this.currentTime = startMs - (startMs % levelTickMs);
+        }
+
+        /**
+         * 第一层按"到期时间向上取整"入格，保证任务不会早于到期时间触发；
+         * 上层按"到期时间向下取整"入格，在格子跨度开始时下沉到下层。
+         *
+         * @return false 表示任务已到期
+         */
+        private boolean add(Entry<K> entry) {
+            long deadline = entry.deadlineMs;
+            if (levelTickMs == tickMs) {
+                if (deadline <= currentTime) {
+                    return false;
+                }
+                long slot = deadline % levelTickMs == 0 ? deadline : deadline - deadline % levelTickMs + levelTickMs;
+                if (slot <= currentTime + intervalMs) {
+                    buckets[bucketIndex(slot)].add(entry);
+                    return true;
+                }
+            } else {
+                long slot = deadline - deadline % levelTickMs;
+                if (slot < currentTime + intervalMs) {
+                    buckets[bucketIndex(slot)].add(entry);
+                    return true;
+                }
+            }
+            if (overflow == null) {
+                overflow = new Level(intervalMs, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advance(long nowMs, List<K> expired) {
+            long target = nowMs - (nowMs % levelTickMs);
+            long steps = (target - currentTime) / levelTickMs;
+            if (steps > 0) {
+                // 跨度超过一圈时，每个格子只需处理一次
+                long start = steps >= wheelSize ? target - (wheelSize - 1) * levelTickMs : currentTime + levelTickMs;
+                currentTime = target;
+                for (long time = start; time <= target; time += levelTickMs) {
+                    ArrayDeque<Entry<K>> bucket = buckets[bucketIndex(time)];
+                    if (bucket.isEmpty()) continue;
+                    List<Entry<K>> drained = new ArrayList<>(bucket);
+                    bucket.clear();
+                    for (Entry<K> entry : drained) {
+                        reinsert(entry, expired);
+                    }
+                }
+            }
+            if (overflow != null) {
+                overflow.advance(nowMs, expired);
+            }
+        }
+
+        private int bucketIndex(long timeMs) {
+            return (int) ((timeMs / levelTickMs) % wheelSize);
+        }
+    }
+}
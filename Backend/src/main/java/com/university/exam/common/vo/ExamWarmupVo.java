@@ -0,0 +1,31 @@
+package com.university.exam.common.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 考前缓存预热状态 VO
+ */
+@Data
+public class ExamWarmupVo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String STATE_COLD = "COLD";       // 未预热
+    public static final String STATE_WARMING = "WARMING"; // 预热中
+    public static final String STATE_HOT = "HOT";         // 已预热
+    public static final String STATE_FAILED = "FAILED";   // 预热失败
+
+    private Long publishId;            // 考试发布ID
+    private Long paperId;              // 试卷ID
+    private String title;              // 考试标题
+    private LocalDateTime startTime;   // 开始时间
+    private String state;              // 预热状态
+    private Integer questionCount;     // 已缓存题目数
+    private Integer answerKeyCount;    // 已缓存答案数
+    private Integer rosterSize;        // 应考人数
+    private LocalDateTime warmTime;    // 最近一次预热时间
+    private String node;               // 执行预热的节点
+    private String message;            // 失败原因
+}
@@ -0,0 +1,22 @@
+package com.university.exam.common.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 用户通知列表项 VO（指定用户的通知 + 全体/部门通知，含当前用户的已读状态）
+ */
+@Data
+public class NoticeItemVo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long id;                    // 通知ID
+    private String title;               // 标题
+    private String content;             // 内容
+    private Byte type;                  // 通知类型
+    private LocalDateTime createTime;   // 发布时间
+    private Boolean isRead;             // 是否已读
+    private LocalDateTime readTime;     // 阅读时间（全体/部门通知不记录）
+}
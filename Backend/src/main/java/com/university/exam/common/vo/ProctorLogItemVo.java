@@ -0,0 +1,23 @@
+package com.university.exam.common.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 监考日志列表项 VO（监考日志 + 考生信息）
+ */
+@Data
+public class ProctorLogItemVo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long id;                   // 日志ID
+    private Long recordId;             // 考试记录ID
+    private Long studentId;            // 考生ID
+    private String studentName;        // 考生姓名
+    private String actionType;         // 动作类型
+    private String content;            // 日志内容
+    private String imgSnapshot;        // 图片快照URL
+    private LocalDateTime happenTime;  // 发生时间
+}
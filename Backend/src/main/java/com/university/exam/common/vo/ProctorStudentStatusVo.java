@@ -0,0 +1,23 @@
+package com.university.exam.common.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 监考台考生状态 VO（考试记录 + 考生姓名 + 警告次数聚合）
+ */
+@Data
+public class ProctorStudentStatusVo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long recordId;             // 考试记录ID
+    private Long studentId;            // 考生ID
+    private String studentName;        // 考生姓名
+    private Byte status;               // 记录状态
+    private LocalDateTime startTime;   // 开始答题时间
+    private LocalDateTime submitTime;  // 交卷时间
+    private String userIp;             // 考生IP
+    private Long warningCount;         // 警告次数（切屏、离开页面、环境异常）
+}
@@ -0,0 +1,30 @@
+package com.university.exam.common.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 进行中考试记录的截止时间信息 VO（用于重启后恢复自动收卷定时器）
+ */
+@Data
+public class RecordDeadlineVo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long recordId;             // 考试记录ID
+    private LocalDateTime startTime;   // 开始答题时间
+    private LocalDateTime endTime;     // 考试场次结束时间
+    private Integer duration;          // 试卷时长（分钟）
+
+    /**
+     * 实际截止时间 = min(场次结束时间, 开始时间 + 试卷时长)
+     */
+    public LocalDateTime getDeadline() {
+        if (startTime == null || duration == null) {
+            return endTime;
+        }
+        LocalDateTime paperEnd = startTime.plusMinutes(duration);
+        return endTime != null && endTime.isBefore(paperEnd) ? endTime : paperEnd;
+    }
+}
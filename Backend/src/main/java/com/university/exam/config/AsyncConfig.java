@@ -1,12 +1,16 @@
 package com.university.exam.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 异步任务配置类
@@ -41,4 +45,73 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步交卷判分线程池
+     * 队列满时由调度线程自行执行，起到背压作用，避免从 Redis 拉取过多消息堆积在内存中。
+     * 这里使用 JDK 线程池而非 TaskExecutor，避免影响未指定名称的 @Async 默认线程池的解析。
+     */
+    @Bean(name = "gradingExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor gradingExecutor() {
+        return new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(8),
+                new CustomizableThreadFactory("Grading-Executor-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 监考推送线程池
+     * 合并后的监考消息在这里发送给各教师会话，慢连接由会话装饰器缓冲，不会阻塞日志写入和调度线程。
+     * 队列满时丢弃最早的发送任务（监考台会定时刷新考生状态）。
+     */
+    @Bean(name = "proctorBroadcastExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor proctorBroadcastExecutor() {
+        return new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                new CustomizableThreadFactory("Proctor-Broadcast-"),
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    /**
+     * 抓拍缩略图线程池
+     * 缩略图生成与上传请求解耦，队列满时直接放弃（监考台会回退显示原图）。
+     */
+    @Bean(name = "snapshotThumbnailExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor snapshotThumbnailExecutor() {
+        return new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(500),
+                new CustomizableThreadFactory("Snapshot-Thumb-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 登录密码校验线程池
+     * BCrypt 校验是纯 CPU 计算，开考前集中登录时若在请求线程上执行会占满 CPU，拖慢监考、交卷等其它请求。
+     * 这里限制同时计算的线程数和排队长度，队列满时立即拒绝（返回 429），由客户端稍后重试。
+     *
+     * @param threads       线程数（不大于 0 时取 CPU 核数的一半）
+     * @param queueCapacity 排队上限
+     */
+    @Bean(name = "loginExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor loginExecutor(@Value("${exam.login.threads:0}") int threads,
+                                            @Value("${exam.login.queue-capacity:200}") int queueCapacity) {
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("Login-Verify-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 通知分发线程池
+     * 面向大量用户的通知在这里分批写入用户通知表并推送，发布接口不等待分发完成。
+     * 分发任务很少且必须执行，队列满时由调用线程执行。
+     */
+    @Bean(name = "noticeFanoutExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor noticeFanoutExecutor() {
+        return new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(100),
+                new CustomizableThreadFactory("Notice-Fanout-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,16 @@
+package com.university.exam.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ * 开启考前缓存预热等周期任务，调度线程池大小见 spring.task.scheduling.pool.size
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Configuration
+@EnableScheduling
+public class ScheduleConfig {
+}
@@ -1,6 +1,7 @@
 package com.university.exam.config;
 
 import com.university.exam.common.security.JwtAuthenticationFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -45,12 +46,14 @@ public class SecurityConfig {
     /**
      * 配置BCrypt密码编码器
      * BCrypt是一种强哈希算法，用于安全存储密码
+     * 低于配置强度的已有密码在下次登录成功时自动重新哈希
      *
+     * @param strength 哈希强度（log2 轮数）
      * @return BCryptPasswordEncoder实例
      */
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${exam.login.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     /**
@@ -81,6 +84,9 @@ public class SecurityConfig {
                         .requestMatchers("/ws/**").permitAll()
                         .requestMatchers("/api/ws/**").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
+                        // 运行指标仅管理员可见
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("3")
                         // 其他所有请求需通过身份认证
                         .anyRequest().authenticated()
                 )
@@ -104,11 +110,11 @@ public class SecurityConfig {
         // 允许的HTTP方法
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         // 允许的HTTP头
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Accept"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Accept", "Idempotency-Key"));
         // 允许携带凭证
         configuration.setAllowCredentials(true);
         // 暴露的响应头
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "Retry-After"));
         // 预检请求的有效期
         configuration.setMaxAge(3600L);
 
@@ -1,12 +1,16 @@
 package com.university.exam.config;
 
 import com.university.exam.common.interceptor.LogInterceptor;
+import com.university.exam.common.security.CurrentUserArgumentResolver;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * Web MVC配置类
  * 配置拦截器、资源处理、视图解析等Web相关配置
@@ -18,6 +22,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
     private final LogInterceptor logInterceptor;
+    private final CurrentUserArgumentResolver currentUserArgumentResolver;
 
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
@@ -26,9 +31,11 @@ public class WebMvcConfig implements WebMvcConfigurer {
      * 构造方法
      *
      * @param logInterceptor 操作日志拦截器
+     * @param currentUserArgumentResolver 当前用户参数解析器
      */
-    public WebMvcConfig(LogInterceptor logInterceptor) {
+    public WebMvcConfig(LogInterceptor logInterceptor, CurrentUserArgumentResolver currentUserArgumentResolver) {
         this.logInterceptor = logInterceptor;
+        this.currentUserArgumentResolver = currentUserArgumentResolver;
     }
 
     /**
@@ -44,6 +51,17 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .excludePathPatterns("/uploads/**");
     }
 
+    /**
+     * 注册参数解析器
+     *
+     * @param resolvers 参数解析器列表
+     */
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        // 控制器方法中的 CurrentUser 参数
+        resolvers.add(currentUserArgumentResolver);
+    }
+
     /**
      * 配置静态资源处理
      *
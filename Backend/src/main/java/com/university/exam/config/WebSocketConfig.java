@@ -1,5 +1,7 @@
 package com.university.exam.config;
 
+import com.university.exam.websocket.ExamHandshakeInterceptor;
+import com.university.exam.websocket.ExamWebSocketHandler;
 import com.university.exam.websocket.NoticeWebSocketHandler;
 import com.university.exam.websocket.ProctorHandshakeInterceptor;
 import com.university.exam.websocket.ProctorWebSocketHandler;
@@ -24,15 +26,21 @@ public class WebSocketConfig implements WebSocketConfigurer {
     private final WebSocketHandshakeInterceptor handshakeInterceptor;
     private final ProctorWebSocketHandler proctorWebSocketHandler;
     private final ProctorHandshakeInterceptor proctorHandshakeInterceptor;
+    private final ExamWebSocketHandler examWebSocketHandler;
+    private final ExamHandshakeInterceptor examHandshakeInterceptor;
 
     public WebSocketConfig(NoticeWebSocketHandler noticeWebSocketHandler,
                           WebSocketHandshakeInterceptor handshakeInterceptor,
                           ProctorWebSocketHandler proctorWebSocketHandler,
-                          ProctorHandshakeInterceptor proctorHandshakeInterceptor) {
+                          ProctorHandshakeInterceptor proctorHandshakeInterceptor,
+                          ExamWebSocketHandler examWebSocketHandler,
+                          ExamHandshakeInterceptor examHandshakeInterceptor) {
         this.noticeWebSocketHandler = noticeWebSocketHandler;
         this.handshakeInterceptor = handshakeInterceptor;
         this.proctorWebSocketHandler = proctorWebSocketHandler;
         this.proctorHandshakeInterceptor = proctorHandshakeInterceptor;
+        this.examWebSocketHandler = examWebSocketHandler;
+        this.examHandshakeInterceptor = examHandshakeInterceptor;
     }
 
     @Override
@@ -46,5 +54,10 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry.addHandler(proctorWebSocketHandler, "/ws/proctor")
                 .addInterceptors(proctorHandshakeInterceptor)
                 .setAllowedOrigins("*");
+
+        // 考生考试WebSocket端点（监考事件上报、服务端指令）
+        registry.addHandler(examWebSocketHandler, "/ws/exam")
+                .addInterceptors(examHandshakeInterceptor)
+                .setAllowedOrigins("*");
     }
 }
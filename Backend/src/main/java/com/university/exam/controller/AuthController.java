@@ -5,6 +5,7 @@ import com.university.exam.common.request.LoginRequest;
 import com.university.exam.common.result.Result;
 import com.university.exam.common.utils.JwtUtils;
 import com.university.exam.entity.User;
+import com.university.exam.service.LoginService;
 import com.university.exam.service.TokenService;
 import com.university.exam.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,7 +15,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -24,6 +24,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 认证控制器
@@ -41,17 +42,22 @@ public class AuthController {
     private final UserService userService;
     private final JwtUtils jwtUtils;
     private final TokenService tokenService;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final LoginService loginService;
 
     /**
      * 用户登录接口
      *
      * @param loginRequest 登录请求参数
+     * @param request      HTTP请求
      * @return 登录结果
      * @throws BizException 业务异常
      */
     @PostMapping("/login")
-    public Result<?> login(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<Result<?>> login(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        // 0. 按IP和该IP上的登录失败次数限流，超出时返回 429
+        String clientIp = loginService.resolveClientIp(request);
+        loginService.checkRate(loginRequest.getUsername(), clientIp);
+
         // 1. 从数据库查询指定username的用户记录
         User user = userService.lambdaQuery()
                 .eq(User::getUsername, loginRequest.getUsername())
@@ -59,6 +65,7 @@ public class AuthController {
 
         // 2. 检查用户是否存在
         if (user == null) {
+            loginService.recordFailure(loginRequest.getUsername(), clientIp);
             throw new BizException(404, "用户不存在");
         }
 
@@ -67,32 +74,35 @@ public class AuthController {
             throw new BizException(401, "用户已被禁用");
         }
 
-        // 4. 使用BCrypt验证密码
-        boolean passwordMatch = passwordEncoder.matches(loginRequest.getPassword(), user.getPassword());
-        if (!passwordMatch) {
-            throw new BizException(401, "密码错误");
-        }
-
-        // 5. 生成JWT Token并存入Redis
-        String token = tokenService.createToken(
-                user.getId(),
-                user.getRole().intValue(), // Byte转Integer
-                user.getDeptId() // 已经是Long类型
-        );
-
-        // 6. 构建响应数据
-        Map<String, Object> userInfo = new HashMap<>();
-        userInfo.put("id", user.getId());
-        userInfo.put("role", user.getRole().intValue()); // Byte转Integer
-        userInfo.put("deptId", user.getDeptId());
-        userInfo.put("name", user.getRealName());
-
-        Map<String, Object> responseData = new HashMap<>();
-        responseData.put("token", token);
-        responseData.put("userInfo", userInfo);
-
-        // 7. 返回成功响应
-        return Result.success(responseData, "登录成功");
+        // 4. 在登录线程池中使用BCrypt验证密码（排队已满时返回 429），请求线程不等待校验结果
+        return loginService.verifyPassword(user, loginRequest.getPassword()).<Result<?>>thenApply(passwordMatch -> {
+            if (!passwordMatch) {
+                loginService.recordFailure(loginRequest.getUsername(), clientIp);
+                throw new BizException(401, "密码错误");
+            }
+            loginService.clearFailures(loginRequest.getUsername(), clientIp);
+
+            // 5. 生成JWT Token并存入Redis
+            String token = tokenService.createToken(
+                    user.getId(),
+                    user.getRole().intValue(), // Byte转Integer
+                    user.getDeptId() // 已经是Long类型
+            );
+
+            // 6. 构建响应数据
+            Map<String, Object> userInfo = new HashMap<>();
+            userInfo.put("id", user.getId());
+            userInfo.put("role", user.getRole().intValue()); // Byte转Integer
+            userInfo.put("deptId", user.getDeptId());
+            userInfo.put("name", user.getRealName());
+
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("token", token);
+            responseData.put("userInfo", userInfo);
+
+            // 7. 返回成功响应
+            return Result.success(responseData, "登录成功");
+        });
     }
 
     /**
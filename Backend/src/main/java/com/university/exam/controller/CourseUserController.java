@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.university.exam.common.exception.BizException;
 import com.university.exam.common.result.Result;
+import com.university.exam.common.security.CurrentUser;
 import com.university.exam.entity.Course;
 import com.university.exam.entity.CourseUser;
 import com.university.exam.entity.Dept;
@@ -12,8 +13,6 @@ import com.university.exam.service.CourseService;
 import com.university.exam.service.CourseUserService;
 import com.university.exam.service.DeptService;
 import com.university.exam.service.UserService;
-import com.university.exam.common.utils.JwtUtils;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
@@ -44,7 +43,6 @@ public class CourseUserController {
     private final UserService userService;
     private final DeptService deptService;
     private final CourseService courseService;
-    private final JwtUtils jwtUtils;
 
     /**
      * 搜索用户（按学号或姓名）
@@ -87,8 +85,8 @@ public class CourseUserController {
      */
     @GetMapping("/my-courses")
     @PreAuthorize("hasAnyRole('2', '3')") // 教师和管理员
-    public Result<?> getMyCourses(HttpServletRequest request) {
-        Long userId = jwtUtils.getUserIdFromToken(getToken(request));
+    public Result<?> getMyCourses(CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
         
         // 查询用户加入的课程ID列表
         List<CourseUser> courseUsers = courseUserService.list(new LambdaQueryWrapper<CourseUser>()
@@ -387,15 +385,4 @@ public class CourseUserController {
             return (year - 1) + "-" + year + "-2";
         }
     }
-
-    /**
-     * 从请求头中获取Token
-     */
-    private String getToken(HttpServletRequest request) {
-        String token = request.getHeader("Authorization");
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-        }
-        return token;
-    }
 }
\ No newline at end of file
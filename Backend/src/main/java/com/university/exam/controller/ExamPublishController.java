@@ -9,7 +9,9 @@ import com.university.exam.entity.CourseUser;
 import com.university.exam.entity.Paper;
 import com.university.exam.entity.Publish;
 import com.university.exam.entity.Record;
+import com.university.exam.schedule.ExamWarmupScheduler;
 import com.university.exam.service.CourseUserService;
+import com.university.exam.service.ExamPaperCacheService;
 import com.university.exam.service.PaperService;
 import com.university.exam.service.PublishService;
 import com.university.exam.service.RecordService;
@@ -40,6 +42,8 @@ public class ExamPublishController {
     private final PaperService paperService;
     private final CourseUserService courseUserService;
     private final RecordService recordService;
+    private final ExamPaperCacheService examPaperCacheService;
+    private final ExamWarmupScheduler examWarmupScheduler;
 
     /**
      * 发布考试
@@ -171,10 +175,39 @@ public class ExamPublishController {
         publish.setUpdateBy(userId);
         publish.setUpdateTime(LocalDateTime.now());
         publishService.removeById(id);
+        examPaperCacheService.evictPublish(id);
 
         return Result.success("撤销成功");
     }
 
+    /**
+     * 查询考前缓存预热状态
+     * GET /api/exam/publish/{id}/warmup
+     */
+    @GetMapping("/{id}/warmup")
+    public Result<?> getWarmupStatus(@PathVariable Long id) {
+        Publish publish = publishService.getById(id);
+        if (publish == null) throw new BizException(404, "发布记录不存在");
+        if (getCurrentUserRole() == 2 && !publish.getCreateBy().equals(getCurrentUserId())) {
+            throw new BizException(403, "无权操作");
+        }
+        return Result.success(examWarmupScheduler.getStatus(publish));
+    }
+
+    /**
+     * 立即执行考前缓存预热
+     * POST /api/exam/publish/{id}/warmup
+     */
+    @PostMapping("/{id}/warmup")
+    public Result<?> warmup(@PathVariable Long id) {
+        Publish publish = publishService.getById(id);
+        if (publish == null) throw new BizException(404, "发布记录不存在");
+        if (getCurrentUserRole() == 2 && !publish.getCreateBy().equals(getCurrentUserId())) {
+            throw new BizException(403, "无权操作");
+        }
+        return Result.success(examWarmupScheduler.warmup(publish), "预热完成");
+    }
+
     private Long getCurrentUserId() {
         return (Long) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
     }
@@ -2,8 +2,10 @@ package com.university.exam.controller;
 
 import com.university.exam.common.exception.BizException;
 import com.university.exam.common.result.Result;
+import com.university.exam.service.SnapshotStorageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -12,6 +14,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -27,6 +30,8 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class FileController {
 
+    private final SnapshotStorageService snapshotStorageService;
+
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
 
@@ -85,4 +90,23 @@ public class FileController {
             throw new BizException(500, "文件上传失败：" + e.getMessage());
         }
     }
+
+    /**
+     * 上传监考抓拍
+     * POST /api/file/upload/snapshot
+     * 按内容哈希存储，相同画面只保存一份；缩略图异步生成
+     *
+     * @param file 抓拍图片（JPG/PNG/WebP）
+     * @return 上传结果，包含原图URL和缩略图URL（缩略图未能生成时为 null）
+     */
+    @PostMapping("/upload/snapshot")
+    @PreAuthorize("hasRole('1')")
+    public Result<?> uploadSnapshot(@RequestParam("file") MultipartFile file) {
+        SnapshotStorageService.StoredSnapshot snapshot = snapshotStorageService.store(file);
+        // 缩略图任务被拒绝时 thumbUrl 为 null
+        Map<String, Object> data = new HashMap<>();
+        data.put("url", snapshot.getUrl());
+        data.put("thumbUrl", snapshot.getThumbUrl());
+        return Result.success(data, "上传成功");
+    }
 }
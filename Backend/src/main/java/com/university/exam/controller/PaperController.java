@@ -9,6 +9,7 @@ import com.university.exam.entity.CourseUser;
 import com.university.exam.entity.Paper;
 import com.university.exam.entity.PaperQuestion;
 import com.university.exam.service.CourseUserService;
+import com.university.exam.service.ExamPaperCacheService;
 import com.university.exam.service.PaperService;
 import com.university.exam.service.PaperQuestionService;
 import com.university.exam.service.PublishService;
@@ -40,6 +41,7 @@ public class PaperController {
     private final PublishService publishService;
     private final CourseUserService courseUserService;
     private final PaperQuestionService paperQuestionService;
+    private final ExamPaperCacheService examPaperCacheService;
 
     /**
      * 智能/随机组卷
@@ -132,6 +134,7 @@ public class PaperController {
         paper.setUpdateBy(userId);
         paper.setUpdateTime(LocalDateTime.now());
         paperService.removeById(id);
+        examPaperCacheService.evictPaper(id);
 
         return Result.success("删除成功");
     }
@@ -1,14 +1,22 @@
 package com.university.exam.controller;
 
+import com.university.exam.common.dto.ProctorRuleDto;
 import com.university.exam.common.dto.student.ProctorLogDto;
+import com.university.exam.common.exception.BizException;
 import com.university.exam.common.result.Result;
-import com.university.exam.common.utils.JwtUtils;
+import com.university.exam.common.security.CurrentUser;
+import com.university.exam.entity.Publish;
+import com.university.exam.service.ProctorFeedService;
 import com.university.exam.service.ProctorLogService;
-import jakarta.servlet.http.HttpServletRequest;
+import com.university.exam.service.ProctorRuleEngine;
+import com.university.exam.service.PublishService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -25,22 +33,21 @@ import java.util.Map;
 public class ProctorController {
 
     private final ProctorLogService proctorLogService;
-    private final JwtUtils jwtUtils;
+    private final ProctorRuleEngine proctorRuleEngine;
+    private final ProctorFeedService proctorFeedService;
+    private final PublishService publishService;
 
     /**
      * 上报监考日志（学生端）
      * POST /api/proctor/log
      *
      * @param dto     日志数据
-     * @param request HTTP请求
+     * @param currentUser 当前用户
      * @return 成功响应
      */
     @PostMapping("/log")
-    public Result<?> reportLog(@Valid @RequestBody ProctorLogDto dto, HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
-
-        proctorLogService.handleProctorLog(dto, userId);
+    public Result<?> reportLog(@Valid @RequestBody ProctorLogDto dto, CurrentUser currentUser) {
+        proctorLogService.handleProctorLog(dto, currentUser.getUserId());
         return Result.success(null, "日志上报成功");
     }
 
@@ -57,6 +64,52 @@ public class ProctorController {
         return Result.success(logs);
     }
 
+    /**
+     * 分页获取考试监考日志（教师端，按发生时间倒序）
+     * GET /api/proctor/logs/page?publishId=xxx&size=50&beforeTime=xxx&beforeId=xxx
+     * 下一页带上返回的 nextBeforeTime、nextBeforeId；返回的 cursor 用于之后的增量同步
+     *
+     * @param publishId   考试发布ID
+     * @param size        每页条数
+     * @param beforeTime  上一页最后一条的发生时间
+     * @param beforeId    上一页最后一条的日志ID
+     * @param recordId    只查询指定考试记录
+     * @param warningOnly 是否只返回警告类日志
+     * @return 日志分页
+     */
+    @GetMapping("/logs/page")
+    @PreAuthorize("hasAnyRole('2', '3')")
+    public Result<Map<String, Object>> getProctorLogPage(
+            @RequestParam Long publishId,
+            @RequestParam(defaultValue = "50") Integer size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTime,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long recordId,
+            @RequestParam(defaultValue = "false") Boolean warningOnly) {
+        int pageSize = Math.max(1, Math.min(size, 200));
+        return Result.success(proctorLogService.getProctorLogPage(publishId, recordId, warningOnly,
+                beforeTime, beforeId, pageSize));
+    }
+
+    /**
+     * 增量同步监考事件（教师端）
+     * GET /api/proctor/feed?publishId=xxx&cursor=xxx
+     * 返回游标之后新增的监考日志（type=log）和考生状态变化（type=status）；reset 为 true 时需要重新加载
+     *
+     * @param publishId 考试发布ID
+     * @param cursor    上次收到的最后一个游标
+     * @param limit     最多返回的事件数
+     * @return 事件页
+     */
+    @GetMapping("/feed")
+    @PreAuthorize("hasAnyRole('2', '3')")
+    public Result<ProctorFeedService.FeedPage> getFeed(@RequestParam Long publishId,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "200") Integer limit) {
+        int pageSize = Math.max(1, Math.min(limit, 1000));
+        return Result.success(proctorFeedService.read(publishId, cursor, pageSize));
+    }
+
     /**
      * 获取考试学生状态列表（教师端）
      * GET /api/proctor/students?publishId=xxx
@@ -83,11 +136,59 @@ public class ProctorController {
         return Result.success(stats);
     }
 
-    private String getToken(HttpServletRequest request) {
-        String header = request.getHeader("Authorization");
-        if (header != null && header.startsWith("Bearer ")) {
-            return header.substring(7);
+    /**
+     * 获取考试的监考规则（教师端）
+     * GET /api/proctor/rules?publishId=xxx
+     *
+     * @param publishId 考试发布ID
+     * @return 监考规则列表（未单独配置时为默认规则）
+     */
+    @GetMapping("/rules")
+    @PreAuthorize("hasAnyRole('2', '3')")
+    public Result<List<ProctorRuleDto>> getRules(@RequestParam Long publishId) {
+        return Result.success(proctorRuleEngine.getRules(publishId));
+    }
+
+    /**
+     * 设置考试的监考规则（教师端）
+     * PUT /api/proctor/rules?publishId=xxx
+     *
+     * @param publishId 考试发布ID
+     * @param rules     监考规则列表（空列表表示不启用规则）
+     * @return 成功响应
+     */
+    @PutMapping("/rules")
+    @PreAuthorize("hasAnyRole('2', '3')")
+    public Result<?> saveRules(@RequestParam Long publishId, @RequestBody List<@Valid ProctorRuleDto> rules,
+                               CurrentUser currentUser) {
+        checkPublishOwner(publishId, currentUser);
+        proctorRuleEngine.saveRules(publishId, rules);
+        return Result.success(null, "监考规则已保存");
+    }
+
+    /**
+     * 恢复考试的默认监考规则（教师端）
+     * DELETE /api/proctor/rules?publishId=xxx
+     *
+     * @param publishId 考试发布ID
+     * @return 成功响应
+     */
+    @DeleteMapping("/rules")
+    @PreAuthorize("hasAnyRole('2', '3')")
+    public Result<?> resetRules(@RequestParam Long publishId, CurrentUser currentUser) {
+        checkPublishOwner(publishId, currentUser);
+        proctorRuleEngine.resetRules(publishId);
+        return Result.success(null, "已恢复默认监考规则");
+    }
+
+    /**
+     * 教师只能修改自己发布的考试，管理员不限
+     */
+    private void checkPublishOwner(Long publishId, CurrentUser currentUser) {
+        Publish publish = publishService.getById(publishId);
+        if (publish == null) throw new BizException(404, "发布记录不存在");
+        if (Integer.valueOf(2).equals(currentUser.getRole()) && !publish.getCreateBy().equals(currentUser.getUserId())) {
+            throw new BizException(403, "无权操作");
         }
-        return null;
     }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import com.university.exam.entity.AiTask;
 import com.university.exam.entity.Question;
 import com.university.exam.service.AiTaskService;
 import com.university.exam.service.CourseUserService;
+import com.university.exam.service.ExamPaperCacheService;
 import com.university.exam.service.QuestionGenerationService;
 import com.university.exam.service.QuestionService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -52,6 +53,7 @@ public class QuestionController {
     private final QuestionGenerationService generationService;
     private final AiTaskService aiTaskService;
     private final CourseUserService courseUserService;
+    private final ExamPaperCacheService examPaperCacheService;
 
     // ==================== 导入导出相关 ====================
 
@@ -206,6 +208,8 @@ public class QuestionController {
         question.setUpdateBy(userId);
         question.setUpdateTime(LocalDateTime.now());
         questionService.updateById(question);
+        // 题目内容变化后，包含该题的试卷快照需要重新编译
+        examPaperCacheService.evictPapersByQuestions(List.of(question.getId()));
         return Result.success("题目更新成功");
     }
 
@@ -221,6 +225,7 @@ public class QuestionController {
             if (count > 0) throw new BizException(403, "包含非本人创建的题目，无法删除");
         }
         questionService.removeBatchByIds(ids);
+        examPaperCacheService.evictPapersByQuestions(ids);
         return Result.success("批量删除成功");
     }
 
@@ -52,6 +52,7 @@ public class ReviewController {
     private final DeptService deptService;
     private final CourseService courseService;
     private final PublishService publishService;
+    private final ProctorStatusService proctorStatusService;
 
     /**
      * 获取待阅试卷列表 (含统计信息)
@@ -384,6 +385,7 @@ public class ReviewController {
         
         // 6. 更新试卷记录
         recordService.updateById(record);
+        proctorStatusService.onRecordChanged(record.getPublishId(), record.getId());
 
         return Result.success(newTotal, "批量提交成功");
     }
@@ -4,7 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.university.exam.common.dto.student.DashboardStatsVo;
 
 import com.university.exam.common.result.Result;
-import com.university.exam.common.utils.JwtUtils;
+import com.university.exam.common.security.CurrentUser;
 import com.university.exam.common.vo.StudentTrendVo;
 import com.university.exam.entity.MistakeBook;
 import com.university.exam.entity.Publish;
@@ -14,7 +14,6 @@ import com.university.exam.service.PublishService;
 import com.university.exam.service.RecordService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -35,15 +34,11 @@ public class StudentDashboardController {
     private PublishService publishService;
     @Autowired
     private MistakeBookService mistakeBookService;
-    @Autowired
-    private JwtUtils jwtUtils;
 
     // 获取核心统计
     @GetMapping("/stats")
-    public Result<DashboardStatsVo> getStats(@RequestHeader("Authorization") String token) {
-        // Fix: Remove "Bearer " prefix and whitespace if present
-        String actualToken = token.replace("Bearer ", "").trim();
-        Long userId = jwtUtils.getUserIdFromToken(actualToken);
+    public Result<DashboardStatsVo> getStats(CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
         DashboardStatsVo vo = new DashboardStatsVo();
 
         // 1. 考试场次
@@ -98,10 +93,8 @@ public class StudentDashboardController {
 
     // 新增：获取成绩趋势
     @GetMapping("/trend")
-    public Result<StudentTrendVo> getTrend(@RequestHeader("Authorization") String token) {
-        // Fix: Remove "Bearer " prefix and whitespace if present
-        String actualToken = token.replace("Bearer ", "").trim();
-        Long userId = jwtUtils.getUserIdFromToken(actualToken);
+    public Result<StudentTrendVo> getTrend(CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
         StudentTrendVo vo = new StudentTrendVo();
 
         // 获取最近 7 次考试成绩
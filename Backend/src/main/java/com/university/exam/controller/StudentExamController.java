@@ -5,19 +5,24 @@ import com.university.exam.common.dto.student.StudentExamDto;
 import com.university.exam.common.dto.student.SubmitExamRequest;
 import com.university.exam.common.exception.BizException;
 import com.university.exam.common.result.Result;
-import com.university.exam.common.utils.JwtUtils;
+import com.university.exam.common.security.CurrentUser;
 import com.university.exam.common.vo.StudentExamResultVo;
 import com.university.exam.entity.Publish;
 import com.university.exam.entity.Record;
+import com.university.exam.schedule.ExamDeadlineScheduler;
+import com.university.exam.service.AnswerDraftService;
+import com.university.exam.service.ExamAdmissionService;
 import com.university.exam.service.PublishService;
 import com.university.exam.service.RecordService;
-import io.jsonwebtoken.Claims;
-import jakarta.servlet.http.HttpServletRequest;
+import com.university.exam.service.SubmissionQueueService;
+import com.university.exam.service.SubmitIdempotencyService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 考生端-考试接口
@@ -32,20 +37,18 @@ public class StudentExamController {
 
     private final PublishService publishService;
     private final RecordService recordService;
-    private final JwtUtils jwtUtils;
+    private final AnswerDraftService answerDraftService;
+    private final SubmissionQueueService submissionQueueService;
+    private final SubmitIdempotencyService submitIdempotencyService;
+    private final ExamAdmissionService examAdmissionService;
+    private final ExamDeadlineScheduler examDeadlineScheduler;
 
     /**
      * 获取当前学生可参加的考试列表
      */
     @GetMapping("/my-list")
-    public Result<List<StudentExamDto>> getMyExamList(HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
-        
-        Claims claims = jwtUtils.parseToken(token);
-        Long deptId = claims.get("deptId", Long.class);
-
-        List<StudentExamDto> list = publishService.listStudentExams(userId, deptId);
+    public Result<List<StudentExamDto>> getMyExamList(CurrentUser currentUser) {
+        List<StudentExamDto> list = publishService.listStudentExams(currentUser.getUserId(), currentUser.getDeptId());
         return Result.success(list);
     }
 
@@ -74,36 +77,74 @@ public class StudentExamController {
     }
 
     /**
-     * 开始考试
+     * 开始考试（开考高峰时按场次限流排队，未放行返回 429 及 Retry-After）
      */
     @PostMapping("/start/{publishId}")
-    public Result<ExamPaperVo> startExam(@PathVariable Long publishId, HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
+    public Result<ExamPaperVo> startExam(@PathVariable Long publishId, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
 
+        examAdmissionService.acquire(publishId, userId);
         ExamPaperVo paperVo = recordService.startExam(userId, publishId);
+        // 登记服务端截止时间，考生离线时到期自动收卷
+        examDeadlineScheduler.track(paperVo.getRecordId(),
+                System.currentTimeMillis() + paperVo.getRemainingSeconds() * 1000);
         return Result.success(paperVo, "考试开始，请认真作答");
     }
 
     /**
-     * 交卷
+     * 自动保存答题草稿（只需上报变化的题目）
+     */
+    @PostMapping("/autosave")
+    public Result<Void> autosave(@RequestBody SubmitExamRequest saveRequest, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+
+        answerDraftService.saveDraft(saveRequest.getRecordId(), saveRequest.getAnswers(), userId);
+        return Result.success(null, "已保存");
+    }
+
+    /**
+     * 交卷（幂等：相同 Idempotency-Key 的重复请求直接返回首次结果，缺省按记录去重）
      */
     @PostMapping("/submit")
-    public Result<Void> submitExam(@RequestBody SubmitExamRequest submitRequest, HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
+    public Result<Void> submitExam(@RequestBody SubmitExamRequest submitRequest,
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                   CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+
+        String msg = submitIdempotencyService.execute(userId, idempotencyKey, submitRequest.getRecordId(),
+                () -> recordService.submitExam(submitRequest, userId));
+        examDeadlineScheduler.untrack(submitRequest.getRecordId());
+        return Result.success(null, msg);
+    }
 
-        recordService.submitExam(submitRequest, userId);
-        return Result.success(null, "交卷成功，系统正在后台阅卷");
+    /**
+     * 异步交卷（入队后立即返回回执ID，判分结果通过 WebSocket 推送或轮询回执获取）
+     */
+    @PostMapping("/submit-async")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Result<String> submitExamAsync(@RequestBody SubmitExamRequest submitRequest, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+
+        String receiptId = submissionQueueService.enqueue(submitRequest, userId);
+        return Result.success(receiptId, "答卷已提交，正在处理");
+    }
+
+    /**
+     * 查询异步交卷回执
+     */
+    @GetMapping("/submit-status/{receiptId}")
+    public Result<Map<String, Object>> getSubmitStatus(@PathVariable String receiptId, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+
+        return Result.success(submissionQueueService.getReceipt(receiptId, userId));
     }
 
     /**
      * 获取考试结果详情 (通过 recordId)
      */
     @GetMapping("/result/{recordId}")
-    public Result<StudentExamResultVo> getExamResult(@PathVariable Long recordId, HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
+    public Result<StudentExamResultVo> getExamResult(@PathVariable Long recordId, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
 
         StudentExamResultVo vo = recordService.getStudentExamResult(recordId, userId);
         
@@ -121,9 +162,8 @@ public class StudentExamController {
      * 根据 publishId 获取最新的考试结果
      */
     @GetMapping("/result/publish/{publishId}")
-    public Result<StudentExamResultVo> getLatestExamResult(@PathVariable Long publishId, HttpServletRequest request) {
-        String token = getToken(request);
-        Long userId = jwtUtils.getUserIdFromToken(token);
+    public Result<StudentExamResultVo> getLatestExamResult(@PathVariable Long publishId, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
 
         Long recordId = recordService.getLatestRecordId(userId, publishId);
         if (recordId == null) {
@@ -162,12 +202,4 @@ public class StudentExamController {
             vo.setQuestionList(null); // 或者 Collections.emptyList()
         }
     }
-
-    private String getToken(HttpServletRequest request) {
-        String header = request.getHeader("Authorization");
-        if (header != null && header.startsWith("Bearer ")) {
-            return header.substring(7);
-        }
-        return null;
-    }
 }
\ No newline at end of file
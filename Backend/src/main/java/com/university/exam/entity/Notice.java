@@ -55,6 +55,12 @@ public class Notice implements Serializable {
     @TableField("target_type")
     private Byte targetType;
 
+    /**
+     * 目标部门ID列表（JSON数组，目标类型为2时使用）
+     */
+    @TableField("target_dept_ids")
+    private String targetDeptIds;
+
     /**
      * 发送人ID
      */
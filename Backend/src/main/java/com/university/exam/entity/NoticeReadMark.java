@@ -0,0 +1,64 @@
+package com.university.exam.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * <p>
+ * 通知已读标记表
+ * 全体/部门通知不按用户写入 sys_user_notice，用户对它们的已读状态记录为：
+ * ID 不大于 watermark 的均已读，大于 watermark 的以 readIds 中的为已读。
+ * </p>
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Getter
+@Setter
+@TableName("sys_notice_read_mark")
+public class NoticeReadMark implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 用户ID
+     */
+    @TableField("user_id")
+    private Long userId;
+
+    /**
+     * 已读水位
+     */
+    @TableField("watermark")
+    private Long watermark;
+
+    /**
+     * 水位之上单独标记已读的通知ID（JSON数组）
+     */
+    @TableField("read_ids")
+    private String readIds;
+
+    /**
+     * 创建时间
+     */
+    @TableField("create_time")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField("update_time")
+    private LocalDateTime updateTime;
+}
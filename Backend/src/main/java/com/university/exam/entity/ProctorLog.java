@@ -37,6 +37,12 @@ public class ProctorLog implements Serializable {
     @TableField("record_id")
     private Long recordId;
 
+    /**
+     * 考试发布ID（冗余自考试记录，用于按场次分页）
+     */
+    @TableField("publish_id")
+    private Long publishId;
+
     /**
      * 操作类型（switch_screen, leave_page, env_abnormal）
      * 修复：类型从 Byte 改为 String 以匹配业务逻辑
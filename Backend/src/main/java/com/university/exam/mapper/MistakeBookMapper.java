@@ -2,6 +2,9 @@ package com.university.exam.mapper;
 
 import com.university.exam.entity.MistakeBook;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface MistakeBookMapper extends BaseMapper<MistakeBook> {
 
+    /**
+     * 批量记录错题：不存在则插入，已存在（uk_user_question）则错误次数+1并更新最后错误答案
+     *
+     * @param list 错题
+     * @return 影响行数
+     */
+    int upsertBatch(@Param("list") List<MistakeBook> list);
 }
@@ -1,11 +1,21 @@
 package com.university.exam.mapper;
 
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.university.exam.common.vo.NoticeItemVo;
 import com.university.exam.entity.Notice;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>
  * 系统通知表 Mapper 接口
+ * 全体/部门通知（共享通知）只存一份：全体通知对所有用户可见，部门通知对 target_dept_ids 中部门的学生可见；
+ * 已有 sys_user_notice 记录的通知按该记录处理，不重复计入共享通知。
  * </p>
  *
  * @author MySQL数据库架构师
@@ -13,4 +23,63 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface NoticeMapper extends BaseMapper<Notice> {
 
+    /**
+     * 分页查询用户的通知（指定用户的通知与共享通知合并，按发布时间倒序）
+     *
+     * @param page      分页参数
+     * @param userId    用户ID
+     * @param deptId    用户所在部门ID
+     * @param student   是否为学生（部门通知只对学生可见）
+     * @param watermark 已读水位
+     * @param readIds   水位之上单独已读的通知ID
+     * @param type      通知类型（为空时不过滤）
+     * @param isRead    是否已读（为空时不过滤）
+     * @return 通知分页
+     */
+    IPage<NoticeItemVo> selectInboxPage(Page<NoticeItemVo> page,
+                                        @Param("userId") Long userId,
+                                        @Param("deptId") Long deptId,
+                                        @Param("student") boolean student,
+                                        @Param("watermark") long watermark,
+                                        @Param("readIds") Collection<Long> readIds,
+                                        @Param("type") Byte type,
+                                        @Param("isRead") Boolean isRead);
+
+    /**
+     * 统计用户未读的共享通知数
+     *
+     * @param userId    用户ID
+     * @param deptId    用户所在部门ID
+     * @param student   是否为学生
+     * @param watermark 已读水位
+     * @param readIds   水位之上单独已读的通知ID
+     * @return 未读数
+     */
+    long countSharedUnread(@Param("userId") Long userId,
+                           @Param("deptId") Long deptId,
+                           @Param("student") boolean student,
+                           @Param("watermark") long watermark,
+                           @Param("readIds") Collection<Long> readIds);
+
+    /**
+     * 查询水位之上用户可见的共享通知（按ID升序，只含ID和创建时间）
+     *
+     * @param userId    用户ID
+     * @param deptId    用户所在部门ID
+     * @param student   是否为学生
+     * @param watermark 已读水位
+     * @return 通知
+     */
+    List<Notice> selectSharedAfter(@Param("userId") Long userId,
+                                 @Param("deptId") Long deptId,
+                                 @Param("student") boolean student,
+                                 @Param("watermark") long watermark);
+
+    /**
+     * 查询指定时间之前发布的共享通知的最大ID（用于初始化新用户的已读水位）
+     *
+     * @param before 时间
+     * @return 最大ID（没有时为 null）
+     */
+    Long selectMaxSharedIdBefore(@Param("before") LocalDateTime before);
 }
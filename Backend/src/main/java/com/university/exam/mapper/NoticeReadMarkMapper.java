@@ -0,0 +1,33 @@
+package com.university.exam.mapper;
+
+import com.university.exam.entity.NoticeReadMark;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * <p>
+ * 通知已读标记表 Mapper 接口
+ * </p>
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public interface NoticeReadMarkMapper extends BaseMapper<NoticeReadMark> {
+
+    /**
+     * 插入用户的已读标记（已存在时忽略）
+     *
+     * @param userId    用户ID
+     * @param watermark 初始水位
+     * @return 影响行数
+     */
+    int insertIgnore(@Param("userId") Long userId, @Param("watermark") long watermark);
+
+    /**
+     * 查询并锁定用户的已读标记
+     *
+     * @param userId 用户ID
+     * @return 已读标记
+     */
+    NoticeReadMark selectByUserIdForUpdate(@Param("userId") Long userId);
+}
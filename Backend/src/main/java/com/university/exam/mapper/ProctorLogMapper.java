@@ -1,7 +1,14 @@
 package com.university.exam.mapper;
 
+import com.university.exam.common.vo.ProctorLogItemVo;
+import com.university.exam.common.vo.ProctorStudentStatusVo;
 import com.university.exam.entity.ProctorLog;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +20,65 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface ProctorLogMapper extends BaseMapper<ProctorLog> {
 
+    /**
+     * 批量插入监考日志（单条多行 INSERT，回填自增ID）
+     *
+     * @param list 监考日志
+     * @return 影响行数
+     */
+    int insertBatch(@Param("list") List<ProctorLog> list);
+
+    /**
+     * 查询考试场次的考生状态（记录、考生姓名、按记录分组统计的警告次数，一条语句完成）
+     *
+     * @param publishId 考试发布ID
+     * @param recordId  只查询指定记录（为空时查询整场考试）
+     * @return 考生状态
+     */
+    List<ProctorStudentStatusVo> selectStudentStatus(@Param("publishId") Long publishId,
+                                                     @Param("recordId") Long recordId);
+
+    /**
+     * 按 (happen_time, id) 倒序续查考试场次的监考日志（监考台分页，基于上一页最后一条续查）
+     *
+     * @param publishId   考试发布ID
+     * @param recordId    只查询指定考试记录（可为空）
+     * @param actionTypes 只查询指定类型（可为空）
+     * @param beforeTime  上一页最后一条的发生时间（为空时从最新开始）
+     * @param beforeId    上一页最后一条的ID
+     * @param afterId     只查询ID大于该值的日志（可为空，已归档场次用于读取归档之后写入的日志）
+     * @param limit       每页条数
+     * @return 监考日志
+     */
+    List<ProctorLogItemVo> selectLogPage(@Param("publishId") Long publishId,
+                                         @Param("recordId") Long recordId,
+                                         @Param("actionTypes") Collection<String> actionTypes,
+                                         @Param("beforeTime") LocalDateTime beforeTime,
+                                         @Param("beforeId") Long beforeId,
+                                         @Param("afterId") Long afterId,
+                                         @Param("limit") int limit);
+
+    /**
+     * 按ID顺序分页查询考试场次的监考日志（归档用，基于上一页最大ID续查）
+     *
+     * @param publishId 考试发布ID
+     * @param afterId   上一页最大ID
+     * @param limit     每页条数
+     * @return 监考日志
+     */
+    List<ProctorLog> selectByPublishAfterId(@Param("publishId") Long publishId,
+                                            @Param("afterId") Long afterId,
+                                            @Param("limit") int limit);
+
+    /**
+     * 物理删除考试场次已归档的监考日志（按ID顺序分批）
+     *
+     * @param publishId 考试发布ID
+     * @param maxId     已归档的最大ID
+     * @param limit     每批删除条数
+     * @return 删除行数
+     */
+    int deleteArchivedBatch(@Param("publishId") Long publishId,
+                            @Param("maxId") Long maxId,
+                            @Param("limit") int limit);
 }
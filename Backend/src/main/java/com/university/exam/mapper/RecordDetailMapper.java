@@ -2,6 +2,9 @@ package com.university.exam.mapper;
 
 import com.university.exam.entity.RecordDetail;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,19 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface RecordDetailMapper extends BaseMapper<RecordDetail> {
 
+    /**
+     * 批量写入答题草稿，仅对进行中的记录生效
+     *
+     * @param list 草稿明细（recordId、questionId、studentAnswer、maxScore）
+     * @return 影响行数
+     */
+    int upsertDrafts(@Param("list") List<RecordDetail> list);
+
+    /**
+     * 批量写入判分后的答题明细（已存在的草稿行会被覆盖）
+     *
+     * @param list 答题明细
+     * @return 影响行数
+     */
+    int upsertBatch(@Param("list") List<RecordDetail> list);
 }
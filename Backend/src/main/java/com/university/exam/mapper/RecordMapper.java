@@ -1,8 +1,11 @@
 package com.university.exam.mapper;
 
+import com.university.exam.common.vo.RecordDeadlineVo;
 import com.university.exam.entity.Record;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  * 考试记录表 Mapper 接口
@@ -13,4 +16,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface RecordMapper extends BaseMapper<Record> {
 
+    /**
+     * 查询所有进行中记录的截止时间信息（关联场次结束时间与试卷时长）
+     *
+     * @return 截止时间信息
+     */
+    List<RecordDeadlineVo> selectInProgressDeadlines();
 }
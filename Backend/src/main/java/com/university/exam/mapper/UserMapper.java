@@ -2,6 +2,10 @@ package com.university.exam.mapper;
 
 import com.university.exam.entity.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Collection;
 
 /**
  * <p>
@@ -13,4 +17,12 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 流式读取指定部门下的学生ID（逐行回调，不在内存中构建完整列表）
+     * 读取期间占用一个数据库连接，回调中的写操作会使用另一个连接，调用方不能处于事务中。
+     *
+     * @param deptIds 部门ID
+     * @param handler 逐行回调
+     */
+    void streamStudentIds(@Param("deptIds") Collection<Long> deptIds, ResultHandler<Long> handler);
 }
@@ -2,6 +2,9 @@ package com.university.exam.mapper;
 
 import com.university.exam.entity.UserNotice;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
 
 /**
  * <p>
@@ -13,4 +16,14 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface UserNoticeMapper extends BaseMapper<UserNotice> {
 
+    /**
+     * 为一批用户插入同一条通知的未读记录（单条多行 INSERT，已存在的记录忽略）
+     *
+     * @param noticeId   通知ID
+     * @param userIds    用户ID
+     * @param operatorId 操作人ID
+     * @return 影响行数
+     */
+    int insertBatch(@Param("noticeId") Long noticeId, @Param("userIds") Collection<Long> userIds,
+                    @Param("operatorId") Long operatorId);
 }
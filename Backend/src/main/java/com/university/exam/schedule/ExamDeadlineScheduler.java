@@ -0,0 +1,300 @@
+package com.university.exam.schedule;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import com.university.exam.common.dto.student.QueuedSubmission;
+import com.university.exam.common.dto.student.SubmitExamRequest;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.common.utils.TimingWheel;
+import com.university.exam.common.vo.RecordDeadlineVo;
+import com.university.exam.mapper.RecordMapper;
+import com.university.exam.service.ExamRecordCacheService;
+import com.university.exam.service.RecordService;
+import com.university.exam.service.SubmissionQueueService;
+import com.university.exam.websocket.WebSocketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 考试截止自动收卷任务
+ * 考生关闭浏览器后记录会一直停留在"进行中"，这里在服务端跟踪每份进行中答卷的实际截止时间
+ * （min(场次结束时间, 开始时间 + 试卷时长)），到期后按批次自动交卷（合并已保存的草稿判分）。
+ * 1. 截止时间放入分层时间轮，每秒推进一次，只处理到期的格子，不需要逐条轮询数据库
+ * 2. 开考、续考时登记截止时间；服务启动时从 exam_record 恢复全部进行中记录
+ * 3. 到期后再等待一个宽限期，优先让客户端自己的倒计时交卷；交卷使用条件更新，与考生交卷并发时不会重复判分
+ * 4. 收卷前先占用记录的交卷键 exam:submit:record:{id}（与异步交卷入队共用）：
+ *    已有异步交卷排队的记录推迟处理，由队列交卷；多个节点同时到期时只有占用成功的节点收卷
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamDeadlineScheduler {
+
+    private final RecordMapper recordMapper;
+    private final RecordService recordService;
+    private final ExamRecordCacheService examRecordCacheService;
+    private final WebSocketService webSocketService;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 只删除本节点占用的交卷键
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 for i, key in ipairs(KEYS) do "
+                    + "if redis.call('GET', key) == ARGV[1] then n = n + redis.call('DEL', key) end end return n",
+            Long.class);
+
+    /**
+     * 是否启用服务端自动收卷
+     */
+    @Value("${exam.deadline.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 截止后的宽限时间（秒）
+     */
+    @Value("${exam.deadline.grace-seconds:30}")
+    private long graceSeconds;
+
+    /**
+     * 每批自动收卷的记录数
+     */
+    @Value("${exam.deadline.seal-batch-size:50}")
+    private int sealBatchSize;
+
+    /**
+     * 收卷占用交卷键的时间（秒），需大于一批收卷的耗时
+     */
+    @Value("${exam.deadline.claim-ttl:120}")
+    private long claimTtl;
+
+    /**
+     * 本节点的收卷占用标记
+     */
+    private final String sealMark = SubmissionQueueService.SEAL_MARK_PREFIX + IdUtil.fastSimpleUUID();
+
+    /**
+     * 第一层 1 秒一格、60 格，上层依次为 1 分钟、1 小时一格
+     */
+    private final TimingWheel<Long> wheel = new TimingWheel<>(1000L, 60, System.currentTimeMillis());
+
+    /**
+     * 服务启动后从数据库恢复进行中记录的截止时间
+     * 每个节点都会恢复全部记录，到期收卷时按记录占用交卷键，同一记录只会由一个节点收卷
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+        List<RecordDeadlineVo> deadlines = recordMapper.selectInProgressDeadlines();
+        List<Long> overdue = new ArrayList<>();
+        for (RecordDeadlineVo item : deadlines) {
+            LocalDateTime deadline = item.getDeadline();
+            if (deadline == null) continue;
+            if (wheel.schedule(item.getRecordId(), toSealTime(deadline))) {
+                overdue.add(item.getRecordId());
+            }
+        }
+        log.info("自动收卷定时器恢复完成: tracked={}, overdue={}", wheel.size(), overdue.size());
+        seal(overdue);
+    }
+
+    /**
+     * 登记记录的截止时间（重复登记以最后一次为准）
+     *
+     * @param recordId   考试记录ID
+     * @param deadlineMs 截止时间（毫秒时间戳）
+     */
+    public void track(Long recordId, long deadlineMs) {
+        if (!enabled || recordId == null) {
+            return;
+        }
+        wheel.schedule(recordId, deadlineMs + TimeUnit.SECONDS.toMillis(graceSeconds));
+    }
+
+    /**
+     * 取消记录的截止时间（考生已交卷）
+     *
+     * @param recordId 考试记录ID
+     */
+    public void untrack(Long recordId) {
+        if (recordId != null) {
+            wheel.cancel(recordId);
+        }
+    }
+
+    /**
+     * 每秒推进时间轮，收取到期记录
+     */
+    @Scheduled(fixedDelayString = "${exam.deadline.tick-interval:1000}", initialDelay = 10000)
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        seal(wheel.advance(System.currentTimeMillis()));
+    }
+
+    /**
+     * 分批自动交卷
+     */
+    private void seal(List<Long> recordIds) {
+        if (CollUtil.isEmpty(recordIds)) {
+            return;
+        }
+        List<Long> inProgress = new ArrayList<>(recordIds.size());
+        Map<Long, Long> owners = new HashMap<>();
+        for (Long recordId : recordIds) {
+            ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(recordId);
+            // 已交卷的记录直接跳过
+            if (meta == null || !meta.isInProgress()) continue;
+            inProgress.add(recordId);
+            owners.put(recordId, meta.getUserId());
+        }
+
+        for (List<Long> chunk : CollUtil.split(inProgress, sealBatchSize)) {
+            List<Long> claimed = claim(chunk);
+            if (claimed.isEmpty()) {
+                continue;
+            }
+            List<QueuedSubmission> batch = new ArrayList<>(claimed.size());
+            for (Long recordId : claimed) {
+                SubmitExamRequest request = new SubmitExamRequest();
+                request.setRecordId(recordId);
+                request.setAnswers(new ArrayList<>());
+                QueuedSubmission submission = new QueuedSubmission();
+                submission.setUserId(owners.get(recordId));
+                submission.setRequest(request);
+                submission.setEnqueueTime(System.currentTimeMillis());
+                batch.add(submission);
+            }
+            try {
+                sealBatch(batch);
+            } finally {
+                release(claimed);
+            }
+        }
+    }
+
+    private void sealBatch(List<QueuedSubmission> batch) {
+        Map<Long, String> rejected;
+        try {
+            rejected = recordService.submitExamBatch(batch);
+        } catch (Exception e) {
+            log.warn("批量自动收卷失败，改为逐条处理: size={}, error={}", batch.size(), e.getMessage());
+            rejected = sealOneByOne(batch);
+        }
+        for (QueuedSubmission submission : batch) {
+            Long recordId = submission.getRequest().getRecordId();
+            if (!rejected.containsKey(recordId)) {
+                notifySealed(submission);
+            }
+        }
+        log.info("自动收卷完成: size={}, skipped={}", batch.size(), rejected.size());
+    }
+
+    /**
+     * 占用记录的交卷键，返回占用成功的记录
+     * 已有异步交卷排队的记录推迟一个宽限期再检查，由其他节点占用的记录直接跳过
+     */
+    private List<Long> claim(List<Long> recordIds) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long recordId : recordIds) {
+                conn.set(SubmissionQueueService.RECORD_RECEIPT_PREFIX + recordId, sealMark,
+                        Expiration.seconds(claimTtl), RedisStringCommands.SetOption.ifAbsent());
+            }
+            return null;
+        });
+
+        List<Long> claimed = new ArrayList<>(recordIds.size());
+        List<Long> busy = new ArrayList<>();
+        for (int i = 0; i < recordIds.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                claimed.add(recordIds.get(i));
+            } else {
+                busy.add(recordIds.get(i));
+            }
+        }
+        if (!busy.isEmpty()) {
+            List<String> owners = stringRedisTemplate.opsForValue().multiGet(busy.stream()
+                    .map(id -> SubmissionQueueService.RECORD_RECEIPT_PREFIX + id)
+                    .toList());
+            long retryAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(graceSeconds);
+            for (int i = 0; i < busy.size(); i++) {
+                String owner = owners != null ? owners.get(i) : null;
+                if (owner == null || !owner.startsWith(SubmissionQueueService.SEAL_MARK_PREFIX)) {
+                    // 考生的异步交卷仍在排队（或占用刚好过期），稍后再确认是否已交卷
+                    wheel.schedule(busy.get(i), retryAt);
+                }
+            }
+            log.info("自动收卷跳过已排队或由其他节点处理的记录: count={}", busy.size());
+        }
+        return claimed;
+    }
+
+    private void release(List<Long> recordIds) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, recordIds.stream()
+                    .map(id -> SubmissionQueueService.RECORD_RECEIPT_PREFIX + id)
+                    .toList(), sealMark);
+        } catch (Exception e) {
+            // 占用会自然过期
+            log.warn("释放自动收卷占用失败: size={}, error={}", recordIds.size(), e.getMessage());
+        }
+    }
+
+    private Map<Long, String> sealOneByOne(List<QueuedSubmission> batch) {
+        Map<Long, String> rejected = new HashMap<>();
+        for (QueuedSubmission submission : batch) {
+            Long recordId = submission.getRequest().getRecordId();
+            try {
+                recordService.submitExam(submission.getRequest(), submission.getUserId());
+            } catch (BizException e) {
+                // 考生已自行交卷等情况
+                rejected.put(recordId, e.getMessage());
+            } catch (Exception e) {
+                rejected.put(recordId, e.getMessage());
+                log.error("自动收卷失败，稍后重试: recordId={}", recordId, e);
+                track(recordId, System.currentTimeMillis());
+            }
+        }
+        return rejected;
+    }
+
+    private void notifySealed(QueuedSubmission submission) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("recordId", submission.getRequest().getRecordId());
+        data.put("status", "DONE");
+        data.put("message", "考试时间已到，系统已自动收卷");
+        webSocketService.pushSubmitResult(submission.getUserId(), data);
+    }
+
+    private long toSealTime(LocalDateTime deadline) {
+        return deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                + TimeUnit.SECONDS.toMillis(graceSeconds);
+    }
+}
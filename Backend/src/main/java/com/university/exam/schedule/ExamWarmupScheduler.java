@@ -0,0 +1,150 @@
+package com.university.exam.schedule;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.university.exam.common.vo.ExamWarmupVo;
+import com.university.exam.entity.Publish;
+import com.university.exam.mapper.PublishMapper;
+import com.university.exam.service.ExamPaperCacheService;
+import com.university.exam.service.RedisService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 考前缓存预热任务
+ * 周期扫描即将开始（及刚开始）的考试，提前加载试卷快照、试卷答案和应考名单，
+ * 避免开考瞬间所有请求同时回源数据库。
+ * 本地缓存有效期短于提前量，因此窗口内的考试每轮都会刷新本地缓存（Redis 命中，开销很小）。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamWarmupScheduler {
+
+    private final PublishMapper publishMapper;
+    private final ExamPaperCacheService examPaperCacheService;
+    private final RedisService redisService;
+
+    /**
+     * 预热状态在Redis中的前缀
+     */
+    private static final String WARMUP_PREFIX = "exam:warmup:";
+
+    /**
+     * 提前多少分钟开始预热
+     */
+    @Value("${exam.warmup.lead-minutes:10}")
+    private long leadMinutes;
+
+    /**
+     * 开考后继续保持预热的分钟数（覆盖开考高峰）
+     */
+    @Value("${exam.warmup.keep-minutes:5}")
+    private long keepMinutes;
+
+    /**
+     * 定时扫描，间隔由 exam.warmup.scan-interval 控制（毫秒）
+     */
+    @Scheduled(fixedDelayString = "${exam.warmup.scan-interval:30000}", initialDelay = 10000)
+    public void scan() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Publish> publishes = publishMapper.selectList(new LambdaQueryWrapper<Publish>()
+                .in(Publish::getStatus, 0, 1)
+                .ge(Publish::getStartTime, now.minusMinutes(keepMinutes))
+                .le(Publish::getStartTime, now.plusMinutes(leadMinutes)));
+        for (Publish publish : publishes) {
+            warmup(publish);
+        }
+    }
+
+    /**
+     * 预热单场考试
+     *
+     * @param publish 考试发布信息
+     * @return 预热状态
+     */
+    public ExamWarmupVo warmup(Publish publish) {
+        ExamWarmupVo status = new ExamWarmupVo();
+        status.setPublishId(publish.getId());
+        status.setPaperId(publish.getPaperId());
+        status.setTitle(publish.getTitle());
+        status.setStartTime(publish.getStartTime());
+        status.setNode(nodeName());
+        // 尚未预热成功的考试先标记为预热中（已是 HOT 的每轮刷新不改变对外状态）
+        if (!ExamWarmupVo.STATE_HOT.equals(getStatus(publish).getState())) {
+            status.setState(ExamWarmupVo.STATE_WARMING);
+            saveStatus(publish, status);
+        }
+        try {
+            ExamPaperCacheService.PaperSnapshot snapshot = examPaperCacheService.warmPaper(publish.getPaperId());
+            if (snapshot == null) {
+                throw new IllegalStateException("试卷不存在: " + publish.getPaperId());
+            }
+            ExamPaperCacheService.PaperAnswerKey answerKey = examPaperCacheService.getAnswerKey(publish.getPaperId());
+            ExamPaperCacheService.RosterSnapshot roster = examPaperCacheService.warmPublish(publish);
+
+            status.setQuestionCount(snapshot.getQuestions().size());
+            status.setAnswerKeyCount(answerKey != null ? answerKey.getItems().size() : 0);
+            status.setRosterSize(roster.getUserIds().size());
+            status.setState(ExamWarmupVo.STATE_HOT);
+        } catch (Exception e) {
+            log.error("考前预热失败: publishId={}", publish.getId(), e);
+            status.setState(ExamWarmupVo.STATE_FAILED);
+            status.setMessage(e.getMessage());
+        }
+        status.setWarmTime(LocalDateTime.now());
+        saveStatus(publish, status);
+        return status;
+    }
+
+    /**
+     * 查询预热状态
+     *
+     * @param publish 考试发布信息
+     * @return 预热状态，从未预热时返回 COLD
+     */
+    public ExamWarmupVo getStatus(Publish publish) {
+        Object cached = redisService.get(WARMUP_PREFIX + publish.getId());
+        if (cached instanceof ExamWarmupVo status) {
+            return status;
+        }
+        ExamWarmupVo status = new ExamWarmupVo();
+        status.setPublishId(publish.getId());
+        status.setPaperId(publish.getPaperId());
+        status.setTitle(publish.getTitle());
+        status.setStartTime(publish.getStartTime());
+        status.setState(ExamWarmupVo.STATE_COLD);
+        return status;
+    }
+
+    private void saveStatus(Publish publish, ExamWarmupVo status) {
+        long ttl = Duration.between(LocalDateTime.now(), publish.getEndTime()).getSeconds();
+        if (ttl <= 0) {
+            return;
+        }
+        try {
+            redisService.set(WARMUP_PREFIX + publish.getId(), status, ttl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("保存预热状态失败: publishId={}, error={}", publish.getId(), e.getMessage());
+        }
+    }
+
+    private String nodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.university.exam.schedule;
+
+import cn.hutool.core.util.IdUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.university.exam.entity.Publish;
+import com.university.exam.mapper.PublishMapper;
+import com.university.exam.service.ProctorLogArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监考日志冷归档任务
+ * 周期扫描结束超过宽限期的考试，逐场把监考日志写入归档文件并从热表删除。
+ * 多节点部署时通过 Redis 锁保证同一时间只有一个节点执行（锁值为本轮随机令牌，只释放自己持有的锁）。
+ * 按 (end_time, id) 顺序记录已完整归档的连续前缀位置，之后的扫描从该位置继续，不再逐场检查早已归档的考试。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProctorLogArchiveScheduler {
+
+    private static final String LOCK_KEY = "exam:proctor:archive:lock";
+
+    /**
+     * 已完整归档的位置：{end_time}|{publishId}，此前（含）的场次均已归档且热表日志已删除
+     */
+    private static final String WATERMARK_KEY = "exam:proctor:archive:watermark";
+
+    /**
+     * 释放锁：KEYS = [锁]，ARGV = [令牌]，仍由本轮持有时才删除
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final PublishMapper publishMapper;
+    private final ProctorLogArchiveService proctorLogArchiveService;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 是否启用监考日志归档
+     */
+    @Value("${exam.proctor.archive.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 考试结束后保留在热表中的小时数
+     */
+    @Value("${exam.proctor.archive.grace-hours:72}")
+    private long graceHours;
+
+    /**
+     * 每轮最多归档的场次数
+     */
+    @Value("${exam.proctor.archive.max-publishes-per-run:20}")
+    private int maxPublishesPerRun;
+
+    /**
+     * 执行锁过期时间（秒），需大于单轮归档耗时
+     */
+    @Value("${exam.proctor.archive.lock-ttl:3600}")
+    private long lockTtl;
+
+    /**
+     * 定时归档，间隔由 exam.proctor.archive.scan-interval 控制（毫秒）
+     */
+    @Scheduled(fixedDelayString = "${exam.proctor.archive.scan-interval:3600000}", initialDelay = 120000)
+    public void scan() {
+        if (!enabled) {
+            return;
+        }
+        String token = IdUtil.fastSimpleUUID();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, lockTtl, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            LambdaQueryWrapper<Publish> query = new LambdaQueryWrapper<Publish>()
+                    .select(Publish::getId, Publish::getEndTime)
+                    .le(Publish::getEndTime, LocalDateTime.now().minusHours(graceHours))
+                    .orderByAsc(Publish::getEndTime)
+                    .orderByAsc(Publish::getId);
+            String watermark = stringRedisTemplate.opsForValue().get(WATERMARK_KEY);
+            if (watermark != null) {
+                int sep = watermark.indexOf('|');
+                LocalDateTime endTime = LocalDateTime.parse(watermark.substring(0, sep));
+                long publishId = Long.parseLong(watermark.substring(sep + 1));
+                query.and(w -> w.gt(Publish::getEndTime, endTime)
+                        .or(q -> q.eq(Publish::getEndTime, endTime).gt(Publish::getId, publishId)));
+            }
+
+            int archived = 0;
+            // 从水位开始连续完成归档的最后一场；遇到未完成的场次后水位不再前移
+            Publish done = null;
+            boolean contiguous = true;
+            for (Publish publish : publishMapper.selectList(query)) {
+                Long publishId = publish.getId();
+                if (!isComplete(publishId)) {
+                    if (archived >= maxPublishesPerRun) {
+                        break;
+                    }
+                    try {
+                        proctorLogArchiveService.archive(publishId);
+                        archived++;
+                    } catch (Exception e) {
+                        log.error("归档监考日志失败: publishId={}", publishId, e);
+                    }
+                }
+                if (contiguous && isComplete(publishId)) {
+                    done = publish;
+                } else {
+                    contiguous = false;
+                }
+            }
+            if (done != null) {
+                stringRedisTemplate.opsForValue().set(WATERMARK_KEY, done.getEndTime() + "|" + done.getId());
+            }
+            if (archived > 0) {
+                log.info("本轮归档监考日志的考试场次数: {}", archived);
+            }
+        } finally {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 场次是否已完整归档（归档文件已生成且热表日志已删除）
+     */
+    private boolean isComplete(Long publishId) {
+        return proctorLogArchiveService.isArchived(publishId) && !proctorLogArchiveService.isDeleting(publishId);
+    }
+}
@@ -0,0 +1,192 @@
+package com.university.exam.service;
+
+import cn.hutool.core.collection.CollUtil;
+import com.university.exam.common.dto.student.SubmitExamRequest;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.entity.RecordDetail;
+import com.university.exam.mapper.RecordDetailMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 答题草稿服务（写回式自动保存）
+ * 1. 考生按题增量上报作答，写入 Redis Hash exam:draft:{recordId}（HSET，O(1)），并把记录加入脏集合
+ * 2. 后台任务周期性从脏集合中取出记录（SPOP，多节点不会重复处理），批量写入 exam_record_detail
+ * 3. 交卷时合并草稿与交卷内容，交卷成功后清理草稿
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnswerDraftService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RecordDetailMapper recordDetailMapper;
+    private final ExamRecordCacheService examRecordCacheService;
+    private final ExamPaperCacheService examPaperCacheService;
+    private final PaperShuffleService paperShuffleService;
+
+    /**
+     * 草稿在Redis中的前缀
+     */
+    private static final String DRAFT_PREFIX = "exam:draft:";
+
+    /**
+     * 待落库的记录集合
+     */
+    private static final String DIRTY_SET_KEY = "exam:draft:dirty";
+
+    /**
+     * 草稿过期时间（秒），需大于最长考试时长
+     */
+    @Value("${exam.draft.ttl:86400}")
+    private long draftTtl;
+
+    /**
+     * 每轮落库处理的记录数上限
+     */
+    @Value("${exam.draft.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    /**
+     * 单次自动保存允许的最大题目数
+     */
+    @Value("${exam.draft.max-items:200}")
+    private int maxItems;
+
+    /**
+     * 保存答题草稿
+     *
+     * @param recordId 考试记录ID
+     * @param answers  本次变化的作答（增量）
+     * @param userId   当前用户ID
+     */
+    public void saveDraft(Long recordId, List<SubmitExamRequest.AnswerItem> answers, Long userId) {
+        ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(recordId);
+        if (meta == null || !meta.getUserId().equals(userId)) {
+            throw new BizException(403, "非法操作");
+        }
+        if (!meta.isInProgress()) {
+            throw new BizException(400, "考试已结束或已提交");
+        }
+        if (CollUtil.isEmpty(answers)) {
+            return;
+        }
+        if (answers.size() > maxItems) {
+            throw new BizException(400, "单次保存的题目数量过多");
+        }
+
+        // 草稿统一保存原始选项下标，续考回填时再按乱序映射
+        Map<String, String> fields = new HashMap<>(answers.size() * 2);
+        for (SubmitExamRequest.AnswerItem item : paperShuffleService.toCanonical(recordId, meta.getPaperId(), answers)) {
+            if (item.getQuestionId() == null) continue;
+            fields.put(String.valueOf(item.getQuestionId()), item.getUserAnswer() != null ? item.getUserAnswer() : "");
+        }
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        String key = DRAFT_PREFIX + recordId;
+        // 一次往返完成：写草稿、续期、标记待落库
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hMSet(key, fields);
+            conn.expire(key, draftTtl);
+            conn.sAdd(DIRTY_SET_KEY, String.valueOf(recordId));
+            return null;
+        });
+    }
+
+    /**
+     * 获取记录的全部草稿
+     *
+     * @param recordId 考试记录ID
+     * @return questionId -> 作答
+     */
+    public Map<Long, String> getDrafts(Long recordId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(DRAFT_PREFIX + recordId);
+        Map<Long, String> drafts = new HashMap<>(entries.size() * 2);
+        entries.forEach((k, v) -> drafts.put(Long.valueOf(k.toString()), v != null ? v.toString() : ""));
+        return drafts;
+    }
+
+    /**
+     * 清理草稿（交卷成功后调用）
+     *
+     * @param recordId 考试记录ID
+     */
+    public void clearDrafts(Long recordId) {
+        try {
+            stringRedisTemplate.delete(DRAFT_PREFIX + recordId);
+            stringRedisTemplate.opsForSet().remove(DIRTY_SET_KEY, String.valueOf(recordId));
+        } catch (Exception e) {
+            // 草稿会自然过期，落库时也会跳过已交卷记录
+            log.warn("清理答题草稿失败: recordId={}, error={}", recordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 周期性将草稿批量写入 exam_record_detail
+     */
+    @Scheduled(fixedDelayString = "${exam.draft.flush-interval:5000}", initialDelay = 5000)
+    public void flushDirtyDrafts() {
+        List<String> recordIds;
+        try {
+            recordIds = stringRedisTemplate.opsForSet().pop(DIRTY_SET_KEY, flushBatchSize);
+        } catch (Exception e) {
+            log.warn("获取待落库草稿失败: {}", e.getMessage());
+            return;
+        }
+        if (CollUtil.isEmpty(recordIds)) {
+            return;
+        }
+
+        List<RecordDetail> rows = new ArrayList<>();
+        for (String id : recordIds) {
+            Long recordId = Long.valueOf(id);
+            ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(recordId);
+            if (meta == null || !meta.isInProgress()) continue;
+
+            Map<Long, String> drafts = getDrafts(recordId);
+            ExamPaperCacheService.PaperAnswerKey answerKey = examPaperCacheService.getAnswerKey(meta.getPaperId());
+            for (Map.Entry<Long, String> entry : drafts.entrySet()) {
+                ExamPaperCacheService.AnswerKeyItem keyItem = answerKey != null ? answerKey.getItems().get(entry.getKey()) : null;
+                if (keyItem == null) continue; // 不属于本试卷的题目直接丢弃
+
+                RecordDetail detail = new RecordDetail();
+                detail.setRecordId(recordId);
+                detail.setQuestionId(entry.getKey());
+                detail.setStudentAnswer(entry.getValue());
+                detail.setMaxScore(keyItem.getScore() != null ? keyItem.getScore() : BigDecimal.ZERO);
+                rows.add(detail);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            recordDetailMapper.upsertDrafts(rows);
+            log.debug("答题草稿落库完成: records={}, rows={}", recordIds.size(), rows.size());
+        } catch (DataAccessException e) {
+            // 落库失败时放回脏集合，下一轮重试
+            log.error("答题草稿落库失败，稍后重试: records={}", recordIds.size(), e);
+            stringRedisTemplate.opsForSet().add(DIRTY_SET_KEY, recordIds.toArray(new String[0]));
+        }
+    }
+}
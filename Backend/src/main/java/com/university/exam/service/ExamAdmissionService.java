@@ -0,0 +1,283 @@
+package com.university.exam.service;
+
+import com.university.exam.common.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 开考准入控制服务
+ * 大型考试开考的同一秒内所有考生同时请求开考接口，会打满数据库连接池并拖慢整个系统（包括教师监考页面）。
+ * 这里按考试场次做准入控制：
+ * 1. 每个场次一个令牌桶，按配置速率放行开考请求，允许一定突发
+ * 2. 令牌不足时发放排队号（先到先得），返回排队位置和建议重试间隔（HTTP 429 + Retry-After）
+ * 3. 考生按提示重试，排在队首且有令牌时放行；长时间未重试的排队号自动作废
+ * 限流状态保存在本节点内存中，多节点部署时每个节点独立限流（与各节点独立的连接池对应）。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamAdmissionService {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用准入控制
+     */
+    @Value("${exam.admission.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 每个场次每秒放行的开考请求数
+     */
+    @Value("${exam.admission.rate:50}")
+    private double rate;
+
+    /**
+     * 令牌桶容量（允许的突发请求数）
+     */
+    @Value("${exam.admission.burst:100}")
+    private int burst;
+
+    /**
+     * 每个场次最多排队人数
+     */
+    @Value("${exam.admission.max-queue:5000}")
+    private int maxQueue;
+
+    /**
+     * 排队号有效期（秒），超过该时间未重试则作废
+     */
+    @Value("${exam.admission.ticket-ttl:60}")
+    private long ticketTtl;
+
+    /**
+     * 建议重试间隔上限（秒）
+     */
+    @Value("${exam.admission.max-retry-after:15}")
+    private long maxRetryAfter;
+
+    private final Map<Long, Gate> gates = new ConcurrentHashMap<>();
+
+    private Timer waitTimer;
+    private Counter admittedCounter;
+    private Counter queuedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("exam.admission.queue.depth", gates, g -> g.values().stream().mapToInt(Gate::depth).sum())
+                .description("开考排队人数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("exam.admission.wait")
+                .description("开考请求从排队到放行的等待时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        admittedCounter = Counter.builder("exam.admission.requests").tag("outcome", "admitted").register(meterRegistry);
+        queuedCounter = Counter.builder("exam.admission.requests").tag("outcome", "queued").register(meterRegistry);
+        rejectedCounter = Counter.builder("exam.admission.requests").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * 申请开考准入，未放行时抛出 {@link AdmissionRejectedException}
+     *
+     * @param publishId 考试发布ID
+     * @param userId    考生ID
+     */
+    public void acquire(Long publishId, Long userId) {
+        if (!enabled) {
+            return;
+        }
+        Gate gate = gates.computeIfAbsent(publishId, id -> new Gate());
+        long now = System.nanoTime();
+        Decision decision;
+        synchronized (gate) {
+            decision = gate.tryAdmit(userId, now);
+        }
+
+        if (decision.admitted) {
+            admittedCounter.increment();
+            waitTimer.record(decision.waitedNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (decision.position < 0) {
+            rejectedCounter.increment();
+            throw new AdmissionRejectedException("当前开考人数过多，请稍后重试", -1, decision.retryAfter);
+        }
+        queuedCounter.increment();
+        throw new AdmissionRejectedException("开考排队中，前方还有 " + decision.position + " 人", decision.position,
+                decision.retryAfter);
+    }
+
+    /**
+     * 清理过期排队号和空闲场次
+     */
+    @Scheduled(fixedDelayString = "${exam.admission.prune-interval:10000}")
+    public void prune() {
+        long now = System.nanoTime();
+        gates.entrySet().removeIf(entry -> {
+            Gate gate = entry.getValue();
+            synchronized (gate) {
+                gate.pruneExpired(now);
+                return gate.isIdle(now);
+            }
+        });
+    }
+
+    /**
+     * 单个场次的令牌桶 + 排队队列（调用方需持有对象锁）
+     */
+    private final class Gate {
+        private double tokens = burst;
+        private long lastRefillNanos = System.nanoTime();
+        private long lastAccessNanos = lastRefillNanos;
+        private long nextSeq;
+        /**
+         * 排队号 -> 排队信息（按先后顺序）
+         */
+        private final TreeMap<Long, Ticket> queue = new TreeMap<>();
+        private final Map<Long, Ticket> byUser = new HashMap<>();
+
+        Decision tryAdmit(Long userId, long now) {
+            refill(now);
+            lastAccessNanos = now;
+            pruneHead(now);
+
+            Ticket ticket = byUser.get(userId);
+            if (ticket == null) {
+                // 无人排队且有令牌：直接放行
+                if (queue.isEmpty() && tokens >= 1) {
+                    tokens -= 1;
+                    return Decision.admit(0L);
+                }
+                if (queue.size() >= maxQueue) {
+                    return Decision.reject(-1, maxRetryAfter);
+                }
+                ticket = new Ticket(nextSeq++, userId, now);
+                queue.put(ticket.seq, ticket);
+                byUser.put(userId, ticket);
+            }
+            ticket.lastSeenNanos = now;
+
+            // 排在前 floor(tokens) 位的考生可以放行
+            int allowance = (int) tokens;
+            int rank = 0;
+            for (Ticket head : queue.values()) {
+                if (rank >= allowance) break;
+                if (head == ticket) {
+                    remove(ticket);
+                    tokens -= 1;
+                    return Decision.admit(now - ticket.issuedNanos);
+                }
+                rank++;
+            }
+
+            // 排队号差值作为位置提示（中间作废的排队号会在清理后体现）
+            int position = (int) (ticket.seq - queue.firstKey());
+            double deficit = position + 1 - tokens;
+            long retryAfter = (long) Math.ceil(deficit / rate);
+            return Decision.reject(position, Math.max(1L, Math.min(maxRetryAfter, retryAfter)));
+        }
+
+        int depth() {
+            synchronized (this) {
+                return queue.size();
+            }
+        }
+
+        void pruneExpired(long now) {
+            Iterator<Ticket> it = queue.values().iterator();
+            while (it.hasNext()) {
+                Ticket ticket = it.next();
+                if (isExpired(ticket, now)) {
+                    it.remove();
+                    byUser.remove(ticket.userId);
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            return queue.isEmpty() && now - lastAccessNanos > TimeUnit.SECONDS.toNanos(ticketTtl);
+        }
+
+        private void pruneHead(long now) {
+            while (!queue.isEmpty() && isExpired(queue.firstEntry().getValue(), now)) {
+                remove(queue.firstEntry().getValue());
+            }
+        }
+
+        private void refill(long now) {
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+            tokens = Math.min(burst, tokens + elapsedSeconds * rate);
+            lastRefillNanos = now;
+        }
+
+        private void remove(Ticket ticket) {
+            queue.remove(ticket.seq);
+            byUser.remove(ticket.userId);
+        }
+
+        private boolean isExpired(Ticket ticket, long now) {
+            return now - ticket.lastSeenNanos > TimeUnit.SECONDS.toNanos(ticketTtl);
+        }
+    }
+
+    /**
+     * 排队号
+     */
+    private static final class Ticket {
+        private final long seq;
+        private final Long userId;
+        private final long issuedNanos;
+        private long lastSeenNanos;
+
+        Ticket(long seq, Long userId, long now) {
+            this.seq = seq;
+            this.userId = userId;
+            this.issuedNanos = now;
+            this.lastSeenNanos = now;
+        }
+    }
+
+    /**
+     * 准入结果
+     */
+    private static final class Decision {
+        private final boolean admitted;
+        private final int position;
+        private final long retryAfter;
+        private final long waitedNanos;
+
+        private Decision(boolean admitted, int position, long retryAfter, long waitedNanos) {
+            this.admitted = admitted;
+            this.position = position;
+            this.retryAfter = retryAfter;
+            this.waitedNanos = waitedNanos;
+        }
+
+        static Decision admit(long waitedNanos) {
+            return new Decision(true, 0, 0L, waitedNanos);
+        }
+
+        static Decision reject(int position, long retryAfter) {
+            return new Decision(false, position, retryAfter, 0L);
+        }
+    }
+}
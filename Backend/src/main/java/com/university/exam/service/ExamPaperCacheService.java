@@ -0,0 +1,581 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.university.exam.common.dto.student.ExamPaperVo;
+import com.university.exam.common.grading.CompiledAnswerKey;
+import com.university.exam.common.grading.MultiChoicePolicy;
+import com.university.exam.entity.Paper;
+import com.university.exam.entity.PaperQuestion;
+import com.university.exam.entity.Publish;
+import com.university.exam.entity.Question;
+import com.university.exam.entity.User;
+import com.university.exam.mapper.PaperMapper;
+import com.university.exam.mapper.PaperQuestionMapper;
+import com.university.exam.mapper.PublishMapper;
+import com.university.exam.mapper.QuestionMapper;
+import com.university.exam.mapper.UserMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 考试试卷快照缓存服务
+ * 将试卷编译为脱敏后的题目快照（不含答案和解析），供所有考生共享：
+ * 1. 一级缓存：本地 TimedCache，同一节点内并发未命中时按 key 加锁，只回源一次
+ * 2. 二级缓存：Redis，多节点共享，避免集体开考时每个节点都回源 MySQL
+ * 3. 试卷增删题目、题目修改/删除时，在事务提交后失效对应试卷快照
+ * 同时缓存试卷答案（仅服务端判分使用，不下发）和考试场次的应考名单
+ *
+ * 注意：这里直接使用 Mapper 而不是 Service，避免与 PaperServiceImpl 形成循环依赖
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamPaperCacheService {
+
+    private final PaperMapper paperMapper;
+    private final PaperQuestionMapper paperQuestionMapper;
+    private final QuestionMapper questionMapper;
+    private final PublishMapper publishMapper;
+    private final UserMapper userMapper;
+    private final RedisService redisService;
+
+    /**
+     * 试卷快照在Redis中的前缀
+     */
+    private static final String PAPER_SNAPSHOT_PREFIX = "exam:paper:snapshot:";
+
+    /**
+     * 试卷答案在Redis中的前缀
+     */
+    private static final String ANSWER_KEY_PREFIX = "exam:paper:answer:";
+
+    /**
+     * 考试应考名单在Redis中的前缀
+     */
+    private static final String ROSTER_PREFIX = "exam:publish:roster:";
+
+    /**
+     * 本地缓存过期时间（秒），多节点部署时决定其它节点感知失效的最大延迟
+     */
+    @Value("${exam.cache.paper-local-ttl:60}")
+    private long paperLocalTtl;
+
+    /**
+     * Redis 快照过期时间（秒）
+     */
+    @Value("${exam.cache.paper-redis-ttl:7200}")
+    private long paperRedisTtl;
+
+    /**
+     * 考试发布信息本地缓存过期时间（秒）
+     */
+    @Value("${exam.cache.publish-local-ttl:30}")
+    private long publishLocalTtl;
+
+    /**
+     * 多选题计分策略
+     */
+    @Value("${exam.grading.multi-choice-policy:ALL_OR_NOTHING}")
+    private MultiChoicePolicy multiChoicePolicy;
+
+    private TimedCache<Long, PaperSnapshot> paperCache;
+    private TimedCache<Long, PaperAnswerKey> answerKeyCache;
+    private TimedCache<Long, CompiledAnswerKey> compiledKeyCache;
+    private TimedCache<Long, Publish> publishCache;
+    private TimedCache<Long, RosterSnapshot> rosterCache;
+
+    @PostConstruct
+    public void init() {
+        paperCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        paperCache.schedulePrune(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        answerKeyCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        answerKeyCache.schedulePrune(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        compiledKeyCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        compiledKeyCache.schedulePrune(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        publishCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(publishLocalTtl));
+        publishCache.schedulePrune(TimeUnit.SECONDS.toMillis(publishLocalTtl));
+        rosterCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+        rosterCache.schedulePrune(TimeUnit.SECONDS.toMillis(paperLocalTtl));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        paperCache.cancelPruneSchedule();
+        answerKeyCache.cancelPruneSchedule();
+        compiledKeyCache.cancelPruneSchedule();
+        publishCache.cancelPruneSchedule();
+        rosterCache.cancelPruneSchedule();
+    }
+
+    /**
+     * 获取试卷快照（本地缓存 -> Redis -> MySQL）
+     * 返回的是共享对象，调用方不得修改，需要修改时使用 {@link #toExamPaperVo(PaperSnapshot)}
+     *
+     * @param paperId 试卷ID
+     * @return 试卷快照，试卷不存在时返回 null
+     */
+    public PaperSnapshot getPaperSnapshot(Long paperId) {
+        if (paperId == null) {
+            return null;
+        }
+        // TimedCache.get(key, supplier) 对同一 key 加锁，保证并发未命中只回源一次
+        return paperCache.get(paperId, false, () -> loadSnapshot(paperId));
+    }
+
+    /**
+     * 获取考试发布信息（仅短时本地缓存，用于开考等高频读取）
+     *
+     * @param publishId 发布ID
+     * @return 发布信息，不存在时返回 null
+     */
+    public Publish getPublish(Long publishId) {
+        if (publishId == null) {
+            return null;
+        }
+        return publishCache.get(publishId, false, () -> publishMapper.selectById(publishId));
+    }
+
+    /**
+     * 获取试卷答案（服务端判分专用，严禁下发给考生）
+     *
+     * @param paperId 试卷ID
+     * @return 试卷答案，试卷不存在时返回 null
+     */
+    public PaperAnswerKey getAnswerKey(Long paperId) {
+        if (paperId == null) {
+            return null;
+        }
+        return answerKeyCache.get(paperId, false, () -> loadAnswerKey(paperId));
+    }
+
+    /**
+     * 获取编译后的试卷答案（客观题判分引擎），由试卷答案编译而来，仅缓存在本地
+     *
+     * @param paperId 试卷ID
+     * @return 编译后的答案，试卷不存在时返回 null
+     */
+    public CompiledAnswerKey getCompiledKey(Long paperId) {
+        if (paperId == null) {
+            return null;
+        }
+        return compiledKeyCache.get(paperId, false, () -> {
+            PaperAnswerKey answerKey = getAnswerKey(paperId);
+            if (answerKey == null) {
+                return null;
+            }
+            // 选项数取自考生看到的试卷快照，用于选项乱序时映射作答
+            PaperSnapshot snapshot = getPaperSnapshot(paperId);
+            Map<Long, Integer> optionCounts = new HashMap<>();
+            if (snapshot != null) {
+                for (ExamPaperVo.QuestionVo q : snapshot.getQuestions()) {
+                    optionCounts.put(q.getId(), countOptions(q.getOptions()));
+                }
+            }
+            CompiledAnswerKey.Builder builder = CompiledAnswerKey.builder(paperId, multiChoicePolicy);
+            answerKey.getItems().values().forEach(item -> builder.add(item.getQuestionId(), item.getCourseId(),
+                    item.getType(), item.getAnswer(), item.getScore(),
+                    optionCounts.getOrDefault(item.getQuestionId(), 0)));
+            return builder.build();
+        });
+    }
+
+    /**
+     * 统计选项数（选项为 JSON 数组字符串）
+     *
+     * @param options 选项
+     * @return 选项数，无法解析时返回 0
+     */
+    public static int countOptions(String options) {
+        if (StrUtil.isBlank(options) || !JSONUtil.isTypeJSONArray(options)) {
+            return 0;
+        }
+        return JSONUtil.parseArray(options).size();
+    }
+
+    /**
+     * 获取考试场次的应考名单（目标班级下的全部学生）
+     *
+     * @param publish 考试发布信息
+     * @return 应考名单
+     */
+    public RosterSnapshot getRoster(Publish publish) {
+        return rosterCache.get(publish.getId(), false, () -> loadRoster(publish));
+    }
+
+    /**
+     * 预热试卷快照和答案：强制刷新本地缓存（Redis 有则直接取，无则回源编译）
+     *
+     * @param paperId 试卷ID
+     * @return 试卷快照，试卷不存在时返回 null
+     */
+    public PaperSnapshot warmPaper(Long paperId) {
+        PaperSnapshot snapshot = loadSnapshot(paperId);
+        if (snapshot != null) {
+            paperCache.put(paperId, snapshot);
+        }
+        PaperAnswerKey answerKey = loadAnswerKey(paperId);
+        if (answerKey != null) {
+            answerKeyCache.put(paperId, answerKey);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 预热考试发布信息和应考名单
+     *
+     * @param publish 考试发布信息
+     * @return 应考名单
+     */
+    public RosterSnapshot warmPublish(Publish publish) {
+        publishCache.put(publish.getId(), publish);
+        RosterSnapshot roster = loadRoster(publish);
+        rosterCache.put(publish.getId(), roster);
+        return roster;
+    }
+
+    /**
+     * 基于快照构建考生试卷视图
+     * 题目对象逐个复制，保证断点续考回填答案等操作不会污染共享快照
+     *
+     * @param snapshot 试卷快照
+     * @return 试卷视图（未设置 recordId 和 remainingSeconds）
+     */
+    public ExamPaperVo toExamPaperVo(PaperSnapshot snapshot) {
+        ExamPaperVo vo = new ExamPaperVo();
+        vo.setPaperId(snapshot.getPaperId());
+        vo.setTitle(snapshot.getTitle());
+        vo.setTotalScore(snapshot.getTotalScore());
+        vo.setDuration(snapshot.getDuration());
+
+        List<ExamPaperVo.QuestionVo> questions = new ArrayList<>(snapshot.getQuestions().size());
+        for (ExamPaperVo.QuestionVo source : snapshot.getQuestions()) {
+            ExamPaperVo.QuestionVo qVo = new ExamPaperVo.QuestionVo();
+            qVo.setId(source.getId());
+            qVo.setType(source.getType());
+            qVo.setContent(source.getContent());
+            qVo.setImageUrl(source.getImageUrl());
+            qVo.setOptions(source.getOptions());
+            qVo.setScore(source.getScore());
+            questions.add(qVo);
+        }
+        vo.setQuestions(questions);
+        return vo;
+    }
+
+    /**
+     * 失效试卷快照（若在事务中则延迟到事务提交后执行，避免并发请求把旧数据重新写回缓存）
+     *
+     * @param paperId 试卷ID
+     */
+    public void evictPaper(Long paperId) {
+        if (paperId == null) {
+            return;
+        }
+        runAfterCommit(() -> doEvictPapers(Set.of(paperId)));
+    }
+
+    /**
+     * 失效包含指定题目的所有试卷快照
+     *
+     * @param questionIds 题目ID集合
+     */
+    public void evictPapersByQuestions(Collection<Long> questionIds) {
+        if (CollUtil.isEmpty(questionIds)) {
+            return;
+        }
+        Set<Long> paperIds = paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>()
+                        .select(PaperQuestion::getPaperId)
+                        .in(PaperQuestion::getQuestionId, questionIds))
+                .stream()
+                .map(PaperQuestion::getPaperId)
+                .collect(Collectors.toSet());
+        if (paperIds.isEmpty()) {
+            return;
+        }
+        runAfterCommit(() -> doEvictPapers(paperIds));
+    }
+
+    /**
+     * 失效考试发布信息缓存
+     *
+     * @param publishId 发布ID
+     */
+    public void evictPublish(Long publishId) {
+        if (publishId == null) {
+            return;
+        }
+        runAfterCommit(() -> {
+            publishCache.remove(publishId);
+            rosterCache.remove(publishId);
+            redisService.delete(ROSTER_PREFIX + publishId);
+        });
+    }
+
+    private void doEvictPapers(Set<Long> paperIds) {
+        List<String> keys = new ArrayList<>(paperIds.size() * 2);
+        for (Long paperId : paperIds) {
+            paperCache.remove(paperId);
+            answerKeyCache.remove(paperId);
+            compiledKeyCache.remove(paperId);
+            keys.add(PAPER_SNAPSHOT_PREFIX + paperId);
+            keys.add(ANSWER_KEY_PREFIX + paperId);
+        }
+        redisService.delete(keys);
+        log.info("试卷快照缓存已失效: paperIds={}", paperIds);
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 从 Redis 或 MySQL 加载快照
+     */
+    private PaperSnapshot loadSnapshot(Long paperId) {
+        String key = PAPER_SNAPSHOT_PREFIX + paperId;
+        try {
+            Object cached = redisService.get(key);
+            if (cached instanceof PaperSnapshot snapshot) {
+                return snapshot;
+            }
+        } catch (Exception e) {
+            // Redis 异常时降级为直接查库，不影响开考
+            log.warn("读取试卷快照缓存失败，降级查库: paperId={}, error={}", paperId, e.getMessage());
+        }
+
+        PaperSnapshot snapshot = compileSnapshot(paperId);
+        if (snapshot != null) {
+            try {
+                redisService.set(key, snapshot, paperRedisTtl, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("写入试卷快照缓存失败: paperId={}, error={}", paperId, e.getMessage());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 编译试卷快照：按 sort_order 排序并剔除答案、解析
+     */
+    private PaperSnapshot compileSnapshot(Long paperId) {
+        Paper paper = paperMapper.selectById(paperId);
+        if (paper == null) {
+            return null;
+        }
+
+        List<PaperQuestion> pqs = paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>()
+                .eq(PaperQuestion::getPaperId, paperId)
+                .orderByAsc(PaperQuestion::getSortOrder));
+
+        List<ExamPaperVo.QuestionVo> questionVos = new ArrayList<>(pqs.size());
+        if (!pqs.isEmpty()) {
+            List<Long> qIds = pqs.stream().map(PaperQuestion::getQuestionId).collect(Collectors.toList());
+            // 只查询考生需要的列，answer/analysis 根本不出库
+            Map<Long, Question> qMap = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                            .select(Question::getId, Question::getType, Question::getContent,
+                                    Question::getImageUrl, Question::getOptions)
+                            .in(Question::getId, qIds))
+                    .stream()
+                    .collect(Collectors.toMap(Question::getId, Function.identity()));
+
+            for (PaperQuestion pq : pqs) {
+                Question q = qMap.get(pq.getQuestionId());
+                if (q == null) continue;
+                ExamPaperVo.QuestionVo qVo = new ExamPaperVo.QuestionVo();
+                qVo.setId(q.getId());
+                qVo.setType(q.getType().intValue());
+                qVo.setContent(q.getContent());
+                qVo.setImageUrl(q.getImageUrl());
+                qVo.setOptions(q.getOptions());
+                qVo.setScore(pq.getScore());
+                questionVos.add(qVo);
+            }
+        }
+
+        PaperSnapshot snapshot = new PaperSnapshot();
+        snapshot.setPaperId(paper.getId());
+        snapshot.setTitle(paper.getTitle());
+        snapshot.setTotalScore(paper.getTotalScore());
+        snapshot.setDuration(paper.getDuration());
+        snapshot.setQuestions(questionVos);
+        log.debug("试卷快照编译完成: paperId={}, questions={}", paperId, questionVos.size());
+        return snapshot;
+    }
+
+    /**
+     * 从 Redis 或 MySQL 加载试卷答案
+     */
+    private PaperAnswerKey loadAnswerKey(Long paperId) {
+        String key = ANSWER_KEY_PREFIX + paperId;
+        try {
+            Object cached = redisService.get(key);
+            if (cached instanceof PaperAnswerKey answerKey) {
+                return answerKey;
+            }
+        } catch (Exception e) {
+            log.warn("读取试卷答案缓存失败，降级查库: paperId={}, error={}", paperId, e.getMessage());
+        }
+
+        List<PaperQuestion> pqs = paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>()
+                .eq(PaperQuestion::getPaperId, paperId));
+        Map<Long, AnswerKeyItem> items = new HashMap<>(pqs.size() * 2);
+        if (!pqs.isEmpty()) {
+            Map<Long, BigDecimal> scoreMap = pqs.stream()
+                    .collect(Collectors.toMap(PaperQuestion::getQuestionId, PaperQuestion::getScore, (a, b) -> a));
+            // 判分只需要题型、课程和答案，不加载题干和解析
+            List<Question> questions = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                    .select(Question::getId, Question::getCourseId, Question::getType, Question::getAnswer)
+                    .in(Question::getId, scoreMap.keySet()));
+            for (Question q : questions) {
+                AnswerKeyItem item = new AnswerKeyItem();
+                item.setQuestionId(q.getId());
+                item.setCourseId(q.getCourseId());
+                item.setType(q.getType().intValue());
+                item.setAnswer(q.getAnswer());
+                item.setScore(scoreMap.getOrDefault(q.getId(), BigDecimal.ZERO));
+                items.put(q.getId(), item);
+            }
+        }
+
+        PaperAnswerKey answerKey = new PaperAnswerKey();
+        answerKey.setPaperId(paperId);
+        answerKey.setItems(items);
+        try {
+            redisService.set(key, answerKey, paperRedisTtl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入试卷答案缓存失败: paperId={}, error={}", paperId, e.getMessage());
+        }
+        return answerKey;
+    }
+
+    /**
+     * 从 Redis 或 MySQL 加载应考名单，Redis 中保留到考试结束
+     */
+    private RosterSnapshot loadRoster(Publish publish) {
+        String key = ROSTER_PREFIX + publish.getId();
+        try {
+            Object cached = redisService.get(key);
+            if (cached instanceof RosterSnapshot roster) {
+                return roster;
+            }
+        } catch (Exception e) {
+            log.warn("读取应考名单缓存失败，降级查库: publishId={}, error={}", publish.getId(), e.getMessage());
+        }
+
+        List<Long> deptIds;
+        try {
+            deptIds = JSONUtil.toList(publish.getTargetDeptIds(), Long.class);
+        } catch (Exception e) {
+            deptIds = new ArrayList<>();
+        }
+        List<Long> userIds = CollUtil.isEmpty(deptIds) ? new ArrayList<>() :
+                userMapper.selectList(new LambdaQueryWrapper<User>()
+                                .select(User::getId)
+                                .in(User::getDeptId, deptIds)
+                                .eq(User::getRole, 1))
+                        .stream()
+                        .map(User::getId)
+                        .collect(Collectors.toList());
+
+        RosterSnapshot roster = new RosterSnapshot();
+        roster.setPublishId(publish.getId());
+        roster.setUserIds(userIds);
+        long ttl = Duration.between(LocalDateTime.now(), publish.getEndTime()).getSeconds();
+        if (ttl > 0) {
+            try {
+                redisService.set(key, roster, ttl, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("写入应考名单缓存失败: publishId={}, error={}", publish.getId(), e.getMessage());
+            }
+        }
+        return roster;
+    }
+
+    /**
+     * 试卷快照（脱敏，可安全下发给考生）
+     */
+    @Data
+    public static class PaperSnapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long paperId;
+        private String title;
+        private BigDecimal totalScore;
+        private Integer duration;
+        private List<ExamPaperVo.QuestionVo> questions;
+    }
+
+    /**
+     * 试卷答案（仅服务端判分使用）
+     */
+    @Data
+    public static class PaperAnswerKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long paperId;
+        private Map<Long, AnswerKeyItem> items;
+    }
+
+    /**
+     * 单题答案
+     */
+    @Data
+    public static class AnswerKeyItem implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long questionId;
+        private Long courseId;
+        private Integer type;
+        private String answer;
+        private BigDecimal score;
+    }
+
+    /**
+     * 应考名单
+     */
+    @Data
+    public static class RosterSnapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long publishId;
+        private List<Long> userIds;
+    }
+}
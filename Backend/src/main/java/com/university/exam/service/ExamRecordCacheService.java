@@ -0,0 +1,159 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.university.exam.entity.Record;
+import com.university.exam.mapper.RecordMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 考试记录元数据缓存服务
+ * 自动保存、监考上报等高频接口只需要校验"记录归属 + 是否进行中"，
+ * 这里缓存记录的归属和状态（本地 TimedCache + Redis），避免每次请求都查询 exam_record。
+ * 记录状态变化（交卷、收卷）时需调用 {@link #evict(Long)}。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamRecordCacheService {
+
+    private final RecordMapper recordMapper;
+    private final RedisService redisService;
+
+    /**
+     * 记录元数据在Redis中的前缀
+     */
+    private static final String RECORD_META_PREFIX = "exam:record:meta:";
+
+    /**
+     * 本地缓存过期时间（秒）
+     */
+    @Value("${exam.cache.record-local-ttl:30}")
+    private long recordLocalTtl;
+
+    /**
+     * Redis 缓存过期时间（秒）
+     */
+    @Value("${exam.cache.record-redis-ttl:10800}")
+    private long recordRedisTtl;
+
+    private TimedCache<Long, RecordMeta> metaCache;
+
+    @PostConstruct
+    public void init() {
+        metaCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(recordLocalTtl));
+        metaCache.schedulePrune(TimeUnit.SECONDS.toMillis(recordLocalTtl));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        metaCache.cancelPruneSchedule();
+    }
+
+    /**
+     * 获取记录元数据（本地缓存 -> Redis -> MySQL）
+     *
+     * @param recordId 记录ID
+     * @return 记录元数据，记录不存在时返回 null
+     */
+    public RecordMeta getRecordMeta(Long recordId) {
+        if (recordId == null) {
+            return null;
+        }
+        return metaCache.get(recordId, false, () -> loadMeta(recordId));
+    }
+
+    /**
+     * 失效记录元数据（若在事务中则延迟到事务提交后执行）
+     *
+     * @param recordId 记录ID
+     */
+    public void evict(Long recordId) {
+        if (recordId == null) {
+            return;
+        }
+        Runnable action = () -> {
+            metaCache.remove(recordId);
+            redisService.delete(RECORD_META_PREFIX + recordId);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private RecordMeta loadMeta(Long recordId) {
+        String key = RECORD_META_PREFIX + recordId;
+        try {
+            Object cached = redisService.get(key);
+            if (cached instanceof RecordMeta meta) {
+                return meta;
+            }
+        } catch (Exception e) {
+            log.warn("读取记录缓存失败，降级查库: recordId={}, error={}", recordId, e.getMessage());
+        }
+
+        Record record = recordMapper.selectById(recordId);
+        if (record == null) {
+            return null;
+        }
+        RecordMeta meta = new RecordMeta();
+        meta.setRecordId(record.getId());
+        meta.setUserId(record.getUserId());
+        meta.setPublishId(record.getPublishId());
+        meta.setPaperId(record.getPaperId());
+        meta.setStatus(record.getStatus() != null ? record.getStatus().intValue() : null);
+        meta.setStartTime(record.getStartTime());
+        try {
+            redisService.set(key, meta, recordRedisTtl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入记录缓存失败: recordId={}, error={}", recordId, e.getMessage());
+        }
+        return meta;
+    }
+
+    /**
+     * 考试记录元数据
+     */
+    @Data
+    public static class RecordMeta implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long recordId;
+        private Long userId;
+        private Long publishId;
+        private Long paperId;
+        private Integer status;
+        private LocalDateTime startTime;
+
+        /**
+         * 是否进行中
+         */
+        @JsonIgnore
+        public boolean isInProgress() {
+            return status != null && status == 1;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import com.university.exam.common.exception.AdmissionRejectedException;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 登录校验服务
+ * 开考前几分钟内数千名考生集中登录，BCrypt 校验会占满 CPU。这里把登录的密码校验做成有界、可观测的流程：
+ * 1. 每个客户端IP一个令牌桶限制登录请求数；同一用户名在同一IP上的失败次数另用一个令牌桶限制，
+ *    只有用户不存在和密码错误才消耗令牌，他人无法通过反复输错密码锁定别人的账号。超出时返回 429 和建议重试时间
+ * 2. 密码校验在独立的有界线程池（loginExecutor）中执行，排队已满时立即拒绝；校验结果异步返回，
+ *    请求线程提交校验后即释放，不会因登录排队占满 Tomcat 线程；排队超过 exam.login.verify-timeout 时返回 429
+ * 3. 记录排队等待时间和哈希耗时（exam.login.queue.wait、exam.login.hash）以及各结果的登录次数
+ * 4. 登录成功且已有哈希的强度低于配置强度（exam.login.bcrypt-strength）时重新哈希
+ * 客户端IP取连接的对端地址，只有对端是配置的可信代理（exam.login.trusted-proxies）时才采用 X-Forwarded-For 中
+ * 最右侧的非可信代理地址，客户端自行伪造的请求头不会影响限流。
+ * 限流状态保存在本节点内存中（按 exam.login.max-tracked-keys 限制条数，超出时淘汰最久未使用的），多节点部署时每个节点独立限流。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+public class LoginService {
+
+    private final ThreadPoolExecutor loginExecutor;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final UserService userService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 同一IP每秒允许的登录次数（同一机房、宿舍出口IP下考生较多，需要足够宽松）
+     */
+    @Value("${exam.login.ip-rate:20}")
+    private double ipRate;
+
+    /**
+     * 同一IP的令牌桶容量
+     */
+    @Value("${exam.login.ip-burst:200}")
+    private int ipBurst;
+
+    /**
+     * 同一用户名在同一IP上每秒恢复的失败次数
+     */
+    @Value("${exam.login.user-rate:0.2}")
+    private double userRate;
+
+    /**
+     * 同一用户名在同一IP上允许连续失败的次数
+     */
+    @Value("${exam.login.user-burst:5}")
+    private int userBurst;
+
+    /**
+     * 每类令牌桶最多保留的条数
+     */
+    @Value("${exam.login.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+
+    /**
+     * 可信反向代理地址（逗号分隔），只有来自这些地址的请求才读取 X-Forwarded-For
+     */
+    @Value("${exam.login.trusted-proxies:}")
+    private String trustedProxies;
+
+    /**
+     * 等待密码校验结果的超时时间（毫秒）
+     */
+    @Value("${exam.login.verify-timeout:10000}")
+    private long verifyTimeout;
+
+    /**
+     * 队列已满时建议的重试间隔（秒）
+     */
+    @Value("${exam.login.retry-after:3}")
+    private long retryAfter;
+
+    private LRUCache<String, TokenBucket> ipBuckets;
+    private LRUCache<String, TokenBucket> failureBuckets;
+    private Set<String> trustedProxySet;
+
+    private Timer queueWaitTimer;
+    private Timer verifyTimer;
+    private Timer rehashTimer;
+
+    public LoginService(@Qualifier("loginExecutor") ThreadPoolExecutor loginExecutor,
+                        BCryptPasswordEncoder passwordEncoder, UserService userService,
+                        MeterRegistry meterRegistry) {
+        this.loginExecutor = loginExecutor;
+        this.passwordEncoder = passwordEncoder;
+        this.userService = userService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        ipBuckets = CacheUtil.newLRUCache(maxTrackedKeys);
+        failureBuckets = CacheUtil.newLRUCache(maxTrackedKeys);
+        trustedProxySet = Arrays.stream(trustedProxies.split(","))
+                .map(String::trim)
+                .filter(StrUtil::isNotEmpty)
+                .collect(Collectors.toUnmodifiableSet());
+        Gauge.builder("exam.login.queue.depth", loginExecutor, e -> e.getQueue().size())
+                .description("等待密码校验的登录请求数")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("exam.login.queue.wait")
+                .description("登录请求等待密码校验线程的时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        verifyTimer = Timer.builder("exam.login.hash")
+                .tag("operation", "verify")
+                .description("BCrypt 计算耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rehashTimer = Timer.builder("exam.login.hash")
+                .tag("operation", "rehash")
+                .description("BCrypt 计算耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 解析客户端IP：对端不是可信代理时直接使用对端地址，
+     * 否则从右向左取 X-Forwarded-For 中第一个不是可信代理的地址
+     *
+     * @param request HTTP请求
+     * @return 客户端IP
+     */
+    public String resolveClientIp(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (!trustedProxySet.contains(remote)) {
+            return remote;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (StrUtil.isBlank(forwarded)) {
+            return remote;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxySet.contains(hop)) {
+                return hop;
+            }
+        }
+        return remote;
+    }
+
+    /**
+     * 登录限流：消耗一个IP令牌，并检查该用户名在该IP上的失败次数，超出时抛出 {@link AdmissionRejectedException}
+     *
+     * @param username 用户名
+     * @param ip       客户端IP
+     */
+    public void checkRate(String username, String ip) {
+        long now = System.nanoTime();
+        long ipWait = ipBuckets.get(ip, () -> new TokenBucket(ipRate, ipBurst)).tryTake(now);
+        if (ipWait > 0) {
+            count("rate_limited");
+            throw new AdmissionRejectedException("登录请求过于频繁，请 " + ipWait + " 秒后重试", -1, ipWait);
+        }
+        TokenBucket failures = failureBuckets.get(failureKey(username, ip), false);
+        long userWait = failures != null ? failures.waitTime(now) : 0;
+        if (userWait > 0) {
+            count("rate_limited");
+            throw new AdmissionRejectedException("该账号登录失败次数过多，请 " + userWait + " 秒后重试", -1, userWait);
+        }
+    }
+
+    /**
+     * 记录一次登录失败（用户不存在或密码错误）
+     *
+     * @param username 用户名
+     * @param ip       客户端IP
+     */
+    public void recordFailure(String username, String ip) {
+        failureBuckets.get(failureKey(username, ip), () -> new TokenBucket(userRate, userBurst))
+                .tryTake(System.nanoTime());
+    }
+
+    /**
+     * 登录成功后清除该用户名在该IP上的失败记录
+     *
+     * @param username 用户名
+     * @param ip       客户端IP
+     */
+    public void clearFailures(String username, String ip) {
+        failureBuckets.remove(failureKey(username, ip));
+    }
+
+    /**
+     * 在登录线程池中校验密码，成功时按需升级哈希强度
+     * 返回的结果在登录线程池中完成，调用方不应阻塞等待
+     *
+     * @param user        用户
+     * @param rawPassword 明文密码
+     * @return 密码是否正确；排队已满或超时时以 {@link AdmissionRejectedException} 异常完成
+     */
+    public CompletableFuture<Boolean> verifyPassword(User user, String rawPassword) {
+        String encoded = user.getPassword();
+        long submittedAt = System.nanoTime();
+        CompletableFuture<Verification> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> verify(rawPassword, encoded, submittedAt), loginExecutor);
+        } catch (RejectedExecutionException e) {
+            count("rejected");
+            throw new AdmissionRejectedException("当前登录人数过多，请稍后重试", -1, retryAfter);
+        }
+
+        return future.orTimeout(verifyTimeout, TimeUnit.MILLISECONDS).handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    count("timeout");
+                    throw new AdmissionRejectedException("当前登录人数过多，请稍后重试", -1, retryAfter);
+                }
+                log.error("密码校验失败: userId={}", user.getId(), cause);
+                throw new BizException(500, "登录失败，请稍后重试");
+            }
+            if (result == null) {
+                // 排队超时后才轮到执行，已放弃计算
+                return false;
+            }
+
+            if (!result.matched) {
+                count("bad_credentials");
+                return false;
+            }
+            count("success");
+            if (result.upgradedHash != null) {
+                // 仅在密码未被并发修改时更新
+                boolean updated = userService.lambdaUpdate()
+                        .set(User::getPassword, result.upgradedHash)
+                        .eq(User::getId, user.getId())
+                        .eq(User::getPassword, encoded)
+                        .update();
+                if (updated) {
+                    log.info("已升级用户密码哈希强度: userId={}", user.getId());
+                }
+            }
+            return true;
+        });
+    }
+
+    private Verification verify(String rawPassword, String encoded, long submittedAt) {
+        long start = System.nanoTime();
+        queueWaitTimer.record(start - submittedAt, TimeUnit.NANOSECONDS);
+        if (start - submittedAt >= TimeUnit.MILLISECONDS.toNanos(verifyTimeout)) {
+            // 请求已按超时返回，不再计算哈希
+            return null;
+        }
+
+        Verification result = new Verification();
+        result.matched = encoded != null && passwordEncoder.matches(rawPassword, encoded);
+        long verified = System.nanoTime();
+        verifyTimer.record(verified - start, TimeUnit.NANOSECONDS);
+
+        if (result.matched && passwordEncoder.upgradeEncoding(encoded)) {
+            result.upgradedHash = passwordEncoder.encode(rawPassword);
+            rehashTimer.record(System.nanoTime() - verified, TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private static String failureKey(String username, String ip) {
+        return username.toLowerCase(Locale.ROOT) + "|" + ip;
+    }
+
+    private void count(String outcome) {
+        Counter.builder("exam.login.requests").tag("outcome", outcome).register(meterRegistry).increment();
+    }
+
+    private static class Verification {
+        private boolean matched;
+        private String upgradedHash;
+    }
+
+    /**
+     * 令牌桶
+     */
+    private static class TokenBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * 取一个令牌
+         *
+         * @return 0 表示成功，否则为建议等待的秒数
+         */
+        synchronized long tryTake(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return toSeconds((1 - tokens) / ratePerNano);
+        }
+
+        /**
+         * 查询取得一个令牌需要等待的时间（不消耗令牌）
+         *
+         * @return 0 表示有可用令牌，否则为建议等待的秒数
+         */
+        synchronized long waitTime(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : toSeconds((1 - tokens) / ratePerNano);
+        }
+
+        private static long toSeconds(double nanos) {
+            return Math.max(1, (long) Math.ceil(nanos / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.university.exam.service;
 import com.university.exam.entity.MistakeBook;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  * 错题本 服务类
@@ -13,4 +15,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface MistakeBookService extends IService<MistakeBook> {
 
+    /**
+     * 批量记录错题（单条 INSERT ... ON DUPLICATE KEY UPDATE，已存在的错题错误次数+1）
+     *
+     * @param mistakes 错题列表
+     */
+    void recordMistakes(List<MistakeBook> mistakes);
 }
@@ -0,0 +1,240 @@
+package com.university.exam.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.university.exam.entity.Notice;
+import com.university.exam.entity.User;
+import com.university.exam.mapper.UserMapper;
+import com.university.exam.mapper.UserNoticeMapper;
+import com.university.exam.websocket.WebSocketService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知分发服务
+ * 把一条通知分发给大量用户时，不在请求线程中逐条写入，也不在内存中加载全部目标用户：
+ * 1. 分发任务在事务提交后提交到 noticeFanoutExecutor 执行，发布接口立即返回
+ * 2. 指定用户的通知每凑满一批（exam.notice.fanout.batch-size）用一条多行 INSERT 写入用户通知表，随后向这一批用户推送
+ * 3. 部门通知只存一份（已读状态见 {@link NoticeService}），这里流式读取部门下的学生ID并分批推送，不写用户通知表
+ * 4. 进度记录在 Redis 哈希 notice:fanout:{noticeId} 中（status、total、inserted、pushed），任一节点都可查询
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+public class NoticeFanoutService {
+
+    private static final String PROGRESS_PREFIX = "notice:fanout:";
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+
+    private final UserMapper userMapper;
+    private final UserNoticeMapper userNoticeMapper;
+    private final WebSocketService webSocketService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ThreadPoolExecutor noticeFanoutExecutor;
+
+    /**
+     * 每批写入和推送的用户数
+     */
+    @Value("${exam.notice.fanout.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 分发进度保留时间（秒）
+     */
+    @Value("${exam.notice.fanout.progress-ttl:86400}")
+    private long progressTtl;
+
+    public NoticeFanoutService(UserMapper userMapper, UserNoticeMapper userNoticeMapper,
+                               WebSocketService webSocketService, StringRedisTemplate stringRedisTemplate,
+                               @Qualifier("noticeFanoutExecutor") ThreadPoolExecutor noticeFanoutExecutor) {
+        this.userMapper = userMapper;
+        this.userNoticeMapper = userNoticeMapper;
+        this.webSocketService = webSocketService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.noticeFanoutExecutor = noticeFanoutExecutor;
+    }
+
+    /**
+     * 推送给指定部门下的所有学生（部门通知不写用户通知表）
+     *
+     * @param notice  已保存的通知
+     * @param deptIds 部门ID
+     */
+    public void pushToDepartments(Notice notice, List<Long> deptIds) {
+        if (deptIds == null || deptIds.isEmpty()) {
+            return;
+        }
+        List<Long> depts = List.copyOf(new LinkedHashSet<>(deptIds));
+        submit(notice, () -> {
+            long total = userMapper.selectCount(new LambdaQueryWrapper<User>()
+                    .in(User::getDeptId, depts)
+                    .eq(User::getRole, (byte) 1));
+            start(notice.getId(), total);
+            Batcher batcher = new Batcher(notice, null, false);
+            userMapper.streamStudentIds(depts, context -> batcher.add(context.getResultObject()));
+            batcher.flush();
+        });
+    }
+
+    /**
+     * 分发给指定用户
+     *
+     * @param notice     已保存的通知
+     * @param userIds    用户ID
+     * @param operatorId 操作人ID
+     */
+    public void fanoutToUsers(Notice notice, List<Long> userIds, Long operatorId) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> targets = List.copyOf(new LinkedHashSet<>(userIds));
+        submit(notice, () -> {
+            start(notice.getId(), targets.size());
+            Batcher batcher = new Batcher(notice, operatorId, true);
+            targets.forEach(batcher::add);
+            batcher.flush();
+        });
+    }
+
+    /**
+     * 查询分发进度
+     *
+     * @param noticeId 通知ID
+     * @return 进度（无分发任务或已过期时返回 null）
+     */
+    public Map<String, Object> getProgress(Long noticeId) {
+        Map<Object, Object> raw = stringRedisTemplate.opsForHash().entries(PROGRESS_PREFIX + noticeId);
+        if (raw.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("noticeId", noticeId);
+        progress.put("status", raw.get("status"));
+        progress.put("total", toLong(raw.get("total")));
+        progress.put("inserted", toLong(raw.get("inserted")));
+        progress.put("pushed", toLong(raw.get("pushed")));
+        progress.put("startTime", raw.get("startTime"));
+        progress.put("finishTime", raw.get("finishTime"));
+        progress.put("error", raw.get("error"));
+        return progress;
+    }
+
+    /**
+     * 记录待分发状态，并在事务提交后提交分发任务（通知回滚时不分发）
+     */
+    private void submit(Notice notice, Runnable job) {
+        Long noticeId = notice.getId();
+        updateProgress(noticeId, Map.of("status", STATUS_PENDING));
+        Runnable task = () -> noticeFanoutExecutor.execute(() -> run(noticeId, job));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    private void run(Long noticeId, Runnable job) {
+        try {
+            job.run();
+            updateProgress(noticeId, Map.of("status", STATUS_DONE, "finishTime", LocalDateTime.now().toString()));
+            log.info("通知分发完成: noticeId={}", noticeId);
+        } catch (Exception e) {
+            log.error("通知分发失败: noticeId={}", noticeId, e);
+            updateProgress(noticeId, Map.of("status", STATUS_FAILED,
+                    "finishTime", LocalDateTime.now().toString(),
+                    "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void start(Long noticeId, long total) {
+        updateProgress(noticeId, Map.of("status", STATUS_RUNNING,
+                "total", String.valueOf(total),
+                "inserted", "0",
+                "pushed", "0",
+                "startTime", LocalDateTime.now().toString()));
+    }
+
+    private void updateProgress(Long noticeId, Map<String, String> fields) {
+        String key = PROGRESS_PREFIX + noticeId;
+        try {
+            stringRedisTemplate.opsForHash().putAll(key, fields);
+            stringRedisTemplate.expire(key, progressTtl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // 进度仅用于展示，写入失败不影响分发
+            log.warn("更新通知分发进度失败: noticeId={}, error={}", noticeId, e.getMessage());
+        }
+    }
+
+    private void incrementProgress(Long noticeId, String field, long delta) {
+        try {
+            stringRedisTemplate.opsForHash().increment(PROGRESS_PREFIX + noticeId, field, delta);
+        } catch (Exception e) {
+            log.warn("更新通知分发进度失败: noticeId={}, error={}", noticeId, e.getMessage());
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    /**
+     * 按批写入并推送（只持有当前一批用户ID）
+     */
+    private class Batcher {
+        private final Notice notice;
+        private final Long operatorId;
+        private final boolean persist;
+        private final List<Long> buffer = new ArrayList<>(batchSize);
+
+        Batcher(Notice notice, Long operatorId, boolean persist) {
+            this.notice = notice;
+            this.operatorId = operatorId;
+            this.persist = persist;
+        }
+
+        void add(Long userId) {
+            buffer.add(userId);
+            if (buffer.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<Long> batch = List.copyOf(buffer);
+            buffer.clear();
+            if (persist) {
+                userNoticeMapper.insertBatch(notice.getId(), batch, operatorId);
+                incrementProgress(notice.getId(), "inserted", batch.size());
+            }
+            webSocketService.pushNoticeToUsers(batch, notice);
+            incrementProgress(notice.getId(), "pushed", batch.size());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.university.exam.service;
 
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.university.exam.common.security.CurrentUser;
+import com.university.exam.common.vo.NoticeItemVo;
 import com.university.exam.entity.Notice;
+import com.university.exam.entity.NoticeReadMark;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 /**
@@ -13,4 +17,58 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface NoticeService extends IService<Notice> {
 
+    /**
+     * 获取用户对全体/部门通知的已读标记（首次访问时初始化）
+     * 同一请求内既查询列表又统计未读数时，先获取一次再传给各方法
+     *
+     * @param userId 用户ID
+     * @return 已读标记
+     */
+    NoticeReadMark getReadMark(Long userId);
+
+    /**
+     * 分页查询当前用户的通知（指定用户的通知与全体/部门通知合并）
+     *
+     * @param user   当前用户
+     * @param mark   已读标记（见 {@link #getReadMark(Long)}）
+     * @param page   页码
+     * @param size   每页条数
+     * @param type   通知类型（为空时不过滤）
+     * @param isRead 是否已读（为空时不过滤）
+     * @return 通知分页
+     */
+    IPage<NoticeItemVo> getMyNotices(CurrentUser user, NoticeReadMark mark, int page, int size, Byte type, Boolean isRead);
+
+    /**
+     * 统计当前用户的未读通知数
+     *
+     * @param user 当前用户
+     * @return 未读数
+     */
+    long countUnread(CurrentUser user);
+
+    /**
+     * 统计当前用户的未读通知数（使用已获取的已读标记）
+     *
+     * @param user 当前用户
+     * @param mark 已读标记（见 {@link #getReadMark(Long)}）
+     * @return 未读数
+     */
+    long countUnread(CurrentUser user, NoticeReadMark mark);
+
+    /**
+     * 标记通知为已读
+     *
+     * @param user     当前用户
+     * @param noticeId 通知ID
+     * @return 是否从未读变为已读
+     */
+    boolean markAsRead(CurrentUser user, Long noticeId);
+
+    /**
+     * 标记当前用户的所有通知为已读
+     *
+     * @param user 当前用户
+     */
+    void markAllAsRead(CurrentUser user);
 }
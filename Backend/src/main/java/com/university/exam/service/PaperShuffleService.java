@@ -0,0 +1,137 @@
+package com.university.exam.service;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.university.exam.common.dto.student.ExamPaperVo;
+import com.university.exam.common.dto.student.SubmitExamRequest;
+import com.university.exam.common.grading.AnswerShuffler;
+import com.university.exam.common.grading.CompiledAnswerKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 试卷乱序服务
+ * 按考试记录ID推导的排列打乱题目顺序和选择题选项顺序，不存储任何按考生区分的试卷副本：
+ * 1. 开考/续考时对共享快照生成的试卷副本重排（题目只在同题型的连续区段内打乱，保持试卷的分区结构）
+ * 2. 自动保存和交卷时，把展示顺序下的选项下标映射回原始下标，草稿、答题明细和判分均使用原始下标
+ * 3. 续考回填已保存作答时再映射为展示顺序
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Service
+@RequiredArgsConstructor
+public class PaperShuffleService {
+
+    private final ExamPaperCacheService examPaperCacheService;
+
+    /**
+     * 是否启用乱序
+     */
+    @Value("${exam.shuffle.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 乱序种子的盐
+     */
+    @Value("${exam.shuffle.salt:20251220}")
+    private long salt;
+
+    /**
+     * 对试卷视图按记录乱序（原地修改，savedAnswer 需已按原始下标回填）
+     *
+     * @param vo       试卷视图（由共享快照复制得到）
+     * @param recordId 考试记录ID
+     */
+    public void shuffle(ExamPaperVo vo, Long recordId) {
+        if (!enabled || recordId == null || vo.getQuestions() == null) {
+            return;
+        }
+        long seed = AnswerShuffler.seed(recordId, salt);
+
+        // 选项乱序，并把已保存的作答映射为展示顺序
+        for (ExamPaperVo.QuestionVo q : vo.getQuestions()) {
+            if (!isChoice(q.getType())) continue;
+            int optionCount = ExamPaperCacheService.countOptions(q.getOptions());
+            if (optionCount <= 1) continue;
+            int[] perm = AnswerShuffler.optionOrder(seed, q.getId(), optionCount);
+            JSONArray source = JSONUtil.parseArray(q.getOptions());
+            JSONArray shuffled = new JSONArray();
+            for (int original : perm) {
+                shuffled.add(source.get(original));
+            }
+            q.setOptions(shuffled.toString());
+            q.setSavedAnswer(AnswerShuffler.toDisplayed(q.getType(), q.getSavedAnswer(), perm));
+        }
+
+        // 题目乱序：同题型的连续区段内打乱
+        List<ExamPaperVo.QuestionVo> questions = vo.getQuestions();
+        List<ExamPaperVo.QuestionVo> reordered = new ArrayList<>(questions.size());
+        int[] order = AnswerShuffler.questionOrder(seed, questions.size());
+        int start = 0;
+        while (start < questions.size()) {
+            Integer type = questions.get(start).getType();
+            int end = start + 1;
+            while (end < questions.size() && Objects.equals(questions.get(end).getType(), type)) {
+                end++;
+            }
+            // 用全卷排列在区段内的相对次序作为区段排列
+            List<int[]> ranked = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                ranked.add(new int[]{order[i], i});
+            }
+            ranked.sort((a, b) -> Integer.compare(a[0], b[0]));
+            for (int[] r : ranked) {
+                reordered.add(questions.get(r[1]));
+            }
+            start = end;
+        }
+        vo.setQuestions(reordered);
+    }
+
+    /**
+     * 将展示顺序下的作答映射为原始选项下标
+     * 返回新的作答列表，不修改入参（交卷请求在批量失败后会逐条重试，不能被重复映射）
+     *
+     * @param recordId 考试记录ID
+     * @param paperId  试卷ID
+     * @param answers  展示顺序下的作答
+     * @return 原始下标下的作答
+     */
+    public List<SubmitExamRequest.AnswerItem> toCanonical(Long recordId, Long paperId,
+                                                          List<SubmitExamRequest.AnswerItem> answers) {
+        if (!enabled || recordId == null || answers == null || answers.isEmpty()) {
+            return answers;
+        }
+        CompiledAnswerKey answerKey = examPaperCacheService.getCompiledKey(paperId);
+        if (answerKey == null) {
+            return answers;
+        }
+        long seed = AnswerShuffler.seed(recordId, salt);
+        List<SubmitExamRequest.AnswerItem> result = new ArrayList<>(answers.size());
+        for (SubmitExamRequest.AnswerItem item : answers) {
+            int idx = item.getQuestionId() != null ? answerKey.indexOf(item.getQuestionId()) : -1;
+            int type = idx >= 0 ? answerKey.type(idx) : 0;
+            int optionCount = idx >= 0 ? answerKey.optionCount(idx) : 0;
+            if (!isChoice(type) || optionCount <= 1) {
+                result.add(item);
+                continue;
+            }
+            int[] perm = AnswerShuffler.optionOrder(seed, item.getQuestionId(), optionCount);
+            SubmitExamRequest.AnswerItem mapped = new SubmitExamRequest.AnswerItem();
+            mapped.setQuestionId(item.getQuestionId());
+            mapped.setUserAnswer(AnswerShuffler.toCanonical(type, item.getUserAnswer(), perm));
+            result.add(mapped);
+        }
+        return result;
+    }
+
+    private static boolean isChoice(Integer type) {
+        return type != null && (type == CompiledAnswerKey.TYPE_SINGLE || type == CompiledAnswerKey.TYPE_MULTI);
+    }
+}
@@ -0,0 +1,310 @@
+package com.university.exam.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监考事件流（按场次）
+ * 监考日志和考生状态变化按发生顺序追加到 Redis Stream exam:proctor:feed:{publishId}，
+ * 流中的消息ID即游标：监考台记录最后收到的游标，刷新或断线重连时只拉取该游标之后的事件，不再重新加载全量日志。
+ * 1. 每条事件包含 type（log / status）和 data（JSON）
+ * 2. 流按 max-length 近似裁剪；游标早于裁剪位置时返回 reset，客户端重新加载
+ * 3. 监考台读取事件流或考生状态时标记该场次"有人监考"（exam:proctor:watch:{publishId}），
+ *    无人监考的场次可以跳过只为监考台准备的刷新
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProctorFeedService {
+
+    private static final String FEED_PREFIX = "exam:proctor:feed:";
+
+    private static final String WATCH_PREFIX = "exam:proctor:watch:";
+
+    public static final String TYPE_LOG = "log";
+    public static final String TYPE_STATUS = "status";
+
+    /**
+     * 表示"从头开始"的游标
+     */
+    public static final String INITIAL_CURSOR = "0-0";
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 每场考试保留的事件数
+     */
+    @Value("${exam.proctor.feed.max-length:5000}")
+    private long maxLength;
+
+    /**
+     * 事件流过期时间（秒），最后一次写入后计算
+     */
+    @Value("${exam.proctor.feed.ttl:86400}")
+    private long ttl;
+
+    /**
+     * 监考台最后一次读取后仍视为"有人监考"的时间（秒）
+     */
+    @Value("${exam.proctor.feed.watch-ttl:300}")
+    private long watchTtl;
+
+    /**
+     * 本节点近期已标记过的场次，避免每次读取都写 Redis
+     */
+    private TimedCache<Long, Boolean> watchedLocally;
+
+    @PostConstruct
+    public void init() {
+        long refresh = TimeUnit.SECONDS.toMillis(Math.max(1, watchTtl / 2));
+        watchedLocally = CacheUtil.newTimedCache(refresh);
+        watchedLocally.schedulePrune(refresh);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchedLocally.cancelPruneSchedule();
+    }
+
+    /**
+     * 标记场次正在被监考（监考台读取事件流或考生状态时调用）
+     *
+     * @param publishId 考试发布ID
+     */
+    public void touch(Long publishId) {
+        if (watchedLocally.get(publishId, false) != null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(WATCH_PREFIX + publishId, "1", watchTtl, TimeUnit.SECONDS);
+            watchedLocally.put(publishId, Boolean.TRUE);
+        } catch (DataAccessException e) {
+            log.warn("标记监考场次失败: publishId={}, error={}", publishId, e.getMessage());
+        }
+    }
+
+    /**
+     * 场次近期是否有监考台在读取（任一节点）
+     *
+     * @param publishId 考试发布ID
+     * @return 是否有人监考（无法判断时返回 true）
+     */
+    public boolean isWatched(Long publishId) {
+        if (watchedLocally.get(publishId, false) != null) {
+            return true;
+        }
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(WATCH_PREFIX + publishId));
+        } catch (DataAccessException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 批量追加事件，并把生成的游标写回每条事件的 cursor 字段
+     *
+     * @param publishId 考试发布ID
+     * @param type      事件类型
+     * @param items     事件数据
+     */
+    public void append(Long publishId, String type, List<Map<String, Object>> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        String key = FEED_PREFIX + publishId;
+        try {
+            List<String> bodies = new ArrayList<>(items.size());
+            for (Map<String, Object> item : items) {
+                bodies.add(MAPPER.writeValueAsString(item));
+            }
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String body : bodies) {
+                    conn.xAdd(StreamRecords.string(Map.of("type", type, "data", body)).withStreamKey(key));
+                }
+                conn.xTrim(key, maxLength, true);
+                conn.expire(key, ttl);
+                return null;
+            });
+            for (int i = 0; i < items.size() && i < results.size(); i++) {
+                String id = toId(results.get(i));
+                if (id != null) {
+                    items.get(i).put("cursor", id);
+                }
+            }
+        } catch (Exception e) {
+            // 事件流只用于增量同步，写入失败时客户端会在下次全量刷新时补齐
+            log.warn("追加监考事件失败: publishId={}, error={}", publishId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取游标之后的事件
+     *
+     * @param publishId 考试发布ID
+     * @param cursor    上次收到的最后一个游标（为空时只返回当前游标，不返回事件）
+     * @param limit     最多返回的事件数
+     * @return 事件页
+     */
+    public FeedPage read(Long publishId, String cursor, int limit) {
+        touch(publishId);
+        FeedPage page = new FeedPage();
+        String key = FEED_PREFIX + publishId;
+        if (!StringUtils.hasText(cursor)) {
+            page.setCursor(head(publishId));
+            return page;
+        }
+        RecordId from;
+        try {
+            from = RecordId.of(cursor);
+        } catch (IllegalArgumentException e) {
+            page.setReset(true);
+            page.setCursor(head(publishId));
+            return page;
+        }
+        try {
+            // 检查游标之后的事件是否已被裁剪
+            List<MapRecord<String, Object, Object>> first = stringRedisTemplate.opsForStream()
+                    .range(key, Range.unbounded(), Limit.limit().count(1));
+            if (first == null || first.isEmpty()) {
+                // 事件流已过期
+                page.setReset(!INITIAL_CURSOR.equals(cursor));
+                page.setCursor(cursor);
+                return page;
+            }
+            if (compare(from, first.get(0).getId()) < 0 && !INITIAL_CURSOR.equals(cursor)) {
+                Long size = stringRedisTemplate.opsForStream().size(key);
+                if (size != null && size >= maxLength) {
+                    page.setReset(true);
+                    page.setCursor(head(publishId));
+                    return page;
+                }
+            }
+
+            // 游标本身已处理过，从下一个ID开始读
+            String start = from.getTimestamp() + "-" + (from.getSequence() + 1);
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                    .range(key, Range.rightUnbounded(Range.Bound.inclusive(start)), Limit.limit().count(limit));
+            String last = cursor;
+            if (records != null) {
+                for (MapRecord<String, Object, Object> record : records) {
+                    FeedEvent event = new FeedEvent();
+                    event.setId(record.getId().getValue());
+                    event.setType(String.valueOf(record.getValue().get("type")));
+                    Map<String, Object> data = MAPPER.readValue(String.valueOf(record.getValue().get("data")),
+                            new TypeReference<Map<String, Object>>() { });
+                    data.put("cursor", event.getId());
+                    event.setData(data);
+                    page.getEvents().add(event);
+                    last = event.getId();
+                }
+                page.setHasMore(records.size() >= limit);
+            }
+            page.setCursor(last);
+            return page;
+        } catch (DataAccessException | IOException e) {
+            log.warn("读取监考事件失败: publishId={}, cursor={}, error={}", publishId, cursor, e.getMessage());
+            page.setReset(true);
+            page.setCursor(cursor);
+            return page;
+        }
+    }
+
+    /**
+     * 当前最新的游标（无事件时为 0-0）
+     */
+    public String head(Long publishId) {
+        try {
+            List<MapRecord<String, Object, Object>> last = stringRedisTemplate.opsForStream()
+                    .reverseRange(FEED_PREFIX + publishId, Range.unbounded(), Limit.limit().count(1));
+            return last == null || last.isEmpty() ? INITIAL_CURSOR : last.get(0).getId().getValue();
+        } catch (DataAccessException e) {
+            log.warn("读取监考事件游标失败: publishId={}, error={}", publishId, e.getMessage());
+            return INITIAL_CURSOR;
+        }
+    }
+
+    private static int compare(RecordId a, RecordId b) {
+        int c = Long.compare(a.getTimestamp(), b.getTimestamp());
+        return c != 0 ? c : Long.compare(a.getSequence(), b.getSequence());
+    }
+
+    private static String toId(Object result) {
+        if (result instanceof RecordId recordId) {
+            return recordId.getValue();
+        }
+        if (result instanceof String s) {
+            return s;
+        }
+        if (result instanceof byte[] bytes) {
+            return new String(bytes);
+        }
+        return null;
+    }
+
+    /**
+     * 事件页
+     */
+    @Data
+    public static class FeedPage {
+        /**
+         * 本页最后一个事件的游标，客户端下次请求时带上
+         */
+        private String cursor;
+        /**
+         * 游标已失效（事件被裁剪或流已过期），客户端需要重新加载
+         */
+        private boolean reset;
+        /**
+         * 是否还有更多事件
+         */
+        private boolean hasMore;
+        private List<FeedEvent> events = new ArrayList<>();
+    }
+
+    /**
+     * 单条事件
+     */
+    @Data
+    public static class FeedEvent {
+        private String id;
+        private String type;
+        private Map<String, Object> data;
+    }
+}
@@ -0,0 +1,495 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.university.exam.entity.ProctorLog;
+import com.university.exam.mapper.ProctorLogMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 监考日志冷归档服务
+ * 考试结束超过宽限期后，把该场次的监考日志压缩写入单个归档文件并从 exam_proctor_log 物理删除，保持热表规模稳定。
+ * 1. 归档文件：{archive-dir}/proctor-{publishId}.jsonl.gz，每行一条日志（JSON），按ID升序
+ *    文件由多个独立的 gzip 分块顺序拼接（每块一批日志），分块索引 proctor-{publishId}.idx 记录每块的文件偏移和首条日志
+ * 2. 写入流程：按ID续查写入临时文件 -> 刷盘 -> 写删除标记（记录已归档的最大ID）-> 原子重命名为归档文件 -> 分批删除 -> 移除删除标记
+ *    任一步骤中断后重新执行即可：归档文件不存在时重新生成；删除标记存在时按其中的最大ID继续删除
+ * 3. 归档文件存在即视为已归档，该场次的日志读取直接从归档文件流式读取
+ * 4. 归档文件生成后不再修改，每个文件的摘要（各记录的警告次数、是否按发生时间有序）只统计一次并缓存，
+ *    按文件修改时间和大小校验；分页读取时按发生时间有序且有分块索引的文件从游标所在分块向前逐块解压，凑满一页即停止，
+ *    其它文件整体流式扫描，只保留一页大小的候选
+ * 5. 归档后再写入热表的日志（如死信回放）ID 大于归档的最大ID，由调用方与归档合并读取
+ * 多节点部署时 archive-dir 需指向共享存储。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProctorLogArchiveService {
+
+    private static final String FILE_PREFIX = "proctor-";
+    private static final String FILE_SUFFIX = ".jsonl.gz";
+    private static final String DELETING_SUFFIX = ".deleting";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    /**
+     * 日志顺序：(happen_time, id) 升序
+     */
+    private static final Comparator<ProctorLog> ORDER = Comparator.comparing(ProctorLog::getHappenTime)
+            .thenComparing(ProctorLog::getId);
+
+    private final ProctorLogMapper proctorLogMapper;
+
+    /**
+     * 归档目录（相对路径基于用户工作目录）
+     */
+    @Value("${exam.proctor.archive.dir:archive/proctor}")
+    private String archiveDir;
+
+    /**
+     * 每次查询写入的日志数
+     */
+    @Value("${exam.proctor.archive.read-batch-size:2000}")
+    private int readBatchSize;
+
+    /**
+     * 每批删除的日志数
+     */
+    @Value("${exam.proctor.archive.delete-batch-size:2000}")
+    private int deleteBatchSize;
+
+    /**
+     * 两批删除之间的间隔（毫秒），降低对在线业务和主从复制的冲击
+     */
+    @Value("${exam.proctor.archive.delete-pause:50}")
+    private long deletePause;
+
+    /**
+     * 缓存摘要的归档文件数
+     */
+    @Value("${exam.proctor.archive.summary-cache-size:256}")
+    private int summaryCacheSize;
+
+    private Path rootPath;
+
+    private LRUCache<Long, ArchiveSummary> summaryCache;
+
+    @PostConstruct
+    public void init() throws IOException {
+        rootPath = Paths.get(System.getProperty("user.dir")).resolve(archiveDir);
+        Files.createDirectories(rootPath);
+        summaryCache = CacheUtil.newLRUCache(summaryCacheSize);
+    }
+
+    /**
+     * 场次是否已归档
+     */
+    public boolean isArchived(Long publishId) {
+        return Files.exists(archivePath(publishId));
+    }
+
+    /**
+     * 是否有未完成的归档（归档文件已生成，数据库中的日志尚未删完）
+     */
+    public boolean isDeleting(Long publishId) {
+        return Files.exists(deletingPath(publishId));
+    }
+
+    /**
+     * 归档考试场次的监考日志
+     *
+     * @param publishId 考试发布ID
+     * @return 本次写入归档文件的日志数（已归档时为 0）
+     */
+    public long archive(Long publishId) throws IOException {
+        long written = 0;
+        if (!isArchived(publishId)) {
+            Path tmp = rootPath.resolve(FILE_PREFIX + publishId + FILE_SUFFIX + ".tmp");
+            long maxId = 0;
+            ArchiveSummary summary = new ArchiveSummary();
+            List<Chunk> chunks = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                while (true) {
+                    List<ProctorLog> batch = proctorLogMapper.selectByPublishAfterId(publishId, maxId, readBatchSize);
+                    if (!batch.isEmpty()) {
+                        // 每批写成一个独立的 gzip 分块，分页读取时可直接定位解压
+                        chunks.add(new Chunk(channel.position(), batch.get(0).getHappenTime(), batch.get(0).getId()));
+                        out.write(compress(batch));
+                        batch.forEach(summary::add);
+                        maxId = batch.get(batch.size() - 1).getId();
+                    }
+                    written += batch.size();
+                    if (batch.size() < readBatchSize) {
+                        break;
+                    }
+                }
+                if (chunks.isEmpty()) {
+                    // 没有日志的场次同样生成（空）归档文件，之后不再重复扫描
+                    out.write(compress(List.of()));
+                }
+                channel.force(true);
+            }
+            Path indexTmp = rootPath.resolve(FILE_PREFIX + publishId + INDEX_SUFFIX + ".tmp");
+            StringBuilder index = new StringBuilder();
+            for (Chunk chunk : chunks) {
+                index.append(chunk.offset).append(',').append(chunk.happenTime).append(',').append(chunk.id).append('\n');
+            }
+            Files.writeString(indexTmp, index, StandardCharsets.UTF_8);
+            Files.move(indexTmp, indexPath(publishId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            // 先写删除标记再发布归档文件，保证归档文件可见时删除范围已确定
+            Files.writeString(deletingPath(publishId), String.valueOf(maxId), StandardCharsets.UTF_8);
+            Files.move(tmp, archivePath(publishId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            summary.chunks = chunks;
+            summary.stamp(archivePath(publishId));
+            summaryCache.put(publishId, summary);
+            log.info("监考日志已写入归档文件: publishId={}, count={}, maxId={}", publishId, written, maxId);
+        }
+
+        if (isDeleting(publishId)) {
+            deleteArchivedRows(publishId);
+        }
+        return written;
+    }
+
+    /**
+     * 分页读取归档文件中的监考日志，按 (happen_time, id) 倒序返回游标之前的一页
+     *
+     * @param publishId  考试发布ID
+     * @param filter     过滤条件
+     * @param beforeTime 游标：上一页最后一条的发生时间（为空时从最新开始）
+     * @param beforeId   游标：上一页最后一条的ID
+     * @param limit      最多返回的日志数
+     * @return 日志（按发生时间倒序）
+     */
+    public List<ProctorLog> readPage(Long publishId, Predicate<ProctorLog> filter,
+                                     LocalDateTime beforeTime, long beforeId, int limit) {
+        ArchiveSummary summary = getSummary(publishId);
+        if (summary.timeOrdered && summary.chunks != null) {
+            // 分块按发生时间升序：跳过首条不早于游标的分块，从游标所在分块向前逐块解压
+            List<Chunk> chunks = summary.chunks;
+            int i = chunks.size() - 1;
+            while (beforeTime != null && i >= 0 && !chunks.get(i).startsBefore(beforeTime, beforeId)) {
+                i--;
+            }
+            List<ProctorLog> page = new ArrayList<>();
+            for (; i >= 0 && page.size() < limit; i--) {
+                List<ProctorLog> entries = readChunk(publishId, chunks, i);
+                for (int j = entries.size() - 1; j >= 0 && page.size() < limit; j--) {
+                    ProctorLog entry = entries.get(j);
+                    if ((beforeTime == null || isBefore(entry, beforeTime, beforeId)) && filter.test(entry)) {
+                        page.add(entry);
+                    }
+                }
+            }
+            return page;
+        }
+        if (summary.timeOrdered) {
+            // 文件按发生时间升序：游标之前的日志是文件的前缀，读到游标即停止，只保留最后 limit 条
+            Deque<ProctorLog> window = new ArrayDeque<>();
+            scan(publishId, entry -> {
+                if (beforeTime != null && !isBefore(entry, beforeTime, beforeId)) {
+                    return false;
+                }
+                if (filter.test(entry)) {
+                    if (window.size() == limit) {
+                        window.pollFirst();
+                    }
+                    window.addLast(entry);
+                }
+                return true;
+            });
+            List<ProctorLog> page = new ArrayList<>(window);
+            Collections.reverse(page);
+            return page;
+        }
+
+        // 文件中存在乱序（如重试写入的日志）：一次扫描，只保留最新的 limit 条
+        PriorityQueue<ProctorLog> top = new PriorityQueue<>(ORDER);
+        scan(publishId, entry -> {
+            if ((beforeTime == null || isBefore(entry, beforeTime, beforeId)) && filter.test(entry)) {
+                top.add(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            return true;
+        });
+        List<ProctorLog> page = new ArrayList<>(top);
+        page.sort(ORDER.reversed());
+        return page;
+    }
+
+    /**
+     * 归档文件中的最大日志ID，热表中ID更大的日志是归档之后写入的
+     *
+     * @param publishId 考试发布ID
+     * @return 最大日志ID（空归档为 0）
+     */
+    public long getMaxArchivedId(Long publishId) {
+        return getSummary(publishId).maxId;
+    }
+
+    /**
+     * 按考试记录统计归档文件中的警告次数（使用缓存的摘要）
+     *
+     * @param publishId 考试发布ID
+     * @return recordId -> 警告次数
+     */
+    public Map<Long, Long> countWarnings(Long publishId) {
+        return Collections.unmodifiableMap(getSummary(publishId).warnings);
+    }
+
+    /**
+     * 获取归档文件的摘要，未缓存或文件已变化时重新统计
+     */
+    private ArchiveSummary getSummary(Long publishId) {
+        Path path = archivePath(publishId);
+        ArchiveSummary cached = summaryCache.get(publishId);
+        if (cached != null && cached.matches(path)) {
+            return cached;
+        }
+        ArchiveSummary summary = new ArchiveSummary();
+        scan(publishId, entry -> {
+            summary.add(entry);
+            return true;
+        });
+        try {
+            summary.chunks = loadIndex(publishId);
+            summary.stamp(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取监考日志归档失败: publishId=" + publishId, e);
+        }
+        summaryCache.put(publishId, summary);
+        return summary;
+    }
+
+    /**
+     * 流式读取归档文件中的监考日志（按ID升序），处理函数返回 false 时停止读取
+     */
+    private void scan(Long publishId, Predicate<ProctorLog> consumer) {
+        Path path = archivePath(publishId);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !consumer.test(MAPPER.readValue(line, ProctorLog.class))) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取监考日志归档失败: publishId=" + publishId, e);
+        }
+    }
+
+    /**
+     * 解压归档文件中的一个分块
+     */
+    private List<ProctorLog> readChunk(Long publishId, List<Chunk> chunks, int i) {
+        Path path = archivePath(publishId);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long start = chunks.get(i).offset;
+            long end = i + 1 < chunks.size() ? chunks.get(i + 1).offset : channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // 读满分块
+            }
+            List<ProctorLog> entries = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position())),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        entries.add(MAPPER.readValue(line, ProctorLog.class));
+                    }
+                }
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取监考日志归档失败: publishId=" + publishId, e);
+        }
+    }
+
+    /**
+     * 把一批日志压缩成一个 gzip 分块
+     */
+    private static byte[] compress(List<ProctorLog> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(bytes, 64 * 1024), StandardCharsets.UTF_8))) {
+            for (ProctorLog entry : batch) {
+                writer.write(MAPPER.writeValueAsString(entry));
+                writer.newLine();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 读取分块索引，早期生成的没有索引的归档文件返回 null
+     */
+    private List<Chunk> loadIndex(Long publishId) throws IOException {
+        Path path = indexPath(publishId);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            chunks.add(new Chunk(Long.parseLong(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2])));
+        }
+        return chunks;
+    }
+
+    private static boolean isBefore(ProctorLog entry, LocalDateTime beforeTime, long beforeId) {
+        int c = entry.getHappenTime().compareTo(beforeTime);
+        return c < 0 || (c == 0 && entry.getId() < beforeId);
+    }
+
+    private void deleteArchivedRows(Long publishId) throws IOException {
+        Path marker = deletingPath(publishId);
+        long maxId = Long.parseLong(Files.readString(marker, StandardCharsets.UTF_8).trim());
+        long deleted = 0;
+        if (maxId > 0) {
+            int affected;
+            do {
+                affected = proctorLogMapper.deleteArchivedBatch(publishId, maxId, deleteBatchSize);
+                deleted += affected;
+                if (affected == deleteBatchSize && deletePause > 0) {
+                    try {
+                        Thread.sleep(deletePause);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.warn("归档删除被中断，下次继续: publishId={}, deleted={}", publishId, deleted);
+                        return;
+                    }
+                }
+            } while (affected == deleteBatchSize);
+        }
+        Files.deleteIfExists(marker);
+        log.info("已删除归档的监考日志: publishId={}, deleted={}", publishId, deleted);
+    }
+
+    private Path archivePath(Long publishId) {
+        return rootPath.resolve(FILE_PREFIX + publishId + FILE_SUFFIX);
+    }
+
+    private Path deletingPath(Long publishId) {
+        return rootPath.resolve(FILE_PREFIX + publishId + DELETING_SUFFIX);
+    }
+
+    private Path indexPath(Long publishId) {
+        return rootPath.resolve(FILE_PREFIX + publishId + INDEX_SUFFIX);
+    }
+
+    /**
+     * 归档文件分块：文件偏移及块内首条日志的 (happen_time, id)
+     */
+    private record Chunk(long offset, LocalDateTime happenTime, long id) {
+
+        boolean startsBefore(LocalDateTime beforeTime, long beforeId) {
+            int c = happenTime.compareTo(beforeTime);
+            return c < 0 || (c == 0 && id < beforeId);
+        }
+    }
+
+    /**
+     * 归档文件摘要
+     */
+    private static class ArchiveSummary {
+        private final Map<Long, Long> warnings = new HashMap<>();
+        /**
+         * 文件中的日志是否按 (happen_time, id) 升序
+         */
+        private boolean timeOrdered = true;
+        /**
+         * 分块索引（没有索引文件时为 null）
+         */
+        private List<Chunk> chunks;
+        private long maxId;
+        private ProctorLog last;
+        private long lastModified;
+        private long size;
+
+        void add(ProctorLog entry) {
+            if (ProctorLogService.WARNING_TYPES.contains(entry.getActionType())) {
+                warnings.merge(entry.getRecordId(), 1L, Long::sum);
+            }
+            if (last != null && ORDER.compare(last, entry) > 0) {
+                timeOrdered = false;
+            }
+            last = entry;
+            maxId = Math.max(maxId, entry.getId());
+        }
+
+        void stamp(Path path) throws IOException {
+            last = null;
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+            size = Files.size(path);
+        }
+
+        boolean matches(Path path) {
+            try {
+                return Files.getLastModifiedTime(path).toMillis() == lastModified && Files.size(path) == size;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
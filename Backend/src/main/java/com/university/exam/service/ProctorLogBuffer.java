@@ -0,0 +1,375 @@
+package com.university.exam.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.university.exam.entity.ProctorLog;
+import com.university.exam.mapper.ProctorLogMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 监考日志写入缓冲
+ * 监考上报（定时抓拍、切屏等）是考试期间 QPS 最高的接口，这里把单条插入改为批量写入：
+ * 1. 请求线程只把日志放入内存队列，立即返回
+ * 2. 后台任务每隔几百毫秒取出队列中的日志，按批次执行多行 INSERT
+ * 3. 落库（取得自增ID）后通知监听方，例如向监考教师推送
+ * 队列已满时退化为在请求线程中直接写入。
+ * 监考日志是作弊判定的依据，写入失败的批次不会丢弃：
+ * 1. 失败的批次按指数退避重试（exam.proctor.write-retry.*），成功后照常通知监听方
+ * 2. 重试耗尽、等待重试的日志过多或服务停止时，写入本地死信文件（{dead-letter-dir}/proctor-log-{日期}.jsonl）
+ * 3. 定时任务把死信文件重新写入数据库；回放中途中断时可能产生重复日志，但不会丢失
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProctorLogBuffer {
+
+    private final ProctorLogMapper proctorLogMapper;
+
+    /**
+     * 队列容量
+     */
+    @Value("${exam.proctor.buffer-capacity:20000}")
+    private int capacity;
+
+    /**
+     * 每批写入的日志数
+     */
+    @Value("${exam.proctor.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /**
+     * 写入失败后的最大重试次数，耗尽后写入死信文件
+     */
+    @Value("${exam.proctor.write-retry.max-attempts:5}")
+    private int maxAttempts;
+
+    /**
+     * 首次重试的等待时间（毫秒），之后逐次翻倍
+     */
+    @Value("${exam.proctor.write-retry.initial-backoff:1000}")
+    private long initialBackoff;
+
+    /**
+     * 重试等待时间上限（毫秒）
+     */
+    @Value("${exam.proctor.write-retry.max-backoff:60000}")
+    private long maxBackoff;
+
+    /**
+     * 死信目录（相对路径基于用户工作目录）
+     */
+    @Value("${exam.proctor.dead-letter.dir:archive/proctor/dead-letter}")
+    private String deadLetterDir;
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private static final String DEAD_LETTER_PREFIX = "proctor-log-";
+    private static final String DEAD_LETTER_SUFFIX = ".jsonl";
+    private static final String REPLAYING_SUFFIX = ".replaying";
+
+    private LinkedBlockingQueue<PendingLog> queue;
+
+    /**
+     * 等待重试的批次
+     */
+    private final Queue<FailedBatch> retries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 等待重试的日志数（超过队列容量时直接写入死信，避免数据库长时间不可用时占满内存）
+     */
+    private final AtomicInteger retryingCount = new AtomicInteger();
+
+    private Path deadLetterPath;
+
+    private final List<Consumer<List<PendingLog>>> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        queue = new LinkedBlockingQueue<>(capacity);
+        deadLetterPath = Paths.get(System.getProperty("user.dir")).resolve(deadLetterDir);
+        Files.createDirectories(deadLetterPath);
+    }
+
+    /**
+     * 注册落库监听（落库后回调，日志已带自增ID）
+     *
+     * @param listener 监听方
+     */
+    public void addListener(Consumer<List<PendingLog>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 放入一条待写入的日志
+     *
+     * @param pending 待写入的日志
+     */
+    public void offer(PendingLog pending) {
+        if (queue.offer(pending)) {
+            return;
+        }
+        log.warn("监考日志缓冲已满，改为直接写入: recordId={}", pending.getEntry().getRecordId());
+        List<PendingLog> batch = List.of(pending);
+        if (!write(batch)) {
+            scheduleRetry(batch, 1);
+        }
+    }
+
+    /**
+     * 定时批量写入（先处理到期的重试批次）
+     */
+    @Scheduled(fixedDelayString = "${exam.proctor.flush-interval:300}")
+    public void flush() {
+        retryDue(false);
+        List<PendingLog> batch = new ArrayList<>(flushBatchSize);
+        while (queue.drainTo(batch, flushBatchSize) > 0) {
+            if (!write(batch)) {
+                scheduleRetry(batch, 1);
+            }
+            batch = new ArrayList<>(flushBatchSize);
+        }
+    }
+
+    /**
+     * 回放死信文件（数据库恢复后补写）
+     */
+    @Scheduled(fixedDelayString = "${exam.proctor.dead-letter.replay-interval:300000}", initialDelay = 60000)
+    public void replayDeadLetters() {
+        List<Path> files = new ArrayList<>();
+        synchronized (this) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(deadLetterPath, DEAD_LETTER_PREFIX + "*")) {
+                for (Path file : stream) {
+                    Path replaying = file;
+                    if (!file.getFileName().toString().endsWith(REPLAYING_SUFFIX)) {
+                        // 改名后新的死信写入新文件，回放期间不会与追加写入冲突
+                        replaying = file.resolveSibling(file.getFileName() + REPLAYING_SUFFIX);
+                        Files.move(file, replaying, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    files.add(replaying);
+                }
+            } catch (IOException e) {
+                log.error("读取监考日志死信目录失败: dir={}", deadLetterPath, e);
+                return;
+            }
+        }
+        for (Path file : files) {
+            replay(file);
+        }
+    }
+
+    /**
+     * 当前队列中的日志数
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 等待重试的日志数
+     */
+    public int retryingCount() {
+        return retryingCount.get();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+        // 停止前仍未写入的日志全部转入死信，下次启动后回放
+        retryDue(true);
+    }
+
+    /**
+     * 写入一批日志，成功后通知监听方
+     *
+     * @return 是否写入成功
+     */
+    private boolean write(List<PendingLog> batch) {
+        List<ProctorLog> entries = new ArrayList<>(batch.size());
+        batch.forEach(p -> entries.add(p.getEntry()));
+        try {
+            proctorLogMapper.insertBatch(entries);
+        } catch (Exception e) {
+            // 多行 INSERT 是单条语句，失败时整批都未写入
+            entries.forEach(entry -> entry.setId(null));
+            log.error("批量写入监考日志失败: size={}, error={}", batch.size(), e.getMessage());
+            return false;
+        }
+        for (Consumer<List<PendingLog>> listener : listeners) {
+            try {
+                listener.accept(batch);
+            } catch (Exception e) {
+                log.error("监考日志落库回调失败", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 安排失败批次重试；重试耗尽或等待重试的日志过多时写入死信
+     */
+    private void scheduleRetry(List<PendingLog> batch, int attempts) {
+        if (attempts >= maxAttempts || retryingCount.get() + batch.size() > capacity) {
+            deadLetter(batch);
+            return;
+        }
+        long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempts - 1, 20));
+        FailedBatch failed = new FailedBatch();
+        failed.setLogs(batch);
+        failed.setAttempts(attempts);
+        failed.setNextAttemptAt(System.currentTimeMillis() + backoff);
+        retryingCount.addAndGet(batch.size());
+        retries.add(failed);
+        log.warn("监考日志写入失败，{} 毫秒后第 {} 次重试: size={}", backoff, attempts, batch.size());
+    }
+
+    /**
+     * 重试到期的批次
+     *
+     * @param shutdown 服务停止中：不再重试，全部写入死信
+     */
+    private void retryDue(boolean shutdown) {
+        long now = System.currentTimeMillis();
+        for (int i = retries.size(); i > 0; i--) {
+            FailedBatch failed = retries.poll();
+            if (failed == null) {
+                break;
+            }
+            if (!shutdown && failed.getNextAttemptAt() > now) {
+                retries.add(failed);
+                continue;
+            }
+            retryingCount.addAndGet(-failed.getLogs().size());
+            if (shutdown) {
+                deadLetter(failed.getLogs());
+            } else if (!write(failed.getLogs())) {
+                scheduleRetry(failed.getLogs(), failed.getAttempts() + 1);
+            }
+        }
+    }
+
+    /**
+     * 追加到当天的死信文件
+     */
+    private synchronized void deadLetter(List<PendingLog> batch) {
+        Path file = deadLetterPath.resolve(DEAD_LETTER_PREFIX
+                + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + DEAD_LETTER_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (PendingLog pending : batch) {
+                writer.write(MAPPER.writeValueAsString(pending));
+                writer.newLine();
+            }
+            log.error("监考日志写入失败，已转入死信文件: size={}, file={}", batch.size(), file);
+        } catch (IOException e) {
+            // 数据库和本地磁盘均不可用，只能记录到错误日志
+            log.error("监考日志丢失（写入死信文件失败）: size={}, logs={}", batch.size(), batch, e);
+        }
+    }
+
+    /**
+     * 回放一个死信文件，写入失败的批次重新进入重试流程
+     */
+    private void replay(Path file) {
+        int total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<PendingLog> batch = new ArrayList<>(flushBatchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(MAPPER.readValue(line, PendingLog.class));
+                if (batch.size() >= flushBatchSize) {
+                    total += replayBatch(batch);
+                    batch = new ArrayList<>(flushBatchSize);
+                }
+            }
+            total += replayBatch(batch);
+        } catch (IOException e) {
+            log.error("回放监考日志死信文件失败，稍后重试: file={}", file, e);
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除已回放的死信文件失败: file={}", file, e);
+        }
+        log.info("监考日志死信回放完成: file={}, size={}", file, total);
+    }
+
+    private int replayBatch(List<PendingLog> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        if (!write(batch)) {
+            scheduleRetry(batch, 1);
+        }
+        return batch.size();
+    }
+
+    /**
+     * 写入失败等待重试的批次
+     */
+    @Data
+    private static class FailedBatch {
+        private List<PendingLog> logs;
+        private int attempts;
+        private long nextAttemptAt;
+    }
+
+    /**
+     * 待写入的日志及其上下文
+     */
+    @Data
+    public static class PendingLog {
+        private ProctorLog entry;
+        private Long publishId;
+        private Long studentId;
+        /**
+         * 本条日志计入后的警告次数（非警告类日志不读取计数，为 0）
+         */
+        private long warningCount;
+        /**
+         * 抓拍缩略图地址（上传抓拍时确定，推送时不再检查文件）
+         */
+        private String imgThumb;
+    }
+}
@@ -4,8 +4,10 @@ import com.university.exam.common.dto.student.ProctorLogDto;
 import com.university.exam.entity.ProctorLog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>
@@ -17,6 +19,11 @@ import java.util.Map;
  */
 public interface ProctorLogService extends IService<ProctorLog> {
 
+    /**
+     * 计为警告的日志类型
+     */
+    Set<String> WARNING_TYPES = Set.of("switch_screen", "leave_page", "env_abnormal");
+
     /**
      * 处理考生上报的监考日志
      * @param dto 日志数据
@@ -25,12 +32,25 @@ public interface ProctorLogService extends IService<ProctorLog> {
     void handleProctorLog(ProctorLogDto dto, Long userId);
 
     /**
-     * 获取指定考试的监考日志列表
+     * 获取指定考试最新的监考日志列表（条数上限由 exam.proctor.list-limit 控制，更早的日志使用分页接口）
      * @param publishId 考试发布ID
-     * @return 监考日志列表
+     * @return 监考日志列表（按发生时间倒序）
      */
     List<Map<String, Object>> getProctorLogsByPublishId(Long publishId);
 
+    /**
+     * 分页获取指定考试的监考日志（按发生时间倒序，基于上一页最后一条续查）
+     * @param publishId 考试发布ID
+     * @param recordId 只查询指定考试记录（可为空）
+     * @param warningOnly 是否只返回警告类日志
+     * @param beforeTime 上一页最后一条的发生时间（首页为空）
+     * @param beforeId 上一页最后一条的日志ID
+     * @param size 每页条数
+     * @return list、hasMore、nextBeforeTime、nextBeforeId，以及查询前的事件流游标 cursor
+     */
+    Map<String, Object> getProctorLogPage(Long publishId, Long recordId, boolean warningOnly,
+                                          LocalDateTime beforeTime, Long beforeId, int size);
+
     /**
      * 获取指定考试的考生状态列表
      * @param publishId 考试发布ID
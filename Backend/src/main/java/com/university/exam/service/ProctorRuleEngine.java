@@ -0,0 +1,414 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.json.JSONUtil;
+import com.university.exam.common.dto.ProctorRuleDto;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.schedule.ExamDeadlineScheduler;
+import com.university.exam.websocket.ExamWebSocketHandler;
+import com.university.exam.websocket.ProctorWebSocketHandler;
+import com.university.exam.websocket.WebSocketMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监考规则引擎
+ * 按考试记录在内存中维护各类监考事件的滑动时间窗口，事件到达时逐条规则判断是否触发，并按动作逐级处理：
+ * WARN 提醒考生 -> ALERT 通知监考教师 -> FORCE_SUBMIT 强制交卷。
+ * 1. 每种事件类型保存最近 N 次发生时间的环形数组（N 为该类型规则的最大阈值），
+ *    "W 秒内发生 N 次" 只需比较倒数第 N 次的时间，单个事件的判断与历史事件数无关
+ * 2. away_time 规则统计离开考试页面的累计时长：切屏/离开页面时开始计时，return_page 时累加
+ * 3. 规则按场次配置（Redis exam:proctor:rules:{publishId}），未配置时使用 exam.proctor.rules.defaults（默认不含强制交卷）
+ * 4. 强制交卷先通知考生端交卷，同时登记到自动收卷时间轮，客户端未响应时由服务端按草稿收卷
+ * 状态只保存在处理事件的节点上，多节点部署时考生通过考试 WebSocket 连接上报，同一记录的事件落在同一节点。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProctorRuleEngine {
+
+    /**
+     * 场次规则在Redis中的前缀
+     */
+    private static final String RULES_PREFIX = "exam:proctor:rules:";
+
+    public static final String AWAY_TIME = "away_time";
+    public static final String RETURN_PAGE = "return_page";
+
+    /**
+     * 计入离开页面时长的事件
+     */
+    private static final Set<String> AWAY_TYPES = Set.of("switch_screen", "leave_page");
+
+    /**
+     * 单个事件类型环形数组的最大长度（限制带窗口规则的次数阈值）
+     */
+    private static final int MAX_WINDOW_THRESHOLD = 100;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExamWebSocketHandler examWebSocketHandler;
+    private final ProctorWebSocketHandler proctorWebSocketHandler;
+    private final ExamDeadlineScheduler examDeadlineScheduler;
+
+    /**
+     * 是否启用监考规则
+     */
+    @Value("${exam.proctor.rules.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 默认规则，格式：类型:阈值/窗口秒数:动作，多条以逗号分隔
+     * 默认只提醒考生和通知教师，强制交卷需由教师按场次配置
+     */
+    @Value("${exam.proctor.rules.defaults:switch_screen:3/120:WARN,switch_screen:5/600:ALERT,away_time:300/0:ALERT}")
+    private String defaultRulesSpec;
+
+    /**
+     * 场次规则本地缓存时间（秒），其它节点修改规则后最迟在此时间后生效
+     */
+    @Value("${exam.proctor.rules.cache-ttl:60}")
+    private long rulesCacheTtl;
+
+    /**
+     * 考试记录状态的保留时间（秒，按最后一次事件计算），需大于最长考试时长
+     */
+    @Value("${exam.proctor.rules.state-ttl:21600}")
+    private long stateTtl;
+
+    private CompiledRules defaultRules;
+    private TimedCache<Long, CompiledRules> rulesCache;
+    private TimedCache<Long, RecordState> stateCache;
+
+    @PostConstruct
+    public void init() {
+        defaultRules = compile(parseSpec(defaultRulesSpec));
+        rulesCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(rulesCacheTtl));
+        rulesCache.schedulePrune(TimeUnit.SECONDS.toMillis(rulesCacheTtl));
+        stateCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(stateTtl));
+        stateCache.schedulePrune(TimeUnit.MINUTES.toMillis(5));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rulesCache.cancelPruneSchedule();
+        stateCache.cancelPruneSchedule();
+    }
+
+    /**
+     * 处理一条监考事件
+     *
+     * @param meta       考试记录元数据
+     * @param actionType 事件类型
+     * @param now        发生时间（毫秒时间戳）
+     */
+    public void onEvent(ExamRecordCacheService.RecordMeta meta, String actionType, long now) {
+        if (!enabled) {
+            return;
+        }
+        CompiledRules rules = getCompiledRules(meta.getPublishId());
+        if (rules.rules.isEmpty()) {
+            return;
+        }
+        RecordState state = stateCache.get(meta.getRecordId(), true, () -> new RecordState(rules));
+
+        List<Fired> fired = new ArrayList<>(2);
+        synchronized (state) {
+            if (state.rules != rules) {
+                state.reset(rules);
+            }
+            if (state.forced) {
+                return;
+            }
+            EventWindow window = state.windows.get(actionType);
+            if (window != null) {
+                window.add(now);
+                for (int index : rules.byType.getOrDefault(actionType, EMPTY)) {
+                    ProctorRuleDto rule = rules.rules.get(index);
+                    if (window.reached(rule.getThreshold(), rule.getWindowSeconds() * 1000L, now)) {
+                        state.tryFire(index, rule, now, window.total, fired);
+                    }
+                }
+            }
+
+            // 离开页面累计时长
+            if (AWAY_TYPES.contains(actionType)) {
+                if (state.awaySince == 0) {
+                    state.awaySince = now;
+                }
+            } else if (RETURN_PAGE.equals(actionType) && state.awaySince > 0) {
+                state.awayMillis += now - state.awaySince;
+                state.awaySince = 0;
+                long awaySeconds = state.awayMillis / 1000;
+                for (int index : rules.byType.getOrDefault(AWAY_TIME, EMPTY)) {
+                    ProctorRuleDto rule = rules.rules.get(index);
+                    if (awaySeconds >= rule.getThreshold()) {
+                        state.tryFire(index, rule, now, awaySeconds, fired);
+                    }
+                }
+            }
+        }
+
+        for (Fired f : fired) {
+            execute(meta, f.rule, f.observed);
+        }
+    }
+
+    /**
+     * 获取场次规则
+     */
+    public List<ProctorRuleDto> getRules(Long publishId) {
+        return getCompiledRules(publishId).rules;
+    }
+
+    /**
+     * 保存场次规则
+     *
+     * @param publishId 考试发布ID
+     * @param rules     规则列表（为空表示该场次不启用规则）
+     */
+    public void saveRules(Long publishId, List<ProctorRuleDto> rules) {
+        CompiledRules compiled = compile(rules);
+        stringRedisTemplate.opsForValue().set(RULES_PREFIX + publishId, JSONUtil.toJsonStr(rules));
+        rulesCache.put(publishId, compiled);
+    }
+
+    /**
+     * 恢复场次为默认规则
+     */
+    public void resetRules(Long publishId) {
+        stringRedisTemplate.delete(RULES_PREFIX + publishId);
+        rulesCache.remove(publishId);
+    }
+
+    private CompiledRules getCompiledRules(Long publishId) {
+        return rulesCache.get(publishId, false, () -> {
+            String json = stringRedisTemplate.opsForValue().get(RULES_PREFIX + publishId);
+            if (!StringUtils.hasText(json)) {
+                return defaultRules;
+            }
+            try {
+                return compile(JSONUtil.toList(json, ProctorRuleDto.class));
+            } catch (Exception e) {
+                log.warn("场次监考规则无效，使用默认规则: publishId={}, error={}", publishId, e.getMessage());
+                return defaultRules;
+            }
+        });
+    }
+
+    private void execute(ExamRecordCacheService.RecordMeta meta, ProctorRuleDto rule, long observed) {
+        Long recordId = meta.getRecordId();
+        String reason = StringUtils.hasText(rule.getMessage()) ? rule.getMessage() : describe(rule, observed);
+        log.info("触发监考规则: recordId={}, rule={}:{}/{}:{}, observed={}", recordId,
+                rule.getActionType(), rule.getThreshold(), rule.getWindowSeconds(), rule.getAction(), observed);
+
+        Map<String, Object> command = new HashMap<>();
+        command.put("recordId", recordId);
+        command.put("ruleType", rule.getActionType());
+        command.put("reason", reason);
+
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("recordId", recordId);
+        alert.put("studentId", meta.getUserId());
+        alert.put("ruleType", rule.getActionType());
+        alert.put("action", rule.getAction());
+        alert.put("observed", observed);
+        alert.put("reason", reason);
+        alert.put("time", System.currentTimeMillis());
+
+        switch (rule.getAction()) {
+            case "WARN" -> {
+                command.put("command", "warn");
+                examWebSocketHandler.sendToRecord(recordId, WebSocketMessage.proctorCommand(command));
+            }
+            case "ALERT" -> proctorWebSocketHandler.broadcastToProctors(meta.getPublishId(),
+                    WebSocketMessage.proctorAlert(alert));
+            case "FORCE_SUBMIT" -> {
+                command.put("command", "force_submit");
+                examWebSocketHandler.sendToRecord(recordId, WebSocketMessage.proctorCommand(command));
+                proctorWebSocketHandler.broadcastToProctors(meta.getPublishId(), WebSocketMessage.proctorAlert(alert));
+                // 客户端未在宽限期内交卷时由服务端按已保存的草稿收卷
+                examDeadlineScheduler.track(recordId, System.currentTimeMillis());
+            }
+            default -> log.warn("未知的监考规则动作: {}", rule.getAction());
+        }
+    }
+
+    private static String describe(ProctorRuleDto rule, long observed) {
+        if (AWAY_TIME.equals(rule.getActionType())) {
+            return "累计离开考试页面 " + observed + " 秒";
+        }
+        String scope = rule.getWindowSeconds() > 0 ? rule.getWindowSeconds() + " 秒内" : "本场考试";
+        String prefix = switch (rule.getActionType()) {
+            case "switch_screen" -> "切屏";
+            case "leave_page" -> "离开页面";
+            case "env_abnormal" -> "环境异常";
+            default -> rule.getActionType();
+        };
+        return scope + prefix + "已达 " + rule.getThreshold() + " 次";
+    }
+
+    private static List<ProctorRuleDto> parseSpec(String spec) {
+        List<ProctorRuleDto> rules = new ArrayList<>();
+        if (!StringUtils.hasText(spec)) {
+            return rules;
+        }
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split("[:/]");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("监考规则格式错误: " + item);
+            }
+            ProctorRuleDto rule = new ProctorRuleDto();
+            rule.setActionType(parts[0]);
+            rule.setThreshold(Integer.parseInt(parts[1]));
+            rule.setWindowSeconds(Integer.parseInt(parts[2]));
+            rule.setAction(parts[3]);
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static CompiledRules compile(List<ProctorRuleDto> rules) {
+        CompiledRules compiled = new CompiledRules();
+        compiled.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        Map<String, List<Integer>> byType = new HashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            ProctorRuleDto rule = rules.get(i);
+            if (AWAY_TIME.equals(rule.getActionType())) {
+                if (rule.getWindowSeconds() != 0) {
+                    throw new BizException(400, "离开时长规则只支持整场累计（windowSeconds=0）");
+                }
+            } else if (rule.getWindowSeconds() > 0) {
+                if (rule.getThreshold() > MAX_WINDOW_THRESHOLD) {
+                    throw new BizException(400, "带时间窗口的规则阈值不能超过" + MAX_WINDOW_THRESHOLD);
+                }
+                compiled.capacity.merge(rule.getActionType(), rule.getThreshold(), Math::max);
+            } else {
+                compiled.capacity.putIfAbsent(rule.getActionType(), 1);
+            }
+            byType.computeIfAbsent(rule.getActionType(), k -> new ArrayList<>()).add(i);
+        }
+        byType.forEach((type, indexes) ->
+                compiled.byType.put(type, indexes.stream().mapToInt(Integer::intValue).toArray()));
+        return compiled;
+    }
+
+    /**
+     * 预处理后的场次规则
+     */
+    private static class CompiledRules {
+        List<ProctorRuleDto> rules;
+        /**
+         * 事件类型 -> 相关规则下标
+         */
+        final Map<String, int[]> byType = new HashMap<>();
+        /**
+         * 事件类型 -> 环形数组长度
+         */
+        final Map<String, Integer> capacity = new HashMap<>();
+    }
+
+    /**
+     * 单条考试记录的规则状态
+     */
+    private static class RecordState {
+        CompiledRules rules;
+        final Map<String, EventWindow> windows = new HashMap<>();
+        /**
+         * 每条规则最近一次触发时间
+         */
+        long[] lastFired;
+        long awaySince;
+        long awayMillis;
+        boolean forced;
+
+        RecordState(CompiledRules rules) {
+            reset(rules);
+        }
+
+        void reset(CompiledRules newRules) {
+            rules = newRules;
+            windows.clear();
+            newRules.capacity.forEach((type, capacity) -> windows.put(type, new EventWindow(capacity)));
+            lastFired = new long[newRules.rules.size()];
+        }
+
+        /**
+         * 带窗口的规则在一个窗口内只触发一次，整场累计的规则只触发一次
+         */
+        void tryFire(int index, ProctorRuleDto rule, long now, long observed, List<Fired> fired) {
+            long last = lastFired[index];
+            long windowMillis = rule.getWindowSeconds() * 1000L;
+            if (last != 0 && (windowMillis == 0 || now - last < windowMillis)) {
+                return;
+            }
+            lastFired[index] = now;
+            if ("FORCE_SUBMIT".equals(rule.getAction())) {
+                forced = true;
+            }
+            fired.add(new Fired(rule, observed));
+        }
+    }
+
+    /**
+     * 最近 N 次事件时间的环形数组
+     */
+    private static class EventWindow {
+        final long[] times;
+        int next;
+        long total;
+
+        EventWindow(int capacity) {
+            times = new long[capacity];
+        }
+
+        void add(long time) {
+            times[next] = time;
+            next = (next + 1) % times.length;
+            total++;
+        }
+
+        /**
+         * 最近 windowMillis 内是否已发生 threshold 次（windowMillis 为 0 时按累计次数判断）
+         */
+        boolean reached(int threshold, long windowMillis, long now) {
+            if (total < threshold) {
+                return false;
+            }
+            if (windowMillis == 0) {
+                return true;
+            }
+            int index = Math.floorMod(next - threshold, times.length);
+            return now - times[index] <= windowMillis;
+        }
+    }
+
+    private static class Fired {
+        final ProctorRuleDto rule;
+        final long observed;
+
+        Fired(ProctorRuleDto rule, long observed) {
+            this.rule = rule;
+            this.observed = observed;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.university.exam.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import com.university.exam.common.vo.ProctorStudentStatusVo;
+import com.university.exam.mapper.ProctorLogMapper;
+import com.university.exam.websocket.ProctorWebSocketHandler;
+import com.university.exam.websocket.WebSocketMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监考台考生状态投影
+ * 教师端会轮询考生状态列表，这里按考试场次缓存一份投影（recordId -> 考生状态）：
+ * 1. 首次读取时用一条聚合查询加载整场考试（记录 + 考生姓名 + 分组统计的警告次数）
+ * 2. 监考日志落库后增量更新警告次数；开考、交卷、批改等状态变化时只重新加载对应的一条记录
+ * 3. 投影按加载时间过期（不随访问续期），多节点部署时其它节点上报的日志最迟在一个过期周期后可见
+ * 4. 状态变化同时写入监考事件流（{@link ProctorFeedService}），监考台按游标增量同步
+ * 5. 本节点没有投影且近期没有监考台读取的场次，记录变化时不查询也不写事件流（监考台打开时会重新加载全量状态）
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProctorStatusService {
+
+    private final ProctorLogMapper proctorLogMapper;
+    private final ProctorLogBuffer proctorLogBuffer;
+    private final ProctorLogArchiveService proctorLogArchiveService;
+    private final ProctorFeedService proctorFeedService;
+    private final ProctorWebSocketHandler proctorWebSocketHandler;
+
+    /**
+     * 投影过期时间（秒）
+     */
+    @Value("${exam.proctor.status-ttl:30}")
+    private long statusTtl;
+
+    private TimedCache<Long, Map<Long, ProctorStudentStatusVo>> projectionCache;
+
+    @PostConstruct
+    public void init() {
+        projectionCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(statusTtl));
+        projectionCache.schedulePrune(TimeUnit.SECONDS.toMillis(statusTtl));
+        proctorLogBuffer.addListener(this::onLogsFlushed);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        projectionCache.cancelPruneSchedule();
+    }
+
+    /**
+     * 获取考试场次的考生状态
+     *
+     * @param publishId 考试发布ID
+     * @return 考生状态（按记录ID排序）
+     */
+    public List<ProctorStudentStatusVo> getStudents(Long publishId) {
+        proctorFeedService.touch(publishId);
+        Map<Long, ProctorStudentStatusVo> projection = projectionCache.get(publishId, false, () -> load(publishId));
+        List<ProctorStudentStatusVo> result = new ArrayList<>(projection.values());
+        result.sort(Comparator.comparing(ProctorStudentStatusVo::getRecordId));
+        return result;
+    }
+
+    /**
+     * 考试记录发生变化（开考、交卷、批改），重新加载该记录（若在事务中则延迟到事务提交后执行）
+     *
+     * @param publishId 考试发布ID
+     * @param recordId  考试记录ID
+     */
+    public void onRecordChanged(Long publishId, Long recordId) {
+        if (publishId == null || recordId == null) {
+            return;
+        }
+        Runnable action = () -> refreshRecord(publishId, recordId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 监考日志落库后更新警告次数
+     */
+    private void onLogsFlushed(List<ProctorLogBuffer.PendingLog> batch) {
+        for (ProctorLogBuffer.PendingLog pending : batch) {
+            Map<Long, ProctorStudentStatusVo> projection = projectionCache.get(pending.getPublishId(), false);
+            if (projection == null) continue;
+            ProctorStudentStatusVo status = projection.get(pending.getEntry().getRecordId());
+            if (status == null) {
+                // 投影加载后才开考的记录
+                refreshRecord(pending.getPublishId(), pending.getEntry().getRecordId());
+                continue;
+            }
+            long current = status.getWarningCount() != null ? status.getWarningCount() : 0L;
+            status.setWarningCount(Math.max(current, pending.getWarningCount()));
+        }
+    }
+
+    private void refreshRecord(Long publishId, Long recordId) {
+        Map<Long, ProctorStudentStatusVo> projection = projectionCache.get(publishId, false);
+        if (projection == null && !proctorFeedService.isWatched(publishId)) {
+            return;
+        }
+        try {
+            List<ProctorStudentStatusVo> rows = proctorLogMapper.selectStudentStatus(publishId, recordId);
+            if (rows.isEmpty()) {
+                if (projection != null) {
+                    projection.remove(recordId);
+                }
+                return;
+            }
+            if (projection != null) {
+                projection.put(recordId, rows.get(0));
+            }
+            publishStatus(publishId, rows.get(0));
+        } catch (Exception e) {
+            log.warn("刷新监考状态失败，移除投影: publishId={}, recordId={}, error={}", publishId, recordId, e.getMessage());
+            projectionCache.remove(publishId);
+        }
+    }
+
+    /**
+     * 考生状态变化写入监考事件流并推送给监考教师
+     */
+    private void publishStatus(Long publishId, ProctorStudentStatusVo row) {
+        Map<String, Object> item = toStatusItem(row);
+        proctorFeedService.append(publishId, ProctorFeedService.TYPE_STATUS, List.of(item));
+        proctorWebSocketHandler.broadcastToProctors(publishId, WebSocketMessage.studentStatus(item));
+    }
+
+    /**
+     * 转换为监考台使用的考生状态数据
+     */
+    public static Map<String, Object> toStatusItem(ProctorStudentStatusVo student) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("recordId", student.getRecordId());
+        item.put("studentId", student.getStudentId());
+        item.put("studentName", student.getStudentName() != null ? student.getStudentName() : "未知");
+        item.put("status", student.getStatus());
+        item.put("statusLabel", getStatusLabel(student.getStatus()));
+        item.put("startTime", student.getStartTime());
+        item.put("submitTime", student.getSubmitTime());
+        item.put("warningCount", student.getWarningCount() != null ? student.getWarningCount() : 0L);
+        item.put("userIp", student.getUserIp());
+        return item;
+    }
+
+    private static String getStatusLabel(Byte status) {
+        if (status == null) return "未知";
+        return switch (status) {
+            case 0 -> "未开始";
+            case 1 -> "进行中";
+            case 2 -> "已交卷";
+            case 3 -> "已批卷";
+            default -> "未知";
+        };
+    }
+
+    private Map<Long, ProctorStudentStatusVo> load(Long publishId) {
+        Map<Long, ProctorStudentStatusVo> projection = new ConcurrentHashMap<>();
+        proctorLogMapper.selectStudentStatus(publishId, null)
+                .forEach(row -> projection.put(row.getRecordId(), row));
+        if (proctorLogArchiveService.isArchived(publishId)) {
+            // 已归档场次的日志不在热表中，警告次数从归档文件统计
+            Map<Long, Long> warnings = proctorLogArchiveService.countWarnings(publishId);
+            projection.values().forEach(row -> row.setWarningCount(warnings.getOrDefault(row.getRecordId(), 0L)));
+        }
+        return projection;
+    }
+}
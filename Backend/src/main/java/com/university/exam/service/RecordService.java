@@ -2,11 +2,15 @@ package com.university.exam.service;
 
 import com.university.exam.common.dto.student.DashboardStatsVo;
 import com.university.exam.common.dto.student.ExamPaperVo;
+import com.university.exam.common.dto.student.QueuedSubmission;
 import com.university.exam.common.dto.student.SubmitExamRequest;
 import com.university.exam.common.vo.StudentExamResultVo;
 import com.university.exam.entity.Record;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  * 考试记录表 服务类
@@ -34,6 +38,14 @@ public interface RecordService extends IService<Record> {
      */
     void submitExam(SubmitExamRequest request, Long userId);
 
+    /**
+     * 批量交卷（异步交卷队列使用），在一个事务内完成判分并批量写入明细和错题
+     *
+     * @param submissions 排队中的交卷请求
+     * @return 未通过校验、未被处理的记录：recordId -> 原因
+     */
+    Map<Long, String> submitExamBatch(List<QueuedSubmission> submissions);
+
     /**
      * 获取学生仪表盘统计
      *
@@ -0,0 +1,387 @@
+package com.university.exam.service;
+
+import com.university.exam.common.exception.BizException;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 监考抓拍存储服务
+ * 1. 上传内容经 NIO 通道直接写入磁盘临时文件，写入的同时计算 SHA-256，不在内存中缓存整张图片
+ * 2. 按内容哈希存放：snapshots/{hash[0:2]}/{hash[2:4]}/{hash}.{ext}，相同画面只保存一份
+ * 3. 缩略图由独立线程池异步生成（{hash}_thumb.jpg），监考台默认加载缩略图，预览时再加载原图；
+ *    线程池已满未能生成缩略图时，上传结果不返回缩略图地址，日志列表回退为原图地址
+ * 4. 解码前先从文件头读取像素尺寸，超过 exam.snapshot.max-pixels 的图片拒绝上传、不生成缩略图；
+ *    生成缩略图时按目标宽度隔行隔列抽样解码，不在内存中展开整张原图（防止小文件解压出超大图片）
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+public class SnapshotStorageService {
+
+    private static final String SNAPSHOT_DIR = "snapshots";
+    private static final String THUMB_SUFFIX = "_thumb.jpg";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEAD_SIZE = 12;
+
+    private final Executor thumbnailExecutor;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${file.base-url:http://localhost:8080}")
+    private String baseUrl;
+
+    /**
+     * 单张抓拍大小上限（字节）
+     */
+    @Value("${exam.snapshot.max-size:2097152}")
+    private long maxSize;
+
+    /**
+     * 缩略图宽度（像素）
+     */
+    @Value("${exam.snapshot.thumb-width:240}")
+    private int thumbWidth;
+
+    /**
+     * 单张抓拍的像素数上限（宽 x 高）
+     */
+    @Value("${exam.snapshot.max-pixels:16777216}")
+    private long maxPixels;
+
+    private Path rootPath;
+    private Path tmpPath;
+
+    public SnapshotStorageService(@Qualifier("snapshotThumbnailExecutor") Executor thumbnailExecutor) {
+        this.thumbnailExecutor = thumbnailExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // 与 FileController、WebMvcConfig 一致，基于用户工作目录
+        rootPath = Paths.get(System.getProperty("user.dir"), uploadDir, SNAPSHOT_DIR);
+        tmpPath = rootPath.resolve("tmp");
+        Files.createDirectories(tmpPath);
+    }
+
+    /**
+     * 保存抓拍图片
+     *
+     * @param file 上传文件
+     * @return 存储结果（原图和缩略图访问URL）
+     */
+    public StoredSnapshot store(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new BizException(400, "请选择要上传的文件");
+        }
+        if (file.getSize() > maxSize) {
+            throw new BizException(400, "抓拍图片大小不能超过" + maxSize / 1024 + "KB");
+        }
+
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(tmpPath, "upload-", ".part");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] head = new byte[HEAD_SIZE];
+            int headLength = 0;
+            long size = 0;
+
+            try (InputStream in = file.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > maxSize) {
+                        throw new BizException(400, "抓拍图片大小不能超过" + maxSize / 1024 + "KB");
+                    }
+                    if (headLength < HEAD_SIZE) {
+                        int n = Math.min(HEAD_SIZE - headLength, buffer.remaining());
+                        buffer.duplicate().get(head, headLength, n);
+                        headLength += n;
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            // 按文件头识别格式，不信任客户端提供的 Content-Type 和文件名
+            String extension = detectExtension(head, headLength);
+            if (extension == null) {
+                throw new BizException(400, "只能上传 JPG、PNG 或 WebP 格式的图片");
+            }
+
+            boolean webp = "webp".equals(extension);
+            if (!webp) {
+                checkPixels(tmp);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String relativeDir = hash.substring(0, 2) + "/" + hash.substring(2, 4);
+            Path dir = rootPath.resolve(relativeDir);
+            Files.createDirectories(dir);
+            Path original = dir.resolve(hash + "." + extension);
+
+            boolean deduplicated = Files.exists(original);
+            if (!deduplicated) {
+                try {
+                    Files.move(tmp, original, StandardCopyOption.ATOMIC_MOVE);
+                    tmp = null;
+                } catch (FileAlreadyExistsException e) {
+                    // 并发上传了相同内容
+                    deduplicated = true;
+                }
+            }
+
+            Path thumb = dir.resolve(hash + THUMB_SUFFIX);
+            boolean thumbReady = !webp && (Files.exists(thumb) || submitThumbnail(original, thumb));
+
+            String urlPrefix = baseUrl + "/uploads/" + SNAPSHOT_DIR + "/" + relativeDir + "/" + hash;
+            StoredSnapshot result = new StoredSnapshot();
+            result.setHash(hash);
+            result.setUrl(urlPrefix + "." + extension);
+            result.setThumbUrl(webp ? result.getUrl() : thumbReady ? urlPrefix + THUMB_SUFFIX : null);
+            result.setSize(size);
+            result.setDeduplicated(deduplicated);
+            return result;
+
+        } catch (IOException e) {
+            throw new BizException(500, "抓拍上传失败：" + e.getMessage());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("删除抓拍临时文件失败: {}", tmp);
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据原图URL推导缩略图URL
+     *
+     * @param url 原图URL
+     * @return 缩略图URL；非抓拍存储的图片（如历史数据）或缩略图未生成时返回原URL
+     */
+    public String thumbUrlOf(String url) {
+        String thumbUrl = expectedThumbUrl(url);
+        if (thumbUrl == null) {
+            return url;
+        }
+        String marker = "/" + SNAPSHOT_DIR + "/";
+        String relative = thumbUrl.substring(thumbUrl.indexOf(marker) + marker.length());
+        Path thumb = rootPath.resolve(relative).normalize();
+        if (!thumb.startsWith(rootPath) || !Files.exists(thumb)) {
+            return url;
+        }
+        return thumbUrl;
+    }
+
+    /**
+     * 按命名规则推导缩略图URL（只做字符串处理，不检查文件是否存在）
+     *
+     * @param url 原图URL
+     * @return 缩略图URL；非抓拍存储的图片或 WebP 原图返回 null
+     */
+    public String expectedThumbUrl(String url) {
+        String marker = "/" + SNAPSHOT_DIR + "/";
+        int start = url != null ? url.indexOf(marker) : -1;
+        if (start < 0) {
+            return null;
+        }
+        int dot = url.lastIndexOf('.');
+        if (dot < start || url.endsWith(".webp")) {
+            return null;
+        }
+        return url.substring(0, dot) + THUMB_SUFFIX;
+    }
+
+    /**
+     * 提交缩略图任务
+     *
+     * @return 是否已提交（队列已满时返回 false）
+     */
+    private boolean submitThumbnail(Path original, Path thumb) {
+        try {
+            thumbnailExecutor.execute(() -> generateThumbnail(original, thumb));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // 队列已满时不生成缩略图，监考台会回退显示原图
+            log.warn("缩略图任务队列已满，跳过: {}", original.getFileName());
+            return false;
+        }
+    }
+
+    private void generateThumbnail(Path original, Path thumb) {
+        if (Files.exists(thumb)) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            BufferedImage source = readForThumbnail(original);
+            if (source == null) {
+                return;
+            }
+            int width = Math.min(thumbWidth, source.getWidth());
+            int height = Math.max(1, (int) ((long) source.getHeight() * width / source.getWidth()));
+
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+
+            // 先写临时文件再原子替换，避免浏览器读到写了一半的缩略图
+            tmp = Files.createTempFile(tmpPath, "thumb-", ".jpg");
+            ImageIO.write(scaled, "jpg", tmp.toFile());
+            Files.move(tmp, thumb, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+        } catch (Exception e) {
+            log.warn("生成缩略图失败: {}, error={}", original.getFileName(), e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // 临时文件清理失败不影响结果
+                }
+            }
+        }
+    }
+
+    /**
+     * 只读取文件头中的像素尺寸，超过上限时拒绝上传；无法识别的图片交给缩略图任务跳过
+     */
+    private void checkPixels(Path image) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(image.toFile())) {
+            ImageReader reader = openReader(in);
+            if (reader == null) {
+                return;
+            }
+            try {
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new BizException(400, "抓拍图片分辨率过大");
+                }
+            } catch (IOException e) {
+                log.warn("读取抓拍图片尺寸失败: {}, error={}", image.getFileName(), e.getMessage());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按缩略图宽度抽样解码：先读尺寸，超过像素上限时不解码
+     *
+     * @return 抽样后的图片；无法解析或尺寸超限时返回 null
+     */
+    private BufferedImage readForThumbnail(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            ImageReader reader = openReader(in);
+            if (reader == null) {
+                log.warn("无法解析抓拍图片，跳过缩略图: {}", original.getFileName());
+                return null;
+            }
+            try {
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("抓拍图片分辨率过大，跳过缩略图: {}, {}x{}", original.getFileName(), width, height);
+                    return null;
+                }
+                // 抽样后宽度仍不小于缩略图宽度
+                int step = Math.max(1, width / thumbWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader openReader(ImageInputStream in) {
+        if (in == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    private static String detectExtension(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return "png";
+        }
+        if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
+    /**
+     * 抓拍存储结果
+     */
+    @Data
+    public static class StoredSnapshot {
+        private String hash;
+        private String url;
+        private String thumbUrl;
+        private long size;
+        /**
+         * 是否与已存在的图片内容相同（未重复写入）
+         */
+        private boolean deduplicated;
+    }
+}
@@ -0,0 +1,393 @@
+package com.university.exam.service;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import com.university.exam.common.dto.student.QueuedSubmission;
+import com.university.exam.common.dto.student.SubmitExamRequest;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.entity.Record;
+import com.university.exam.mapper.RecordMapper;
+import com.university.exam.schedule.ExamDeadlineScheduler;
+import com.university.exam.websocket.WebSocketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步交卷队列服务
+ * 交卷高峰集中在考试结束前一分钟，同步交卷会在请求线程内完成判分、明细写入、错题更新。
+ * 异步模式下：
+ * 1. 交卷请求写入 Redis Stream（持久化，进程崩溃不丢失）后立即返回回执ID
+ * 2. 调度线程按批次从消费组拉取消息，交给判分线程池，每批在一个事务内批量写入
+ * 3. 批次失败时逐条重试，定位出问题的答卷；长时间未确认的消息由回收任务重新认领
+ * 4. 处理结果写入回执并通过 WebSocket 推送给考生
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubmissionQueueService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RecordService recordService;
+    private final RecordMapper recordMapper;
+    private final ExamRecordCacheService examRecordCacheService;
+    private final WebSocketService webSocketService;
+    private final ThreadPoolExecutor gradingExecutor;
+    private final ExamDeadlineScheduler examDeadlineScheduler;
+
+    /**
+     * 交卷队列 Stream
+     */
+    private static final String STREAM_KEY = "exam:submit:stream";
+
+    /**
+     * 判分消费组
+     */
+    private static final String GROUP = "graders";
+
+    /**
+     * 交卷回执前缀
+     */
+    private static final String RECEIPT_PREFIX = "exam:submit:receipt:";
+
+    /**
+     * 记录 -> 回执映射前缀（防止重复入队；自动收卷时也占用该键）
+     */
+    public static final String RECORD_RECEIPT_PREFIX = "exam:submit:record:";
+
+    /**
+     * 自动收卷占用交卷键时写入的值前缀
+     */
+    public static final String SEAL_MARK_PREFIX = "seal:";
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+    /**
+     * 记录已通过其他途径（同步交卷、自动收卷）提交，本次排队的答卷未生效
+     */
+    public static final String STATUS_CONFLICT = "CONFLICT";
+
+    /**
+     * 每批处理的交卷数
+     */
+    @Value("${exam.submit.batch-size:20}")
+    private int batchSize;
+
+    /**
+     * 每轮调度最多拉取的批次数
+     */
+    @Value("${exam.submit.max-batches-per-poll:4}")
+    private int maxBatchesPerPoll;
+
+    /**
+     * 消息超过该时间（秒）未确认则视为处理节点失效，重新认领
+     */
+    @Value("${exam.submit.claim-idle-seconds:60}")
+    private long claimIdleSeconds;
+
+    /**
+     * 回执保留时间（秒）
+     */
+    @Value("${exam.submit.receipt-ttl:86400}")
+    private long receiptTtl;
+
+    /**
+     * 入队脚本：KEYS = [交卷键, 回执键, 队列]，ARGV = [回执ID, 回执保留秒数, 记录ID, 考生ID, 入队时间, 交卷内容]
+     * 交卷键已存在时返回其值（已有回执或收卷占用），否则先写入队列再占用交卷键、写回执，返回空串
+     */
+    private static final RedisScript<String> ENQUEUE_SCRIPT = new DefaultRedisScript<>(
+            "local existing = redis.call('GET', KEYS[1]) "
+                    + "if existing then return existing end "
+                    + "redis.call('XADD', KEYS[3], '*', 'receiptId', ARGV[1], 'userId', ARGV[4], "
+                    + "'payload', ARGV[6], 'enqueueTime', ARGV[5]) "
+                    + "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "redis.call('HSET', KEYS[2], 'status', 'QUEUED', 'recordId', ARGV[3], 'userId', ARGV[4], "
+                    + "'enqueueTime', ARGV[5]) "
+                    + "redis.call('EXPIRE', KEYS[2], ARGV[2]) "
+                    + "return ''", String.class);
+
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile boolean groupReady = false;
+
+    /**
+     * 提交交卷请求到队列
+     *
+     * @param req    交卷请求
+     * @param userId 考生ID
+     * @return 回执ID（重复提交时返回已有回执）
+     */
+    public String enqueue(SubmitExamRequest req, Long userId) {
+        ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(req.getRecordId());
+        if (meta == null || !meta.getUserId().equals(userId)) {
+            throw new BizException(403, "非法操作");
+        }
+        if (!meta.isInProgress()) {
+            throw new BizException(400, "考试已结束或已提交，请勿重复提交");
+        }
+
+        // 同一记录只入队一次，重复点击直接返回已有回执；
+        // 查重、写入队列、占用交卷键、写回执在一个脚本内完成，不会出现占用了交卷键却没有排队的答卷
+        String receiptId = IdUtil.fastSimpleUUID();
+        String existing = stringRedisTemplate.execute(ENQUEUE_SCRIPT,
+                List.of(RECORD_RECEIPT_PREFIX + req.getRecordId(), RECEIPT_PREFIX + receiptId, STREAM_KEY),
+                receiptId, String.valueOf(receiptTtl), String.valueOf(req.getRecordId()), String.valueOf(userId),
+                String.valueOf(System.currentTimeMillis()), JSONUtil.toJsonStr(req));
+        if (existing != null && existing.startsWith(SEAL_MARK_PREFIX)) {
+            throw new BizException(400, "考试时间已到，系统正在自动收卷");
+        }
+        if (existing != null && !existing.isEmpty()) {
+            return existing;
+        }
+
+        // 答卷已排队，由队列交卷，本节点不再自动收卷（其他节点收卷前会看到交卷键而推迟）
+        examDeadlineScheduler.untrack(req.getRecordId());
+        return receiptId;
+    }
+
+    /**
+     * 查询交卷回执
+     *
+     * @param receiptId 回执ID
+     * @param userId    当前用户ID
+     * @return 回执信息
+     */
+    public Map<String, Object> getReceipt(String receiptId, Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(RECEIPT_PREFIX + receiptId);
+        if (entries.isEmpty()) {
+            throw new BizException(404, "交卷回执不存在或已过期");
+        }
+        if (!String.valueOf(userId).equals(entries.get("userId"))) {
+            throw new BizException(403, "无权查看该回执");
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("receiptId", receiptId);
+        result.put("recordId", Long.valueOf(entries.get("recordId").toString()));
+        result.put("status", entries.get("status"));
+        result.put("message", entries.get("message"));
+        return result;
+    }
+
+    /**
+     * 周期性拉取交卷消息并分发给判分线程池
+     */
+    @Scheduled(fixedDelayString = "${exam.submit.poll-interval:200}", initialDelay = 5000)
+    @SuppressWarnings("unchecked") // StreamOperations.read 的泛型可变参数 StreamOffset<K>...
+    public void poll() {
+        if (!ensureGroup()) {
+            return;
+        }
+        StreamOperations<String, Object, Object> ops = stringRedisTemplate.opsForStream();
+        for (int i = 0; i < maxBatchesPerPoll; i++) {
+            List<MapRecord<String, Object, Object>> records;
+            try {
+                records = ops.read(Consumer.from(GROUP, consumerName),
+                        StreamReadOptions.empty().count(batchSize),
+                        StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed()));
+            } catch (Exception e) {
+                log.warn("拉取交卷队列失败: {}", e.getMessage());
+                return;
+            }
+            if (CollUtil.isEmpty(records)) {
+                return;
+            }
+            // 线程池队列满时由调度线程自行执行（CallerRuns），自然形成背压
+            gradingExecutor.execute(() -> process(records));
+        }
+    }
+
+    /**
+     * 回收长时间未确认的消息（处理节点宕机等情况）
+     */
+    @Scheduled(fixedDelayString = "${exam.submit.claim-interval:30000}", initialDelay = 30000)
+    public void reclaim() {
+        if (!ensureGroup()) {
+            return;
+        }
+        try {
+            StreamOperations<String, Object, Object> ops = stringRedisTemplate.opsForStream();
+            Duration minIdle = Duration.ofSeconds(claimIdleSeconds);
+            PendingMessages pending = ops.pending(STREAM_KEY, GROUP, Range.unbounded(), batchSize * 5L);
+            List<RecordId> stale = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) > 0) {
+                    stale.add(message.getId());
+                }
+            }
+            if (stale.isEmpty()) {
+                return;
+            }
+            List<MapRecord<String, Object, Object>> claimed = ops.claim(STREAM_KEY, GROUP, consumerName, minIdle,
+                    stale.toArray(new RecordId[0]));
+            log.warn("重新认领超时未确认的交卷消息: count={}", claimed.size());
+            for (List<MapRecord<String, Object, Object>> chunk : CollUtil.split(claimed, batchSize)) {
+                gradingExecutor.execute(() -> process(chunk));
+            }
+        } catch (Exception e) {
+            log.warn("回收交卷消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 处理一批交卷消息：先整批一个事务，失败再逐条处理
+     */
+    private void process(List<MapRecord<String, Object, Object>> records) {
+        List<QueuedSubmission> submissions = new ArrayList<>(records.size());
+        List<RecordId> acked = new ArrayList<>(records.size());
+        Map<String, RecordId> idMap = new HashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            QueuedSubmission submission = parse(record);
+            if (submission == null) {
+                // 无法解析的消息直接确认丢弃，避免反复投递
+                acked.add(record.getId());
+                continue;
+            }
+            submissions.add(submission);
+            idMap.put(submission.getReceiptId(), record.getId());
+        }
+
+        try {
+            Map<Long, String> rejected = recordService.submitExamBatch(submissions);
+            for (QueuedSubmission submission : submissions) {
+                String reason = rejected.get(submission.getRequest().getRecordId());
+                if (reason == null) {
+                    complete(submission, STATUS_DONE, "交卷成功");
+                } else {
+                    handleRejected(submission, reason);
+                }
+                acked.add(idMap.get(submission.getReceiptId()));
+            }
+        } catch (Exception batchError) {
+            log.warn("批量交卷失败，改为逐条处理: size={}, error={}", submissions.size(), batchError.getMessage());
+            for (QueuedSubmission submission : submissions) {
+                try {
+                    recordService.submitExam(submission.getRequest(), submission.getUserId());
+                    complete(submission, STATUS_DONE, "交卷成功");
+                    acked.add(idMap.get(submission.getReceiptId()));
+                } catch (BizException e) {
+                    handleRejected(submission, e.getMessage());
+                    acked.add(idMap.get(submission.getReceiptId()));
+                } catch (Exception e) {
+                    // 基础设施异常：不确认，等待回收任务重试
+                    log.error("交卷处理失败，等待重试: receiptId={}, recordId={}",
+                            submission.getReceiptId(), submission.getRequest().getRecordId(), e);
+                }
+            }
+        }
+
+        if (!acked.isEmpty()) {
+            RecordId[] ids = acked.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(STREAM_KEY, ids);
+        }
+    }
+
+    /**
+     * 校验未通过：回执已是成功（处理完成后重复投递）时保持成功；
+     * 记录已由其他途径交卷时标记冲突，本次答卷未生效；否则标记失败
+     */
+    private void handleRejected(QueuedSubmission submission, String reason) {
+        Object status = stringRedisTemplate.opsForHash().get(RECEIPT_PREFIX + submission.getReceiptId(), "status");
+        if (STATUS_DONE.equals(status)) {
+            return;
+        }
+        Record record = recordMapper.selectById(submission.getRequest().getRecordId());
+        if (record != null && record.getUserId().equals(submission.getUserId())
+                && record.getStatus() != null && record.getStatus() >= 2) {
+            log.warn("排队的答卷未生效，记录已通过其他途径交卷: receiptId={}, recordId={}",
+                    submission.getReceiptId(), record.getId());
+            complete(submission, STATUS_CONFLICT, "考试已由其他途径提交（如超时自动收卷），本次提交的答卷未生效");
+        } else {
+            complete(submission, STATUS_FAILED, reason);
+        }
+    }
+
+    private void complete(QueuedSubmission submission, String status, String message) {
+        String receiptKey = RECEIPT_PREFIX + submission.getReceiptId();
+        try {
+            Map<String, String> fields = new HashMap<>();
+            fields.put("status", status);
+            fields.put("message", message);
+            fields.put("finishTime", String.valueOf(System.currentTimeMillis()));
+            stringRedisTemplate.opsForHash().putAll(receiptKey, fields);
+            if (STATUS_FAILED.equals(status)) {
+                // 失败后允许考生重新提交
+                stringRedisTemplate.delete(RECORD_RECEIPT_PREFIX + submission.getRequest().getRecordId());
+            }
+        } catch (Exception e) {
+            log.warn("更新交卷回执失败: receiptId={}, error={}", submission.getReceiptId(), e.getMessage());
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("receiptId", submission.getReceiptId());
+        data.put("recordId", submission.getRequest().getRecordId());
+        data.put("status", status);
+        data.put("message", message);
+        webSocketService.pushSubmitResult(submission.getUserId(), data);
+    }
+
+    private QueuedSubmission parse(MapRecord<String, Object, Object> record) {
+        try {
+            Map<Object, Object> body = record.getValue();
+            QueuedSubmission submission = new QueuedSubmission();
+            submission.setReceiptId(body.get("receiptId").toString());
+            submission.setUserId(Long.valueOf(body.get("userId").toString()));
+            submission.setRequest(JSONUtil.toBean(body.get("payload").toString(), SubmitExamRequest.class));
+            Object enqueueTime = body.get("enqueueTime");
+            submission.setEnqueueTime(enqueueTime != null ? Long.valueOf(enqueueTime.toString()) : null);
+            return submission;
+        } catch (Exception e) {
+            log.error("交卷消息格式错误，已丢弃: id={}", record.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 确保消费组存在（Stream 不存在时一并创建）
+     */
+    private boolean ensureGroup() {
+        if (groupReady) {
+            return true;
+        }
+        try {
+            stringRedisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0-0"), GROUP);
+            groupReady = true;
+        } catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("BUSYGROUP")
+                    || e.getCause() != null && String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP")) {
+                groupReady = true;
+            } else {
+                log.warn("创建交卷消费组失败: {}", e.getMessage());
+            }
+        }
+        return groupReady;
+    }
+}
@@ -0,0 +1,158 @@
+package com.university.exam.service;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.university.exam.common.exception.BizException;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交卷幂等服务
+ * 移动端在超时后会重试交卷，每次重试都会重新读取记录、加载试卷，最后才在状态校验处失败。
+ * 这里按幂等键（请求头 Idempotency-Key，缺省为记录ID）去重：
+ * 1. 处理结果（成功或业务失败）写入 Redis 并设置过期时间，重复请求直接返回原结果，不访问 MySQL
+ * 2. 同一节点上并发的重复请求合并为一次执行（single-flight），其余请求等待同一结果
+ * 3. 跨节点并发时通过 Redis 占位（SET NX）保证只有一个节点执行，其余返回"处理中"
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubmitIdempotencyService {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 交卷结果在Redis中的前缀
+     */
+    private static final String RESULT_PREFIX = "exam:submit:idem:";
+
+    /**
+     * 处理中占位值
+     */
+    private static final String PENDING = "PENDING";
+
+    /**
+     * 结果保留时间（秒）
+     */
+    @Value("${exam.submit.idempotency-ttl:86400}")
+    private long resultTtl;
+
+    /**
+     * 处理中占位的过期时间（秒），防止节点宕机后占位永久存在
+     */
+    @Value("${exam.submit.idempotency-lock-ttl:60}")
+    private long lockTtl;
+
+    private final Map<String, CompletableFuture<Outcome>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 幂等执行交卷
+     *
+     * @param userId         当前用户ID
+     * @param idempotencyKey 幂等键（为空时使用记录ID）
+     * @param recordId       考试记录ID
+     * @param action         实际交卷逻辑
+     * @return 成功提示信息
+     */
+    public String execute(Long userId, String idempotencyKey, Long recordId, Runnable action) {
+        String key = RESULT_PREFIX + userId + ":" + (StrUtil.isNotBlank(idempotencyKey) ? idempotencyKey : "record:" + recordId);
+
+        Outcome cached = readOutcome(key);
+        if (cached != null) {
+            return replay(cached);
+        }
+
+        CompletableFuture<Outcome> future = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 本节点已有相同请求在执行，等待其结果
+            try {
+                return replay(existing.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            Outcome outcome = doExecute(key, action);
+            future.complete(outcome);
+            return replay(outcome);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    private Outcome doExecute(String key, Runnable action) {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(key, PENDING, lockTtl, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            // 其它节点已处理完成或正在处理
+            Outcome done = readOutcome(key);
+            if (done != null) {
+                return done;
+            }
+            throw new BizException(409, "交卷处理中，请勿重复提交");
+        }
+
+        Outcome outcome = new Outcome();
+        try {
+            action.run();
+            outcome.setCode(200);
+            outcome.setMsg("交卷成功，系统正在后台阅卷");
+        } catch (BizException e) {
+            // 业务失败（如已交卷、非法操作）结果确定，同样缓存
+            outcome.setCode(e.getCode());
+            outcome.setMsg(e.getMessage());
+        } catch (RuntimeException e) {
+            // 系统异常：释放占位，允许重试
+            stringRedisTemplate.delete(key);
+            throw e;
+        }
+        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(outcome), resultTtl, TimeUnit.SECONDS);
+        return outcome;
+    }
+
+    private Outcome readOutcome(String key) {
+        String value = stringRedisTemplate.opsForValue().get(key);
+        if (value == null || PENDING.equals(value)) {
+            return null;
+        }
+        try {
+            return JSONUtil.toBean(value, Outcome.class);
+        } catch (Exception e) {
+            log.warn("交卷幂等结果格式错误: key={}", key);
+            return null;
+        }
+    }
+
+    private String replay(Outcome outcome) {
+        if (outcome.getCode() != 200) {
+            throw new BizException(outcome.getCode(), outcome.getMsg());
+        }
+        return outcome.getMsg();
+    }
+
+    /**
+     * 交卷结果
+     */
+    @Data
+    public static class Outcome {
+        private int code;
+        private String msg;
+    }
+}
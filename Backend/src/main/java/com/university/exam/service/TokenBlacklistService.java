@@ -0,0 +1,248 @@
+package com.university.exam.service;
+
+import com.university.exam.websocket.MessageBus;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token黑名单
+ * 每个请求都要检查黑名单，而绝大多数Token不在黑名单中，因此在本地用布隆过滤器先行判断：
+ * 1. 按黑名单保留时长（jwt.expire）分桶，加入黑名单的Token记入当前桶；任一时刻只有当前桶和上一个桶可能包含仍有效的条目，
+ *    更早的桶直接丢弃，过滤器不会因累积而失真
+ * 2. 每个桶在 Redis 中对应一个位图（auth:blacklist:bloom:{bucket}），本地副本在启动时和定时任务中从 Redis 合并，
+ *    新加入的条目经消息总线（exam:auth:blacklist）实时同步到所有节点
+ * 3. 过滤器判定"不在"时直接返回，不访问 Redis；判定"可能在"时再用 auth:blacklist:{sha256} 确认
+ * 确认键以 Token 的 SHA-256 命名，不在 Redis 中保存完整的 JWT。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenBlacklistService {
+
+    private static final String CONFIRM_PREFIX = "auth:blacklist:";
+    private static final String BLOOM_PREFIX = "auth:blacklist:bloom:";
+    private static final String CHANNEL = "exam:auth:blacklist";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageBus messageBus;
+
+    /**
+     * 黑名单保留时间（秒），与Token过期时间一致，同时作为分桶时长
+     */
+    @Value("${jwt.expire:7200}")
+    private long tokenExpire;
+
+    /**
+     * 每个桶的位数（位图大小 = bits / 8 字节）
+     */
+    @Value("${jwt.blacklist.bloom-bits:1048576}")
+    private int bloomBits;
+
+    /**
+     * 哈希函数个数
+     */
+    @Value("${jwt.blacklist.hash-count:5}")
+    private int hashCount;
+
+    /**
+     * 本地副本：桶编号 -> 位集合
+     */
+    private final Map<Long, BloomBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 分桶使用的时钟
+     */
+    private Clock clock = Clock.systemUTC();
+
+    @PostConstruct
+    public void init() {
+        messageBus.subscribe(CHANNEL, this::onBusMessage);
+        sync();
+    }
+
+    /**
+     * 加入黑名单
+     *
+     * @param token JWT Token
+     */
+    public void add(String token) {
+        byte[] digest = digest(token);
+        String hash = HexFormat.of().formatHex(digest);
+        long bucket = currentBucket();
+        long[] offsets = offsets(digest);
+
+        byte[] confirmKey = (CONFIRM_PREFIX + hash).getBytes(StandardCharsets.UTF_8);
+        byte[] rawKey = (BLOOM_PREFIX + bucket).getBytes(StandardCharsets.UTF_8);
+        // 位图至少保留到下一个桶结束
+        long bloomTtl = tokenExpire * 2 + 60;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().setEx(confirmKey, tokenExpire, "1".getBytes(StandardCharsets.UTF_8));
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(rawKey, offset, true);
+            }
+            connection.keyCommands().expire(rawKey, bloomTtl);
+            return null;
+        });
+
+        bucket(bucket).set(offsets);
+        messageBus.publish(CHANNEL, bucket + ":" + hash);
+    }
+
+    /**
+     * 是否在黑名单中
+     *
+     * @param token JWT Token
+     * @return 是否在黑名单中
+     */
+    public boolean isBlacklisted(String token) {
+        byte[] digest = digest(token);
+        long[] offsets = offsets(digest);
+        long current = currentBucket();
+        boolean maybe = false;
+        for (long bucket = current - 1; bucket <= current && !maybe; bucket++) {
+            BloomBucket local = buckets.get(bucket);
+            maybe = local != null && local.contains(offsets);
+        }
+        if (!maybe) {
+            return false;
+        }
+        // 可能存在（含误判），以 Redis 为准
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(CONFIRM_PREFIX + HexFormat.of().formatHex(digest)));
+    }
+
+    /**
+     * 从 Redis 位图合并本地副本，并丢弃过期的桶（兜底消息总线丢失的通知）
+     */
+    @Scheduled(fixedDelayString = "${jwt.blacklist.sync-interval:60000}", initialDelay = 60000)
+    public void sync() {
+        long current = currentBucket();
+        buckets.keySet().removeIf(bucket -> bucket < current - 1);
+        for (long bucket = current - 1; bucket <= current; bucket++) {
+            byte[] rawKey = (BLOOM_PREFIX + bucket).getBytes(StandardCharsets.UTF_8);
+            try {
+                byte[] bitmap = stringRedisTemplate.execute((RedisCallback<byte[]>) c -> c.stringCommands().get(rawKey));
+                if (bitmap != null) {
+                    bucket(bucket).merge(bitmap);
+                }
+            } catch (Exception e) {
+                log.warn("同步Token黑名单过滤器失败: bucket={}, error={}", bucket, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 其它节点加入的黑名单条目（格式 bucket:sha256）
+     */
+    private void onBusMessage(String message) {
+        int sep = message.indexOf(':');
+        if (sep <= 0) {
+            return;
+        }
+        long bucket = Long.parseLong(message.substring(0, sep));
+        if (bucket < currentBucket() - 1) {
+            return;
+        }
+        bucket(bucket).set(offsets(HexFormat.of().parseHex(message.substring(sep + 1))));
+    }
+
+    private BloomBucket bucket(long bucket) {
+        return buckets.computeIfAbsent(bucket, k -> new BloomBucket(bloomBits));
+    }
+
+    private long currentBucket() {
+        return clock.millis() / TimeUnit.SECONDS.toMillis(tokenExpire);
+    }
+
+    /**
+     * 由 SHA-256 的前 16 字节做双重哈希，得到各哈希函数的位偏移
+     */
+    private long[] offsets(byte[] digest) {
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        long h1 = buffer.getLong();
+        long h2 = buffer.getLong() | 1L;
+        long[] offsets = new long[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            offsets[i] = Math.floorMod(h1 + i * h2, (long) bloomBits);
+        }
+        return offsets;
+    }
+
+    private static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 本地位集合（无锁，位偏移与 Redis 位图一致）
+     */
+    private static class BloomBucket {
+        private final AtomicLongArray words;
+        private final int bits;
+
+        BloomBucket(int bits) {
+            this.bits = bits;
+            this.words = new AtomicLongArray((bits + 63) >>> 6);
+        }
+
+        void set(long[] offsets) {
+            for (long offset : offsets) {
+                int index = (int) (offset >>> 6);
+                long mask = 1L << (offset & 63);
+                words.getAndAccumulate(index, mask, (a, b) -> a | b);
+            }
+        }
+
+        boolean contains(long[] offsets) {
+            for (long offset : offsets) {
+                if ((words.get((int) (offset >>> 6)) & (1L << (offset & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 合并 Redis 位图（位偏移 n 位于第 n/8 字节的高位起第 n%8 位）
+         */
+        void merge(byte[] bitmap) {
+            int length = Math.min(bitmap.length, (bits + 7) >>> 3);
+            for (int i = 0; i < length; i++) {
+                int b = bitmap[i] & 0xFF;
+                if (b == 0) {
+                    continue;
+                }
+                for (int j = 0; j < 8; j++) {
+                    if ((b & (0x80 >>> j)) != 0) {
+                        long offset = (long) i * 8 + j;
+                        int index = (int) (offset >>> 6);
+                        long mask = 1L << (offset & 63);
+                        words.getAndAccumulate(index, mask, (x, y) -> x | y);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.university.exam.service;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import com.university.exam.common.utils.JwtUtils;
+import com.university.exam.websocket.MessageBus;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -17,6 +29,11 @@ import java.util.concurrent.TimeUnit;
  * 1. Token黑名单（登出后Token失效）
  * 2. 单点登录控制（一个用户只能一个有效Token）
  * 3. Token续期
+ * 每个请求都要认证，已验证的Token在本地缓存一小段时间（TokenSession），命中时不访问Redis：
+ * 1. 未命中时先由本地布隆过滤器判断黑名单（{@link TokenBlacklistService}），再读取Token信息
+ * 2. 续期（Token和用户-Token映射的过期时间）由Lua脚本一次完成，同一Token在续期间隔内最多执行一次；
+ *    续期时间单独记录（renewCache），不随会话缓存过期，本地缓存时间短于续期间隔时也不会每次重新加载都续期
+ * 3. 登出、被顶下线、强制下线时经消息总线（exam:auth:invalidate）通知所有节点移除本地缓存
  *
  * @author exam-system
  * @since 2025-12-16
@@ -27,7 +44,10 @@ import java.util.concurrent.TimeUnit;
 public class TokenService {
 
     private final RedisService redisService;
+    private final StringRedisTemplate stringRedisTemplate;
     private final JwtUtils jwtUtils;
+    private final MessageBus messageBus;
+    private final TokenBlacklistService tokenBlacklistService;
 
     /**
      * Token在Redis中的前缀
@@ -40,13 +60,54 @@ public class TokenService {
     private static final String USER_TOKEN_PREFIX = "auth:user:";
 
     /**
-     * Token黑名单前缀
+     * Token失效通知频道（消息内容为Token）
      */
-    private static final String BLACKLIST_PREFIX = "auth:blacklist:";
+    private static final String INVALIDATE_CHANNEL = "exam:auth:invalidate";
+
+    /**
+     * 续期脚本：Token仍存在时同时续期Token和用户-Token映射
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXPIRE', KEYS[1], ARGV[1]) == 1 then "
+                    + "redis.call('EXPIRE', KEYS[2], ARGV[1]) return 1 end return 0", Long.class);
 
     @Value("${jwt.expire:7200}")
     private long tokenExpire;
 
+    /**
+     * 已验证Token的本地缓存时间（秒），也是其它节点登出消息丢失时的最长失效延迟
+     */
+    @Value("${jwt.local-cache-ttl:30}")
+    private long localCacheTtl;
+
+    /**
+     * 同一Token两次续期的最小间隔（秒）
+     */
+    @Value("${jwt.renew-interval:60}")
+    private long renewInterval;
+
+    private TimedCache<String, TokenSession> sessionCache;
+
+    /**
+     * 续期间隔内已续期的Token（条目在续期间隔后过期）
+     */
+    private TimedCache<String, Long> renewCache;
+
+    @PostConstruct
+    public void init() {
+        sessionCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(localCacheTtl));
+        sessionCache.schedulePrune(TimeUnit.SECONDS.toMillis(localCacheTtl));
+        renewCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(renewInterval));
+        renewCache.schedulePrune(TimeUnit.SECONDS.toMillis(renewInterval));
+        messageBus.subscribe(INVALIDATE_CHANNEL, this::evict);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sessionCache.cancelPruneSchedule();
+        renewCache.cancelPruneSchedule();
+    }
+
     /**
      * 创建Token并存入Redis
      *
@@ -62,7 +123,8 @@ public class TokenService {
         // 2. 将旧Token加入黑名单（实现单点登录）
         String oldToken = (String) redisService.get(USER_TOKEN_PREFIX + userId);
         if (oldToken != null) {
-            // 将旧Token加入黑名单
+            // 删除旧Token并加入黑名单
+            redisService.delete(TOKEN_PREFIX + oldToken);
             addToBlacklist(oldToken);
         }
 
@@ -82,6 +144,40 @@ public class TokenService {
         return token;
     }
 
+    /**
+     * 认证Token（JWT + Redis），有效时按续期间隔滑动过期时间
+     *
+     * @param token JWT Token
+     * @return 认证通过的会话信息，无效时返回null
+     */
+    public TokenSession authenticate(String token) {
+        long now = System.currentTimeMillis();
+        TokenSession session = sessionCache.get(token, false);
+        if (session != null && session.getExpiresAt() <= now) {
+            sessionCache.remove(token);
+            session = null;
+        }
+        if (session == null) {
+            session = load(token, now);
+            if (session == null) {
+                return null;
+            }
+            long ttl = Math.min(TimeUnit.SECONDS.toMillis(localCacheTtl), session.getExpiresAt() - now);
+            sessionCache.put(token, session, ttl);
+        }
+
+        if (renewCache.get(token, false) == null) {
+            renewCache.put(token, now);
+            if (!renew(token, session.getUserId())) {
+                // Token已在Redis中删除（如其它节点登出且通知未送达）
+                evict(token);
+                log.warn("Token不存在于Redis中");
+                return null;
+            }
+        }
+        return session;
+    }
+
     /**
      * 验证Token是否有效
      *
@@ -89,20 +185,58 @@ public class TokenService {
      * @return 是否有效
      */
     public boolean validateToken(String token) {
-        // 1. 检查Token是否在黑名单中
-        if (isBlacklisted(token)) {
+        return authenticate(token) != null;
+    }
+
+    /**
+     * 本地缓存未命中：校验JWT后一次管道往返读取黑名单标记和Token信息
+     */
+    @SuppressWarnings("unchecked")
+    private TokenSession load(String token, long now) {
+        // 1. 先在本地验证JWT本身的有效性，伪造或过期的Token不访问Redis
+        Claims claims;
+        try {
+            claims = jwtUtils.parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Token验证失败: {}", e.getMessage());
+            return null;
+        }
+
+        // 2. 黑名单（绝大多数Token由本地过滤器直接排除）
+        if (tokenBlacklistService.isBlacklisted(token)) {
             log.warn("Token在黑名单中");
-            return false;
+            return null;
         }
 
-        // 2. 检查Token是否在Redis中存在
-        if (!Boolean.TRUE.equals(redisService.hasKey(TOKEN_PREFIX + token))) {
+        // 3. Token信息
+        Object info = redisService.get(TOKEN_PREFIX + token);
+        if (info == null) {
             log.warn("Token不存在于Redis中");
-            return false;
+            return null;
         }
 
-        // 3. 验证JWT本身的有效性
-        return jwtUtils.validateToken(token);
+        // 4. 优先使用Redis中的用户信息，缺失字段时以JWT为准
+        Map<String, Object> userInfo = info instanceof Map ? (Map<String, Object>) info : Map.of();
+        return new TokenSession(
+                toLong(userInfo.get("userId"), claims.get("userId", Long.class)),
+                userInfo.get("role") instanceof Number n ? n.intValue() : claims.get("role", Integer.class),
+                toLong(userInfo.get("deptId"), claims.get("deptId", Long.class)),
+                claims.getExpiration() != null ? claims.getExpiration().getTime() : now + TimeUnit.SECONDS.toMillis(tokenExpire));
+    }
+
+    private static Long toLong(Object value, Long fallback) {
+        return value instanceof Number n ? Long.valueOf(n.longValue()) : fallback;
+    }
+
+    /**
+     * 续期Token和用户-Token映射（一次脚本调用）
+     *
+     * @return Token是否仍存在
+     */
+    private boolean renew(String token, Long userId) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                List.of(TOKEN_PREFIX + token, USER_TOKEN_PREFIX + userId), String.valueOf(tokenExpire));
+        return renewed != null && renewed == 1L;
     }
 
     /**
@@ -126,15 +260,17 @@ public class TokenService {
      * @param token JWT Token
      */
     public void refreshToken(String token) {
-        if (Boolean.TRUE.equals(redisService.hasKey(TOKEN_PREFIX + token))) {
-            redisService.expire(TOKEN_PREFIX + token, tokenExpire, TimeUnit.SECONDS);
-
-            // 同时刷新用户-Token映射
+        TokenSession session = sessionCache.get(token, false);
+        Long userId = session != null ? session.getUserId() : null;
+        if (userId == null) {
             Map<String, Object> userInfo = getUserInfo(token);
-            if (userInfo != null) {
-                Long userId = ((Number) userInfo.get("userId")).longValue();
-                redisService.expire(USER_TOKEN_PREFIX + userId, tokenExpire, TimeUnit.SECONDS);
+            if (userInfo == null) {
+                return;
             }
+            userId = ((Number) userInfo.get("userId")).longValue();
+        }
+        if (renew(token, userId)) {
+            renewCache.put(token, System.currentTimeMillis());
         }
     }
 
@@ -169,17 +305,18 @@ public class TokenService {
      */
     private void addToBlacklist(String token) {
         // 黑名单保留时间与Token过期时间一致
-        redisService.set(BLACKLIST_PREFIX + token, "1", tokenExpire, TimeUnit.SECONDS);
+        tokenBlacklistService.add(token);
+        // 通知所有节点（包括本节点）移除本地缓存
+        evict(token);
+        messageBus.publish(INVALIDATE_CHANNEL, token);
     }
 
     /**
-     * 检查Token是否在黑名单中
-     *
-     * @param token JWT Token
-     * @return 是否在黑名单中
+     * 移除Token的本地缓存和续期记录
      */
-    private boolean isBlacklisted(String token) {
-        return Boolean.TRUE.equals(redisService.hasKey(BLACKLIST_PREFIX + token));
+    private void evict(String token) {
+        sessionCache.remove(token);
+        renewCache.remove(token);
     }
 
     /**
@@ -194,4 +331,25 @@ public class TokenService {
             log.info("用户 {} 已被强制下线", userId);
         }
     }
+
+    /**
+     * 认证通过的Token会话（本地缓存）
+     */
+    @Getter
+    public static class TokenSession {
+        private final Long userId;
+        private final Integer role;
+        private final Long deptId;
+        /**
+         * JWT过期时间（毫秒时间戳）
+         */
+        private final long expiresAt;
+
+        TokenSession(Long userId, Integer role, Long deptId, long expiresAt) {
+            this.userId = userId;
+            this.role = role;
+            this.deptId = deptId;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
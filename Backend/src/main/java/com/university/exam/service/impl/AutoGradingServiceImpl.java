@@ -195,9 +195,7 @@ public class AutoGradingServiceImpl implements AutoGradingService {
             recordMapper.updateById(record);
             
             // 保存错题
-            if (!newMistakes.isEmpty()) {
-                saveMistakes(newMistakes);
-            }
+            mistakeBookService.recordMistakes(newMistakes);
 
             log.info("<<< AI 阅卷结束: recordId={}, CurrentTotal={} (等待人工复核生效)", recordId, totalScore);
 
@@ -208,25 +206,6 @@ public class AutoGradingServiceImpl implements AutoGradingService {
         }
     }
 
-    private void saveMistakes(List<MistakeBook> newMistakes) {
-        for (MistakeBook mb : newMistakes) {
-            long exists = mistakeBookService.count(new LambdaQueryWrapper<MistakeBook>()
-                    .eq(MistakeBook::getUserId, mb.getUserId())
-                    .eq(MistakeBook::getQuestionId, mb.getQuestionId()));
-            if (exists == 0) {
-                mistakeBookService.save(mb);
-            } else {
-                MistakeBook existing = mistakeBookService.getOne(new LambdaQueryWrapper<MistakeBook>()
-                        .eq(MistakeBook::getUserId, mb.getUserId())
-                        .eq(MistakeBook::getQuestionId, mb.getQuestionId()));
-                existing.setWrongCount(existing.getWrongCount() + 1);
-                existing.setLastWrongAnswer(mb.getLastWrongAnswer());
-                existing.setUpdateTime(LocalDateTime.now());
-                mistakeBookService.updateById(existing);
-            }
-        }
-    }
-
     private String cleanJsonString(String jsonStr) {
         if (StrUtil.isBlank(jsonStr)) return "{}";
         jsonStr = jsonStr.trim();
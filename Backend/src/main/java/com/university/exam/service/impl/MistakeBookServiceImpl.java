@@ -1,11 +1,15 @@
 package com.university.exam.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
 import com.university.exam.entity.MistakeBook;
 import com.university.exam.mapper.MistakeBookMapper;
 import com.university.exam.service.MistakeBookService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * <p>
  * 错题本 服务实现类
@@ -17,4 +21,23 @@ import org.springframework.stereotype.Service;
 @Service
 public class MistakeBookServiceImpl extends ServiceImpl<MistakeBookMapper, MistakeBook> implements MistakeBookService {
 
+    /**
+     * 单条 upsert 语句包含的最大行数
+     */
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    @Override
+    public void recordMistakes(List<MistakeBook> mistakes) {
+        if (CollUtil.isEmpty(mistakes)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (MistakeBook mb : mistakes) {
+            if (mb.getCreateTime() == null) mb.setCreateTime(now);
+            if (mb.getUpdateTime() == null) mb.setUpdateTime(now);
+        }
+        for (List<MistakeBook> chunk : CollUtil.split(mistakes, UPSERT_BATCH_SIZE)) {
+            baseMapper.upsertBatch(chunk);
+        }
+    }
 }
@@ -1,20 +1,220 @@
 package com.university.exam.service.impl;
 
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.university.exam.common.security.CurrentUser;
+import com.university.exam.common.vo.NoticeItemVo;
 import com.university.exam.entity.Notice;
+import com.university.exam.entity.NoticeReadMark;
+import com.university.exam.entity.User;
+import com.university.exam.entity.UserNotice;
 import com.university.exam.mapper.NoticeMapper;
+import com.university.exam.mapper.NoticeReadMarkMapper;
+import com.university.exam.mapper.UserMapper;
+import com.university.exam.mapper.UserNoticeMapper;
 import com.university.exam.service.NoticeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * <p>
  * 系统通知表 服务实现类
+ * 指定用户的通知（目标类型3）按用户写入 sys_user_notice；全体通知（1）和部门通知（2）只存一份，
+ * 用户的已读状态记录在 sys_notice_read_mark 中：ID 不超过水位的共享通知均已读，水位之上单独已读的通知记在 read_ids 中。
+ * 标记已读时，若水位之上最早的若干通知都已单独已读，就把水位推进过去并从 read_ids 中移除，read_ids 因此保持稀疏。
+ * 通知ID在插入时分配、提交可能更晚，ID较小的通知可能在ID较大的通知之后才可见。为避免这类通知未经阅读就落到水位之下，
+ * 水位只推进到创建时间早于 exam.notice.read-mark.settle-seconds 之前的通知，更新的通知即使已读也只记在 read_ids 中。
+ * 存储量与通知数成正比，而不是通知数 × 用户数。
  * </p>
  *
  * @author MySQL数据库架构师
  * @since 2025-12-09
  */
 @Service
+@RequiredArgsConstructor
 public class NoticeServiceImpl extends ServiceImpl<NoticeMapper, Notice> implements NoticeService {
 
+    private final UserNoticeMapper userNoticeMapper;
+    private final NoticeReadMarkMapper noticeReadMarkMapper;
+    private final UserMapper userMapper;
+
+    /**
+     * 通知创建多久之后才允许并入已读水位（秒），应大于发布通知事务的最长耗时
+     */
+    @Value("${exam.notice.read-mark.settle-seconds:60}")
+    private long settleSeconds;
+
+    @Override
+    public NoticeReadMark getReadMark(Long userId) {
+        NoticeReadMark mark = noticeReadMarkMapper.selectOne(new LambdaQueryWrapper<NoticeReadMark>()
+                .eq(NoticeReadMark::getUserId, userId));
+        if (mark != null) {
+            return mark;
+        }
+        initMark(userId);
+        return noticeReadMarkMapper.selectOne(new LambdaQueryWrapper<NoticeReadMark>()
+                .eq(NoticeReadMark::getUserId, userId));
+    }
+
+    @Override
+    public IPage<NoticeItemVo> getMyNotices(CurrentUser user, NoticeReadMark mark, int page, int size,
+                                            Byte type, Boolean isRead) {
+        return baseMapper.selectInboxPage(new Page<>(page, size), user.getUserId(), user.getDeptId(),
+                isStudent(user), mark.getWatermark(), parseReadIds(mark), type, isRead);
+    }
+
+    @Override
+    public long countUnread(CurrentUser user) {
+        return countUnread(user, getReadMark(user.getUserId()));
+    }
+
+    @Override
+    public long countUnread(CurrentUser user, NoticeReadMark mark) {
+        long direct = userNoticeMapper.selectCount(new LambdaQueryWrapper<UserNotice>()
+                .eq(UserNotice::getUserId, user.getUserId())
+                .eq(UserNotice::getIsRead, (byte) 0));
+        long shared = baseMapper.countSharedUnread(user.getUserId(), user.getDeptId(), isStudent(user),
+                mark.getWatermark(), parseReadIds(mark));
+        return direct + shared;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean markAsRead(CurrentUser user, Long noticeId) {
+        Long userId = user.getUserId();
+        LocalDateTime now = LocalDateTime.now();
+
+        // 1. 指定用户的通知
+        int updated = userNoticeMapper.update(null, new LambdaUpdateWrapper<UserNotice>()
+                .set(UserNotice::getIsRead, (byte) 1)
+                .set(UserNotice::getReadTime, now)
+                .set(UserNotice::getUpdateTime, now)
+                .eq(UserNotice::getUserId, userId)
+                .eq(UserNotice::getNoticeId, noticeId)
+                .eq(UserNotice::getIsRead, (byte) 0));
+        if (updated > 0) {
+            return true;
+        }
+        boolean direct = userNoticeMapper.exists(new LambdaQueryWrapper<UserNotice>()
+                .eq(UserNotice::getUserId, userId)
+                .eq(UserNotice::getNoticeId, noticeId));
+        if (direct) {
+            return false;
+        }
+
+        // 2. 共享通知：在水位之上且对该用户可见时才需要记录
+        NoticeReadMark mark = lockMark(userId);
+        long watermark = mark.getWatermark();
+        if (noticeId <= watermark) {
+            return false;
+        }
+        List<Notice> pending = baseMapper.selectSharedAfter(userId, user.getDeptId(), isStudent(user), watermark);
+        Set<Long> pendingIds = new HashSet<>();
+        pending.forEach(n -> pendingIds.add(n.getId()));
+        if (!pendingIds.contains(noticeId)) {
+            return false;
+        }
+        Set<Long> readIds = parseReadIds(mark);
+        if (!readIds.add(noticeId)) {
+            return false;
+        }
+
+        // 推进水位：水位之上连续已读且已过稳定期的通知并入水位
+        LocalDateTime settled = now.minusSeconds(settleSeconds);
+        for (Notice notice : pending) {
+            if (!isSettled(notice, settled) || !readIds.contains(notice.getId())) {
+                break;
+            }
+            readIds.remove(notice.getId());
+            watermark = notice.getId();
+        }
+        // 已删除或不再可见的通知不必保留
+        readIds.retainAll(pendingIds);
+
+        mark.setWatermark(watermark);
+        mark.setReadIds(JSONUtil.toJsonStr(readIds));
+        mark.setUpdateTime(now);
+        noticeReadMarkMapper.updateById(mark);
+        return true;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void markAllAsRead(CurrentUser user) {
+        Long userId = user.getUserId();
+        LocalDateTime now = LocalDateTime.now();
+        userNoticeMapper.update(null, new LambdaUpdateWrapper<UserNotice>()
+                .set(UserNotice::getIsRead, (byte) 1)
+                .set(UserNotice::getReadTime, now)
+                .set(UserNotice::getUpdateTime, now)
+                .eq(UserNotice::getUserId, userId)
+                .eq(UserNotice::getIsRead, (byte) 0));
+
+        NoticeReadMark mark = lockMark(userId);
+        // 水位只推进到已过稳定期的通知，之后的通知单独记为已读（不按全表最大ID跳跃，避免把尚未提交的通知算作已读）
+        long watermark = mark.getWatermark();
+        Set<Long> readIds = new TreeSet<>();
+        LocalDateTime settled = now.minusSeconds(settleSeconds);
+        for (Notice notice : baseMapper.selectSharedAfter(userId, user.getDeptId(), isStudent(user), watermark)) {
+            if (readIds.isEmpty() && isSettled(notice, settled)) {
+                watermark = notice.getId();
+            } else {
+                readIds.add(notice.getId());
+            }
+        }
+        mark.setWatermark(watermark);
+        mark.setReadIds(JSONUtil.toJsonStr(readIds));
+        mark.setUpdateTime(now);
+        noticeReadMarkMapper.updateById(mark);
+    }
+
+    /**
+     * 锁定用户的已读标记，不存在时先初始化
+     */
+    private NoticeReadMark lockMark(Long userId) {
+        NoticeReadMark mark = noticeReadMarkMapper.selectByUserIdForUpdate(userId);
+        if (mark != null) {
+            return mark;
+        }
+        initMark(userId);
+        return noticeReadMarkMapper.selectByUserIdForUpdate(userId);
+    }
+
+    /**
+     * 初始化用户的已读标记：用户创建之前发布的共享通知视为已读（已存在时不覆盖）
+     */
+    private void initMark(Long userId) {
+        User user = userMapper.selectById(userId);
+        Long watermark = user != null && user.getCreateTime() != null
+                ? baseMapper.selectMaxSharedIdBefore(user.getCreateTime()) : null;
+        noticeReadMarkMapper.insertIgnore(userId, watermark != null ? watermark : 0L);
+    }
+
+    private static Set<Long> parseReadIds(NoticeReadMark mark) {
+        if (!StringUtils.hasText(mark.getReadIds())) {
+            return new TreeSet<>();
+        }
+        return new TreeSet<>(JSONUtil.toList(mark.getReadIds(), Long.class));
+    }
+
+    private static boolean isSettled(Notice notice, LocalDateTime settled) {
+        return notice.getCreateTime() != null && notice.getCreateTime().isBefore(settled);
+    }
+
+    private static boolean isStudent(CurrentUser user) {
+        return user.getRole() != null && user.getRole() == 1;
+    }
 }
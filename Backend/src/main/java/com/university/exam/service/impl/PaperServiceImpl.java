@@ -6,6 +6,7 @@ import com.university.exam.entity.Paper;
 import com.university.exam.entity.PaperQuestion;
 import com.university.exam.entity.Question;
 import com.university.exam.mapper.PaperMapper;
+import com.university.exam.service.ExamPaperCacheService;
 import com.university.exam.service.PaperQuestionService;
 import com.university.exam.service.PaperService;
 import com.university.exam.service.QuestionService;
@@ -31,6 +32,7 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
 
     private final QuestionService questionService;
     private final PaperQuestionService paperQuestionService;
+    private final ExamPaperCacheService examPaperCacheService;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -294,6 +296,9 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         paper.setUpdateBy(userId);
         paper.setUpdateTime(LocalDateTime.now());
         this.updateById(paper);
+
+        // 事务提交后失效试卷快照
+        examPaperCacheService.evictPaper(paperId);
     }
 
     @Override
@@ -322,5 +327,8 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         paper.setUpdateBy(userId);
         paper.setUpdateTime(LocalDateTime.now());
         this.updateById(paper);
+
+        // 事务提交后失效试卷快照
+        examPaperCacheService.evictPaper(paperId);
     }
 }
\ No newline at end of file
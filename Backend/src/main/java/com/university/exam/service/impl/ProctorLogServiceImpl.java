@@ -1,28 +1,48 @@
 package com.university.exam.service.impl;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.university.exam.common.dto.student.ProctorLogDto;
 import com.university.exam.common.exception.BizException;
+import com.university.exam.common.vo.ProctorLogItemVo;
+import com.university.exam.common.vo.ProctorStudentStatusVo;
 import com.university.exam.entity.ProctorLog;
-import com.university.exam.entity.Record;
-import com.university.exam.entity.User;
+import com.university.exam.entity.Publish;
 import com.university.exam.mapper.ProctorLogMapper;
 import com.university.exam.mapper.RecordMapper;
 import com.university.exam.mapper.UserMapper;
+import com.university.exam.service.ExamPaperCacheService;
+import com.university.exam.service.ExamRecordCacheService;
+import com.university.exam.service.ProctorFeedService;
+import com.university.exam.service.ProctorLogArchiveService;
+import com.university.exam.service.ProctorLogBuffer;
 import com.university.exam.service.ProctorLogService;
+import com.university.exam.service.ProctorRuleEngine;
+import com.university.exam.service.ProctorStatusService;
+import com.university.exam.service.SnapshotStorageService;
 import com.university.exam.websocket.ProctorWebSocketHandler;
-import com.university.exam.websocket.WebSocketMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -40,90 +60,213 @@ public class ProctorLogServiceImpl extends ServiceImpl<ProctorLogMapper, Proctor
     private final RecordMapper recordMapper;
     private final UserMapper userMapper;
     private final ProctorWebSocketHandler proctorWebSocketHandler;
+    private final ExamPaperCacheService examPaperCacheService;
+    private final ExamRecordCacheService examRecordCacheService;
+    private final ProctorLogBuffer proctorLogBuffer;
+    private final ProctorStatusService proctorStatusService;
+    private final SnapshotStorageService snapshotStorageService;
+    private final ProctorLogArchiveService proctorLogArchiveService;
+    private final ProctorRuleEngine proctorRuleEngine;
+    private final ProctorFeedService proctorFeedService;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 警告次数计数器在Redis中的前缀
+     */
+    private static final String WARNING_COUNT_PREFIX = "exam:proctor:warn:";
+
+    /**
+     * 警告计数：KEYS = [计数器]，ARGV = [过期秒数, 初始值]
+     * 计数器不存在且未给出初始值时返回 -1（由调用方查库后带上初始值重试），否则递增并续期
+     */
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then "
+                    + "if ARGV[2] == '' then return -1 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2]) end "
+                    + "local n = redis.call('INCR', KEYS[1]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) return n", Long.class);
+
+    /**
+     * 警告计数器过期时间（秒），需大于最长考试时长
+     */
+    @Value("${exam.proctor.warning-ttl:86400}")
+    private long warningTtl;
+
+    /**
+     * 考生姓名本地缓存时间（秒）
+     */
+    @Value("${exam.proctor.name-cache-ttl:600}")
+    private long nameCacheTtl;
+
+    /**
+     * 监考日志列表接口最多返回的条数
+     */
+    @Value("${exam.proctor.list-limit:1000}")
+    private int listLimit;
+
+    private TimedCache<Long, String> studentNameCache;
+
+    @PostConstruct
+    public void init() {
+        studentNameCache = CacheUtil.newTimedCache(TimeUnit.SECONDS.toMillis(nameCacheTtl));
+        studentNameCache.schedulePrune(TimeUnit.SECONDS.toMillis(nameCacheTtl));
+        proctorLogBuffer.addListener(this::pushLogsToProctors);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        studentNameCache.cancelPruneSchedule();
+    }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void handleProctorLog(ProctorLogDto dto, Long userId) {
-        // 1. 校验归属权
-        Record record = recordMapper.selectById(dto.getRecordId());
-        if (record == null) {
+        // 1. 校验归属权（记录元数据缓存，不查库）
+        ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(dto.getRecordId());
+        if (meta == null) {
             throw new BizException(404, "考试记录不存在");
         }
-        if (!record.getUserId().equals(userId)) {
+        if (!meta.getUserId().equals(userId)) {
             log.warn("非法监考日志上报: userId={}, recordId={}", userId, dto.getRecordId());
             throw new BizException(403, "非法操作: 无法上报他人的考试日志");
         }
         
         // 2. 只有"进行中"的考试才记录日志 (避免交卷后继续上报)
-        if (record.getStatus() != 1) {
+        if (!meta.isInProgress()) {
             // 这里不抛异常，避免前端报错影响用户体验，只需忽略即可
-            log.info("忽略非进行中考试的日志上报: recordId={}, status={}", record.getId(), record.getStatus());
+            log.info("忽略非进行中考试的日志上报: recordId={}, status={}", meta.getRecordId(), meta.getStatus());
             return;
         }
 
-        // 3. 保存日志
+        // 3. 构建日志
+        LocalDateTime now = LocalDateTime.now();
         ProctorLog logEntry = new ProctorLog();
         logEntry.setRecordId(dto.getRecordId());
+        logEntry.setPublishId(meta.getPublishId());
         logEntry.setActionType(dto.getActionType());
         logEntry.setImgSnapshot(dto.getImgSnapshot());
         logEntry.setContent(dto.getContent());
-        logEntry.setHappenTime(LocalDateTime.now());
+        logEntry.setHappenTime(now);
         
         logEntry.setCreateBy(userId);
         logEntry.setUpdateBy(userId);
-        logEntry.setCreateTime(LocalDateTime.now());
-        logEntry.setUpdateTime(LocalDateTime.now());
-        
-        this.save(logEntry);
+        logEntry.setCreateTime(now);
+        logEntry.setUpdateTime(now);
 
-        // 4. 简单异常判定 (示例逻辑)
+        // 4. 异常行为计数（Redis 计数器，一次脚本调用完成递增和续期；非警告类日志不读取计数）
+        long warningCount = WARNING_TYPES.contains(dto.getActionType())
+                ? incrementWarningCount(dto.getRecordId())
+                : 0L;
         if ("switch_screen".equals(dto.getActionType()) || "leave_page".equals(dto.getActionType())) {
-            // 统计该考生该场考试的切屏次数
-            long count = this.count(new LambdaQueryWrapper<ProctorLog>()
-                    .eq(ProctorLog::getRecordId, dto.getRecordId())
-                    .in(ProctorLog::getActionType, "switch_screen", "leave_page"));
-            
-            log.info("考生[{}] 切屏/离开页面警告, 当前次数: {}", userId, count);
-            
-            // 如果需要严格模式，可以在此处判断 count > 3 自动强制交卷
-            // 暂时只记录，不做强制动作
+            log.info("考生[{}] 切屏/离开页面警告, 当前次数: {}", userId, warningCount);
         }
 
-        // 5. 通过WebSocket实时推送给监考教师
-        pushLogToProctors(record.getPublishId(), logEntry, userId);
+        // 5. 放入写入缓冲，批量落库后通过WebSocket推送给监考教师
+        ProctorLogBuffer.PendingLog pending = new ProctorLogBuffer.PendingLog();
+        pending.setEntry(logEntry);
+        pending.setPublishId(meta.getPublishId());
+        pending.setStudentId(userId);
+        pending.setWarningCount(warningCount);
+        pending.setImgThumb(resolveThumb(dto));
+        proctorLogBuffer.offer(pending);
+
+        // 6. 监考规则判断（滑动窗口，按规则提醒考生、通知教师或强制交卷）
+        proctorRuleEngine.onEvent(meta, dto.getActionType(), System.currentTimeMillis());
     }
 
     /**
-     * 通过WebSocket实时推送监考日志给教师
+     * 警告次数加一并返回（计数器不存在时从数据库初始化，并发初始化时以先写入者为准）
+     *
+     * @param recordId 考试记录ID
+     * @return 计入本次后的警告次数
      */
-    private void pushLogToProctors(Long publishId, ProctorLog logEntry, Long studentId) {
-        try {
-            User student = userMapper.selectById(studentId);
-            
-            Map<String, Object> logData = new HashMap<>();
-            logData.put("id", logEntry.getId());
-            logData.put("recordId", logEntry.getRecordId());
-            logData.put("studentId", studentId);
-            logData.put("studentName", student != null ? student.getRealName() : "未知");
-            logData.put("actionType", logEntry.getActionType());
-            logData.put("actionLabel", getActionLabel(logEntry.getActionType()));
-            logData.put("content", logEntry.getContent());
-            logData.put("imgSnapshot", logEntry.getImgSnapshot());
-            logData.put("happenTime", logEntry.getHappenTime());
-            
-            // 统计该学生的异常次数
-            long warningCount = this.count(new LambdaQueryWrapper<ProctorLog>()
-                    .eq(ProctorLog::getRecordId, logEntry.getRecordId())
-                    .in(ProctorLog::getActionType, "switch_screen", "leave_page", "env_abnormal"));
-            logData.put("warningCount", warningCount);
-
-            WebSocketMessage message = WebSocketMessage.proctorLog(logData);
-            proctorWebSocketHandler.broadcastToProctors(publishId, message);
-            
-            log.debug("已推送监考日志到考试 {} 的监考教师", publishId);
-        } catch (Exception e) {
-            log.error("推送监考日志失败", e);
+    private long incrementWarningCount(Long recordId) {
+        List<String> keys = List.of(WARNING_COUNT_PREFIX + recordId);
+        String ttl = String.valueOf(warningTtl);
+        Long count = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, ttl, "");
+        if (count != null && count < 0) {
+            long seed = this.count(new LambdaQueryWrapper<ProctorLog>()
+                    .eq(ProctorLog::getRecordId, recordId)
+                    .in(ProctorLog::getActionType, WARNING_TYPES));
+            count = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, ttl, String.valueOf(seed));
         }
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * 推送使用的缩略图地址：采用上传抓拍时返回的缩略图（需与原图对应），否则使用原图
+     */
+    private String resolveThumb(ProctorLogDto dto) {
+        String thumb = dto.getImgThumb();
+        if (thumb != null && thumb.equals(snapshotStorageService.expectedThumbUrl(dto.getImgSnapshot()))) {
+            return thumb;
+        }
+        return dto.getImgSnapshot();
+    }
+
+    /**
+     * 日志落库后通过WebSocket实时推送给监考教师
+     */
+    private void pushLogsToProctors(List<ProctorLogBuffer.PendingLog> batch) {
+        Map<Long, String> names = getStudentNames(batch.stream()
+                .map(ProctorLogBuffer.PendingLog::getStudentId).collect(Collectors.toSet()));
+
+        // 按场次追加到监考事件流（取得游标）后合并推送
+        Map<Long, List<Map<String, Object>>> byPublish = new HashMap<>();
+        for (ProctorLogBuffer.PendingLog pending : batch) {
+            byPublish.computeIfAbsent(pending.getPublishId(), k -> new ArrayList<>())
+                    .add(toLogData(pending, names.get(pending.getStudentId())));
+        }
+        byPublish.forEach((publishId, items) -> {
+            proctorFeedService.append(publishId, ProctorFeedService.TYPE_LOG, items);
+            items.forEach(item -> proctorWebSocketHandler.queueProctorLog(publishId, item));
+        });
+    }
+
+    /**
+     * 组装推送给监考教师的日志数据
+     */
+    private Map<String, Object> toLogData(ProctorLogBuffer.PendingLog pending, String studentName) {
+        ProctorLog logEntry = pending.getEntry();
+        Map<String, Object> logData = new HashMap<>();
+        logData.put("id", logEntry.getId());
+        logData.put("recordId", logEntry.getRecordId());
+        logData.put("studentId", pending.getStudentId());
+        logData.put("studentName", studentName != null ? studentName : "未知");
+        logData.put("actionType", logEntry.getActionType());
+        logData.put("actionLabel", getActionLabel(logEntry.getActionType()));
+        logData.put("content", logEntry.getContent());
+        logData.put("imgSnapshot", logEntry.getImgSnapshot());
+        logData.put("imgThumb", pending.getImgThumb());
+        logData.put("happenTime", logEntry.getHappenTime());
+        if (pending.getWarningCount() > 0) {
+            // 非警告类日志不带警告次数，监考台保留原值
+            logData.put("warningCount", pending.getWarningCount());
+        }
+        return logData;
+    }
+
+    /**
+     * 批量获取考生姓名（本地缓存，未命中的一次查询补齐）
+     */
+    private Map<Long, String> getStudentNames(Set<Long> userIds) {
+        Map<Long, String> names = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            String name = studentNameCache.get(userId, false);
+            if (name != null) {
+                names.put(userId, name);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            userMapper.selectBatchIds(missing).forEach(u -> {
+                String name = u.getRealName() != null ? u.getRealName() : "未知";
+                studentNameCache.put(u.getId(), name);
+                names.put(u.getId(), name);
+            });
+        }
+        return names;
     }
 
     private String getActionLabel(String actionType) {
@@ -132,153 +275,164 @@ public class ProctorLogServiceImpl extends ServiceImpl<ProctorLogMapper, Proctor
             case "leave_page" -> "离开页面";
             case "env_abnormal" -> "环境异常";
             case "snapshot" -> "定时抓拍";
+            case "return_page" -> "返回页面";
             default -> actionType;
         };
     }
 
     @Override
     public List<Map<String, Object>> getProctorLogsByPublishId(Long publishId) {
-        // 获取该考试的所有记录ID
-        List<Record> records = recordMapper.selectList(
-                new LambdaQueryWrapper<Record>().eq(Record::getPublishId, publishId));
-        
-        if (records.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        List<Long> recordIds = records.stream().map(Record::getId).toList();
-        
-        // 获取所有监考日志
-        List<ProctorLog> logs = this.list(new LambdaQueryWrapper<ProctorLog>()
-                .in(ProctorLog::getRecordId, recordIds)
-                .orderByDesc(ProctorLog::getHappenTime));
+        // 只返回最新的 list-limit 条，避免一次加载整场日志（含归档文件）
+        return toLogItems(selectLogRows(publishId, null, null, null, Long.MAX_VALUE, listLimit));
+    }
 
-        // 构建recordId -> userId映射
-        Map<Long, Long> recordUserMap = new HashMap<>();
-        records.forEach(r -> recordUserMap.put(r.getId(), r.getUserId()));
+    @Override
+    public Map<String, Object> getProctorLogPage(Long publishId, Long recordId, boolean warningOnly,
+                                                 LocalDateTime beforeTime, Long beforeId, int size) {
+        // 先取事件流游标再查询：查询期间新增的日志会在增量同步时再次收到，客户端按ID去重
+        String cursor = proctorFeedService.head(publishId);
+        Set<String> actionTypes = warningOnly ? WARNING_TYPES : null;
+        long beforeIdValue = beforeId != null ? beforeId : Long.MAX_VALUE;
+
+        // 多查一条判断是否还有下一页
+        List<ProctorLogItemVo> rows = selectLogRows(publishId, recordId, actionTypes, beforeTime, beforeIdValue, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
 
-        // 获取所有相关用户
-        List<Long> userIds = records.stream().map(Record::getUserId).distinct().toList();
-        Map<Long, User> userMap = new HashMap<>();
-        if (!userIds.isEmpty()) {
-            userMapper.selectBatchIds(userIds).forEach(u -> userMap.put(u.getId(), u));
+        Map<String, Object> result = new HashMap<>();
+        result.put("list", toLogItems(rows));
+        result.put("hasMore", hasMore);
+        result.put("cursor", cursor);
+        if (!rows.isEmpty()) {
+            ProctorLogItemVo last = rows.get(rows.size() - 1);
+            result.put("nextBeforeTime", last.getHappenTime());
+            result.put("nextBeforeId", last.getId());
         }
+        return result;
+    }
 
-        // 组装结果
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (ProctorLog logItem : logs) {
-            Long userId = recordUserMap.get(logItem.getRecordId());
-            User user = userMap.get(userId);
+    /**
+     * 按 (happen_time, id) 倒序查询游标之前的一页日志
+     * 已归档的场次读取归档文件，并合并归档之后写入热表的日志（如死信回放，ID 大于归档的最大ID）
+     */
+    private List<ProctorLogItemVo> selectLogRows(Long publishId, Long recordId, Set<String> actionTypes,
+                                                 LocalDateTime beforeTime, long beforeId, int limit) {
+        if (!proctorLogArchiveService.isArchived(publishId)) {
+            return baseMapper.selectLogPage(publishId, recordId, actionTypes, beforeTime, beforeId, null, limit);
+        }
+        List<ProctorLogItemVo> rows = selectArchivedLogPage(publishId, recordId, actionTypes, beforeTime, beforeId, limit);
+        List<ProctorLogItemVo> live = baseMapper.selectLogPage(publishId, recordId, actionTypes, beforeTime, beforeId,
+                proctorLogArchiveService.getMaxArchivedId(publishId), limit);
+        if (live.isEmpty()) {
+            return rows;
+        }
+        List<ProctorLogItemVo> merged = new ArrayList<>(rows);
+        merged.addAll(live);
+        merged.sort(Comparator.comparing(ProctorLogItemVo::getHappenTime)
+                .thenComparing(ProctorLogItemVo::getId).reversed());
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
 
+    private List<Map<String, Object>> toLogItems(List<ProctorLogItemVo> rows) {
+        List<Map<String, Object>> list = new ArrayList<>(rows.size());
+        for (ProctorLogItemVo row : rows) {
             Map<String, Object> item = new HashMap<>();
-            item.put("id", logItem.getId());
-            item.put("recordId", logItem.getRecordId());
-            item.put("studentId", userId);
-            item.put("studentName", user != null ? user.getRealName() : "未知");
-            item.put("actionType", logItem.getActionType());
-            item.put("actionLabel", getActionLabel(logItem.getActionType()));
-            item.put("content", logItem.getContent());
-            item.put("imgSnapshot", logItem.getImgSnapshot());
-            item.put("happenTime", logItem.getHappenTime());
-            result.add(item);
+            item.put("id", row.getId());
+            item.put("recordId", row.getRecordId());
+            item.put("studentId", row.getStudentId());
+            item.put("studentName", row.getStudentName() != null ? row.getStudentName() : "未知");
+            item.put("actionType", row.getActionType());
+            item.put("actionLabel", getActionLabel(row.getActionType()));
+            item.put("content", row.getContent());
+            item.put("imgSnapshot", row.getImgSnapshot());
+            item.put("imgThumb", snapshotStorageService.thumbUrlOf(row.getImgSnapshot()));
+            item.put("happenTime", row.getHappenTime());
+            list.add(item);
         }
-
-        return result;
+        return list;
     }
 
-    @Override
-    public List<Map<String, Object>> getExamStudentStatus(Long publishId) {
-        // 获取该考试的所有记录
-        List<Record> records = recordMapper.selectList(
-                new LambdaQueryWrapper<Record>().eq(Record::getPublishId, publishId));
+    /**
+     * 已归档场次的日志分页：按分块读取归档文件，只保留一页满足条件的日志
+     */
+    private List<ProctorLogItemVo> selectArchivedLogPage(Long publishId, Long recordId, Set<String> actionTypes,
+                                                         LocalDateTime beforeTime, long beforeId, int limit) {
+        List<ProctorLog> page = proctorLogArchiveService.readPage(publishId,
+                entry -> (recordId == null || recordId.equals(entry.getRecordId()))
+                        && (actionTypes == null || actionTypes.contains(entry.getActionType())),
+                beforeTime, beforeId, limit);
 
-        if (records.isEmpty()) {
-            return new ArrayList<>();
+        Map<Long, Long> recordUserMap = new HashMap<>();
+        Set<Long> pageRecordIds = page.stream().map(ProctorLog::getRecordId).collect(Collectors.toSet());
+        if (!pageRecordIds.isEmpty()) {
+            recordMapper.selectBatchIds(pageRecordIds).forEach(r -> recordUserMap.put(r.getId(), r.getUserId()));
         }
-
-        // 获取所有相关用户
-        List<Long> userIds = records.stream().map(Record::getUserId).distinct().toList();
-        Map<Long, User> userMap = new HashMap<>();
-        if (!userIds.isEmpty()) {
-            userMapper.selectBatchIds(userIds).forEach(u -> userMap.put(u.getId(), u));
+        Map<Long, String> names = getStudentNames(new HashSet<>(recordUserMap.values()));
+
+        List<ProctorLogItemVo> rows = new ArrayList<>(page.size());
+        for (ProctorLog entry : page) {
+            ProctorLogItemVo row = new ProctorLogItemVo();
+            row.setId(entry.getId());
+            row.setRecordId(entry.getRecordId());
+            row.setStudentId(recordUserMap.get(entry.getRecordId()));
+            row.setStudentName(names.get(row.getStudentId()));
+            row.setActionType(entry.getActionType());
+            row.setContent(entry.getContent());
+            row.setImgSnapshot(entry.getImgSnapshot());
+            row.setHappenTime(entry.getHappenTime());
+            rows.add(row);
         }
+        return rows;
+    }
 
-        // 获取每个记录的警告次数
-        List<Long> recordIds = records.stream().map(Record::getId).toList();
-        Map<Long, Long> warningCountMap = new HashMap<>();
-        for (Long recordId : recordIds) {
-            long count = this.count(new LambdaQueryWrapper<ProctorLog>()
-                    .eq(ProctorLog::getRecordId, recordId)
-                    .in(ProctorLog::getActionType, "switch_screen", "leave_page", "env_abnormal"));
-            warningCountMap.put(recordId, count);
-        }
+    @Override
+    public List<Map<String, Object>> getExamStudentStatus(Long publishId) {
+        // 读取按场次缓存的状态投影（一条聚合查询加载，此后随日志和记录状态增量更新）
+        List<ProctorStudentStatusVo> students = proctorStatusService.getStudents(publishId);
 
         // 组装结果
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Record record : records) {
-            User user = userMap.get(record.getUserId());
-
-            Map<String, Object> item = new HashMap<>();
-            item.put("recordId", record.getId());
-            item.put("studentId", record.getUserId());
-            item.put("studentName", user != null ? user.getRealName() : "未知");
-            item.put("status", record.getStatus());
-            item.put("statusLabel", getStatusLabel(record.getStatus()));
-            item.put("startTime", record.getStartTime());
-            item.put("submitTime", record.getSubmitTime());
-            item.put("warningCount", warningCountMap.getOrDefault(record.getId(), 0L));
-            item.put("userIp", record.getUserIp());
-            result.add(item);
+        List<Map<String, Object>> result = new ArrayList<>(students.size());
+        for (ProctorStudentStatusVo student : students) {
+            result.add(ProctorStatusService.toStatusItem(student));
         }
 
         return result;
     }
 
-    private String getStatusLabel(Byte status) {
-        if (status == null) return "未知";
-        return switch (status) {
-            case 0 -> "未开始";
-            case 1 -> "进行中";
-            case 2 -> "已交卷";
-            case 3 -> "已批卷";
-            default -> "未知";
-        };
-    }
-
     @Override
     public Map<String, Object> getProctorStats(Long publishId) {
-        List<Record> records = recordMapper.selectList(
-                new LambdaQueryWrapper<Record>().eq(Record::getPublishId, publishId));
+        List<ProctorStudentStatusVo> students = proctorStatusService.getStudents(publishId);
 
-        int total = records.size();
+        int total = students.size();
         int inProgress = 0;
         int submitted = 0;
         int notStarted = 0;
+        // 统计总警告次数
+        long totalWarnings = 0;
 
-        for (Record record : records) {
-            if (record.getStatus() == null) continue;
-            switch (record.getStatus()) {
+        for (ProctorStudentStatusVo student : students) {
+            if (student.getWarningCount() != null) {
+                totalWarnings += student.getWarningCount();
+            }
+            if (student.getStatus() == null) continue;
+            switch (student.getStatus()) {
                 case 0 -> notStarted++;
                 case 1 -> inProgress++;
                 case 2, 3 -> submitted++;
             }
         }
 
-        // 统计总警告次数
-        List<Long> recordIds = records.stream().map(Record::getId).toList();
-        long totalWarnings = 0;
-        if (!recordIds.isEmpty()) {
-            totalWarnings = this.count(new LambdaQueryWrapper<ProctorLog>()
-                    .in(ProctorLog::getRecordId, recordIds)
-                    .in(ProctorLog::getActionType, "switch_screen", "leave_page", "env_abnormal"));
-        }
-
         Map<String, Object> stats = new HashMap<>();
         stats.put("total", total);
         stats.put("inProgress", inProgress);
         stats.put("submitted", submitted);
         stats.put("notStarted", notStarted);
         stats.put("totalWarnings", totalWarnings);
+        // 应考人数（来自预热的应考名单）
+        Publish publish = examPaperCacheService.getPublish(publishId);
+        stats.put("expected", publish != null ? examPaperCacheService.getRoster(publish).getUserIds().size() : total);
         stats.put("proctorCount", proctorWebSocketHandler.getProctorCount(publishId));
 
         return stats;
@@ -12,7 +12,6 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,8 +33,7 @@ import java.util.List;
 public class PublishServiceImpl extends ServiceImpl<PublishMapper, Publish> implements PublishService {
 
     private final NoticeService noticeService;
-    private final UserNoticeService userNoticeService;
-    private final UserService userService;
+    private final NoticeFanoutService noticeFanoutService;
     private final PaperService paperService;
     
     // 修复1：使用 @Lazy 解决 PublishService <-> RecordService 的循环依赖
@@ -160,7 +158,9 @@ public class PublishServiceImpl extends ServiceImpl<PublishMapper, Publish> impl
         return result;
     }
 
-    @Async
+    /**
+     * 发送考试通知：作为部门通知只存一份，事务提交后由分发服务分批推送给目标部门的学生
+     */
     public void sendExamNotification(Publish publish, List<Long> deptIds, Long senderId) {
         Notice notice = new Notice();
         notice.setTitle("考试通知: " + publish.getTitle());
@@ -170,29 +170,12 @@ public class PublishServiceImpl extends ServiceImpl<PublishMapper, Publish> impl
                 publish.getTitle(), timeRange));
         notice.setType((byte) 2);
         notice.setTargetType((byte) 2);
+        notice.setTargetDeptIds(JSONUtil.toJsonStr(deptIds));
         notice.setSenderId(senderId);
         notice.setCreateTime(LocalDateTime.now());
         notice.setUpdateTime(LocalDateTime.now());
         noticeService.save(notice);
 
-        if (deptIds != null && !deptIds.isEmpty()) {
-            List<User> students = userService.list(new LambdaQueryWrapper<User>()
-                    .in(User::getDeptId, deptIds)
-                    .eq(User::getRole, 1));
-
-            List<UserNotice> userNotices = new ArrayList<>();
-            for (User student : students) {
-                UserNotice un = new UserNotice();
-                un.setUserId(student.getId());
-                un.setNoticeId(notice.getId());
-                un.setIsRead((byte) 0);
-                un.setCreateTime(LocalDateTime.now());
-                un.setUpdateTime(LocalDateTime.now());
-                userNotices.add(un);
-            }
-            if (!userNotices.isEmpty()) {
-                userNoticeService.saveBatch(userNotices);
-            }
-        }
+        noticeFanoutService.pushToDepartments(notice, deptIds);
     }
-}
\ No newline at end of file
+}
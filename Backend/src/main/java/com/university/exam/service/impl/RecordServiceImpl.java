@@ -3,13 +3,17 @@ package com.university.exam.service.impl;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.university.exam.common.dto.student.DashboardStatsVo;
 import com.university.exam.common.dto.student.ExamPaperVo;
+import com.university.exam.common.dto.student.QueuedSubmission;
 import com.university.exam.common.dto.student.SubmitExamRequest;
 import com.university.exam.common.exception.BizException;
+import com.university.exam.common.grading.CompiledAnswerKey;
 import com.university.exam.common.vo.StudentExamResultVo;
 import com.university.exam.entity.*;
 import com.university.exam.entity.Record;
+import com.university.exam.mapper.RecordDetailMapper;
 import com.university.exam.mapper.RecordMapper;
 import com.university.exam.service.*;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -26,6 +30,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -51,14 +56,25 @@ public class RecordServiceImpl extends ServiceImpl<RecordMapper, Record> impleme
     private final RecordDetailService recordDetailService;
     private final MistakeBookService mistakeBookService;
     private final AutoGradingService autoGradingService;
+    private final ExamPaperCacheService examPaperCacheService;
+    private final ExamRecordCacheService examRecordCacheService;
+    private final AnswerDraftService answerDraftService;
+    private final PaperShuffleService paperShuffleService;
+    private final ProctorStatusService proctorStatusService;
+    private final RecordDetailMapper recordDetailMapper;
+
+    /**
+     * 单条 upsert 语句包含的最大明细行数
+     */
+    private static final int DETAIL_BATCH_SIZE = 1000;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public ExamPaperVo startExam(Long userId, Long publishId) {
         LocalDateTime now = LocalDateTime.now();
 
-        // 1. 获取发布信息校验
-        Publish publish = publishService.getById(publishId);
+        // 1. 获取发布信息校验（短时本地缓存）
+        Publish publish = examPaperCacheService.getPublish(publishId);
         if (publish == null || publish.getStatus() != 1) {
             throw new BizException(400, "考试不存在或未发布");
         }
@@ -67,18 +83,20 @@ public class RecordServiceImpl extends ServiceImpl<RecordMapper, Record> impleme
         if (now.isBefore(publish.getStartTime())) throw new BizException(400, "考试未开始");
         if (now.isAfter(publish.getEndTime())) throw new BizException(400, "考试已结束");
 
-        // 2. 检查是否有"进行中"的记录 (断点续考)
-        Record record = this.getOne(new LambdaQueryWrapper<Record>()
+        // 2. 一次查询该考生在本场考试的全部记录，同时用于断点续考和次数校验
+        List<Record> records = this.list(new LambdaQueryWrapper<Record>()
+                .select(Record::getId, Record::getStatus, Record::getStartTime)
                 .eq(Record::getUserId, userId)
-                .eq(Record::getPublishId, publishId)
-                .eq(Record::getStatus, 1)); // 1-进行中
+                .eq(Record::getPublishId, publishId));
+        Record record = records.stream()
+                .filter(r -> r.getStatus() != null && r.getStatus() == 1) // 1-进行中
+                .findFirst()
+                .orElse(null);
 
+        boolean resumed = record != null;
         if (record == null) {
             // 3. 如果没有进行中的，检查是否超过次数限制
-            long triedCount = this.count(new LambdaQueryWrapper<Record>()
-                    .eq(Record::getUserId, userId)
-                    .eq(Record::getPublishId, publishId));
-            if (publish.getLimitCount() != -1 && triedCount >= publish.getLimitCount()) {
+            if (publish.getLimitCount() != -1 && records.size() >= publish.getLimitCount()) {
                 throw new BizException(400, "已达到最大考试次数限制");
             }
 
@@ -94,49 +112,34 @@ public class RecordServiceImpl extends ServiceImpl<RecordMapper, Record> impleme
             record.setCreateTime(now);
             record.setUpdateTime(now);
             this.save(record);
+            proctorStatusService.onRecordChanged(publishId, record.getId());
         }
 
-        // 5. 构建试卷 VO
-        Paper paper = paperService.getById(publish.getPaperId());
-        ExamPaperVo vo = new ExamPaperVo();
+        // 5. 基于试卷快照构建试卷 VO（题目已脱敏，不含 answer 和 analysis）
+        ExamPaperCacheService.PaperSnapshot snapshot = examPaperCacheService.getPaperSnapshot(publish.getPaperId());
+        if (snapshot == null) {
+            throw new BizException(404, "试卷不存在");
+        }
+        ExamPaperVo vo = examPaperCacheService.toExamPaperVo(snapshot);
         vo.setRecordId(record.getId());
-        vo.setPaperId(paper.getId());
-        vo.setTitle(paper.getTitle());
-        vo.setTotalScore(paper.getTotalScore());
-        vo.setDuration(paper.getDuration());
 
         // 计算剩余秒数 = min(考试结束时间 - now, 开始时间 + duration - now)
         LocalDateTime examEndTime = publish.getEndTime();
-        LocalDateTime paperEndTime = record.getStartTime().plusMinutes(paper.getDuration());
+        LocalDateTime paperEndTime = record.getStartTime().plusMinutes(snapshot.getDuration());
         LocalDateTime realEndTime = examEndTime.isBefore(paperEndTime) ? examEndTime : paperEndTime;
         long remainingSeconds = Duration.between(now, realEndTime).getSeconds();
         vo.setRemainingSeconds(remainingSeconds > 0 ? remainingSeconds : 0);
 
-        // 6. 获取题目并脱敏
-        List<PaperQuestion> pqs = paperQuestionService.list(new LambdaQueryWrapper<PaperQuestion>()
-                .eq(PaperQuestion::getPaperId, paper.getId())
-                .orderByAsc(PaperQuestion::getSortOrder));
-
-        List<Long> qIds = pqs.stream().map(PaperQuestion::getQuestionId).collect(Collectors.toList());
-        Map<Long, Question> qMap = questionService.listByIds(qIds).stream()
-                .collect(Collectors.toMap(Question::getId, Function.identity()));
-
-        List<ExamPaperVo.QuestionVo> questionVos = new ArrayList<>();
-        for (PaperQuestion pq : pqs) {
-            Question q = qMap.get(pq.getQuestionId());
-            if (q != null) {
-                ExamPaperVo.QuestionVo qVo = new ExamPaperVo.QuestionVo();
-                qVo.setId(q.getId());
-                qVo.setType(q.getType().intValue());
-                qVo.setContent(q.getContent());
-                qVo.setImageUrl(q.getImageUrl());
-                qVo.setOptions(q.getOptions());
-                qVo.setScore(pq.getScore());
-                // 关键：不设置 answer 和 analysis
-                questionVos.add(qVo);
+        // 6. 断点续考：回填已保存的作答（优先取 Redis 草稿，草稿丢失时回退到已落库的明细）
+        if (resumed) {
+            Map<Long, String> saved = loadSavedAnswers(record.getId());
+            for (ExamPaperVo.QuestionVo qVo : vo.getQuestions()) {
+                qVo.setSavedAnswer(saved.get(qVo.getId()));
             }
         }
-        vo.setQuestions(questionVos);
+
+        // 7. 按记录乱序题目和选项（排列由记录ID推导，无需存储）
+        paperShuffleService.shuffle(vo, record.getId());
 
         return vo;
     }
@@ -144,165 +147,229 @@ public class RecordServiceImpl extends ServiceImpl<RecordMapper, Record> impleme
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void submitExam(SubmitExamRequest req, Long userId) {
-        // 1. 获取记录
+        // 1. 获取记录并校验
         Record record = this.getById(req.getRecordId());
+        checkSubmittable(record, userId);
+
+        // 2. 判分并落库
+        persistGraded(List.of(gradeSubmission(record, req.getAnswers(), userId)));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Long, String> submitExamBatch(List<QueuedSubmission> submissions) {
+        Map<Long, String> rejected = new HashMap<>();
+        if (CollUtil.isEmpty(submissions)) {
+            return rejected;
+        }
+
+        List<Long> recordIds = submissions.stream()
+                .map(s -> s.getRequest().getRecordId())
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Record> recordMap = this.listByIds(recordIds).stream()
+                .collect(Collectors.toMap(Record::getId, Function.identity()));
+
+        List<GradedSubmission> graded = new ArrayList<>();
+        for (QueuedSubmission submission : submissions) {
+            Long recordId = submission.getRequest().getRecordId();
+            Record record = recordMap.get(recordId);
+            try {
+                checkSubmittable(record, submission.getUserId());
+            } catch (BizException e) {
+                rejected.put(recordId, e.getMessage());
+                continue;
+            }
+            graded.add(gradeSubmission(record, submission.getRequest().getAnswers(), submission.getUserId()));
+        }
+
+        // 同一批次的明细、错题合并写入
+        persistGraded(graded);
+        return rejected;
+    }
+
+    /**
+     * 校验记录是否允许交卷
+     */
+    private void checkSubmittable(Record record, Long userId) {
         if (record == null || !record.getUserId().equals(userId)) {
             throw new BizException(403, "非法操作");
         }
         if (record.getStatus() != 1) {
             throw new BizException(400, "考试已结束或已提交，请勿重复提交");
         }
+    }
 
-        // 2. 准备数据：题目Map 和 分值Map
-        List<PaperQuestion> pqs = paperQuestionService.list(new LambdaQueryWrapper<PaperQuestion>()
-                .eq(PaperQuestion::getPaperId, record.getPaperId()));
-        Map<Long, BigDecimal> scoreMap = pqs.stream()
-                .collect(Collectors.toMap(PaperQuestion::getQuestionId, PaperQuestion::getScore));
-
-        List<Long> questionIds = req.getAnswers().stream()
-                .map(SubmitExamRequest.AnswerItem::getQuestionId)
-                .collect(Collectors.toList());
+    /**
+     * 合并草稿并批改客观题（不落库），同时在内存中把记录标记为已交卷，防止同一批次重复处理
+     */
+    private GradedSubmission gradeSubmission(Record record, List<SubmitExamRequest.AnswerItem> submitted, Long userId) {
+        // 准备数据：编译后的试卷答案（缓存，含题型、归一化答案、分值、课程）
+        CompiledAnswerKey answerKey = examPaperCacheService.getCompiledKey(record.getPaperId());
+        if (answerKey == null) {
+            throw new BizException(404, "试卷不存在");
+        }
 
-        // 增加空判断，防止提交空卷导致空指针或查询报错
-        Map<Long, Question> questionMap;
-        if (CollUtil.isNotEmpty(questionIds)) {
-            questionMap = questionService.listByIds(questionIds).stream()
-                    .collect(Collectors.toMap(Question::getId, Function.identity()));
-        } else {
-            questionMap = Map.of();
+        // 合并自动保存的草稿：交卷内容优先，交卷中缺失的题目以草稿补齐（Redis 草稿过期时取已落库的草稿）
+        // 交卷内容为乱序后的展示下标，先映射回原始下标（草稿保存时已映射）
+        Map<Long, String> drafts = loadSavedAnswers(record.getId());
+        List<SubmitExamRequest.AnswerItem> answers = new ArrayList<>();
+        if (CollUtil.isNotEmpty(submitted)) {
+            for (SubmitExamRequest.AnswerItem item : paperShuffleService.toCanonical(record.getId(), record.getPaperId(), submitted)) {
+                drafts.remove(item.getQuestionId());
+                answers.add(item);
+            }
         }
+        drafts.forEach((questionId, answer) -> {
+            SubmitExamRequest.AnswerItem item = new SubmitExamRequest.AnswerItem();
+            item.setQuestionId(questionId);
+            item.setUserAnswer(answer);
+            answers.add(item);
+        });
 
-        List<RecordDetail> details = new ArrayList<>();
-        List<MistakeBook> mistakeList = new ArrayList<>();
-        BigDecimal currentTotalScore = BigDecimal.ZERO;
-        boolean hasSubjective = false;
-
-        // 3. 遍历答案，保存明细并立即批改客观题
-        if (CollUtil.isNotEmpty(req.getAnswers())) {
-            for (SubmitExamRequest.AnswerItem item : req.getAnswers()) {
-                Question q = questionMap.get(item.getQuestionId());
-                if (q == null) continue;
-
-                RecordDetail detail = new RecordDetail();
-                detail.setRecordId(record.getId());
-                detail.setQuestionId(item.getQuestionId());
-                detail.setStudentAnswer(item.getUserAnswer());
-                BigDecimal maxScore = scoreMap.getOrDefault(item.getQuestionId(), BigDecimal.ZERO);
-                detail.setMaxScore(maxScore);
-
-                // --- 核心逻辑：区分题型处理 ---
-                if (q.getType() == 1 || q.getType() == 2 || q.getType() == 3) {
-                    // 客观题：直接比对
-                    // 1-单选, 2-多选, 3-判断
-                    boolean isCorrect = false;
-                    if (StrUtil.equals(item.getUserAnswer(), q.getAnswer())) {
-                        isCorrect = true;
-                        detail.setScore(maxScore);
-                        currentTotalScore = currentTotalScore.add(maxScore);
-                    } else {
-                        detail.setScore(BigDecimal.ZERO);
-                        // 记录错题
-                        MistakeBook mb = new MistakeBook();
-                        mb.setUserId(userId);
-                        mb.setQuestionId(q.getId());
-                        mb.setCourseId(q.getCourseId());
-                        mb.setPublishId(record.getPublishId()); // 关联考试发布ID
-                        mb.setLastWrongAnswer(item.getUserAnswer());
-                        mb.setWrongCount(1);
-                        mb.setCreateBy(userId);
-                        mb.setUpdateBy(userId);
-                        mb.setCreateTime(LocalDateTime.now());
-                        mb.setUpdateTime(LocalDateTime.now());
-                        mistakeList.add(mb);
-                    }
-                    detail.setIsCorrect((byte) (isCorrect ? 1 : 0));
-                    detail.setIsMarked((byte) 1); // 标记为已批改
+        GradedSubmission graded = new GradedSubmission();
+        graded.record = record;
+        long totalScoreCents = 0L;
+
+        // 遍历答案，生成明细并立即批改客观题
+        for (SubmitExamRequest.AnswerItem item : answers) {
+            int idx = item.getQuestionId() != null ? answerKey.indexOf(item.getQuestionId()) : -1;
+            if (idx < 0) continue;
+
+            RecordDetail detail = new RecordDetail();
+            detail.setRecordId(record.getId());
+            detail.setQuestionId(item.getQuestionId());
+            detail.setStudentAnswer(item.getUserAnswer());
+            long maxScoreCents = answerKey.fullScoreCents(idx);
+            detail.setMaxScore(CompiledAnswerKey.toScore(maxScoreCents));
+
+            // --- 核心逻辑：区分题型处理 ---
+            if (answerKey.isObjective(idx)) {
+                // 客观题：归一化后比对（多选与选项顺序无关，按配置的策略给部分分）
+                // 1-单选, 2-多选, 3-判断
+                long scoreCents = answerKey.grade(idx, item.getUserAnswer());
+                boolean isCorrect = scoreCents == maxScoreCents;
+                detail.setScore(CompiledAnswerKey.toScore(scoreCents));
+                totalScoreCents += scoreCents;
+                if (!isCorrect) {
+                    // 记录错题
+                    MistakeBook mb = new MistakeBook();
+                    mb.setUserId(userId);
+                    mb.setQuestionId(item.getQuestionId());
+                    mb.setCourseId(answerKey.courseId(idx));
+                    mb.setPublishId(record.getPublishId()); // 关联考试发布ID
+                    mb.setLastWrongAnswer(item.getUserAnswer());
+                    mb.setWrongCount(1);
+                    mb.setCreateBy(userId);
+                    mb.setUpdateBy(userId);
+                    mb.setCreateTime(LocalDateTime.now());
+                    mb.setUpdateTime(LocalDateTime.now());
+                    graded.mistakes.add(mb);
+                }
+                detail.setIsCorrect((byte) (isCorrect ? 1 : 0));
+                detail.setIsMarked((byte) 1); // 标记为已批改
+            } else {
+                // 主观题处理逻辑修改
+                if (StrUtil.isBlank(item.getUserAnswer())) {
+                    // 情况A：未作答 -> 直接0分，标记为已批改，不触发AI
+                    detail.setScore(BigDecimal.ZERO);
+                    detail.setIsMarked((byte) 1);
+                    detail.setIsCorrect((byte) 0);
+                    detail.setAiComment("未作答");
                 } else {
-                    // 主观题处理逻辑修改
-                    if (StrUtil.isBlank(item.getUserAnswer())) {
-                        // 情况A：未作答 -> 直接0分，标记为已批改，不触发AI
-                        detail.setScore(BigDecimal.ZERO);
-                        detail.setIsMarked((byte) 1);
-                        detail.setIsCorrect((byte) 0);
-                        detail.setAiComment("未作答");
-                    } else {
-                        // 情况B：已作答 -> 暂设为0分，标记为未批改，触发AI
-                        detail.setScore(BigDecimal.ZERO);
-                        detail.setIsMarked((byte) 0);
-                        detail.setIsCorrect((byte) 0);
-                        hasSubjective = true; // 只有这里才置为true，表示需要后续处理
-                    }
+                    // 情况B：已作答 -> 暂设为0分，标记为未批改，触发AI
+                    detail.setScore(BigDecimal.ZERO);
+                    detail.setIsMarked((byte) 0);
+                    detail.setIsCorrect((byte) 0);
+                    graded.hasSubjective = true; // 只有这里才置为true，表示需要后续处理
                 }
-
-                detail.setCreateBy(userId);
-                detail.setUpdateBy(userId);
-                detail.setCreateTime(LocalDateTime.now());
-                detail.setUpdateTime(LocalDateTime.now());
-                details.add(detail);
             }
-            recordDetailService.saveBatch(details);
-        }
 
-        // 4. 保存客观题错题
-        saveMistakes(mistakeList);
+            detail.setCreateBy(userId);
+            detail.setUpdateBy(userId);
+            detail.setCreateTime(LocalDateTime.now());
+            detail.setUpdateTime(LocalDateTime.now());
+            graded.details.add(detail);
+        }
 
-        // 5. 更新记录状态
-        record.setTotalScore(currentTotalScore);
+        // 更新记录状态（2-已交卷待AI阅卷；3-已批改：全客观题或主观题全未答，直接完成）
+        record.setTotalScore(CompiledAnswerKey.toScore(totalScoreCents));
         record.setSubmitTime(LocalDateTime.now());
         record.setUpdateTime(LocalDateTime.now());
-
-        if (hasSubjective) {
-            record.setStatus((byte) 2); // 2-已交卷 (待AI阅卷)
-            this.updateById(record);
-
-            // 6. 触发异步阅卷 (关键修改：事务提交后执行)
-            // 解决 "RecordDetail 未提交导致异步线程查不到数据" 的问题
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-                @Override
-                public void afterCommit() {
-                    log.info("事务已提交，触发异步阅卷任务: recordId={}", record.getId());
-                    autoGradingService.gradeSubjectiveQuestionsAsync(record.getId());
-                }
-            });
-        } else {
-            record.setStatus((byte) 3); // 3-已批改 (全客观题或主观题全未答，直接完成)
-            this.updateById(record);
-        }
+        record.setStatus((byte) (graded.hasSubjective ? 2 : 3));
+        return graded;
     }
 
     /**
-     * 批量保存错题（排重处理，防止并发导致重复键异常）
+     * 批量落库判分结果：明细与错题各一次批量写入，随后逐条更新记录
      */
-    private void saveMistakes(List<MistakeBook> list) {
-        if (CollUtil.isEmpty(list)) return;
+    private void persistGraded(List<GradedSubmission> gradedList) {
+        if (gradedList.isEmpty()) {
+            return;
+        }
 
-        for (MistakeBook mb : list) {
-            try {
-                // 检查是否已存在
-                MistakeBook existing = mistakeBookService.getOne(new LambdaQueryWrapper<MistakeBook>()
-                        .eq(MistakeBook::getUserId, mb.getUserId())
-                        .eq(MistakeBook::getQuestionId, mb.getQuestionId()));
-
-                if (existing != null) {
-                    // 更新错误次数
-                    existing.setWrongCount(existing.getWrongCount() + 1);
-                    existing.setLastWrongAnswer(mb.getLastWrongAnswer());
-                    existing.setUpdateTime(LocalDateTime.now());
-                    mistakeBookService.updateById(existing);
-                } else {
-                    mistakeBookService.save(mb);
+        // 1. 保存答题明细（草稿可能已落库，使用 upsert 覆盖）
+        List<RecordDetail> details = new ArrayList<>();
+        List<MistakeBook> mistakeList = new ArrayList<>();
+        for (GradedSubmission graded : gradedList) {
+            details.addAll(graded.details);
+            mistakeList.addAll(graded.mistakes);
+        }
+        for (List<RecordDetail> chunk : CollUtil.split(details, DETAIL_BATCH_SIZE)) {
+            recordDetailMapper.upsertBatch(chunk);
+        }
+
+        // 2. 保存客观题错题（单条语句批量 upsert）
+        mistakeBookService.recordMistakes(mistakeList);
+
+        // 3. 更新记录状态
+        List<Long> subjectiveRecordIds = new ArrayList<>();
+        List<Long> recordIds = new ArrayList<>();
+        for (GradedSubmission graded : gradedList) {
+            Record record = graded.record;
+            // 条件更新：只有进行中的记录才能交卷，防止与自动收卷、重复提交并发时重复判分
+            boolean updated = this.update(record, new LambdaUpdateWrapper<Record>()
+                    .eq(Record::getId, record.getId())
+                    .eq(Record::getStatus, 1));
+            if (!updated) {
+                throw new BizException(400, "考试已结束或已提交，请勿重复提交");
+            }
+            recordIds.add(record.getId());
+            if (graded.hasSubjective) {
+                subjectiveRecordIds.add(record.getId());
+            }
+            // 事务提交后失效记录缓存，刷新监考台状态
+            examRecordCacheService.evict(record.getId());
+            proctorStatusService.onRecordChanged(record.getPublishId(), record.getId());
+        }
+
+        // 4. 事务提交后清理草稿，并触发异步阅卷
+        // 解决 "RecordDetail 未提交导致异步线程查不到数据" 的问题
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordIds.forEach(answerDraftService::clearDrafts);
+                for (Long recordId : subjectiveRecordIds) {
+                    log.info("事务已提交，触发异步阅卷任务: recordId={}", recordId);
+                    autoGradingService.gradeSubjectiveQuestionsAsync(recordId);
                 }
-            } catch (org.springframework.dao.DuplicateKeyException e) {
-                // 并发插入导致重复键，改为更新
-                log.warn("错题本并发插入冲突，改为更新: userId={}, questionId={}", mb.getUserId(), mb.getQuestionId());
-                mistakeBookService.update(new com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper<MistakeBook>()
-                        .eq(MistakeBook::getUserId, mb.getUserId())
-                        .eq(MistakeBook::getQuestionId, mb.getQuestionId())
-                        .setSql("wrong_count = wrong_count + 1")
-                        .set(MistakeBook::getLastWrongAnswer, mb.getLastWrongAnswer())
-                        .set(MistakeBook::getUpdateTime, LocalDateTime.now()));
             }
+        });
+    }
+
+    /**
+     * 读取已保存的作答（断点续考回填、交卷合并草稿），优先取 Redis 草稿，草稿丢失时回退到已落库的明细
+     */
+    private Map<Long, String> loadSavedAnswers(Long recordId) {
+        Map<Long, String> saved = answerDraftService.getDrafts(recordId);
+        if (!saved.isEmpty()) {
+            return saved;
         }
+        recordDetailService.list(new LambdaQueryWrapper<RecordDetail>()
+                        .select(RecordDetail::getQuestionId, RecordDetail::getStudentAnswer)
+                        .eq(RecordDetail::getRecordId, recordId))
+                .forEach(d -> saved.put(d.getQuestionId(), d.getStudentAnswer()));
+        return saved;
     }
 
     @Override
@@ -474,4 +541,14 @@ public class RecordServiceImpl extends ServiceImpl<RecordMapper, Record> impleme
 
         return vo;
     }
-}
\ No newline at end of file
+
+    /**
+     * 单份答卷的判分结果（尚未落库）
+     */
+    private static class GradedSubmission {
+        private Record record;
+        private final List<RecordDetail> details = new ArrayList<>();
+        private final List<MistakeBook> mistakes = new ArrayList<>();
+        private boolean hasSubjective;
+    }
+}
@@ -0,0 +1,36 @@
+package com.university.exam.websocket;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 跨节点转发的 WebSocket 消息
+ * payload 为已序列化的 {@link WebSocketMessage}，发布方只序列化一次，接收节点直接写入会话。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Data
+public class ClusterEnvelope {
+
+    /**
+     * 目标用户（为空表示发给接收节点上的全部用户）
+     */
+    private List<Long> userIds;
+
+    /**
+     * 目标考试场次（监考消息）
+     */
+    private Long publishId;
+
+    /**
+     * 目标考试记录（考生考试通道消息）
+     */
+    private Long recordId;
+
+    /**
+     * 消息内容（WebSocketMessage JSON）
+     */
+    private String payload;
+}
@@ -0,0 +1,113 @@
+package com.university.exam.websocket;
+
+import com.university.exam.service.ExamRecordCacheService;
+import com.university.exam.service.TokenService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * 考生考试WebSocket握手拦截器
+ * 握手时完成一次认证（JWT + Redis Token 校验）和考试记录归属校验，之后该连接上的监考事件不再逐条认证
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+public class ExamHandshakeInterceptor implements HandshakeInterceptor {
+
+    private final TokenService tokenService;
+    private final ExamRecordCacheService examRecordCacheService;
+
+    public ExamHandshakeInterceptor(TokenService tokenService, ExamRecordCacheService examRecordCacheService) {
+        this.tokenService = tokenService;
+        this.examRecordCacheService = examRecordCacheService;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        try {
+            String token = null;
+            String recordIdStr = null;
+
+            // 从URL参数中获取token和recordId
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                token = servletRequest.getServletRequest().getParameter("token");
+                recordIdStr = servletRequest.getServletRequest().getParameter("recordId");
+            }
+
+            // 如果URL参数中没有token，尝试从Header获取
+            if (!StringUtils.hasText(token)) {
+                String authHeader = request.getHeaders().getFirst("Authorization");
+                if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
+                    token = authHeader.substring(7);
+                }
+            }
+
+            if (!StringUtils.hasText(token) || !StringUtils.hasText(recordIdStr)) {
+                log.warn("考试WebSocket连接失败：缺少token或recordId");
+                return false;
+            }
+
+            // 验证token（JWT + Redis，与HTTP请求的认证一致），用户和角色直接取认证结果，不再重复解析JWT
+            TokenService.TokenSession tokenSession = tokenService.authenticate(token);
+            if (tokenSession == null) {
+                log.warn("考试WebSocket连接失败：token无效");
+                return false;
+            }
+
+            Long userId = tokenSession.getUserId();
+            Integer role = tokenSession.getRole();
+
+            // 只允许学生连接 (role: 1-学生, 2-教师, 3-管理员)
+            if (role == null || role != 1) {
+                log.warn("考试WebSocket连接失败：用户 {} 不是学生，角色: {}", userId, role);
+                return false;
+            }
+
+            // 校验考试记录归属及状态
+            Long recordId = Long.parseLong(recordIdStr);
+            ExamRecordCacheService.RecordMeta meta = examRecordCacheService.getRecordMeta(recordId);
+            if (meta == null || !meta.getUserId().equals(userId)) {
+                log.warn("考试WebSocket连接失败：用户 {} 无权访问考试记录 {}", userId, recordId);
+                return false;
+            }
+            if (!meta.isInProgress()) {
+                log.info("考试WebSocket连接失败：考试记录 {} 不在进行中", recordId);
+                return false;
+            }
+
+            attributes.put("userId", userId);
+            attributes.put("role", role);
+            attributes.put("recordId", recordId);
+            attributes.put("publishId", meta.getPublishId());
+
+            log.debug("考试WebSocket握手成功，考生ID: {}, 考试记录ID: {}", userId, recordId);
+            return true;
+
+        } catch (NumberFormatException e) {
+            log.error("考试WebSocket握手失败：recordId格式错误", e);
+            return false;
+        } catch (Exception e) {
+            log.error("考试WebSocket握手失败：未知错误", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        if (exception != null) {
+            log.error("考试WebSocket握手后发生异常", exception);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.university.exam.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.university.exam.common.dto.student.ProctorLogDto;
+import com.university.exam.common.exception.BizException;
+import com.university.exam.service.ProctorLogService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 考生考试WebSocket处理器
+ * 考生在考试期间保持一条连接（/ws/exam?recordId=xxx），握手时完成认证，之后通过该连接上报监考事件和心跳：
+ * 1. 客户端消息 {"type":"proctor_log","data":{"actionType":"switch_screen","content":"..."}}，
+ *    进入与 HTTP 上报相同的写入流程（缓冲批量落库、警告计数、推送监考教师），不再逐条经过安全过滤链
+ * 2. 客户端消息 {"type":"ping"} 返回 pong
+ * 3. 服务端可通过 {@link #sendToRecord(Long, WebSocketMessage)} 向考生下发指令（经消息总线到达持有连接的节点）
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+public class ExamWebSocketHandler extends TextWebSocketHandler {
+
+    /**
+     * 考生考试会话
+     * Key: recordId (考试记录ID), Value: WebSocket会话
+     */
+    private static final Map<Long, WebSocketSession> EXAM_SESSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * 考生通道频道
+     */
+    private static final String EXAM_CHANNEL = "exam:ws:exam";
+
+    private final ObjectMapper objectMapper;
+
+    private final ProctorLogService proctorLogService;
+
+    private final MessageBus messageBus;
+
+    /**
+     * 单个连接每秒允许上报的监考事件数
+     */
+    @Value("${exam.proctor.ws-max-events-per-second:20}")
+    private int maxEventsPerSecond;
+
+    /**
+     * 单次发送超时时间（毫秒），与通知通道共用配置
+     */
+    @Value("${exam.ws.send-time-limit:5000}")
+    private int sendTimeLimit;
+
+    /**
+     * 每个会话的发送缓冲区上限（字节），与通知通道共用配置
+     */
+    @Value("${exam.ws.buffer-size-limit:262144}")
+    private int bufferSizeLimit;
+
+    public ExamWebSocketHandler(@Lazy ProctorLogService proctorLogService, MessageBus messageBus) {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.proctorLogService = proctorLogService;
+        this.messageBus = messageBus;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe(EXAM_CHANNEL, this::onBusMessage);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Long recordId = getLong(session, "recordId");
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        WebSocketSession old = EXAM_SESSIONS.put(recordId, decorated);
+        if (old != null && old.isOpen()) {
+            try {
+                old.close(CloseStatus.NORMAL.withReason("新连接建立，关闭旧连接"));
+            } catch (IOException e) {
+                log.warn("关闭旧考试WebSocket连接失败", e);
+            }
+        }
+        send(decorated, WebSocketMessage.success("exam_connected", "考试连接成功"));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        Long userId = getLong(session, "userId");
+        Long recordId = getLong(session, "recordId");
+        WebSocketSession decorated = EXAM_SESSIONS.getOrDefault(recordId, session);
+
+        WebSocketMessage wsMessage;
+        try {
+            wsMessage = objectMapper.readValue(message.getPayload(), WebSocketMessage.class);
+        } catch (Exception e) {
+            log.debug("考试WebSocket消息格式错误: recordId={}", recordId);
+            return;
+        }
+
+        if ("ping".equals(wsMessage.getType())) {
+            send(decorated, WebSocketMessage.success("pong", "心跳响应"));
+            return;
+        }
+        if (!"proctor_log".equals(wsMessage.getType()) || wsMessage.getData() == null) {
+            log.debug("忽略考试WebSocket消息类型: {}", wsMessage.getType());
+            return;
+        }
+        long count = countEvent(session);
+        if (count > maxEventsPerSecond) {
+            // 每个窗口只提示一次，避免限流提示本身放大流量
+            if (count == maxEventsPerSecond + 1) {
+                log.warn("考生监考事件上报过于频繁，已丢弃: userId={}, recordId={}", userId, recordId);
+                send(decorated, WebSocketMessage.error("proctor_log", "监考事件上报过于频繁，本秒内的后续事件已丢弃"));
+            }
+            return;
+        }
+
+        ProctorLogDto dto = objectMapper.convertValue(wsMessage.getData(), ProctorLogDto.class);
+        dto.setRecordId(recordId);
+        if (!StringUtils.hasText(dto.getActionType())) {
+            send(decorated, WebSocketMessage.error("proctor_log", "动作类型不能为空"));
+            return;
+        }
+        try {
+            proctorLogService.handleProctorLog(dto, userId);
+        } catch (BizException e) {
+            send(decorated, WebSocketMessage.error("proctor_log", e.getMessage()));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        log.debug("考试WebSocket传输错误: recordId={}, error={}", getLong(session, "recordId"), exception.getMessage());
+        removeSession(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        removeSession(session);
+    }
+
+    /**
+     * 向考生下发消息（任一节点）
+     *
+     * @param recordId 考试记录ID
+     * @param message  消息内容
+     */
+    public void sendToRecord(Long recordId, WebSocketMessage message) {
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setRecordId(recordId);
+        try {
+            envelope.setPayload(objectMapper.writeValueAsString(message));
+            messageBus.publish(EXAM_CHANNEL, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("发布考生消息失败: recordId={}", recordId, e);
+        }
+    }
+
+    private void onBusMessage(String raw) {
+        ClusterEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(raw, ClusterEnvelope.class);
+        } catch (IOException e) {
+            log.error("解析考生总线消息失败", e);
+            return;
+        }
+        WebSocketSession session = EXAM_SESSIONS.get(envelope.getRecordId());
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(envelope.getPayload()));
+        } catch (Exception e) {
+            log.warn("向考生推送消息失败: recordId={}, error={}", envelope.getRecordId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按秒的固定窗口计数
+     *
+     * @return 当前窗口内包括本次在内的事件数
+     */
+    private long countEvent(WebSocketSession session) {
+        long second = System.currentTimeMillis() / 1000;
+        long[] window = (long[]) session.getAttributes().computeIfAbsent("eventWindow", k -> new long[2]);
+        synchronized (window) {
+            if (window[0] != second) {
+                window[0] = second;
+                window[1] = 0;
+            }
+            return ++window[1];
+        }
+    }
+
+    private void send(WebSocketSession session, WebSocketMessage message) {
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (IOException e) {
+            log.warn("发送考试WebSocket消息失败: {}", e.getMessage());
+        }
+    }
+
+    private Long getLong(WebSocketSession session, String name) {
+        Object value = session.getAttributes().get(name);
+        return value != null ? (Long) value : null;
+    }
+
+    private void removeSession(WebSocketSession session) {
+        Long recordId = getLong(session, "recordId");
+        if (recordId == null) return;
+        EXAM_SESSIONS.computeIfPresent(recordId, (k, existing) ->
+                existing.getId().equals(session.getId()) ? null : existing);
+    }
+}
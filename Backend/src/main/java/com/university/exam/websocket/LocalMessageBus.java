@@ -0,0 +1,46 @@
+package com.university.exam.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内消息总线（单节点部署、测试使用）
+ * 在发布线程中同步调用订阅者。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "exam.ws.bus", havingValue = "local")
+public class LocalMessageBus implements MessageBus {
+
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String channel, String message) {
+        List<Consumer<String>> handlers = subscribers.get(channel);
+        if (handlers == null) {
+            return;
+        }
+        for (Consumer<String> handler : handlers) {
+            try {
+                handler.accept(message);
+            } catch (Exception e) {
+                log.error("处理总线消息失败: channel={}", channel, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> handler) {
+        subscribers.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+}
@@ -0,0 +1,30 @@
+package com.university.exam.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * WebSocket 消息总线
+ * WebSocket 会话只存在于建立连接的节点上，跨节点推送时由总线把消息转发到持有会话的节点。
+ * 单节点部署和测试使用进程内实现（exam.ws.bus=local），集群部署使用 Redis 发布订阅（exam.ws.bus=redis）。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public interface MessageBus {
+
+    /**
+     * 发布消息
+     *
+     * @param channel 频道
+     * @param message 消息（JSON 字符串）
+     */
+    void publish(String channel, String message);
+
+    /**
+     * 订阅频道（本节点发布的消息同样会投递给本节点的订阅者）
+     *
+     * @param channel 频道
+     * @param handler 消息处理
+     */
+    void subscribe(String channel, Consumer<String> handler);
+}
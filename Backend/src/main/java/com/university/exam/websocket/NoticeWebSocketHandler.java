@@ -2,18 +2,28 @@ package com.university.exam.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 通知WebSocket处理器
  * 管理WebSocket连接的生命周期和消息处理
+ * 会话只保存在建立连接的节点上；发给其它节点用户的消息通过 {@link MessageBus} 转发到
+ * 持有会话的节点（节点频道 exam:ws:node:{nodeId}），广播消息发布到所有节点（exam:ws:broadcast）。
+ * 会话以 {@link ConcurrentWebSocketSessionDecorator} 包装：正在发送的会话只缓冲新消息，超出缓冲上限时丢弃，
+ * 广播给大量用户时不会因个别慢连接阻塞分发线程。
  *
  * @author exam-system
  * @since 2025-12-15
@@ -24,15 +34,49 @@ public class NoticeWebSocketHandler extends TextWebSocketHandler {
 
     /**
      * 存储所有在线用户的WebSocket会话
-     * Key: 用户ID, Value: WebSocket会话
+     * Key: 用户ID, Value: WebSocket会话（已包装为并发发送会话）
      */
     private static final Map<Long, WebSocketSession> USER_SESSIONS = new ConcurrentHashMap<>();
 
+    /**
+     * 节点频道前缀
+     */
+    private static final String NODE_CHANNEL_PREFIX = "exam:ws:node:";
+
+    /**
+     * 广播频道
+     */
+    private static final String BROADCAST_CHANNEL = "exam:ws:broadcast";
+
     private final ObjectMapper objectMapper;
 
-    public NoticeWebSocketHandler() {
+    private final MessageBus messageBus;
+
+    private final WebSocketPresenceRegistry presenceRegistry;
+
+    /**
+     * 单次发送的超时时间（毫秒）
+     */
+    @Value("${exam.ws.send-time-limit:5000}")
+    private int sendTimeLimit;
+
+    /**
+     * 每个会话的发送缓冲区上限（字节）
+     */
+    @Value("${exam.ws.buffer-size-limit:262144}")
+    private int bufferSizeLimit;
+
+    public NoticeWebSocketHandler(MessageBus messageBus, WebSocketPresenceRegistry presenceRegistry) {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
+        this.messageBus = messageBus;
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe(NODE_CHANNEL_PREFIX + presenceRegistry.getNodeId(), this::onBusMessage);
+        messageBus.subscribe(BROADCAST_CHANNEL, this::onBusMessage);
     }
 
     /**
@@ -52,7 +96,9 @@ public class NoticeWebSocketHandler extends TextWebSocketHandler {
                 }
             }
             
-            USER_SESSIONS.put(userId, session);
+            USER_SESSIONS.put(userId, new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit,
+                    bufferSizeLimit, ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP));
+            presenceRegistry.userOnline(userId);
             log.info("WebSocket连接建立，用户ID: {}，当前在线用户数: {}", userId, USER_SESSIONS.size());
             
             // 发送连接成功消息
@@ -108,86 +154,172 @@ public class NoticeWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 向指定用户发送消息
+     * 向指定用户发送消息（用户连接在其它节点时经消息总线转发）
      *
      * @param userId 用户ID
      * @param message 消息内容
-     * @return 是否发送成功
+     * @return 是否发送成功（转发到其它节点时视为成功）
      */
     public boolean sendMessage(Long userId, WebSocketMessage message) {
-        WebSocketSession session = USER_SESSIONS.get(userId);
-        if (session == null || !session.isOpen()) {
-            log.debug("用户 {} 不在线，无法发送消息", userId);
+        String jsonMessage = serialize(message);
+        if (jsonMessage == null) {
             return false;
         }
-
-        try {
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(jsonMessage));
+        if (sendLocal(userId, jsonMessage)) {
             log.debug("向用户 {} 发送消息成功: {}", userId, message.getType());
             return true;
-        } catch (IOException e) {
-            log.error("向用户 {} 发送消息失败", userId, e);
-            return false;
         }
+        return forward(List.of(userId), jsonMessage) > 0;
     }
 
     /**
-     * 向多个用户发送消息
+     * 向多个用户发送消息（只序列化一次，其它节点上的用户按节点合并转发）
      *
      * @param userIds 用户ID列表
      * @param message 消息内容
      */
     public void sendMessageToUsers(Iterable<Long> userIds, WebSocketMessage message) {
+        String jsonMessage = serialize(message);
+        if (jsonMessage == null) {
+            return;
+        }
+        List<Long> remote = new ArrayList<>();
         for (Long userId : userIds) {
-            sendMessage(userId, message);
+            if (!sendLocal(userId, jsonMessage)) {
+                remote.add(userId);
+            }
         }
+        forward(remote, jsonMessage);
     }
 
     /**
-     * 向所有在线用户广播消息
+     * 向所有在线用户广播消息（所有节点）
      *
      * @param message 消息内容
      */
     public void broadcastMessage(WebSocketMessage message) {
-        String jsonMessage;
-        try {
-            jsonMessage = objectMapper.writeValueAsString(message);
-        } catch (IOException e) {
-            log.error("序列化广播消息失败", e);
+        String jsonMessage = serialize(message);
+        if (jsonMessage == null) {
             return;
         }
-
-        USER_SESSIONS.forEach((userId, session) -> {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(jsonMessage));
-                } catch (IOException e) {
-                    log.error("向用户 {} 广播消息失败", userId, e);
-                }
-            }
-        });
-        log.info("广播消息完成，消息类型: {}，在线用户数: {}", message.getType(), USER_SESSIONS.size());
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setPayload(jsonMessage);
+        publish(BROADCAST_CHANNEL, envelope);
+        log.info("广播消息完成，消息类型: {}", message.getType());
     }
 
     /**
-     * 检查用户是否在线
+     * 检查用户是否在线（任一节点）
      *
      * @param userId 用户ID
      * @return 是否在线
      */
     public boolean isUserOnline(Long userId) {
-        WebSocketSession session = USER_SESSIONS.get(userId);
-        return session != null && session.isOpen();
+        return presenceRegistry.isUserOnline(userId);
     }
 
     /**
-     * 获取在线用户数
+     * 获取在线用户数（集群）
      *
      * @return 在线用户数
      */
     public int getOnlineUserCount() {
-        return USER_SESSIONS.size();
+        return presenceRegistry.getOnlineUserCount();
+    }
+
+    /**
+     * 处理其它节点（或本节点广播）转发来的消息
+     */
+    private void onBusMessage(String raw) {
+        ClusterEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(raw, ClusterEnvelope.class);
+        } catch (IOException e) {
+            log.error("解析总线消息失败", e);
+            return;
+        }
+        if (envelope.getUserIds() == null) {
+            USER_SESSIONS.keySet().forEach(userId -> sendLocal(userId, envelope.getPayload()));
+            log.debug("本节点广播完成，在线用户数: {}", USER_SESSIONS.size());
+            return;
+        }
+        envelope.getUserIds().forEach(userId -> sendLocal(userId, envelope.getPayload()));
+    }
+
+    /**
+     * 把消息转发到持有会话的节点
+     *
+     * @return 转发的用户数
+     */
+    private int forward(List<Long> userIds, String jsonMessage) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, String> nodes;
+        try {
+            nodes = presenceRegistry.getNodes(userIds);
+        } catch (Exception e) {
+            log.warn("查询用户所在节点失败: error={}", e.getMessage());
+            return 0;
+        }
+        Map<String, List<Long>> byNode = new HashMap<>();
+        nodes.forEach((userId, node) -> {
+            // 路由指向本节点但本地无会话，说明连接已断开
+            if (!node.equals(presenceRegistry.getNodeId())) {
+                byNode.computeIfAbsent(node, k -> new ArrayList<>()).add(userId);
+            }
+        });
+        int forwarded = 0;
+        for (Map.Entry<String, List<Long>> entry : byNode.entrySet()) {
+            ClusterEnvelope envelope = new ClusterEnvelope();
+            envelope.setUserIds(entry.getValue());
+            envelope.setPayload(jsonMessage);
+            if (publish(NODE_CHANNEL_PREFIX + entry.getKey(), envelope)) {
+                forwarded += entry.getValue().size();
+            }
+        }
+        if (forwarded < userIds.size()) {
+            log.debug("{} 个用户不在线，无法发送消息", userIds.size() - forwarded);
+        }
+        return forwarded;
+    }
+
+    private boolean publish(String channel, ClusterEnvelope envelope) {
+        try {
+            messageBus.publish(channel, objectMapper.writeValueAsString(envelope));
+            return true;
+        } catch (Exception e) {
+            log.error("发布总线消息失败: channel={}", channel, e);
+            return false;
+        }
+    }
+
+    /**
+     * 向本节点上的用户会话发送消息
+     */
+    private boolean sendLocal(Long userId, String jsonMessage) {
+        WebSocketSession session = USER_SESSIONS.get(userId);
+        if (session == null || !session.isOpen()) {
+            return false;
+        }
+        try {
+            // 装饰器保证同一会话串行发送，其它线程正在发送时只缓冲
+            session.sendMessage(new TextMessage(jsonMessage));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // 发送超时或缓冲区溢出时装饰器会关闭会话，连接关闭回调中移除
+            log.warn("向用户 {} 发送消息失败: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    private String serialize(WebSocketMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (IOException e) {
+            log.error("序列化WebSocket消息失败", e);
+            return null;
+        }
     }
 
     /**
@@ -202,8 +334,15 @@ public class NoticeWebSocketHandler extends TextWebSocketHandler {
      * 移除会话
      */
     private void removeSession(Long userId, WebSocketSession session) {
-        if (userId != null) {
-            USER_SESSIONS.remove(userId, session);
+        if (userId == null) {
+            return;
+        }
+        // 只移除与当前连接对应的会话，避免移除同一用户新建立的连接
+        WebSocketSession current = USER_SESSIONS.get(userId);
+        if (current instanceof ConcurrentWebSocketSessionDecorator decorator
+                && decorator.getDelegate() == session
+                && USER_SESSIONS.remove(userId, current)) {
+            presenceRegistry.userOffline(userId);
         }
     }
 }
@@ -36,11 +36,13 @@ public class ProctorHandshakeInterceptor implements HandshakeInterceptor {
         try {
             String token = null;
             String publishIdStr = null;
+            String cursor = null;
 
             // 从URL参数中获取token和publishId
             if (request instanceof ServletServerHttpRequest servletRequest) {
                 token = servletRequest.getServletRequest().getParameter("token");
                 publishIdStr = servletRequest.getServletRequest().getParameter("publishId");
+                cursor = servletRequest.getServletRequest().getParameter("cursor");
             }
 
             // 如果URL参数中没有token，尝试从Header获取
@@ -83,6 +85,10 @@ public class ProctorHandshakeInterceptor implements HandshakeInterceptor {
             attributes.put("userId", userId);
             attributes.put("role", role);
             attributes.put("publishId", publishId);
+            // 断线重连时带上最后收到的事件游标，连接建立后补发期间的监考事件
+            if (StringUtils.hasText(cursor)) {
+                attributes.put("cursor", cursor);
+            }
 
             log.info("监考WebSocket握手成功，教师ID: {}, 考试ID: {}", userId, publishId);
             return true;
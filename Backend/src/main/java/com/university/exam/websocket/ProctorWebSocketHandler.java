@@ -2,19 +2,37 @@ package com.university.exam.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.university.exam.service.ProctorFeedService;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 监考WebSocket处理器
  * 用于教师实时监控学生考试状态
+ * 监考日志按考试场次合并推送：日志先进入场次的待推送队列，每隔固定间隔（默认 250ms）合并为一条
+ * proctor_log_batch 消息，只序列化一次，由推送线程池发送。每场考试的待推送队列有容量上限，满时丢弃最早的日志
+ * （监考台按事件流游标增量同步补齐）。教师会话包装为并发装饰器，
+ * 慢连接的消息在会话缓冲区中排队（超出上限时丢弃最早的消息），不会阻塞日志写入。
+ * 监考消息经 {@link MessageBus} 发布到所有节点（exam:ws:proctor），由各节点推送给本节点上的教师会话。
+ * 教师断线重连时带上最后收到的事件游标（cursor），连接建立后先补发游标之后的监考事件（proctor_feed）。
  *
  * @author exam-system
  * @since 2025-12-15
@@ -35,11 +53,70 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
      */
     private static final Map<Long, Long> USER_PUBLISH_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * 待合并推送的监考日志
+     * Key: publishId (考试发布ID), Value: 日志队列（有界）
+     */
+    private static final Map<Long, Queue<Object>> PENDING_LOGS = new ConcurrentHashMap<>();
+
+    /**
+     * 监考消息频道
+     */
+    private static final String PROCTOR_CHANNEL = "exam:ws:proctor";
+
     private final ObjectMapper objectMapper;
 
-    public ProctorWebSocketHandler() {
+    private final Executor broadcastExecutor;
+
+    private final MessageBus messageBus;
+
+    private final WebSocketPresenceRegistry presenceRegistry;
+
+    private final ProctorFeedService proctorFeedService;
+
+    /**
+     * 单次发送的超时时间（毫秒）
+     */
+    @Value("${exam.proctor.ws-send-time-limit:5000}")
+    private int sendTimeLimit;
+
+    /**
+     * 每个教师会话的发送缓冲区上限（字节）
+     */
+    @Value("${exam.proctor.ws-buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    /**
+     * 每条合并消息包含的最大日志数，超出的部分留到下一次推送
+     */
+    @Value("${exam.proctor.broadcast-max-batch:500}")
+    private int maxBatch;
+
+    /**
+     * 每场考试待推送日志的队列上限，超出时丢弃最早的日志
+     */
+    @Value("${exam.proctor.broadcast-queue-capacity:5000}")
+    private int queueCapacity;
+
+    /**
+     * 因队列已满丢弃的日志数（每次合并推送时汇总输出）
+     */
+    private final LongAdder droppedLogs = new LongAdder();
+
+    public ProctorWebSocketHandler(@Qualifier("proctorBroadcastExecutor") Executor broadcastExecutor,
+                                   MessageBus messageBus, WebSocketPresenceRegistry presenceRegistry,
+                                   ProctorFeedService proctorFeedService) {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
+        this.broadcastExecutor = broadcastExecutor;
+        this.messageBus = messageBus;
+        this.presenceRegistry = presenceRegistry;
+        this.proctorFeedService = proctorFeedService;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe(PROCTOR_CHANNEL, this::onBusMessage);
     }
 
     @Override
@@ -55,14 +132,24 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
 
         // 注册教师监考会话
         PROCTOR_SESSIONS.computeIfAbsent(publishId, k -> new ConcurrentHashMap<>())
-                .put(userId, session);
+                .put(userId, new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit,
+                        ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP));
         USER_PUBLISH_MAP.put(userId, publishId);
+        presenceRegistry.proctorOnline(publishId, userId);
 
         log.info("教师 {} 开始监控考试 {}, 当前监控该考试的教师数: {}", 
                 userId, publishId, PROCTOR_SESSIONS.get(publishId).size());
 
         // 发送连接成功消息
-        sendMessage(session, WebSocketMessage.success("proctor_connected", "监考连接成功"));
+        WebSocketSession decorated = PROCTOR_SESSIONS.get(publishId).get(userId);
+        sendMessage(decorated, WebSocketMessage.success("proctor_connected", "监考连接成功"));
+
+        // 补发断线期间的监考事件（超出 maxBatch 的部分由客户端通过 /api/proctor/feed 继续拉取）
+        Object cursor = session.getAttributes().get("cursor");
+        if (cursor != null) {
+            sendMessage(decorated, WebSocketMessage.proctorFeed(
+                    proctorFeedService.read(publishId, cursor.toString(), maxBatch)));
+        }
     }
 
     @Override
@@ -76,7 +163,7 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
             
             // 处理心跳消息
             if ("ping".equals(wsMessage.getType())) {
-                sendMessage(session, WebSocketMessage.success("pong", "心跳响应"));
+                sendMessage(getDecoratedSession(session), WebSocketMessage.success("pong", "心跳响应"));
                 return;
             }
 
@@ -103,38 +190,98 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 向监控指定考试的所有教师推送消息
+     * 向监控指定考试的所有教师推送消息（所有节点）
      *
      * @param publishId 考试发布ID
      * @param message   消息内容
      */
     public void broadcastToProctors(Long publishId, WebSocketMessage message) {
-        Map<Long, WebSocketSession> sessions = PROCTOR_SESSIONS.get(publishId);
-        if (sessions == null || sessions.isEmpty()) {
-            log.debug("考试 {} 当前无教师监控", publishId);
-            return;
+        ClusterEnvelope envelope = new ClusterEnvelope();
+        envelope.setPublishId(publishId);
+        try {
+            envelope.setPayload(objectMapper.writeValueAsString(message));
+            messageBus.publish(PROCTOR_CHANNEL, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("发布监考消息失败", e);
         }
+    }
 
-        String jsonMessage;
+    /**
+     * 处理总线上的监考消息，推送给本节点上监控该考试的教师
+     */
+    private void onBusMessage(String raw) {
+        ClusterEnvelope envelope;
         try {
-            jsonMessage = objectMapper.writeValueAsString(message);
+            envelope = objectMapper.readValue(raw, ClusterEnvelope.class);
         } catch (IOException e) {
-            log.error("序列化监考消息失败", e);
+            log.error("解析监考总线消息失败", e);
+            return;
+        }
+        Map<Long, WebSocketSession> sessions = PROCTOR_SESSIONS.get(envelope.getPublishId());
+        if (sessions == null || sessions.isEmpty()) {
+            log.debug("考试 {} 在本节点无教师监控", envelope.getPublishId());
             return;
         }
 
+        TextMessage textMessage = new TextMessage(envelope.getPayload());
         sessions.forEach((userId, session) -> {
             if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(jsonMessage));
-                    log.debug("向教师 {} 推送监考消息成功", userId);
-                } catch (IOException e) {
-                    log.error("向教师 {} 推送监考消息失败", userId, e);
-                }
+                broadcastExecutor.execute(() -> {
+                    try {
+                        session.sendMessage(textMessage);
+                        log.debug("向教师 {} 推送监考消息成功", userId);
+                    } catch (Exception e) {
+                        log.error("向教师 {} 推送监考消息失败", userId, e);
+                    }
+                });
             }
         });
     }
 
+    /**
+     * 加入待合并推送的监考日志（不在调用线程中发送）
+     *
+     * @param publishId 考试发布ID
+     * @param logData   日志数据
+     */
+    public void queueProctorLog(Long publishId, Object logData) {
+        Queue<Object> queue = PENDING_LOGS.computeIfAbsent(publishId, k -> new ArrayBlockingQueue<>(queueCapacity));
+        while (!queue.offer(logData)) {
+            if (queue.poll() != null) {
+                droppedLogs.increment();
+            }
+        }
+    }
+
+    /**
+     * 定时合并推送：每场考试的待推送日志合并为一条消息
+     */
+    @Scheduled(fixedDelayString = "${exam.proctor.broadcast-interval:250}")
+    public void flushProctorLogs() {
+        long dropped = droppedLogs.sumThenReset();
+        if (dropped > 0) {
+            log.warn("监考日志推送积压，已丢弃最早的日志: {}", dropped);
+        }
+        for (Map.Entry<Long, Queue<Object>> entry : PENDING_LOGS.entrySet()) {
+            Long publishId = entry.getKey();
+            Queue<Object> queue = entry.getValue();
+            if (presenceRegistry.getProctorCount(publishId) == 0) {
+                // 集群中已无教师监控，丢弃积压
+                PENDING_LOGS.remove(publishId, queue);
+                queue.clear();
+                continue;
+            }
+            List<Object> batch = new ArrayList<>();
+            Object item;
+            while (batch.size() < maxBatch && (item = queue.poll()) != null) {
+                batch.add(item);
+            }
+            if (!batch.isEmpty()) {
+                broadcastToProctors(publishId, WebSocketMessage.proctorLogBatch(batch));
+            }
+        }
+    }
+
     /**
      * 向指定教师发送消息
      */
@@ -148,15 +295,14 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 获取监控指定考试的教师数量
+     * 获取监控指定考试的教师数量（集群）
      */
     public int getProctorCount(Long publishId) {
-        Map<Long, WebSocketSession> sessions = PROCTOR_SESSIONS.get(publishId);
-        return sessions == null ? 0 : sessions.size();
+        return presenceRegistry.getProctorCount(publishId);
     }
 
     /**
-     * 获取监控指定考试的所有教师ID
+     * 获取本节点上监控指定考试的所有教师ID
      */
     public Set<Long> getProctorIds(Long publishId) {
         Map<Long, WebSocketSession> sessions = PROCTOR_SESSIONS.get(publishId);
@@ -177,6 +323,16 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    /**
+     * 取得注册时包装的并发会话（未注册时返回原会话）
+     */
+    private WebSocketSession getDecoratedSession(WebSocketSession session) {
+        Long publishId = getPublishId(session);
+        Map<Long, WebSocketSession> sessions = publishId != null ? PROCTOR_SESSIONS.get(publishId) : null;
+        WebSocketSession decorated = sessions != null ? sessions.get(getUserId(session)) : null;
+        return decorated != null && decorated.getId().equals(session.getId()) ? decorated : session;
+    }
+
     private Long getUserId(WebSocketSession session) {
         Object userId = session.getAttributes().get("userId");
         return userId != null ? (Long) userId : null;
@@ -196,6 +352,7 @@ public class ProctorWebSocketHandler extends TextWebSocketHandler {
             Map<Long, WebSocketSession> sessions = PROCTOR_SESSIONS.get(publishId);
             if (sessions != null) {
                 sessions.remove(userId);
+                presenceRegistry.proctorOffline(publishId, userId);
                 if (sessions.isEmpty()) {
                     PROCTOR_SESSIONS.remove(publishId);
                 }
@@ -0,0 +1,83 @@
+package com.university.exam.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis 发布订阅的消息总线（集群部署使用）
+ * 每个频道有独立的分发线程，频道内按到达顺序处理，避免监听容器为每条消息创建新线程；
+ * 频道之间互不阻塞，通知广播积压时不会拖慢监考、认证失效、黑名单同步等频道的消息。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "exam.ws.bus", havingValue = "redis", matchIfMissing = true)
+public class RedisMessageBus implements MessageBus {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private RedisMessageListenerContainer container;
+
+    /**
+     * 频道 -> 分发线程
+     */
+    private final Map<String, ExecutorService> dispatchers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 监听回调只把消息交给频道的分发线程，不在订阅连接线程上处理
+        container.setTaskExecutor(new SyncTaskExecutor());
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        container.destroy();
+        dispatchers.values().forEach(ExecutorService::shutdown);
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        stringRedisTemplate.convertAndSend(channel, message);
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> handler) {
+        ExecutorService dispatcher = dispatchers.computeIfAbsent(channel,
+                k -> Executors.newSingleThreadExecutor(new CustomizableThreadFactory("Ws-Bus-" + k + "-")));
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            dispatcher.execute(() -> {
+                try {
+                    handler.accept(body);
+                } catch (Exception e) {
+                    log.error("处理总线消息失败: channel={}", channel, e);
+                }
+            });
+        }, new ChannelTopic(channel));
+    }
+}
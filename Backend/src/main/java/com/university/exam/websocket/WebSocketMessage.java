@@ -25,6 +25,7 @@ public class WebSocketMessage {
      * - notice: 系统通知
      * - exam_notice: 考试通知
      * - read_notice: 已读通知回执
+     * - submit_result: 异步交卷结果
      */
     private String type;
 
@@ -123,6 +124,34 @@ public class WebSocketMessage {
         return success("proctor_log", "监考异常提醒", logData);
     }
 
+    /**
+     * 创建合并后的监考日志消息（data 为日志列表）
+     */
+    public static WebSocketMessage proctorLogBatch(Object logList) {
+        return success("proctor_log_batch", "监考异常提醒", logList);
+    }
+
+    /**
+     * 创建下发给考生的监考指令消息（force_submit、warn 等）
+     */
+    public static WebSocketMessage proctorCommand(Object commandData) {
+        return success("proctor_command", "监考指令", commandData);
+    }
+
+    /**
+     * 创建监考告警消息（考生触发监考规则）
+     */
+    public static WebSocketMessage proctorAlert(Object alertData) {
+        return success("proctor_alert", "监考告警", alertData);
+    }
+
+    /**
+     * 创建监考事件补发消息（教师重连后补发游标之后的日志和状态变化）
+     */
+    public static WebSocketMessage proctorFeed(Object feedPage) {
+        return success("proctor_feed", "监考事件补发", feedPage);
+    }
+
     /**
      * 创建学生状态更新消息（上线/离线/交卷等）
      */
@@ -136,4 +165,11 @@ public class WebSocketMessage {
     public static WebSocketMessage proctorStats(Object statsData) {
         return success("proctor_stats", "监考统计更新", statsData);
     }
+
+    /**
+     * 创建异步交卷结果消息
+     */
+    public static WebSocketMessage submitResult(Object resultData) {
+        return success("submit_result", "交卷处理完成", resultData);
+    }
 }
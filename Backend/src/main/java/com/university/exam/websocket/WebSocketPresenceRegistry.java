@@ -0,0 +1,267 @@
+package com.university.exam.websocket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket 在线状态注册表（集群共享）
+ * 1. 用户连接：Hash exam:ws:presence:route 记录 userId -> 持有会话的节点，用于跨节点路由；
+ *    ZSet exam:ws:presence:online 记录 userId -> 最近心跳时间，用于在线判断和在线人数统计
+ * 2. 监考连接：ZSet exam:ws:presence:proctor:{publishId} 记录 teacherId -> 最近心跳时间
+ * 3. 每个节点定时刷新本节点连接的心跳时间，并清理超时未刷新的条目（节点宕机后其连接自然过期）
+ *    清理和注销都在 Lua 脚本中按当前心跳时间/所属节点判断后删除，期间重新登记的连接不会被误删
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketPresenceRegistry {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private static final String ROUTE_KEY = "exam:ws:presence:route";
+    private static final String ONLINE_KEY = "exam:ws:presence:online";
+    private static final String PROCTOR_PREFIX = "exam:ws:presence:proctor:";
+
+    /**
+     * 每次清理的最大条目数，避免单个脚本执行过久
+     */
+    private static final int CLEANUP_BATCH = 1000;
+
+    /**
+     * 清理超时连接：KEYS = [在线ZSet, 路由Hash]，ARGV = [超时时间点, 最大条数]
+     * 取出与删除在同一脚本中完成，取出的成员心跳时间一定仍早于超时时间点
+     */
+    private static final RedisScript<Long> CLEANUP_SCRIPT = new DefaultRedisScript<>(
+            "local stale = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) "
+                    + "for _, m in ipairs(stale) do redis.call('HDEL', KEYS[2], m) redis.call('ZREM', KEYS[1], m) end "
+                    + "return #stale", Long.class);
+
+    /**
+     * 注销连接：KEYS = [路由Hash, 在线ZSet]，ARGV = [userId, nodeId]，仍由本节点持有时才删除
+     */
+    private static final RedisScript<Long> OFFLINE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then return 0 end "
+                    + "redis.call('HDEL', KEYS[1], ARGV[1]) redis.call('ZREM', KEYS[2], ARGV[1]) return 1", Long.class);
+
+    /**
+     * 心跳超时时间（秒），超过该时间未刷新视为离线
+     */
+    @Value("${exam.ws.presence-timeout:90}")
+    private long presenceTimeout;
+
+    /**
+     * 本节点标识（进程名 + 随机后缀，重启后不同）
+     */
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 本节点持有的用户连接
+     */
+    private final Set<Long> localUsers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 本节点持有的监考连接 publishId -> teacherIds
+     */
+    private final Map<Long, Set<Long>> localProctors = new ConcurrentHashMap<>();
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 登记用户连接
+     */
+    public void userOnline(Long userId) {
+        localUsers.add(userId);
+        String member = String.valueOf(userId);
+        double score = System.currentTimeMillis();
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.hSet(ROUTE_KEY, member, nodeId);
+                conn.zAdd(ONLINE_KEY, score, member);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("登记在线状态失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 注销用户连接（用户已在其它节点重新连接时不清除）
+     */
+    public void userOffline(Long userId) {
+        localUsers.remove(userId);
+        try {
+            stringRedisTemplate.execute(OFFLINE_SCRIPT, List.of(ROUTE_KEY, ONLINE_KEY), String.valueOf(userId), nodeId);
+        } catch (DataAccessException e) {
+            log.warn("注销在线状态失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 查询持有用户连接的节点
+     *
+     * @param userIds 用户ID
+     * @return userId -> nodeId（不在线的用户不包含在结果中）
+     */
+    public Map<Long, String> getNodes(Collection<Long> userIds) {
+        Map<Long, String> result = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return result;
+        }
+        List<Object> fields = new ArrayList<>(userIds.size());
+        userIds.forEach(id -> fields.add(String.valueOf(id)));
+        List<Object> nodes = stringRedisTemplate.opsForHash().multiGet(ROUTE_KEY, fields);
+        int i = 0;
+        for (Long userId : userIds) {
+            Object node = nodes.get(i++);
+            if (node != null) {
+                result.put(userId, node.toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户是否在线（任一节点）
+     */
+    public boolean isUserOnline(Long userId) {
+        if (localUsers.contains(userId)) {
+            return true;
+        }
+        try {
+            Double score = stringRedisTemplate.opsForZSet().score(ONLINE_KEY, String.valueOf(userId));
+            return score != null && score >= aliveSince();
+        } catch (DataAccessException e) {
+            log.warn("查询在线状态失败: userId={}, error={}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 集群在线用户数
+     */
+    public int getOnlineUserCount() {
+        try {
+            Long count = stringRedisTemplate.opsForZSet().count(ONLINE_KEY, aliveSince(), Double.POSITIVE_INFINITY);
+            return count != null ? count.intValue() : localUsers.size();
+        } catch (DataAccessException e) {
+            log.warn("查询在线人数失败，返回本节点人数: error={}", e.getMessage());
+            return localUsers.size();
+        }
+    }
+
+    /**
+     * 登记监考连接
+     */
+    public void proctorOnline(Long publishId, Long teacherId) {
+        localProctors.computeIfAbsent(publishId, k -> ConcurrentHashMap.newKeySet()).add(teacherId);
+        try {
+            String key = PROCTOR_PREFIX + publishId;
+            stringRedisTemplate.opsForZSet().add(key, String.valueOf(teacherId), System.currentTimeMillis());
+            stringRedisTemplate.expire(key, presenceTimeout, TimeUnit.SECONDS);
+        } catch (DataAccessException e) {
+            log.warn("登记监考连接失败: publishId={}, error={}", publishId, e.getMessage());
+        }
+    }
+
+    /**
+     * 注销监考连接
+     */
+    public void proctorOffline(Long publishId, Long teacherId) {
+        Set<Long> teachers = localProctors.get(publishId);
+        if (teachers != null) {
+            teachers.remove(teacherId);
+            if (teachers.isEmpty()) {
+                localProctors.remove(publishId, teachers);
+            }
+        }
+        try {
+            stringRedisTemplate.opsForZSet().remove(PROCTOR_PREFIX + publishId, String.valueOf(teacherId));
+        } catch (DataAccessException e) {
+            log.warn("注销监考连接失败: publishId={}, error={}", publishId, e.getMessage());
+        }
+    }
+
+    /**
+     * 集群中监控指定考试的教师数
+     */
+    public int getProctorCount(Long publishId) {
+        try {
+            Long count = stringRedisTemplate.opsForZSet()
+                    .count(PROCTOR_PREFIX + publishId, aliveSince(), Double.POSITIVE_INFINITY);
+            return count != null ? count.intValue() : 0;
+        } catch (DataAccessException e) {
+            Set<Long> teachers = localProctors.get(publishId);
+            return teachers != null ? teachers.size() : 0;
+        }
+    }
+
+    /**
+     * 刷新本节点连接的心跳时间，清理超时条目
+     */
+    @Scheduled(fixedDelayString = "${exam.ws.presence-heartbeat:30000}", initialDelay = 30000)
+    public void heartbeat() {
+        double now = System.currentTimeMillis();
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long userId : localUsers) {
+                    conn.hSet(ROUTE_KEY, String.valueOf(userId), nodeId);
+                    conn.zAdd(ONLINE_KEY, now, String.valueOf(userId));
+                }
+                localProctors.forEach((publishId, teachers) -> {
+                    String key = PROCTOR_PREFIX + publishId;
+                    teachers.forEach(teacherId -> conn.zAdd(key, now, String.valueOf(teacherId)));
+                    conn.expire(key, presenceTimeout);
+                    conn.zRemRangeByScore(key, 0, aliveSince());
+                });
+                return null;
+            });
+
+            // 清理宕机节点遗留的连接
+            String cutoff = String.valueOf((long) aliveSince());
+            long cleaned = 0;
+            Long removed;
+            do {
+                removed = stringRedisTemplate.execute(CLEANUP_SCRIPT, List.of(ONLINE_KEY, ROUTE_KEY),
+                        cutoff, String.valueOf(CLEANUP_BATCH));
+                cleaned += removed != null ? removed : 0;
+            } while (removed != null && removed == CLEANUP_BATCH);
+            if (cleaned > 0) {
+                log.info("清理超时的WebSocket在线状态: {}", cleaned);
+            }
+        } catch (DataAccessException e) {
+            log.warn("刷新WebSocket在线状态失败: error={}", e.getMessage());
+        }
+    }
+
+    private double aliveSince() {
+        return System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(presenceTimeout);
+    }
+}
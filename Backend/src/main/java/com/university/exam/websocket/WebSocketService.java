@@ -122,6 +122,18 @@ public class WebSocketService {
         log.debug("推送文件状态更新，用户ID: {}", userId);
     }
 
+    /**
+     * 推送异步交卷结果
+     *
+     * @param userId 用户ID
+     * @param resultData 交卷结果
+     */
+    public void pushSubmitResult(Long userId, Object resultData) {
+        WebSocketMessage message = WebSocketMessage.submitResult(resultData);
+        webSocketHandler.sendMessage(userId, message);
+        log.debug("推送交卷结果，用户ID: {}", userId);
+    }
+
     /**
      * 检查用户是否在线
      *
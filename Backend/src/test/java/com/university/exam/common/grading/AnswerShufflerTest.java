@@ -0,0 +1,120 @@
+package com.university.exam.common.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * AnswerShuffler单元测试
+ * 验证排列的确定性以及展示下标与原始下标之间的往返映射
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public class AnswerShufflerTest {
+
+    private static final int SINGLE = CompiledAnswerKey.TYPE_SINGLE;
+    private static final int MULTI = CompiledAnswerKey.TYPE_MULTI;
+    private static final long SALT = 0x5EEDL;
+
+    @Test
+    void sameSeedGivesSameOrder() {
+        long seed = AnswerShuffler.seed(42L, SALT);
+
+        assertEquals(seed, AnswerShuffler.seed(42L, SALT));
+        assertArrayEquals(AnswerShuffler.questionOrder(seed, 30), AnswerShuffler.questionOrder(seed, 30));
+        assertArrayEquals(AnswerShuffler.optionOrder(seed, 7L, 6), AnswerShuffler.optionOrder(seed, 7L, 6));
+    }
+
+    @Test
+    void differentRecordsGetDifferentOrders() {
+        int[] first = AnswerShuffler.questionOrder(AnswerShuffler.seed(1L, SALT), 30);
+        int[] second = AnswerShuffler.questionOrder(AnswerShuffler.seed(2L, SALT), 30);
+
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void ordersArePermutations() {
+        long seed = AnswerShuffler.seed(9L, SALT);
+        int[] questions = AnswerShuffler.questionOrder(seed, 50);
+        int[] options = AnswerShuffler.optionOrder(seed, 3L, 5);
+
+        assertArrayEquals(range(50), sorted(questions));
+        assertArrayEquals(range(5), sorted(options));
+        assertArrayEquals(new int[0], AnswerShuffler.questionOrder(seed, 0));
+    }
+
+    @Test
+    void singleChoiceRoundTrip() {
+        int[] perm = {2, 0, 3, 1};
+
+        // 展示下标 0 对应原始下标 2
+        assertEquals("2", AnswerShuffler.toCanonical(SINGLE, "0", perm));
+        assertEquals("0", AnswerShuffler.toDisplayed(SINGLE, "2", perm));
+        for (int shown = 0; shown < perm.length; shown++) {
+            String canonical = AnswerShuffler.toCanonical(SINGLE, String.valueOf(shown), perm);
+            assertEquals(String.valueOf(perm[shown]), canonical);
+            assertEquals(String.valueOf(shown), AnswerShuffler.toDisplayed(SINGLE, canonical, perm));
+        }
+    }
+
+    @Test
+    void multiChoiceRoundTrip() {
+        int[] perm = {2, 0, 3, 1};
+
+        assertEquals("[0,2]", AnswerShuffler.toCanonical(MULTI, "[0,1]", perm));
+        assertEquals("[0,1]", AnswerShuffler.toDisplayed(MULTI, "[0,2]", perm));
+        // 展示顺序下的作答顺序不影响结果，输出按下标升序
+        assertEquals("[0,1,2]", AnswerShuffler.toCanonical(MULTI, "[3,1,0]", perm));
+        assertEquals("[0,1,3]", AnswerShuffler.toDisplayed(MULTI, "[0,1,2]", perm));
+    }
+
+    @Test
+    void generatedPermutationRoundTrip() {
+        long seed = AnswerShuffler.seed(123L, SALT);
+        int[] perm = AnswerShuffler.optionOrder(seed, 55L, 6);
+
+        for (String answer : new String[]{"[0]", "[1,4]", "[0,2,5]", "[0,1,2,3,4,5]"}) {
+            String canonical = AnswerShuffler.toCanonical(MULTI, answer, perm);
+            assertEquals(answer, AnswerShuffler.toDisplayed(MULTI, canonical, perm));
+        }
+        for (int shown = 0; shown < perm.length; shown++) {
+            String answer = String.valueOf(shown);
+            String canonical = AnswerShuffler.toCanonical(SINGLE, answer, perm);
+            assertEquals(answer, AnswerShuffler.toDisplayed(SINGLE, canonical, perm));
+        }
+    }
+
+    @Test
+    void unmappableAnswersAreReturnedUnchanged() {
+        int[] perm = {1, 0, 2};
+
+        // 超出选项范围
+        assertEquals("[0,5]", AnswerShuffler.toCanonical(MULTI, "[0,5]", perm));
+        // 非选择题、空作答、无选项
+        assertEquals("1", AnswerShuffler.toCanonical(3, "1", perm));
+        assertEquals("", AnswerShuffler.toCanonical(SINGLE, "", perm));
+        assertNull(AnswerShuffler.toDisplayed(MULTI, null, perm));
+        assertEquals("[0]", AnswerShuffler.toCanonical(MULTI, "[0]", new int[0]));
+    }
+
+    private static int[] range(int size) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    private static int[] sorted(int[] values) {
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,123 @@
+package com.university.exam.common.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CompiledAnswerKey单元测试
+ * 验证答案归一化及多选题部分得分策略
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public class CompiledAnswerKeyTest {
+
+    private static final long SINGLE = 101L;
+    private static final long MULTI = 102L;
+    private static final long JUDGE = 103L;
+    private static final long ESSAY = 104L;
+    private static final long MULTI_LETTERS = 105L;
+
+    private CompiledAnswerKey compile(MultiChoicePolicy policy) {
+        return CompiledAnswerKey.builder(1L, policy)
+                .add(MULTI, 9L, 2, "[0,2,3]", new BigDecimal("6"))
+                .add(SINGLE, 9L, 1, "1", new BigDecimal("2.5"))
+                .add(JUDGE, 9L, 3, "0", new BigDecimal("1"))
+                .add(ESSAY, 9L, 4, "参考答案", new BigDecimal("10"))
+                .add(MULTI_LETTERS, 9L, 2, "AC", new BigDecimal("4"))
+                .build();
+    }
+
+    private long grade(CompiledAnswerKey key, long questionId, String answer) {
+        return key.grade(key.indexOf(questionId), answer);
+    }
+
+    @Test
+    void multiChoiceIgnoresOptionOrderAndFormat() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.ALL_OR_NOTHING);
+
+        assertEquals(600L, grade(key, MULTI, "[0,2,3]"));
+        assertEquals(600L, grade(key, MULTI, "[3,0,2]"));
+        assertEquals(600L, grade(key, MULTI, "DAC"));
+        assertEquals(400L, grade(key, MULTI_LETTERS, "CA"));
+        assertEquals(400L, grade(key, MULTI_LETTERS, "[2,0]"));
+        assertEquals(400L, grade(key, MULTI_LETTERS, "a, c"));
+    }
+
+    @Test
+    void allOrNothingGivesNoPartialCredit() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.ALL_OR_NOTHING);
+
+        assertEquals(0L, grade(key, MULTI, "[0,2]"));
+        assertEquals(0L, grade(key, MULTI, "[0,1,2,3]"));
+        assertEquals(0L, grade(key, MULTI, ""));
+    }
+
+    @Test
+    void halfCreditForMissedOptionsWithoutWrongPick() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.HALF_CREDIT);
+
+        assertEquals(600L, grade(key, MULTI, "[0,2,3]"));
+        assertEquals(300L, grade(key, MULTI, "[0]"));
+        assertEquals(300L, grade(key, MULTI, "[2,3]"));
+        // 错选任意一项不得分
+        assertEquals(0L, grade(key, MULTI, "[0,1]"));
+        // 超选也属于错选
+        assertEquals(0L, grade(key, MULTI, "[0,1,2,3]"));
+        assertEquals(0L, grade(key, MULTI, null));
+    }
+
+    @Test
+    void proportionalCreditForMissedOptionsWithoutWrongPick() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.PROPORTIONAL);
+
+        assertEquals(200L, grade(key, MULTI, "[3]"));
+        assertEquals(400L, grade(key, MULTI, "[0,3]"));
+        assertEquals(600L, grade(key, MULTI, "[0,2,3]"));
+        assertEquals(0L, grade(key, MULTI, "[1,3]"));
+        assertEquals(200L, grade(key, MULTI_LETTERS, "C"));
+    }
+
+    @Test
+    void singleChoiceAndJudge() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.PROPORTIONAL);
+
+        assertEquals(250L, grade(key, SINGLE, "1"));
+        assertEquals(250L, grade(key, SINGLE, "B"));
+        assertEquals(0L, grade(key, SINGLE, "[1,2]"));
+        assertEquals(0L, grade(key, SINGLE, "0"));
+
+        assertEquals(100L, grade(key, JUDGE, "0"));
+        assertEquals(100L, grade(key, JUDGE, " false "));
+        assertEquals(100L, grade(key, JUDGE, "错"));
+        assertEquals(0L, grade(key, JUDGE, "1"));
+        assertEquals(0L, grade(key, JUDGE, ""));
+    }
+
+    @Test
+    void lookupAndScoreConversion() {
+        CompiledAnswerKey key = compile(MultiChoicePolicy.ALL_OR_NOTHING);
+
+        assertEquals(5, key.size());
+        assertTrue(key.indexOf(999L) < 0);
+        assertFalse(key.isObjective(key.indexOf(ESSAY)));
+        assertEquals(9L, key.courseId(key.indexOf(SINGLE)));
+        assertEquals(new BigDecimal("2.50"), CompiledAnswerKey.toScore(key.fullScoreCents(key.indexOf(SINGLE))));
+        assertEquals(1250L, CompiledAnswerKey.toCents(new BigDecimal("12.5")));
+    }
+
+    @Test
+    void unparseableKeyFallsBackToExactMatch() {
+        CompiledAnswerKey key = CompiledAnswerKey.builder(2L, MultiChoicePolicy.ALL_OR_NOTHING)
+                .add(1L, 1L, 1, "见解析", new BigDecimal("2"))
+                .build();
+
+        assertEquals(200L, grade(key, 1L, "见解析"));
+        assertEquals(0L, grade(key, 1L, "A"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.university.exam.common.security;
+
+import com.university.exam.common.utils.JwtUtils;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 控制器获取当前用户的开销对比
+ * 1. jwtReparse：改造前的做法，控制器从请求头取Token后解析两次（userId、deptId），每次都校验 HMAC 签名并创建 Claims
+ * 2. currentUserResolver：认证过滤器已构建 CurrentUser，参数解析器只读取请求属性
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以测试类路径运行本类。
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalResolutionBenchmark {
+
+    private JwtUtils jwtUtils;
+    private CurrentUserArgumentResolver resolver;
+    private MethodParameter parameter;
+    private ServletWebRequest webRequest;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secret", "exam_system_super_secret_key_2025_secure_jwt_key_1234567890");
+        ReflectionTestUtils.setField(jwtUtils, "expire", 7200L);
+        String token = jwtUtils.generateToken(10001L, 1, 12L);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        request.setAttribute(CurrentUser.REQUEST_ATTRIBUTE, new CurrentUser(10001L, 1, 12L));
+        webRequest = new ServletWebRequest(request);
+
+        resolver = new CurrentUserArgumentResolver();
+        parameter = new MethodParameter(
+                PrincipalResolutionBenchmark.class.getDeclaredMethod("handler", CurrentUser.class), 0);
+    }
+
+    @Benchmark
+    public void jwtReparse(Blackhole bh) {
+        String header = webRequest.getHeader("Authorization");
+        String token = header.substring(7);
+        Long userId = jwtUtils.getUserIdFromToken(token);
+        Claims claims = jwtUtils.parseToken(token);
+        bh.consume(userId);
+        bh.consume(claims.get("deptId", Long.class));
+    }
+
+    @Benchmark
+    public void currentUserResolver(Blackhole bh) {
+        CurrentUser currentUser = (CurrentUser) resolver.resolveArgument(parameter, null, webRequest, null);
+        bh.consume(currentUser.getUserId());
+        bh.consume(currentUser.getDeptId());
+    }
+
+    @SuppressWarnings("unused")
+    private void handler(CurrentUser currentUser) {
+        // 仅用于构造 MethodParameter
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PrincipalResolutionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,222 @@
+package com.university.exam.service;
+
+import com.university.exam.schedule.ExamDeadlineScheduler;
+import com.university.exam.websocket.ExamWebSocketHandler;
+import com.university.exam.websocket.ProctorWebSocketHandler;
+import com.university.exam.websocket.WebSocketMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ProctorRuleEngine单元测试
+ * 验证滑动窗口计数、阈值判断、同一窗口内只触发一次以及 WARN -> ALERT -> FORCE_SUBMIT 的逐级处理
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public class ProctorRuleEngineTest {
+
+    private static final long PUBLISH_ID = 10L;
+    private static final long RECORD_ID = 100L;
+    private static final long SECOND = 1000L;
+
+    private ValueOperations<String, String> valueOps;
+    private ExamWebSocketHandler examWebSocketHandler;
+    private ProctorWebSocketHandler proctorWebSocketHandler;
+    private ExamDeadlineScheduler examDeadlineScheduler;
+    private ProctorRuleEngine engine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        valueOps = mock(ValueOperations.class);
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        examWebSocketHandler = mock(ExamWebSocketHandler.class);
+        proctorWebSocketHandler = mock(ProctorWebSocketHandler.class);
+        examDeadlineScheduler = mock(ExamDeadlineScheduler.class);
+
+        engine = new ProctorRuleEngine(redis, examWebSocketHandler, proctorWebSocketHandler, examDeadlineScheduler);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "defaultRulesSpec", "");
+        ReflectionTestUtils.setField(engine, "rulesCacheTtl", 60L);
+        ReflectionTestUtils.setField(engine, "stateTtl", 3600L);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.destroy();
+    }
+
+    @Test
+    void windowRuleFiresOnlyWhenThresholdReachedInsideWindow() {
+        rules("[{\"actionType\":\"switch_screen\",\"threshold\":3,\"windowSeconds\":120,\"action\":\"WARN\"}]");
+
+        event("switch_screen", 0);
+        event("switch_screen", 100);
+        // 第 3 次与第 1 次相隔 200 秒，超出窗口
+        event("switch_screen", 200);
+        verify(examWebSocketHandler, never()).sendToRecord(anyLong(), any());
+
+        // 最近 3 次为 100、200、210 秒，落在 120 秒窗口内
+        event("switch_screen", 210);
+        assertEquals("warn", lastCommand().get("command"));
+    }
+
+    @Test
+    void windowRuleFiresOncePerWindow() {
+        rules("[{\"actionType\":\"switch_screen\",\"threshold\":2,\"windowSeconds\":60,\"action\":\"WARN\"}]");
+
+        event("switch_screen", 0);
+        event("switch_screen", 10);
+        event("switch_screen", 20);
+        event("switch_screen", 30);
+        verify(examWebSocketHandler, times(1)).sendToRecord(eq(RECORD_ID), any());
+
+        // 距上次触发已满一个窗口，再次达到阈值时重新触发
+        event("switch_screen", 75);
+        verify(examWebSocketHandler, times(2)).sendToRecord(eq(RECORD_ID), any());
+    }
+
+    @Test
+    void cumulativeRuleFiresOnce() {
+        rules("[{\"actionType\":\"leave_page\",\"threshold\":2,\"windowSeconds\":0,\"action\":\"ALERT\"}]");
+
+        event("leave_page", 0);
+        verify(proctorWebSocketHandler, never()).broadcastToProctors(anyLong(), any());
+
+        // 整场累计，相隔很久也计入
+        event("leave_page", 3000);
+        event("leave_page", 3001);
+        verify(proctorWebSocketHandler, times(1)).broadcastToProctors(eq(PUBLISH_ID), any());
+        // 其它类型的事件不计入
+        event("switch_screen", 3002);
+        verify(proctorWebSocketHandler, times(1)).broadcastToProctors(eq(PUBLISH_ID), any());
+    }
+
+    @Test
+    void actionsEscalateAndStopAfterForceSubmit() {
+        rules("[{\"actionType\":\"switch_screen\",\"threshold\":2,\"windowSeconds\":120,\"action\":\"WARN\"},"
+                + "{\"actionType\":\"switch_screen\",\"threshold\":3,\"windowSeconds\":600,\"action\":\"ALERT\"},"
+                + "{\"actionType\":\"switch_screen\",\"threshold\":4,\"windowSeconds\":0,\"action\":\"FORCE_SUBMIT\"}]");
+
+        event("switch_screen", 0);
+        event("switch_screen", 10);
+        assertEquals("warn", lastCommand().get("command"));
+        verify(proctorWebSocketHandler, never()).broadcastToProctors(anyLong(), any());
+
+        event("switch_screen", 20);
+        assertEquals("ALERT", lastAlert().get("action"));
+        verify(examDeadlineScheduler, never()).track(anyLong(), anyLong());
+
+        event("switch_screen", 30);
+        assertEquals("force_submit", lastCommand().get("command"));
+        assertEquals("FORCE_SUBMIT", lastAlert().get("action"));
+        verify(examDeadlineScheduler).track(eq(RECORD_ID), anyLong());
+
+        // 已强制交卷的记录不再处理后续事件
+        for (int i = 0; i < 10; i++) {
+            event("switch_screen", 200 + i);
+        }
+        verify(examWebSocketHandler, times(2)).sendToRecord(eq(RECORD_ID), any());
+        verify(proctorWebSocketHandler, times(2)).broadcastToProctors(eq(PUBLISH_ID), any());
+        verify(examDeadlineScheduler, times(1)).track(eq(RECORD_ID), anyLong());
+    }
+
+    @Test
+    void awayTimeAccumulatesUntilReturn() {
+        rules("[{\"actionType\":\"away_time\",\"threshold\":300,\"windowSeconds\":0,\"action\":\"ALERT\"}]");
+
+        event("switch_screen", 0);
+        event("leave_page", 50);
+        event("return_page", 200);
+        verify(proctorWebSocketHandler, never()).broadcastToProctors(anyLong(), any());
+
+        event("leave_page", 400);
+        event("return_page", 510);
+        assertEquals(310L, lastAlert().get("observed"));
+    }
+
+    @Test
+    void savingRulesResetsRecordState() {
+        rules("[{\"actionType\":\"switch_screen\",\"threshold\":3,\"windowSeconds\":0,\"action\":\"WARN\"}]");
+        event("switch_screen", 0);
+        event("switch_screen", 1);
+
+        engine.saveRules(PUBLISH_ID, engine.getRules(PUBLISH_ID));
+        // 规则更新后窗口重新计数
+        event("switch_screen", 2);
+        verify(examWebSocketHandler, never()).sendToRecord(anyLong(), any());
+        event("switch_screen", 3);
+        event("switch_screen", 4);
+        verify(examWebSocketHandler).sendToRecord(eq(RECORD_ID), any());
+    }
+
+    @Test
+    void defaultRulesNeverForceSubmit() throws Exception {
+        String expression = ProctorRuleEngine.class.getDeclaredField("defaultRulesSpec")
+                .getAnnotation(Value.class).value();
+        String spec = expression.substring(expression.indexOf(':') + 1, expression.length() - 1);
+        assertFalse(spec.contains("FORCE_SUBMIT"));
+
+        engine.destroy();
+        ReflectionTestUtils.setField(engine, "defaultRulesSpec", spec);
+        engine.init();
+        for (int i = 0; i < 100; i++) {
+            event("switch_screen", i);
+        }
+        verify(examDeadlineScheduler, never()).track(anyLong(), anyLong());
+        assertFalse(engine.getRules(PUBLISH_ID).isEmpty());
+    }
+
+    private void rules(String json) {
+        when(valueOps.get("exam:proctor:rules:" + PUBLISH_ID)).thenReturn(json);
+    }
+
+    private void event(String actionType, long seconds) {
+        ExamRecordCacheService.RecordMeta meta = new ExamRecordCacheService.RecordMeta();
+        meta.setRecordId(RECORD_ID);
+        meta.setUserId(1L);
+        meta.setPublishId(PUBLISH_ID);
+        meta.setStatus(1);
+        engine.onEvent(meta, actionType, 1_000_000L + seconds * SECOND);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastCommand() {
+        ArgumentCaptor<WebSocketMessage> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(examWebSocketHandler, atLeastOnce()).sendToRecord(eq(RECORD_ID), captor.capture());
+        List<WebSocketMessage> sent = captor.getAllValues();
+        return (Map<String, Object>) sent.get(sent.size() - 1).getData();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastAlert() {
+        ArgumentCaptor<WebSocketMessage> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(proctorWebSocketHandler, atLeastOnce()).broadcastToProctors(eq(PUBLISH_ID), captor.capture());
+        List<WebSocketMessage> sent = captor.getAllValues();
+        return (Map<String, Object>) sent.get(sent.size() - 1).getData();
+    }
+}
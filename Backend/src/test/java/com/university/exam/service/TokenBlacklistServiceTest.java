@@ -0,0 +1,240 @@
+package com.university.exam.service;
+
+import com.university.exam.websocket.MessageBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TokenBlacklistService单元测试
+ * 用内存中的位图模拟 Redis（SETBIT/GET，位偏移按字节高位在前），验证加入、跨节点合并以及分桶切换
+ *
+ * @author exam-system
+ * @since 2025-12-20
+ */
+public class TokenBlacklistServiceTest {
+
+    private static final long EXPIRE_SECONDS = 3600;
+    private static final long BUCKET_MILLIS = EXPIRE_SECONDS * 1000;
+    private static final String CHANNEL = "exam:auth:blacklist";
+
+    /**
+     * 模拟的 Redis：位图键 -> 位图，以及已写入的确认键
+     */
+    private final Map<String, byte[]> bitmaps = new HashMap<>();
+    private final Set<String> confirmKeys = new HashSet<>();
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        // 第 100 个桶结束前 1 秒
+        clock = new MutableClock(100 * BUCKET_MILLIS + BUCKET_MILLIS - 1000);
+    }
+
+    @Test
+    void addedTokenIsBlacklistedAndOthersSkipRedis() {
+        StringRedisTemplate redis = redis();
+        TokenBlacklistService service = node(redis, mock(MessageBus.class));
+
+        service.add("token-a");
+
+        assertTrue(service.isBlacklisted("token-a"));
+        assertFalse(service.isBlacklisted("token-b"));
+        // 过滤器判定不在时不访问 Redis（只确认过 token-a）
+        verify(redis).hasKey(anyString());
+    }
+
+    @Test
+    void syncMergesRedisBitmapWrittenByAnotherNode() {
+        TokenBlacklistService writer = node(redis(), mock(MessageBus.class));
+        writer.add("token-a");
+        writer.add("token-c");
+
+        // 另一节点启动时从 Redis 位图合并本地副本
+        StringRedisTemplate readerRedis = redis();
+        TokenBlacklistService reader = node(readerRedis, mock(MessageBus.class));
+
+        assertTrue(reader.isBlacklisted("token-a"));
+        assertTrue(reader.isBlacklisted("token-c"));
+        assertFalse(reader.isBlacklisted("token-b"));
+    }
+
+    @Test
+    void busMessageUpdatesOtherNode() {
+        MessageBus writerBus = mock(MessageBus.class);
+        TokenBlacklistService writer = node(redis(), writerBus);
+        MessageBus readerBus = mock(MessageBus.class);
+        TokenBlacklistService reader = node(redis(), readerBus);
+
+        writer.add("token-a");
+        assertFalse(reader.isBlacklisted("token-a"));
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(writerBus).publish(eq(CHANNEL), published.capture());
+        listener(readerBus).accept(published.getValue());
+
+        assertTrue(reader.isBlacklisted("token-a"));
+    }
+
+    @Test
+    void entryStaysForOneBucketBoundaryThenExpires() {
+        StringRedisTemplate redis = redis();
+        TokenBlacklistService service = node(redis, mock(MessageBus.class));
+        service.add("token-a");
+
+        // 跨过桶边界：上一个桶仍参与判断
+        clock.advance(2000);
+        assertTrue(service.isBlacklisted("token-a"));
+
+        // 节点在新桶中启动，同样从上一个桶的位图合并
+        TokenBlacklistService restarted = node(redis(), mock(MessageBus.class));
+        assertTrue(restarted.isBlacklisted("token-a"));
+
+        // 再跨过一个桶：条目所在的桶已过期，不再访问 Redis
+        clock.advance(BUCKET_MILLIS);
+        service.sync();
+        assertFalse(service.isBlacklisted("token-a"));
+        assertFalse(restarted.isBlacklisted("token-a"));
+    }
+
+    @Test
+    void bitmapBytesAreMostSignificantBitFirst() {
+        // 位偏移 0 与 9 -> 第 0 字节 0x80，第 1 字节 0x40
+        bitmaps.put("auth:blacklist:bloom:100", new byte[]{(byte) 0x80, 0x40});
+        StringRedisTemplate redis = redis();
+        TokenBlacklistService service = node(redis, mock(MessageBus.class));
+
+        @SuppressWarnings("unchecked")
+        Map<Long, Object> buckets = (Map<Long, Object>) ReflectionTestUtils.getField(service, "buckets");
+        Object bucket = buckets.get(100L);
+        assertTrue((Boolean) ReflectionTestUtils.invokeMethod(bucket, "contains", (Object) new long[]{0, 9}));
+        assertFalse((Boolean) ReflectionTestUtils.invokeMethod(bucket, "contains", (Object) new long[]{7}));
+        assertFalse((Boolean) ReflectionTestUtils.invokeMethod(bucket, "contains", (Object) new long[]{8}));
+        verify(redis, never()).hasKey(anyString());
+    }
+
+    private TokenBlacklistService node(StringRedisTemplate redis, MessageBus bus) {
+        TokenBlacklistService service = new TokenBlacklistService(redis, bus);
+        ReflectionTestUtils.setField(service, "tokenExpire", EXPIRE_SECONDS);
+        ReflectionTestUtils.setField(service, "bloomBits", 4096);
+        ReflectionTestUtils.setField(service, "hashCount", 5);
+        ReflectionTestUtils.setField(service, "clock", clock);
+        service.init();
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<String> listener(MessageBus bus) {
+        ArgumentCaptor<Consumer<String>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(bus).subscribe(eq(CHANNEL), captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * 基于共享内存位图的 StringRedisTemplate 模拟
+     */
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redis() {
+        RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+        when(stringCommands.setBit(any(byte[].class), anyLong(), anyBoolean())).thenAnswer(inv -> {
+            String key = new String((byte[]) inv.getArgument(0), StandardCharsets.UTF_8);
+            long offset = inv.getArgument(1);
+            byte[] bitmap = bitmaps.getOrDefault(key, new byte[0]);
+            int index = (int) (offset >>> 3);
+            if (bitmap.length <= index) {
+                byte[] grown = new byte[index + 1];
+                System.arraycopy(bitmap, 0, grown, 0, bitmap.length);
+                bitmap = grown;
+            }
+            bitmap[index] |= (byte) (0x80 >>> (offset & 7));
+            bitmaps.put(key, bitmap);
+            return false;
+        });
+        when(stringCommands.setEx(any(byte[].class), anyLong(), any(byte[].class))).thenAnswer(inv -> {
+            confirmKeys.add(new String((byte[]) inv.getArgument(0), StandardCharsets.UTF_8));
+            return true;
+        });
+        when(stringCommands.get(any(byte[].class))).thenAnswer(inv ->
+                bitmaps.get(new String((byte[]) inv.getArgument(0), StandardCharsets.UTF_8)));
+
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(connection.keyCommands()).thenReturn(mock(RedisKeyCommands.class));
+
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            ((RedisCallback<Object>) inv.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+        when(redis.execute(any(RedisCallback.class))).thenAnswer(inv ->
+                ((RedisCallback<Object>) inv.getArgument(0)).doInRedis(connection));
+        when(redis.hasKey(anyString())).thenAnswer(inv -> confirmKeys.contains((String) inv.getArgument(0)));
+        return redis;
+    }
+
+    /**
+     * 可调整的时钟
+     */
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
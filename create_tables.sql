@@ -276,6 +276,7 @@ CREATE TABLE `exam_record_detail` (
 CREATE TABLE `exam_proctor_log` (
   `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
   `record_id` bigint NOT NULL COMMENT '考试记录ID',
+  `publish_id` bigint DEFAULT NULL COMMENT '考试发布ID（冗余自考试记录，用于按场次分页）',
   `action_type` varchar(50) NOT NULL COMMENT '动作类型',
   `content` text COMMENT '日志内容',
   `img_snapshot` varchar(255) DEFAULT NULL COMMENT '图片快照URL',
@@ -286,9 +287,9 @@ CREATE TABLE `exam_proctor_log` (
   `update_by` bigint DEFAULT NULL COMMENT '更新人ID',
   `is_deleted` tinyint DEFAULT '0' COMMENT '删除标识：0-正常，1-已删除',
   PRIMARY KEY (`id`),
-  INDEX `idx_record_id` (`record_id`),
   INDEX `idx_action_type` (`action_type`),
-  INDEX `idx_happen_time` (`happen_time`)
+  INDEX `idx_publish_happen_time` (`publish_id`, `happen_time`),
+  INDEX `idx_record_happen_time` (`record_id`, `happen_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='监考日志表';
 
 -- 15. 错题本
@@ -317,7 +318,8 @@ CREATE TABLE `sys_notice` (
   `title` varchar(100) NOT NULL COMMENT '通知标题',
   `content` text NOT NULL COMMENT '通知内容',
   `type` tinyint NOT NULL COMMENT '通知类型：1-系统通知，2-考试通知，3-成绩通知',
-  `target_type` tinyint NOT NULL COMMENT '目标类型：1-全体用户，2-指定角色，3-指定用户',
+  `target_type` tinyint NOT NULL COMMENT '目标类型：1-全体用户，2-指定部门，3-指定用户',
+  `target_dept_ids` varchar(1000) DEFAULT NULL COMMENT '目标部门ID列表（JSON数组，目标类型为2时使用）',
   `sender_id` bigint DEFAULT NULL COMMENT '发送人ID',
   `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
@@ -326,7 +328,7 @@ CREATE TABLE `sys_notice` (
   `is_deleted` tinyint DEFAULT '0' COMMENT '删除标识：0-正常，1-已删除',
   PRIMARY KEY (`id`),
   INDEX `idx_type` (`type`),
-  INDEX `idx_target_type` (`target_type`),
+  INDEX `idx_target_type_id` (`target_type`, `id`),
   INDEX `idx_sender_id` (`sender_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='系统通知表';
 
@@ -350,6 +352,18 @@ CREATE TABLE `sys_user_notice` (
   INDEX `idx_read_time` (`read_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='用户消息状态表';
 
+-- 18. 通知已读标记表（全体/部门通知只存一份，按用户记录已读水位和水位之上单独已读的通知）
+CREATE TABLE `sys_notice_read_mark` (
+  `id` bigint NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `watermark` bigint NOT NULL DEFAULT '0' COMMENT '已读水位：ID不大于该值的全体/部门通知均视为已读',
+  `read_ids` text COMMENT '水位之上单独标记已读的通知ID（JSON数组）',
+  `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_id` (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci COMMENT='通知已读标记表';
+
 -- 插入系统配置预设数据
 INSERT INTO `sys_config` (`config_key`, `config_value`, `description`, `create_by`, `update_by`) VALUES
 ('dify_base_url', 'https://api.dify.ai/v1', 'Dify API 基础地址', 1, 1),
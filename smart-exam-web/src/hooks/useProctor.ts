@@ -1,4 +1,4 @@
-import { ref, onMounted, onUnmounted } from 'vue'
+import { ref, watch, onMounted, onUnmounted } from 'vue'
 import { ElMessageBox, ElMessage } from 'element-plus'
 import request from '@/utils/request'
 
@@ -6,32 +6,170 @@ interface UseProctorOptions {
     recordId: () => number | undefined
     onAutoSubmit: () => void
     saveAnswers: () => void
+    // 违规时抓拍摄像头画面（考生拒绝授权或没有摄像头时不抓拍）
+    snapshot?: boolean
 }
 
-export function useProctor({ recordId, onAutoSubmit, saveAnswers }: UseProctorOptions) {
+// 需要附带抓拍的违规类型
+const SNAPSHOT_ACTIONS = ['switch_screen', 'exit_fullscreen', 'leave_page']
+
+export function useProctor({ recordId, onAutoSubmit, saveAnswers, snapshot = false }: UseProctorOptions) {
     const violationCount = ref(0)
     // FIX: 初始化时直接获取当前真实的全屏状态，而不是默认 true
     const isFullscreen = ref(!!document.fullscreenElement)
     const MAX_VIOLATIONS = 3
     let saveTimer: any = null
 
+    // 监考通道：考试期间保持一条 WebSocket 连接上报监考事件，断开时回退到 HTTP 上报
+    let ws: WebSocket | null = null
+    let wsHeartbeat: any = null
+    let wsReconnectTimer: any = null
+    let closed = false
+
+    const connectChannel = (rId: number) => {
+        const token = localStorage.getItem('token')
+        if (!token || closed) return
+        const wsUrl = `${location.protocol === 'https:' ? 'wss:' : 'ws:'}//${location.host}/ws/exam?token=${token}&recordId=${rId}`
+        try {
+            ws = new WebSocket(wsUrl)
+        } catch (e) {
+            console.warn('监考通道连接失败', e)
+            return
+        }
+        ws.onopen = () => {
+            wsHeartbeat = setInterval(() => {
+                if (ws && ws.readyState === WebSocket.OPEN) {
+                    ws.send(JSON.stringify({ type: 'ping' }))
+                }
+            }, 30000)
+        }
+        ws.onmessage = (event) => {
+            try {
+                handleServerMessage(JSON.parse(event.data))
+            } catch (e) {
+                console.warn('监考通道消息解析失败', e)
+            }
+        }
+        ws.onclose = () => {
+            if (wsHeartbeat) clearInterval(wsHeartbeat)
+            wsHeartbeat = null
+            ws = null
+            // 考试未结束时自动重连
+            if (!closed) {
+                wsReconnectTimer = setTimeout(() => {
+                    const current = recordId()
+                    if (current) connectChannel(current)
+                }, 5000)
+            }
+        }
+    }
+
+    const closeChannel = () => {
+        closed = true
+        if (wsReconnectTimer) clearTimeout(wsReconnectTimer)
+        if (wsHeartbeat) clearInterval(wsHeartbeat)
+        if (ws) ws.close()
+        ws = null
+    }
+
+    // 摄像头抓拍：画面缩放到 320 宽的 JPEG 后上传，上报日志时附带图片地址
+    let cameraStream: MediaStream | null = null
+    let cameraVideo: HTMLVideoElement | null = null
+
+    const openCamera = async () => {
+        if (!snapshot || !navigator.mediaDevices?.getUserMedia) return
+        try {
+            cameraStream = await navigator.mediaDevices.getUserMedia({ video: { width: 320, height: 240 }, audio: false })
+            cameraVideo = document.createElement('video')
+            cameraVideo.muted = true
+            cameraVideo.playsInline = true
+            cameraVideo.srcObject = cameraStream
+            await cameraVideo.play()
+        } catch (e) {
+            console.warn('摄像头不可用，违规日志不附带抓拍', e)
+            closeCamera()
+        }
+    }
+
+    const closeCamera = () => {
+        cameraStream?.getTracks().forEach(track => track.stop())
+        cameraStream = null
+        cameraVideo = null
+    }
+
+    // 抓拍并上传，返回原图和缩略图地址（缩略图随日志上报，服务端推送时不再检查文件）
+    const captureSnapshot = async (): Promise<{ url: string, thumbUrl: string }> => {
+        const empty = { url: '', thumbUrl: '' }
+        const video = cameraVideo
+        if (!video || !video.videoWidth) return empty
+        const canvas = document.createElement('canvas')
+        canvas.width = 320
+        canvas.height = Math.round(320 * video.videoHeight / video.videoWidth)
+        canvas.getContext('2d')?.drawImage(video, 0, 0, canvas.width, canvas.height)
+        const blob = await new Promise<Blob | null>(resolve => canvas.toBlob(resolve, 'image/jpeg', 0.7))
+        if (!blob) return empty
+        try {
+            const formData = new FormData()
+            formData.append('file', blob, 'snapshot.jpg')
+            const res: any = await request.post('/file/upload/snapshot', formData, {
+                headers: { 'Content-Type': 'multipart/form-data' }
+            })
+            return { url: res?.url || '', thumbUrl: res?.thumbUrl || '' }
+        } catch (e) {
+            console.warn('抓拍上传失败', e)
+            return empty
+        }
+    }
+
+    // 服务端下发的指令
+    const handleServerMessage = (message: any) => {
+        if (message.type === 'proctor_log' && message.success === false) {
+            // 上报被拒绝（如过于频繁被限流），不打扰考生，仅记录
+            console.warn('监考日志上报被拒绝', message.message)
+            return
+        }
+        if (message.type !== 'proctor_command' || !message.data) return
+        if (message.data.command === 'force_submit') {
+            onAutoSubmit()
+            ElMessageBox.alert(message.data.reason || '监考系统已强制收卷。', '强制交卷', {
+                confirmButtonText: '确定',
+                type: 'error',
+                showClose: false
+            })
+        } else if (message.data.command === 'warn') {
+            ElMessage.warning({ message: message.data.reason || '监考老师提醒您遵守考试纪律', duration: 5000 })
+        }
+    }
+
     // 上报异常日志
     const logViolation = async (actionType: string, content?: string) => {
         const rId = recordId()
         if (!rId) return
 
+        const snapshot = SNAPSHOT_ACTIONS.includes(actionType) ? await captureSnapshot() : null
+        const payload = {
+            actionType,
+            content: content || `检测到违规行为: ${actionType}`,
+            imgSnapshot: snapshot?.url || '',
+            imgThumb: snapshot?.thumbUrl || ''
+        }
+        if (ws && ws.readyState === WebSocket.OPEN) {
+            ws.send(JSON.stringify({ type: 'proctor_log', data: payload }))
+            return
+        }
+
         try {
-            await request.post('/proctor/log', {
-                recordId: rId,
-                actionType,
-                content: content || `检测到违规行为: ${actionType}`,
-                imgSnapshot: '' // 预留截图字段
-            })
+            await request.post('/proctor/log', { recordId: rId, ...payload })
         } catch (e) {
             console.error('监考日志上报失败', e)
         }
     }
 
+    // 拿到考试记录ID后建立监考通道
+    watch(recordId, (rId) => {
+        if (rId && !ws) connectChannel(rId)
+    })
+
     // 请求全屏
     const enterFullscreen = async () => {
         try {
@@ -82,6 +220,9 @@ export function useProctor({ recordId, onAutoSubmit, saveAnswers }: UseProctorOp
                     type: 'warning'
                 })
             }
+        } else {
+            // 返回考试页面，服务端据此统计离开时长
+            logViolation('return_page', '考生返回考试页面')
         }
     }
 
@@ -137,10 +278,14 @@ export function useProctor({ recordId, onAutoSubmit, saveAnswers }: UseProctorOp
         // 注意：如果是刷新页面，这里会抛出错误（被浏览器拦截），进入 catch 块
         // 从而将 isFullscreen 置为 false，正确显示遮罩
         enterFullscreen()
+
+        openCamera()
     })
 
     onUnmounted(() => {
         if (saveTimer) clearInterval(saveTimer)
+        closeChannel()
+        closeCamera()
 
         document.removeEventListener('fullscreenchange', handleFullscreenChange)
         document.removeEventListener('visibilitychange', handleVisibilityChange)
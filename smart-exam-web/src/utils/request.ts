@@ -102,6 +102,15 @@ service.interceptors.response.use(
         // 优先使用后端返回的错误消息
         const errorMsg = data?.msg || data?.message
 
+        // 开考排队：由页面按 Retry-After 自动重试，不弹出错误提示
+        if (status === 429) {
+          const queued: any = new Error(errorMsg || '请求过于频繁，请稍后重试')
+          queued.status = 429
+          queued.data = data?.data
+          queued.retryAfter = Number(error.response.headers?.['retry-after']) || data?.data?.retryAfter || 3
+          return Promise.reject(queued)
+        }
+
         switch (status) {
           case 400:
             message = errorMsg || '请求参数错误'
@@ -180,16 +180,16 @@ INSERT INTO `exam_record_detail` (`record_id`, `question_id`, `student_answer`,
 
 -- 13. 监考日志表 (exam_proctor_log)
 -- 插入监考日志数据，依赖记录ID
-INSERT INTO `exam_proctor_log` (`record_id`, `action_type`, `content`, `img_snapshot`, `happen_time`, `create_by`, `update_by`) VALUES
-(1, 'login', '学生张三登录考试系统', NULL, '2024-06-20 08:59:30', 2, 2),
-(1, 'start_exam', '学生张三开始考试', NULL, '2024-06-20 09:00:00', 2, 2),
-(1, 'submit_exam', '学生张三提交考试', NULL, '2024-06-20 10:45:00', 2, 2),
-(2, 'login', '学生李四登录考试系统', NULL, '2024-06-20 09:04:20', 2, 2),
-(2, 'start_exam', '学生李四开始考试', NULL, '2024-06-20 09:05:00', 2, 2),
-(2, 'submit_exam', '学生李四提交考试', NULL, '2024-06-20 10:50:00', 2, 2),
-(6, 'login', '学生李四登录考试系统', NULL, '2024-04-20 10:04:15', 2, 2),
-(6, 'start_exam', '学生李四开始考试', NULL, '2024-04-20 10:05:00', 2, 2),
-(6, 'submit_exam', '学生李四提交考试', NULL, '2024-04-20 11:20:00', 2, 2);
+INSERT INTO `exam_proctor_log` (`record_id`, `publish_id`, `action_type`, `content`, `img_snapshot`, `happen_time`, `create_by`, `update_by`) VALUES
+(1, 1, 'login', '学生张三登录考试系统', NULL, '2024-06-20 08:59:30', 2, 2),
+(1, 1, 'start_exam', '学生张三开始考试', NULL, '2024-06-20 09:00:00', 2, 2),
+(1, 1, 'submit_exam', '学生张三提交考试', NULL, '2024-06-20 10:45:00', 2, 2),
+(2, 1, 'login', '学生李四登录考试系统', NULL, '2024-06-20 09:04:20', 2, 2),
+(2, 1, 'start_exam', '学生李四开始考试', NULL, '2024-06-20 09:05:00', 2, 2),
+(2, 1, 'submit_exam', '学生李四提交考试', NULL, '2024-06-20 10:50:00', 2, 2),
+(6, 3, 'login', '学生李四登录考试系统', NULL, '2024-04-20 10:04:15', 2, 2),
+(6, 3, 'start_exam', '学生李四开始考试', NULL, '2024-04-20 10:05:00', 2, 2),
+(6, 3, 'submit_exam', '学生李四提交考试', NULL, '2024-04-20 11:20:00', 2, 2);
 
 -- 14. 错题本 (exam_mistake_book)
 -- 插入错题本数据，依赖用户ID和题目ID